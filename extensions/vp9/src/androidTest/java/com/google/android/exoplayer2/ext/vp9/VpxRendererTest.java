@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ext.vp9;
+
+import android.annotation.TargetApi;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link VpxRenderer}, drawing into an offscreen surface. Frames are set directly on the
+ * renderer, so the test doesn't require the native libraries.
+ */
+@TargetApi(17)
+public class VpxRendererTest extends TestCase {
+
+  private static final int FRAME_WIDTH = 1920;
+  private static final int FRAME_HEIGHT = 1080;
+  private static final int SURFACE_WIDTH = 1280;
+  private static final int SURFACE_HEIGHT = 720;
+
+  private EGLDisplay display;
+  private EGLContext context;
+  private EGLSurface surface;
+  private List<VpxOutputBuffer> releasedOutputBuffers;
+  private VpxOutputBuffer.Owner owner;
+
+  @Override
+  public void setUp() {
+    if (Util.SDK_INT < 17) {
+      return;
+    }
+    releasedOutputBuffers = new ArrayList<>();
+    owner = new VpxOutputBuffer.Owner() {
+      @Override
+      public void releaseOutputBuffer(VpxOutputBuffer outputBuffer) {
+        releasedOutputBuffers.add(outputBuffer);
+      }
+    };
+    display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+    int[] version = new int[2];
+    assertTrue(EGL14.eglInitialize(display, version, 0, version, 1));
+    int[] configAttributes = {
+        EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+        EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+        EGL14.EGL_RED_SIZE, 8,
+        EGL14.EGL_GREEN_SIZE, 8,
+        EGL14.EGL_BLUE_SIZE, 8,
+        EGL14.EGL_NONE};
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] configCount = new int[1];
+    assertTrue(EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, configCount,
+        0));
+    assertTrue(configCount[0] > 0);
+    context = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT,
+        new int[] {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE}, 0);
+    surface = EGL14.eglCreatePbufferSurface(display, configs[0],
+        new int[] {EGL14.EGL_WIDTH, SURFACE_WIDTH, EGL14.EGL_HEIGHT, SURFACE_HEIGHT,
+            EGL14.EGL_NONE}, 0);
+    assertTrue(EGL14.eglMakeCurrent(display, surface, surface, context));
+  }
+
+  @Override
+  public void tearDown() {
+    if (display == null) {
+      return;
+    }
+    EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
+        EGL14.EGL_NO_CONTEXT);
+    EGL14.eglDestroySurface(display, surface);
+    EGL14.eglDestroyContext(display, context);
+    EGL14.eglTerminate(display);
+  }
+
+  public void testSingleBufferingRetainsDrawnBuffer() {
+    if (Util.SDK_INT < 17) {
+      return;
+    }
+    VpxRenderer renderer = createRenderer(false);
+    VpxOutputBuffer outputBuffer1 = createOutputBuffer();
+    VpxOutputBuffer outputBuffer2 = createOutputBuffer();
+    renderer.setFrame(outputBuffer1);
+    renderer.onDrawFrame(null);
+    // The buffer is uploaded again on each redraw, so it's retained until the next frame is drawn.
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers();
+    renderer.setFrame(outputBuffer2);
+    assertReleasedOutputBuffers();
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers(outputBuffer1);
+  }
+
+  public void testDoubleBufferingReleasesBufferOnUpload() {
+    if (Util.SDK_INT < 17) {
+      return;
+    }
+    VpxRenderer renderer = createRenderer(true);
+    VpxOutputBuffer outputBuffer1 = createOutputBuffer();
+    VpxOutputBuffer outputBuffer2 = createOutputBuffer();
+    renderer.setFrame(outputBuffer1);
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers(outputBuffer1);
+    // Redrawing uses the textures, so doesn't release the buffer again.
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers(outputBuffer1);
+    renderer.setFrame(outputBuffer2);
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers(outputBuffer1, outputBuffer2);
+  }
+
+  public void testSetFrameReleasesUndrawnBuffer() {
+    if (Util.SDK_INT < 17) {
+      return;
+    }
+    for (boolean doubleBufferingEnabled : new boolean[] {false, true}) {
+      releasedOutputBuffers.clear();
+      VpxRenderer renderer = createRenderer(doubleBufferingEnabled);
+      VpxOutputBuffer outputBuffer1 = createOutputBuffer();
+      VpxOutputBuffer outputBuffer2 = createOutputBuffer();
+      renderer.setFrame(outputBuffer1);
+      renderer.setFrame(outputBuffer2);
+      assertReleasedOutputBuffers(outputBuffer1);
+    }
+  }
+
+  public void testSwitchingToDoubleBufferingReleasesRetainedBuffer() {
+    if (Util.SDK_INT < 17) {
+      return;
+    }
+    VpxRenderer renderer = createRenderer(false);
+    VpxOutputBuffer outputBuffer1 = createOutputBuffer();
+    VpxOutputBuffer outputBuffer2 = createOutputBuffer();
+    renderer.setFrame(outputBuffer1);
+    renderer.onDrawFrame(null);
+    renderer.setDoubleBufferingEnabled(true);
+    renderer.setFrame(outputBuffer2);
+    renderer.onDrawFrame(null);
+    assertReleasedOutputBuffers(outputBuffer1, outputBuffer2);
+  }
+
+  private static VpxRenderer createRenderer(boolean doubleBufferingEnabled) {
+    VpxRenderer renderer = new VpxRenderer();
+    renderer.setDoubleBufferingEnabled(doubleBufferingEnabled);
+    renderer.onSurfaceCreated(null, null);
+    renderer.onSurfaceChanged(null, SURFACE_WIDTH, SURFACE_HEIGHT);
+    return renderer;
+  }
+
+  private VpxOutputBuffer createOutputBuffer() {
+    VpxOutputBuffer outputBuffer = new VpxOutputBuffer(owner);
+    outputBuffer.init(0, VpxDecoder.OUTPUT_MODE_YUV);
+    outputBuffer.initForYuvFrame(FRAME_WIDTH, FRAME_HEIGHT, FRAME_WIDTH, (FRAME_WIDTH + 1) / 2,
+        VpxOutputBuffer.COLORSPACE_BT709);
+    return outputBuffer;
+  }
+
+  private void assertReleasedOutputBuffers(VpxOutputBuffer... expectedOutputBuffers) {
+    assertEquals(Arrays.asList(expectedOutputBuffers), releasedOutputBuffers);
+  }
+
+}
@@ -27,7 +27,8 @@ import java.nio.ByteBuffer;
  * Vpx decoder.
  */
 /* package */ final class VpxDecoder extends
-    SimpleDecoder<DecoderInputBuffer, VpxOutputBuffer, VpxDecoderException> {
+    SimpleDecoder<DecoderInputBuffer, VpxOutputBuffer, VpxDecoderException>
+    implements VpxOutputBuffer.Owner {
 
   public static final int OUTPUT_MODE_NONE = -1;
   public static final int OUTPUT_MODE_YUV = 0;
@@ -95,7 +96,7 @@ import java.nio.ByteBuffer;
   }
 
   @Override
-  protected void releaseOutputBuffer(VpxOutputBuffer buffer) {
+  public void releaseOutputBuffer(VpxOutputBuffer buffer) {
     super.releaseOutputBuffer(buffer);
   }
 
@@ -28,7 +28,21 @@ import java.nio.ByteBuffer;
   public static final int COLORSPACE_BT709 = 2;
   public static final int COLORSPACE_BT2020 = 3;
 
-  private final VpxDecoder owner;
+  /**
+   * Owner of a {@link VpxOutputBuffer}, to which it is returned when released.
+   */
+  public interface Owner {
+
+    /**
+     * Releases the output buffer so that it can be reused.
+     *
+     * @param outputBuffer The output buffer to release.
+     */
+    void releaseOutputBuffer(VpxOutputBuffer outputBuffer);
+
+  }
+
+  private final Owner owner;
 
   public int mode;
   /**
@@ -44,7 +58,7 @@ import java.nio.ByteBuffer;
   public int[] yuvStrides;
   public int colorspace;
 
-  public VpxOutputBuffer(VpxDecoder owner) {
+  public VpxOutputBuffer(Owner owner) {
     this.owner = owner;
   }
 
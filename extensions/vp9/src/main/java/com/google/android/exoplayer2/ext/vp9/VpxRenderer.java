@@ -17,9 +17,11 @@ package com.google.android.exoplayer2.ext.vp9;
 
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
+import com.google.android.exoplayer2.C;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -77,9 +79,22 @@ import javax.microedition.khronos.opengles.GL10;
       -1.0f, -1.0f,
       1.0f, 1.0f,
       1.0f, -1.0f);
-  private final int[] yuvTextures = new int[3];
+
+  /**
+   * The number of sets of YUV textures. Frames are uploaded into the set that was not drawn most
+   * recently, so that uploading doesn't have to wait for the GPU to finish reading the textures.
+   */
+  private static final int TEXTURE_SET_COUNT = 2;
+
+  private final int[] yuvTextures = new int[TEXTURE_SET_COUNT * 3];
   private final AtomicReference<VpxOutputBuffer> pendingOutputBufferReference;
 
+  // Properties of the frame held by each texture set. Accessed only from the GL thread.
+  private final int[][] textureStrides;
+  private final int[][] textureHeights;
+  private final int[] frameWidths;
+  private final int[] frameColorspaces;
+
   // Kept in a field rather than a local variable so that it doesn't get garbage collected before
   // glDrawArrays uses it.
   @SuppressWarnings("FieldCanBeLocal")
@@ -90,12 +105,35 @@ import javax.microedition.khronos.opengles.GL10;
   private int previousWidth;
   private int previousStride;
 
-  private VpxOutputBuffer renderedOutputBuffer; // Accessed only from the GL thread.
+  private volatile boolean doubleBufferingEnabled;
+
+  // Accessed only from the GL thread.
+  private VpxOutputBuffer renderedOutputBuffer;
+  private int drawnTextureSet;
 
   public VpxRenderer() {
     previousWidth = -1;
     previousStride = -1;
     pendingOutputBufferReference = new AtomicReference<>();
+    textureStrides = new int[TEXTURE_SET_COUNT][3];
+    textureHeights = new int[TEXTURE_SET_COUNT][3];
+    frameWidths = new int[TEXTURE_SET_COUNT];
+    frameColorspaces = new int[TEXTURE_SET_COUNT];
+    drawnTextureSet = C.INDEX_UNSET;
+  }
+
+  /**
+   * Sets whether frames are uploaded into alternating sets of textures. Disabled by default.
+   * <p>
+   * When enabled, each output buffer is released as soon as its frame has been uploaded, rather
+   * than being retained until the next frame is drawn, so the decoder gets its buffers back sooner.
+   * When disabled, the most recent output buffer is retained and uploaded again each time the frame
+   * is redrawn.
+   *
+   * @param doubleBufferingEnabled Whether frames are uploaded into alternating sets of textures.
+   */
+  public void setDoubleBufferingEnabled(boolean doubleBufferingEnabled) {
+    this.doubleBufferingEnabled = doubleBufferingEnabled;
   }
 
   /**
@@ -151,20 +189,59 @@ import javax.microedition.khronos.opengles.GL10;
   @Override
   public void onDrawFrame(GL10 unused) {
     VpxOutputBuffer pendingOutputBuffer = pendingOutputBufferReference.getAndSet(null);
-    if (pendingOutputBuffer == null && renderedOutputBuffer == null) {
-      // There is no output buffer to render at the moment.
-      return;
-    }
     if (pendingOutputBuffer != null) {
       if (renderedOutputBuffer != null) {
         renderedOutputBuffer.release();
+        renderedOutputBuffer = null;
+      }
+      if (doubleBufferingEnabled) {
+        // The textures hold everything needed to redraw the frame, so the buffer can be released
+        // as soon as it has been uploaded.
+        int textureSet = (drawnTextureSet + 1) % TEXTURE_SET_COUNT;
+        uploadFrame(pendingOutputBuffer, textureSet);
+        pendingOutputBuffer.release();
+        drawnTextureSet = textureSet;
+      } else {
+        renderedOutputBuffer = pendingOutputBuffer;
+      }
+    }
+    if (renderedOutputBuffer != null) {
+      uploadFrame(renderedOutputBuffer, 0);
+      drawnTextureSet = 0;
+    }
+    if (drawnTextureSet == C.INDEX_UNSET) {
+      // There is no frame to render at the moment.
+      return;
+    }
+    drawFrame(drawnTextureSet);
+  }
+
+  private void uploadFrame(VpxOutputBuffer outputBuffer, int textureSet) {
+    for (int i = 0; i < 3; i++) {
+      int h = (i == 0) ? outputBuffer.height : (outputBuffer.height + 1) / 2;
+      int stride = outputBuffer.yuvStrides[i];
+      GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
+      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, yuvTextures[textureSet * 3 + i]);
+      GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+      if (textureStrides[textureSet][i] == stride && textureHeights[textureSet][i] == h) {
+        // Update the existing texture storage rather than reallocating it.
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, stride, h, GLES20.GL_LUMINANCE,
+            GLES20.GL_UNSIGNED_BYTE, outputBuffer.yuvPlanes[i]);
+      } else {
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE, stride, h, 0,
+            GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, outputBuffer.yuvPlanes[i]);
+        textureStrides[textureSet][i] = stride;
+        textureHeights[textureSet][i] = h;
       }
-      renderedOutputBuffer = pendingOutputBuffer;
     }
-    VpxOutputBuffer outputBuffer = renderedOutputBuffer;
+    frameWidths[textureSet] = outputBuffer.width;
+    frameColorspaces[textureSet] = outputBuffer.colorspace;
+  }
+
+  private void drawFrame(int textureSet) {
     // Set color matrix. Assume BT709 if the color space is unknown.
     float[] colorConversion = kColorConversion709;
-    switch (outputBuffer.colorspace) {
+    switch (frameColorspaces[textureSet]) {
       case VpxOutputBuffer.COLORSPACE_BT601:
         colorConversion = kColorConversion601;
         break;
@@ -178,17 +255,14 @@ import javax.microedition.khronos.opengles.GL10;
     GLES20.glUniformMatrix3fv(colorMatrixLocation, 1, false, colorConversion, 0);
 
     for (int i = 0; i < 3; i++) {
-      int h = (i == 0) ? outputBuffer.height : (outputBuffer.height + 1) / 2;
       GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
-      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, yuvTextures[i]);
-      GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
-      GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE,
-          outputBuffer.yuvStrides[i], h, 0, GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE,
-          outputBuffer.yuvPlanes[i]);
+      GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, yuvTextures[textureSet * 3 + i]);
     }
     // Set cropping of stride if either width or stride has changed.
-    if (previousWidth != outputBuffer.width || previousStride != outputBuffer.yuvStrides[0]) {
-      float crop = (float) outputBuffer.width / outputBuffer.yuvStrides[0];
+    int width = frameWidths[textureSet];
+    int stride = textureStrides[textureSet][0];
+    if (previousWidth != width || previousStride != stride) {
+      float crop = (float) width / stride;
       // This buffer is consumed during each call to glDrawArrays. It needs to be a member variable
       // rather than a local variable to ensure that it doesn't get garbage collected.
       textureCoords = nativeFloatBuffer(
@@ -198,8 +272,8 @@ import javax.microedition.khronos.opengles.GL10;
           crop, 1.0f);
       GLES20.glVertexAttribPointer(
           texLocation, 2, GLES20.GL_FLOAT, false, 0, textureCoords);
-      previousWidth = outputBuffer.width;
-      previousStride = outputBuffer.yuvStrides[0];
+      previousWidth = width;
+      previousStride = stride;
     }
     GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
     GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
@@ -223,10 +297,12 @@ import javax.microedition.khronos.opengles.GL10;
   }
 
   private void setupTextures() {
-    GLES20.glGenTextures(3, yuvTextures, 0);
+    GLES20.glGenTextures(yuvTextures.length, yuvTextures, 0);
     for (int i = 0; i < 3; i++)  {
       GLES20.glUniform1i(GLES20.glGetUniformLocation(program, TEXTURE_UNIFORMS[i]), i);
-      GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
+    }
+    for (int i = 0; i < yuvTextures.length; i++)  {
+      GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i % 3);
       GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, yuvTextures[i]);
       GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
           GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
@@ -237,6 +313,16 @@ import javax.microedition.khronos.opengles.GL10;
       GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
           GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
     }
+    // The textures have no storage yet, and any frame they held was in the previous context.
+    for (int i = 0; i < TEXTURE_SET_COUNT; i++) {
+      Arrays.fill(textureStrides[i], 0);
+      Arrays.fill(textureHeights[i], 0);
+    }
+    if (renderedOutputBuffer == null) {
+      drawnTextureSet = C.INDEX_UNSET;
+    }
+    previousWidth = -1;
+    previousStride = -1;
     checkNoGLES2Error();
   }
 
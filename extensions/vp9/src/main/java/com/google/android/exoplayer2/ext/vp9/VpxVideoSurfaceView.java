@@ -41,6 +41,17 @@ public class VpxVideoSurfaceView extends GLSurfaceView implements VpxOutputBuffe
     setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
   }
 
+  /**
+   * Sets whether frames are uploaded into alternating sets of textures, which allows each output
+   * buffer to be returned to the decoder as soon as its frame has been uploaded. Disabled by
+   * default.
+   *
+   * @param doubleBufferingEnabled Whether frames are uploaded into alternating sets of textures.
+   */
+  public void setDoubleBufferingEnabled(boolean doubleBufferingEnabled) {
+    renderer.setDoubleBufferingEnabled(doubleBufferingEnabled);
+  }
+
   @Override
   public void setOutputBuffer(VpxOutputBuffer outputBuffer) {
     renderer.setFrame(outputBuffer);
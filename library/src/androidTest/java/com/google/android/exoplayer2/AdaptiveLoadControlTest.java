@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayDeque;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link AdaptiveLoadControl}, which simulate playback sessions against
+ * {@link DefaultLoadControl}.
+ */
+public class AdaptiveLoadControlTest extends TestCase {
+
+  private static final int SESSION_COUNT = 50;
+  private static final long STEP_US = 100000;
+  private static final long TRANSFER_DURATION_US = 1000000;
+  private static final int AUDIO_BITRATE = 128000;
+
+  public void testStableNetworkWastesFewerBytes() {
+    int videoBitrate = 2500000;
+    SimulationResult defaultResult =
+        simulate(new DefaultLoadControl(), videoBitrate, new StableNetwork(8000000));
+    SimulationResult adaptiveResult =
+        simulate(newAdaptiveLoadControl(Long.MAX_VALUE), videoBitrate, new StableNetwork(8000000));
+    assertEquals(0, defaultResult.rebufferCount);
+    assertEquals(0, adaptiveResult.rebufferCount);
+    assertTrue(adaptiveResult.wastedBytes < defaultResult.wastedBytes * 3 / 4);
+  }
+
+  public void testUnstableNetworkRebuffersLess() {
+    int videoBitrate = 2500000;
+    SimulationResult defaultResult =
+        simulate(new DefaultLoadControl(), videoBitrate, new UnstableNetwork());
+    SimulationResult adaptiveResult =
+        simulate(newAdaptiveLoadControl(Long.MAX_VALUE), videoBitrate, new UnstableNetwork());
+    assertTrue(adaptiveResult.rebufferCount < defaultResult.rebufferCount);
+  }
+
+  public void testHighBitrateStaysWithinMemoryBudget() {
+    int videoBitrate = 25000000;
+    long memoryBudgetBytes = 16 * 1024 * 1024;
+    SimulationResult defaultResult =
+        simulate(new DefaultLoadControl(), videoBitrate, new StableNetwork(40000000));
+    SimulationResult adaptiveResult = simulate(newAdaptiveLoadControl(memoryBudgetBytes),
+        videoBitrate, new StableNetwork(40000000));
+    assertTrue(defaultResult.maxBytesAllocated > memoryBudgetBytes);
+    assertTrue(adaptiveResult.maxBytesAllocated
+        <= memoryBudgetBytes + C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    assertEquals(0, adaptiveResult.rebufferCount);
+  }
+
+  public void testReducesBufferTargetsToFitMemoryBudget() {
+    AdaptiveLoadControl loadControl = newAdaptiveLoadControl(4 * 1024 * 1024);
+    loadControl.onPrepared();
+    selectTracks(loadControl, 4000000);
+    // 4MB holds about 8 seconds of media at 4Mbps.
+    assertEquals(8000000, loadControl.getMaxBufferUs());
+    assertEquals(4000000, loadControl.getMinBufferUs());
+    assertTrue(loadControl.shouldStartPlayback(8000000, true));
+    assertFalse(loadControl.shouldStartPlayback(4000000, true));
+  }
+
+  public void testPrebuffersOnlyWhenEnabled() {
+    AdaptiveLoadControl loadControl = newAdaptiveLoadControl(Long.MAX_VALUE);
+    assertFalse(loadControl.shouldPrebuffer(1, 0));
+    loadControl = newAdaptiveLoadControl(Long.MAX_VALUE, 1, 2000);
+    assertTrue(loadControl.shouldPrebuffer(1, 0));
+    assertTrue(loadControl.shouldPrebuffer(1, 1999999));
+    assertFalse(loadControl.shouldPrebuffer(1, 2000000));
+    assertFalse(loadControl.shouldPrebuffer(2, 0));
+  }
+
+  // Internal methods.
+
+  private static AdaptiveLoadControl newAdaptiveLoadControl(long memoryBudgetBytes) {
+    return newAdaptiveLoadControl(memoryBudgetBytes,
+        DefaultLoadControl.DEFAULT_PREBUFFER_PERIOD_COUNT, DefaultLoadControl.DEFAULT_PREBUFFER_MS);
+  }
+
+  private static AdaptiveLoadControl newAdaptiveLoadControl(long memoryBudgetBytes,
+      int prebufferPeriodCount, int prebufferMs) {
+    return new AdaptiveLoadControl(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        memoryBudgetBytes, AdaptiveLoadControl.DEFAULT_STABLE_MAX_BUFFER_MS,
+        AdaptiveLoadControl.DEFAULT_UNSTABLE_MAX_BUFFER_MS,
+        AdaptiveLoadControl.DEFAULT_UNSTABLE_THROUGHPUT_VARIATION,
+        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS, prebufferPeriodCount,
+        prebufferMs, null, null);
+  }
+
+  private static void selectTracks(LoadControl loadControl, int videoBitrate) {
+    Format videoFormat = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null,
+        videoBitrate, Format.NO_VALUE, 1920, 1080, Format.NO_VALUE, null, null);
+    Format audioFormat = Format.createAudioSampleFormat(null, MimeTypes.AUDIO_AAC, null,
+        AUDIO_BITRATE, Format.NO_VALUE, 2, 44100, null, null, 0, null);
+    TrackGroup videoGroup = new TrackGroup(videoFormat);
+    TrackGroup audioGroup = new TrackGroup(audioFormat);
+    Renderer[] renderers = new Renderer[] {new FakeRenderer(C.TRACK_TYPE_VIDEO),
+        new FakeRenderer(C.TRACK_TYPE_AUDIO)};
+    loadControl.onTracksSelected(renderers, new TrackGroupArray(videoGroup, audioGroup),
+        new TrackSelectionArray(new FixedTrackSelection(videoGroup, 0),
+            new FixedTrackSelection(audioGroup, 0)));
+  }
+
+  /**
+   * Simulates {@link #SESSION_COUNT} playback sessions of random durations, each of which is
+   * abandoned with whatever media is still buffered.
+   */
+  private static SimulationResult simulate(LoadControl loadControl, int videoBitrate,
+      Network network) {
+    Random random = new Random(0);
+    long bitrate = videoBitrate + AUDIO_BITRATE;
+    Allocator allocator = loadControl.getAllocator();
+    int allocationLength = allocator.getIndividualAllocationLength();
+    SimulationResult result = new SimulationResult();
+    ArrayDeque<Allocation> allocations = new ArrayDeque<>();
+    for (int session = 0; session < SESSION_COUNT; session++) {
+      loadControl.onPrepared();
+      selectTracks(loadControl, videoBitrate);
+      long sessionDurationUs = (20 + random.nextInt(160)) * C.MICROS_PER_SECOND;
+      long bytesLoaded = 0;
+      long bytesPlayed = 0;
+      long bufferedBytes = 0;
+      boolean playing = false;
+      boolean rebuffering = false;
+      long transferDurationUs = 0;
+      long transferBytes = 0;
+      for (long timeUs = 0; timeUs < sessionDurationUs; timeUs += STEP_US) {
+        long bufferedDurationUs = bufferedBytes * 8 * C.MICROS_PER_SECOND / bitrate;
+        if (loadControl.shouldContinueLoading(bufferedDurationUs)) {
+          long bytes = network.getThroughput(random) * STEP_US / 8 / C.MICROS_PER_SECOND;
+          bytesLoaded += bytes;
+          bufferedBytes += bytes;
+          transferBytes += bytes;
+          transferDurationUs += STEP_US;
+          if (transferDurationUs >= TRANSFER_DURATION_US) {
+            if (loadControl instanceof AdaptiveLoadControl) {
+              ((AdaptiveLoadControl) loadControl).onBandwidthSample(
+                  (int) (transferDurationUs / 1000), transferBytes, Format.NO_VALUE);
+            }
+            transferDurationUs = 0;
+            transferBytes = 0;
+          }
+        }
+        if (!playing && loadControl.shouldStartPlayback(bufferedDurationUs, rebuffering)) {
+          playing = true;
+        }
+        if (playing) {
+          long bytes = Math.min(bufferedBytes, bitrate * STEP_US / 8 / C.MICROS_PER_SECOND);
+          bytesPlayed += bytes;
+          bufferedBytes -= bytes;
+          if (bufferedBytes == 0) {
+            result.rebufferCount++;
+            playing = false;
+            rebuffering = true;
+          }
+        }
+        // Hold allocations for the buffered media, as a sample queue would.
+        while ((long) allocations.size() * allocationLength < bufferedBytes) {
+          allocations.add(allocator.allocate());
+        }
+        while ((long) (allocations.size() - 1) * allocationLength >= bufferedBytes
+            && !allocations.isEmpty()) {
+          allocator.release(allocations.remove());
+        }
+        result.maxBytesAllocated =
+            Math.max(result.maxBytesAllocated, allocator.getTotalBytesAllocated());
+      }
+      result.wastedBytes += bytesLoaded - bytesPlayed;
+      while (!allocations.isEmpty()) {
+        allocator.release(allocations.remove());
+      }
+      loadControl.onStopped();
+    }
+    return result;
+  }
+
+  private static final class SimulationResult {
+
+    public int rebufferCount;
+    public long wastedBytes;
+    public long maxBytesAllocated;
+
+  }
+
+  private interface Network {
+
+    long getThroughput(Random random);
+
+  }
+
+  /**
+   * A network whose throughput varies by up to 5% around a mean.
+   */
+  private static final class StableNetwork implements Network {
+
+    private final long meanThroughput;
+
+    public StableNetwork(long meanThroughput) {
+      this.meanThroughput = meanThroughput;
+    }
+
+    @Override
+    public long getThroughput(Random random) {
+      return (long) (meanThroughput * (0.95 + random.nextDouble() * 0.1));
+    }
+
+  }
+
+  /**
+   * A network that alternates between periods of high throughput and outages.
+   */
+  private static final class UnstableNetwork implements Network {
+
+    private static final long GOOD_THROUGHPUT = 6000000;
+    private static final long BAD_THROUGHPUT = 300000;
+
+    private boolean good;
+    private long remainingPeriodUs;
+
+    @Override
+    public long getThroughput(Random random) {
+      if (remainingPeriodUs <= 0) {
+        good = !good;
+        remainingPeriodUs = (good ? 5 + random.nextInt(20) : 5 + random.nextInt(20))
+            * C.MICROS_PER_SECOND;
+      }
+      remainingPeriodUs -= STEP_US;
+      return good ? GOOD_THROUGHPUT : BAD_THROUGHPUT;
+    }
+
+  }
+
+  private static final class FakeRenderer extends BaseRenderer {
+
+    public FakeRenderer(int trackType) {
+      super(trackType);
+    }
+
+    @Override
+    public int supportsFormat(Format format) {
+      return FORMAT_HANDLED;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public boolean isEnded() {
+      return false;
+    }
+
+  }
+
+}
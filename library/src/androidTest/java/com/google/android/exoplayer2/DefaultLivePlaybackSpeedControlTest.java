@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.util.Clock;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link DefaultLivePlaybackSpeedControl}.
+ */
+public class DefaultLivePlaybackSpeedControlTest extends TestCase {
+
+  private static final long TARGET_LIVE_OFFSET_MS = 3000;
+  private static final long STEP_MS = 10;
+
+  private FakeClock clock;
+  private DefaultLivePlaybackSpeedControl speedControl;
+
+  // The simulated playback state.
+  private long liveOffsetUs;
+  private long bufferedDurationUs;
+  private float playbackSpeed;
+
+  @Override
+  public void setUp() {
+    clock = new FakeClock();
+    speedControl = new DefaultLivePlaybackSpeedControl(TARGET_LIVE_OFFSET_MS,
+        DefaultLivePlaybackSpeedControl.DEFAULT_MIN_PLAYBACK_SPEED,
+        DefaultLivePlaybackSpeedControl.DEFAULT_MAX_PLAYBACK_SPEED,
+        DefaultLivePlaybackSpeedControl.DEFAULT_PROPORTIONAL_CONTROL_FACTOR,
+        DefaultLivePlaybackSpeedControl.DEFAULT_ACCEPTABLE_OFFSET_ERROR_MS,
+        DefaultLivePlaybackSpeedControl.DEFAULT_MIN_UPDATE_INTERVAL_MS,
+        DefaultLivePlaybackSpeedControl.DEFAULT_MIN_BUFFER_FOR_SPEED_UP_MS, clock);
+    bufferedDurationUs = 10 * C.MICROS_PER_SECOND;
+    playbackSpeed = 1f;
+  }
+
+  public void testConvergesOnTargetLiveOffset() {
+    liveOffsetUs = 6 * C.MICROS_PER_SECOND;
+    long convergenceTimeMs = playUntilConverged(300000);
+    assertTrue(convergenceTimeMs != C.TIME_UNSET);
+    assertEquals(1f, playbackSpeed);
+  }
+
+  public void testConvergesOnTargetLiveOffsetFromBelow() {
+    liveOffsetUs = 2 * C.MICROS_PER_SECOND;
+    assertTrue(playUntilConverged(300000) != C.TIME_UNSET);
+  }
+
+  public void testSpeedStaysWithinBounds() {
+    liveOffsetUs = 60 * C.MICROS_PER_SECOND;
+    float minSpeed = Float.MAX_VALUE;
+    float maxSpeed = 0;
+    for (int i = 0; i < 1000; i++) {
+      step();
+      maxSpeed = Math.max(maxSpeed, playbackSpeed);
+      minSpeed = Math.min(minSpeed, playbackSpeed);
+    }
+    assertEquals(DefaultLivePlaybackSpeedControl.DEFAULT_MAX_PLAYBACK_SPEED, maxSpeed);
+    liveOffsetUs = 0;
+    for (int i = 0; i < 1000; i++) {
+      step();
+      minSpeed = Math.min(minSpeed, playbackSpeed);
+    }
+    assertEquals(DefaultLivePlaybackSpeedControl.DEFAULT_MIN_PLAYBACK_SPEED, minSpeed);
+  }
+
+  public void testRecoversAfterRebuffer() {
+    liveOffsetUs = C.msToUs(TARGET_LIVE_OFFSET_MS);
+    assertTrue(playUntilConverged(10000) != C.TIME_UNSET);
+    // Simulate a two second stall, during which the live edge moves away from the position.
+    liveOffsetUs += 2 * C.MICROS_PER_SECOND;
+    clock.advance(2000);
+    assertTrue(playUntilConverged(300000) != C.TIME_UNSET);
+  }
+
+  public void testDoesNotSpeedUpWithLowBuffer() {
+    liveOffsetUs = 6 * C.MICROS_PER_SECOND;
+    bufferedDurationUs =
+        C.msToUs(DefaultLivePlaybackSpeedControl.DEFAULT_MIN_BUFFER_FOR_SPEED_UP_MS) - 1;
+    for (int i = 0; i < 1000; i++) {
+      step();
+      assertEquals(1f, playbackSpeed);
+    }
+  }
+
+  public void testSeekAwayFromLiveEdgeBecomesTarget() {
+    liveOffsetUs = C.msToUs(TARGET_LIVE_OFFSET_MS);
+    step();
+    liveOffsetUs = 20 * C.MICROS_PER_SECOND;
+    speedControl.onPositionReset();
+    for (int i = 0; i < 1000; i++) {
+      step();
+      assertEquals(1f, playbackSpeed);
+    }
+    assertEquals(20 * C.MICROS_PER_SECOND, speedControl.getTargetLiveOffsetUs());
+  }
+
+  public void testSeekTowardsLiveEdgeKeepsTarget() {
+    liveOffsetUs = 6 * C.MICROS_PER_SECOND;
+    step();
+    liveOffsetUs = C.MICROS_PER_SECOND;
+    speedControl.onPositionReset();
+    step();
+    assertEquals(C.msToUs(TARGET_LIVE_OFFSET_MS), speedControl.getTargetLiveOffsetUs());
+    assertTrue(playbackSpeed < 1f);
+  }
+
+  /**
+   * Plays until the live offset is within the acceptable error of the target and playback is at
+   * normal speed, returning the time taken or {@link C#TIME_UNSET} if it takes longer than
+   * {@code maxDurationMs}.
+   */
+  private long playUntilConverged(long maxDurationMs) {
+    long acceptableErrorUs =
+        C.msToUs(DefaultLivePlaybackSpeedControl.DEFAULT_ACCEPTABLE_OFFSET_ERROR_MS);
+    long startTimeMs = clock.elapsedRealtime();
+    while (clock.elapsedRealtime() - startTimeMs < maxDurationMs) {
+      step();
+      if (playbackSpeed == 1f
+          && Math.abs(liveOffsetUs - speedControl.getTargetLiveOffsetUs()) < acceptableErrorUs) {
+        return clock.elapsedRealtime() - startTimeMs;
+      }
+    }
+    return C.TIME_UNSET;
+  }
+
+  /**
+   * Advances the simulation by {@link #STEP_MS}. The live edge advances in real time, and the
+   * playback position at the current playback speed.
+   */
+  private void step() {
+    playbackSpeed = speedControl.getAdjustedPlaybackSpeed(liveOffsetUs, bufferedDurationUs);
+    assertEquals(playbackSpeed, speedControl.getCurrentPlaybackSpeed());
+    clock.advance(STEP_MS);
+    liveOffsetUs += (long) (C.msToUs(STEP_MS) * (1f - playbackSpeed));
+  }
+
+  private static final class FakeClock implements Clock {
+
+    private long elapsedRealtimeMs;
+
+    public void advance(long durationMs) {
+      elapsedRealtimeMs += durationMs;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return elapsedRealtimeMs;
+    }
+
+  }
+
+}
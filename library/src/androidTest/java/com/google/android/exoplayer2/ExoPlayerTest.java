@@ -17,6 +17,9 @@ package com.google.android.exoplayer2;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource;
@@ -27,11 +30,15 @@ import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MediaClock;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.WallClock;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -49,6 +56,30 @@ public final class ExoPlayerTest extends TestCase {
    */
   private static final int TIMEOUT_MS = 10000;
 
+  /**
+   * The duration of each period played by {@link #testPrebufferingLoadsNextPeriodEarly()}, and
+   * how long the loader holds the final chunk of the first period while waiting for the next
+   * period to start loading.
+   */
+  private static final long SLOW_PERIOD_DURATION_US = 500000;
+  private static final long SLOW_PERIOD_PREPARE_MS = 600;
+  private static final long SLOW_CHUNK_DURATION_US = 250000;
+  private static final long SLOW_CHUNK_LOAD_MS = 100;
+  private static final int SLOW_BUFFER_FOR_PLAYBACK_MS = 250;
+  private static final long SLOW_FINAL_CHUNK_HOLD_MS = 1000;
+
+  /**
+   * The number of listeners registered by {@link #testEventDispatch()}.
+   */
+  private static final int LISTENER_COUNT = 3;
+
+  /**
+   * The start time of the live window played by {@link #testLivePlaybackSpeedControl()}, and the
+   * offset of the fake wall clock time from it.
+   */
+  private static final long LIVE_WINDOW_START_TIME_MS = 1000000;
+  private static final long LIVE_OFFSET_MS = 100000;
+
   private static final Format TEST_VIDEO_FORMAT = Format.createVideoSampleFormat(null,
       MimeTypes.VIDEO_H264, null, Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE,
       null, null);
@@ -157,6 +188,163 @@ public final class ExoPlayerTest extends TestCase {
     assertNull(playerWrapper.manifest);
   }
 
+  /**
+   * Tests that the offset from the live edge is derived from the player's clock, and that seeking
+   * resets the live playback speed control, including when seeking to the default position.
+   */
+  public void testLivePlaybackSpeedControl() throws Exception {
+    PlayerWrapper playerWrapper = new PlayerWrapper();
+    Timeline timeline = new FakeTimeline(
+        new TimelineWindowDefinition(true, true, 10 * C.MICROS_PER_SECOND,
+            LIVE_WINDOW_START_TIME_MS));
+    MediaSource mediaSource = new FakeMediaSource(timeline, null, TEST_VIDEO_FORMAT);
+    FakeRenderer renderer = new FakeRenderer(TEST_VIDEO_FORMAT);
+    FakeLivePlaybackSpeedControl livePlaybackSpeedControl = new FakeLivePlaybackSpeedControl();
+    FakeClock clock = new FakeClock(LIVE_WINDOW_START_TIME_MS + LIVE_OFFSET_MS);
+    playerWrapper.setup(mediaSource, livePlaybackSpeedControl, clock, renderer);
+    try {
+      assertTrue(livePlaybackSpeedControl.speedRequestedCountDownLatch.await(TIMEOUT_MS,
+          TimeUnit.MILLISECONDS));
+      // The playback position is within the first second of the window.
+      long liveOffsetUs = livePlaybackSpeedControl.firstLiveOffsetUs;
+      assertTrue(liveOffsetUs <= C.msToUs(LIVE_OFFSET_MS));
+      assertTrue(liveOffsetUs > C.msToUs(LIVE_OFFSET_MS) - C.MICROS_PER_SECOND);
+      assertEquals(0, livePlaybackSpeedControl.positionResetCount);
+      playerWrapper.seekToDefaultPosition();
+      playerWrapper.seekTo(0);
+      assertTrue(livePlaybackSpeedControl.positionResetCountDownLatch.await(TIMEOUT_MS,
+          TimeUnit.MILLISECONDS));
+    } finally {
+      // Playback of the live window doesn't end, so release the player directly.
+      playerWrapper.release();
+    }
+    assertNull(playerWrapper.exception);
+    assertEquals(2, livePlaybackSpeedControl.positionResetCount);
+  }
+
+  /**
+   * Tests that the next period is only created before the period being buffered for playback has
+   * been fully loaded when prebuffering is enabled.
+   */
+  public void testPrebufferingLoadsNextPeriodEarly() throws Exception {
+    SlowMediaSource mediaSource = playSlowTimeline(0);
+    assertTrue(mediaSource.previousPeriodLoadedAtCreation[1]);
+    assertTrue(mediaSource.previousPeriodLoadedAtCreation[2]);
+    mediaSource = playSlowTimeline(1);
+    assertFalse(mediaSource.previousPeriodLoadedAtCreation[1]);
+  }
+
+  /**
+   * Tests that the load control is only notified of the track selection of a prebuffered period
+   * once the periods before it have been fully loaded.
+   */
+  public void testPrebufferedTrackSelectionNotifiedOnceBuffering() throws Exception {
+    SlowMediaSource mediaSource = playSlowTimeline(1);
+    assertTrue(mediaSource.previousPeriodLoadedAtTracksSelected[1]);
+    assertTrue(mediaSource.previousPeriodLoadedAtTracksSelected[2]);
+  }
+
+  /**
+   * Tests that events sent by the playback thread reach every listener in the order in which they
+   * occurred, including when the playback state and the loading state change together on stopping.
+   */
+  public void testEventDispatch() throws Exception {
+    PlayerWrapper playerWrapper = new PlayerWrapper();
+    // The period is long enough for the player to still be loading it when it is stopped.
+    Timeline timeline = new FakeTimeline(
+        new TimelineWindowDefinition(false, false, 60 * C.MICROS_PER_SECOND));
+    MediaSource mediaSource = new SlowMediaSource(timeline, TEST_VIDEO_FORMAT);
+    RecordingListener[] listeners = new RecordingListener[LISTENER_COUNT];
+    for (int i = 0; i < LISTENER_COUNT; i++) {
+      listeners[i] = new RecordingListener();
+      playerWrapper.addListener(listeners[i]);
+    }
+    playerWrapper.setup(mediaSource, new TimedRenderer());
+    try {
+      assertTrue(listeners[0].readyCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      playerWrapper.stop();
+      assertTrue(listeners[0].stoppedCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    } finally {
+      playerWrapper.release();
+    }
+    assertNull(playerWrapper.exception);
+    for (RecordingListener listener : listeners) {
+      assertEquals(listeners[0].events, listener.events);
+    }
+    // The first state is reported when playWhenReady is set, before the player is prepared.
+    ArrayList<String> events = listeners[0].events;
+    assertEquals(Arrays.asList(RecordingListener.getStateEvent(ExoPlayer.STATE_IDLE),
+        RecordingListener.getStateEvent(ExoPlayer.STATE_BUFFERING),
+        RecordingListener.getLoadingEvent(true)), events.subList(0, 3));
+    assertTrue(events.contains(RecordingListener.getStateEvent(ExoPlayer.STATE_READY)));
+    // Stopping resets the loading state before the playback state, and neither change is lost.
+    assertEquals(Arrays.asList(RecordingListener.getLoadingEvent(false),
+        RecordingListener.getStateEvent(ExoPlayer.STATE_IDLE)),
+        events.subList(events.size() - 2, events.size()));
+  }
+
+  /**
+   * Tests that the events that occur while the playback thread handles a message are posted to the
+   * application thread in a single message, and that the batches holding them are reused.
+   */
+  public void testEventsPostedOncePerHandledMessage() throws Exception {
+    HandlerThread applicationThread = new HandlerThread("ExoPlayerTest application");
+    applicationThread.start();
+    BatchRecordingHandler eventHandler = new BatchRecordingHandler(applicationThread.getLooper());
+    // The period is long enough for the player to still be loading it when it is stopped.
+    Timeline timeline = new FakeTimeline(
+        new TimelineWindowDefinition(false, false, 60 * C.MICROS_PER_SECOND));
+    ExoPlayerImplInternal internalPlayer = new ExoPlayerImplInternal(
+        new Renderer[] {new TimedRenderer()}, new DefaultTrackSelector(), new DefaultLoadControl(),
+        null, new FakeClock(0), true, eventHandler, new ExoPlayerImplInternal.PlaybackInfo(0, 0),
+        null);
+    eventHandler.internalPlayer = internalPlayer;
+    try {
+      internalPlayer.prepare(new SlowMediaSource(timeline, TEST_VIDEO_FORMAT), true);
+      assertTrue(eventHandler.readyCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      internalPlayer.stop();
+      assertTrue(eventHandler.stoppedCountDownLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    } finally {
+      internalPlayer.release();
+      applicationThread.quit();
+    }
+    ArrayList<List<String>> messages = eventHandler.messages;
+    for (List<String> events : messages) {
+      assertFalse(events.isEmpty());
+    }
+    // Stopping changes the loading state and the playback state while handling a single message.
+    int lastIndex = messages.size() - 1;
+    assertEquals(Arrays.asList(RecordingListener.getLoadingEvent(false),
+        RecordingListener.getStateEvent(ExoPlayer.STATE_IDLE)), messages.get(lastIndex));
+    // All earlier batches had been released when the player was stopped, so one of them is reused.
+    assertTrue(eventHandler.batches.subList(0, lastIndex)
+        .contains(eventHandler.batches.get(lastIndex)));
+  }
+
+  /**
+   * Plays a timeline of three periods from a {@link SlowMediaSource} to the end, with the given
+   * number of periods to prebuffer, and returns the source.
+   */
+  private static SlowMediaSource playSlowTimeline(int prebufferPeriodCount) throws Exception {
+    PlayerWrapper playerWrapper = new PlayerWrapper();
+    Timeline timeline = new FakeTimeline(
+        new TimelineWindowDefinition(false, false, SLOW_PERIOD_DURATION_US),
+        new TimelineWindowDefinition(false, false, SLOW_PERIOD_DURATION_US),
+        new TimelineWindowDefinition(false, false, SLOW_PERIOD_DURATION_US));
+    SlowMediaSource mediaSource = new SlowMediaSource(timeline, TEST_VIDEO_FORMAT);
+    LoadControl loadControl = new RecordingLoadControl(new DefaultLoadControl(
+        new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        DefaultLoadControl.DEFAULT_MIN_BUFFER_MS, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+        SLOW_BUFFER_FOR_PLAYBACK_MS, SLOW_BUFFER_FOR_PLAYBACK_MS, null, null,
+        prebufferPeriodCount, DefaultLoadControl.DEFAULT_PREBUFFER_MS), mediaSource);
+    TimedRenderer renderer = new TimedRenderer();
+    playerWrapper.setup(mediaSource, loadControl, renderer);
+    playerWrapper.blockUntilEnded(TIMEOUT_MS);
+    assertEquals(2, playerWrapper.positionDiscontinuityCount);
+    assertTrue(renderer.isEnded);
+    return mediaSource;
+  }
+
   /**
    * Wraps a player with its own handler thread.
    */
@@ -165,6 +353,7 @@ public final class ExoPlayerTest extends TestCase {
     private final CountDownLatch endedCountDownLatch;
     private final HandlerThread playerThread;
     private final Handler handler;
+    private final ArrayList<ExoPlayer.EventListener> listeners;
 
     private ExoPlayer player;
     private Timeline timeline;
@@ -180,6 +369,7 @@ public final class ExoPlayerTest extends TestCase {
       playerThread = new HandlerThread("ExoPlayerTest thread");
       playerThread.start();
       handler = new Handler(playerThread.getLooper());
+      listeners = new ArrayList<>();
     }
 
     // Called on the test thread.
@@ -195,15 +385,36 @@ public final class ExoPlayerTest extends TestCase {
       }
     }
 
-    public void setup(final MediaSource mediaSource, final Renderer... renderers) {
+    public void setup(MediaSource mediaSource, Renderer... renderers) {
+      setup(mediaSource, new DefaultLoadControl(), renderers);
+    }
+
+    public void setup(final MediaSource mediaSource, final LoadControl loadControl,
+        final Renderer... renderers) {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            player = ExoPlayerFactory.newInstance(renderers, new DefaultTrackSelector(),
+                loadControl);
+            startPlayback(mediaSource);
+          } catch (Exception e) {
+            handleError(e);
+          }
+        }
+      });
+    }
+
+    public void setup(final MediaSource mediaSource,
+        final LivePlaybackSpeedControl livePlaybackSpeedControl, final WallClock clock,
+        final Renderer... renderers) {
       handler.post(new Runnable() {
         @Override
         public void run() {
           try {
-            player = ExoPlayerFactory.newInstance(renderers, new DefaultTrackSelector());
-            player.addListener(PlayerWrapper.this);
-            player.setPlayWhenReady(true);
-            player.prepare(mediaSource);
+            player = new ExoPlayerImpl(renderers, new DefaultTrackSelector(),
+                new DefaultLoadControl(), livePlaybackSpeedControl, clock);
+            startPlayback(mediaSource);
           } catch (Exception e) {
             handleError(e);
           }
@@ -211,6 +422,37 @@ public final class ExoPlayerTest extends TestCase {
       });
     }
 
+    public void seekToDefaultPosition() {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          player.seekToDefaultPosition();
+        }
+      });
+    }
+
+    public void seekTo(final long positionMs) {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          player.seekTo(positionMs);
+        }
+      });
+    }
+
+    public void addListener(ExoPlayer.EventListener listener) {
+      listeners.add(listener);
+    }
+
+    public void stop() {
+      handler.post(new Runnable() {
+        @Override
+        public void run() {
+          player.stop();
+        }
+      });
+    }
+
     public void release() throws InterruptedException {
       handler.post(new Runnable() {
         @Override
@@ -229,6 +471,15 @@ public final class ExoPlayerTest extends TestCase {
       playerThread.join();
     }
 
+    private void startPlayback(MediaSource mediaSource) {
+      player.addListener(this);
+      for (ExoPlayer.EventListener listener : listeners) {
+        player.addListener(listener);
+      }
+      player.setPlayWhenReady(true);
+      player.prepare(mediaSource);
+    }
+
     private void handleError(Exception exception) {
       if (this.exception == null) {
         this.exception = exception;
@@ -279,11 +530,18 @@ public final class ExoPlayerTest extends TestCase {
     public final boolean isSeekable;
     public final boolean isDynamic;
     public final long durationUs;
+    public final long windowStartTimeMs;
 
     public TimelineWindowDefinition(boolean isSeekable, boolean isDynamic, long durationUs) {
+      this(isSeekable, isDynamic, durationUs, C.TIME_UNSET);
+    }
+
+    public TimelineWindowDefinition(boolean isSeekable, boolean isDynamic, long durationUs,
+        long windowStartTimeMs) {
       this.isSeekable = isSeekable;
       this.isDynamic = isDynamic;
       this.durationUs = durationUs;
+      this.windowStartTimeMs = windowStartTimeMs;
     }
 
   }
@@ -306,8 +564,9 @@ public final class ExoPlayerTest extends TestCase {
         long defaultPositionProjectionUs) {
       TimelineWindowDefinition windowDefinition = windowDefinitions[windowIndex];
       Object id = setIds ? windowIndex : null;
-      return window.set(id, C.TIME_UNSET, C.TIME_UNSET, windowDefinition.isSeekable,
-          windowDefinition.isDynamic, 0, windowDefinition.durationUs, windowIndex, windowIndex, 0);
+      return window.set(id, C.TIME_UNSET, windowDefinition.windowStartTimeMs,
+          windowDefinition.isSeekable, windowDefinition.isDynamic, 0, windowDefinition.durationUs,
+          windowIndex, windowIndex, 0);
     }
 
     @Override
@@ -536,10 +795,518 @@ public final class ExoPlayerTest extends TestCase {
     }
 
     @Override
-    public void skipToKeyframeBefore(long timeUs) {
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return false;
+    }
+
+  }
+
+  /**
+   * Fake {@link MediaSource} that provides a given timeline. Creating a period will return a
+   * {@link SlowMediaPeriod}, which prepares and loads on its own thread. The final chunk of the
+   * first period is held until the next period starts loading, or for at most
+   * {@link #SLOW_FINAL_CHUNK_HOLD_MS}.
+   */
+  private static final class SlowMediaSource implements MediaSource {
+
+    private final Timeline timeline;
+    private final Format format;
+    private final ArrayList<HandlerThread> loaderThreads;
+    private final SlowMediaPeriod[] mediaPeriods;
+
+    /**
+     * For each period, whether the period before it was fully loaded when it was created.
+     */
+    public final boolean[] previousPeriodLoadedAtCreation;
+    /**
+     * For each period, whether the period before it was fully loaded when the load control was
+     * notified of its track selection.
+     */
+    public final boolean[] previousPeriodLoadedAtTracksSelected;
+
+    public SlowMediaSource(Timeline timeline, Format format) {
+      this.timeline = timeline;
+      this.format = format;
+      loaderThreads = new ArrayList<>();
+      mediaPeriods = new SlowMediaPeriod[timeline.getPeriodCount()];
+      previousPeriodLoadedAtCreation = new boolean[timeline.getPeriodCount()];
+      previousPeriodLoadedAtTracksSelected = new boolean[timeline.getPeriodCount()];
+    }
+
+    /**
+     * Records whether the period before the one with the given track groups is fully loaded. Called
+     * when the load control is notified of a track selection.
+     */
+    public void onTracksSelected(TrackGroupArray trackGroups) {
+      for (int i = 1; i < mediaPeriods.length; i++) {
+        if (mediaPeriods[i] != null && mediaPeriods[i].getTrackGroups() == trackGroups) {
+          previousPeriodLoadedAtTracksSelected[i] = mediaPeriods[i - 1].isFullyLoaded();
+        }
+      }
+    }
+
+    @Override
+    public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+      listener.onSourceInfoRefreshed(timeline, null);
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
       // Do nothing.
     }
 
+    @Override
+    public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+      Assertions.checkIndex(index, 0, timeline.getPeriodCount());
+      SlowMediaPeriod previousMediaPeriod = index > 0 ? mediaPeriods[index - 1] : null;
+      if (previousMediaPeriod != null) {
+        previousPeriodLoadedAtCreation[index] = previousMediaPeriod.isFullyLoaded();
+      }
+      // Each period loads on its own thread, so that holding the final chunk of one period doesn't
+      // block preparing and loading the next.
+      HandlerThread loaderThread = new HandlerThread("ExoPlayerTest loader");
+      loaderThread.start();
+      loaderThreads.add(loaderThread);
+      mediaPeriods[index] = new SlowMediaPeriod(new TrackGroupArray(new TrackGroup(format)),
+          new Handler(loaderThread.getLooper()),
+          timeline.getPeriod(index, new Timeline.Period()).getDurationUs(), index == 0,
+          previousMediaPeriod);
+      return mediaPeriods[index];
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      // Do nothing.
+    }
+
+    @Override
+    public void releaseSource() {
+      for (HandlerThread loaderThread : loaderThreads) {
+        loaderThread.quit();
+      }
+    }
+
+  }
+
+  /**
+   * Fake {@link MediaPeriod} that takes {@link #SLOW_PERIOD_PREPARE_MS} to prepare and
+   * {@link #SLOW_CHUNK_LOAD_MS} to load each chunk of {@link #SLOW_CHUNK_DURATION_US} of media. If
+   * {@code holdFinalChunk} is set, loading the final chunk also waits for
+   * {@link #finalChunkCountDownLatch}. The latch of {@code previousMediaPeriod} is counted down
+   * when this period starts loading.
+   */
+  private static final class SlowMediaPeriod implements MediaPeriod {
+
+    private final TrackGroupArray trackGroupArray;
+    private final Handler loaderHandler;
+    private final long durationUs;
+    private final boolean holdFinalChunk;
+    private final SlowMediaPeriod previousMediaPeriod;
+
+    public final CountDownLatch finalChunkCountDownLatch;
+
+    private Callback callback;
+    private volatile boolean prepared;
+    private volatile long loadedDurationUs;
+    private boolean loading;
+
+    public SlowMediaPeriod(TrackGroupArray trackGroupArray, Handler loaderHandler,
+        long durationUs, boolean holdFinalChunk, SlowMediaPeriod previousMediaPeriod) {
+      this.trackGroupArray = trackGroupArray;
+      this.loaderHandler = loaderHandler;
+      this.durationUs = durationUs;
+      this.holdFinalChunk = holdFinalChunk;
+      this.previousMediaPeriod = previousMediaPeriod;
+      finalChunkCountDownLatch = new CountDownLatch(1);
+    }
+
+    @Override
+    public void prepare(Callback callback) {
+      this.callback = callback;
+      loaderHandler.postDelayed(new Runnable() {
+        @Override
+        public void run() {
+          prepared = true;
+          SlowMediaPeriod.this.callback.onPrepared(SlowMediaPeriod.this);
+        }
+      }, SLOW_PERIOD_PREPARE_MS);
+    }
+
+    @Override
+    public void maybeThrowPrepareError() throws IOException {
+      // Do nothing.
+    }
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return trackGroupArray;
+    }
+
+    @Override
+    public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+        SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+      for (int i = 0; i < selections.length; i++) {
+        if (streams[i] != null && (selections[i] == null || !mayRetainStreamFlags[i])) {
+          streams[i] = null;
+        }
+        if (streams[i] == null && selections[i] != null) {
+          streams[i] = new SlowSampleStream(this, selections[i].getTrackGroup().getFormat(0));
+          streamResetFlags[i] = true;
+        }
+      }
+      return positionUs;
+    }
+
+    @Override
+    public void discardBuffer(long positionUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public long readDiscontinuity() {
+      return C.TIME_UNSET;
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return isFullyLoaded() ? C.TIME_END_OF_SOURCE : loadedDurationUs;
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return isFullyLoaded() ? C.TIME_END_OF_SOURCE : loadedDurationUs;
+    }
+
+    @Override
+    public synchronized boolean continueLoading(long positionUs) {
+      if (!prepared || loading || isFullyLoaded()) {
+        return false;
+      }
+      if (previousMediaPeriod != null) {
+        previousMediaPeriod.finalChunkCountDownLatch.countDown();
+      }
+      loading = true;
+      loaderHandler.postDelayed(new Runnable() {
+        @Override
+        public void run() {
+          if (holdFinalChunk && loadedDurationUs + SLOW_CHUNK_DURATION_US >= durationUs) {
+            awaitFinalChunkRelease();
+          }
+          synchronized (SlowMediaPeriod.this) {
+            loading = false;
+            loadedDurationUs = Math.min(durationUs, loadedDurationUs + SLOW_CHUNK_DURATION_US);
+          }
+          callback.onContinueLoadingRequested(SlowMediaPeriod.this);
+        }
+      }, SLOW_CHUNK_LOAD_MS);
+      return true;
+    }
+
+    public boolean isFullyLoaded() {
+      return loadedDurationUs >= durationUs;
+    }
+
+    private void awaitFinalChunkRelease() {
+      try {
+        finalChunkCountDownLatch.await(SLOW_FINAL_CHUNK_HOLD_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+  /**
+   * Fake {@link SampleStream} that outputs a given {@link Format} followed by one sample per chunk
+   * loaded by a {@link SlowMediaPeriod}, then sets the end of stream flag once the period is fully
+   * loaded.
+   */
+  private static final class SlowSampleStream implements SampleStream {
+
+    private final SlowMediaPeriod mediaPeriod;
+    private final Format format;
+
+    private boolean readFormat;
+    private long nextSampleTimeUs;
+
+    public SlowSampleStream(SlowMediaPeriod mediaPeriod, Format format) {
+      this.mediaPeriod = mediaPeriod;
+      this.format = format;
+    }
+
+    @Override
+    public boolean isReady() {
+      return nextSampleTimeUs < mediaPeriod.loadedDurationUs || mediaPeriod.isFullyLoaded();
+    }
+
+    @Override
+    public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer,
+        boolean formatRequired) {
+      if (formatRequired || !readFormat) {
+        formatHolder.format = format;
+        readFormat = true;
+        return C.RESULT_FORMAT_READ;
+      } else if (nextSampleTimeUs < mediaPeriod.loadedDurationUs) {
+        buffer.timeUs = nextSampleTimeUs;
+        nextSampleTimeUs += SLOW_CHUNK_DURATION_US;
+        return C.RESULT_BUFFER_READ;
+      } else if (mediaPeriod.isFullyLoaded()) {
+        buffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+        return C.RESULT_BUFFER_READ;
+      }
+      return C.RESULT_NOTHING_READ;
+    }
+
+    @Override
+    public void maybeThrowError() throws IOException {
+      // Do nothing.
+    }
+
+    @Override
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return false;
+    }
+
+  }
+
+  /**
+   * {@link PrebufferingLoadControl} that forwards to a {@link DefaultLoadControl}, and reports each
+   * track selection it is notified of to a {@link SlowMediaSource}.
+   */
+  private static final class RecordingLoadControl implements PrebufferingLoadControl {
+
+    private final DefaultLoadControl loadControl;
+    private final SlowMediaSource mediaSource;
+
+    public RecordingLoadControl(DefaultLoadControl loadControl, SlowMediaSource mediaSource) {
+      this.loadControl = loadControl;
+      this.mediaSource = mediaSource;
+    }
+
+    @Override
+    public void onPrepared() {
+      loadControl.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+        TrackSelectionArray trackSelections) {
+      mediaSource.onTracksSelected(trackGroups);
+      loadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+      loadControl.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+      loadControl.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+      return loadControl.getAllocator();
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+      return loadControl.shouldStartPlayback(bufferedDurationUs, rebuffering);
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs) {
+      return loadControl.shouldContinueLoading(bufferedDurationUs);
+    }
+
+    @Override
+    public boolean shouldPrebuffer(int periodsAhead, long bufferedDurationUs) {
+      return loadControl.shouldPrebuffer(periodsAhead, bufferedDurationUs);
+    }
+
+  }
+
+  /**
+   * Fake video {@link Renderer} that reads each sample just before the playback position reaches
+   * it, and is only ready while it holds the media at the playback position.
+   */
+  private static final class TimedRenderer extends BaseRenderer {
+
+    private final FormatHolder formatHolder;
+    private final DecoderInputBuffer buffer;
+
+    private long readPositionUs;
+    private long playbackPositionUs;
+
+    public boolean isEnded;
+
+    public TimedRenderer() {
+      super(C.TRACK_TYPE_VIDEO);
+      formatHolder = new FormatHolder();
+      buffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected void onPositionReset(long positionUs, boolean joining) {
+      readPositionUs = 0;
+      isEnded = false;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+      playbackPositionUs = positionUs;
+      while (!isEnded && readPositionUs <= positionUs) {
+        buffer.clear();
+        int result = readSource(formatHolder, buffer, false);
+        if (result == C.RESULT_BUFFER_READ) {
+          if (buffer.isEndOfStream()) {
+            isEnded = true;
+          } else {
+            readPositionUs = buffer.timeUs + SLOW_CHUNK_DURATION_US;
+          }
+        } else if (result == C.RESULT_NOTHING_READ) {
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return readPositionUs > playbackPositionUs || isSourceReady();
+    }
+
+    @Override
+    public boolean isEnded() {
+      return isEnded;
+    }
+
+    @Override
+    public int supportsFormat(Format format) throws ExoPlaybackException {
+      return getTrackType() == MimeTypes.getTrackType(format.sampleMimeType) ? FORMAT_HANDLED
+          : FORMAT_UNSUPPORTED_TYPE;
+    }
+
+  }
+
+  /**
+   * An {@link ExoPlayer.EventListener} that records the changes of playback state and loading state
+   * it receives, and counts down latches once the player is ready and once it is stopped.
+   */
+  private static final class RecordingListener implements ExoPlayer.EventListener {
+
+    public final ArrayList<String> events;
+    public final CountDownLatch readyCountDownLatch;
+    public final CountDownLatch stoppedCountDownLatch;
+
+    public RecordingListener() {
+      events = new ArrayList<>();
+      readyCountDownLatch = new CountDownLatch(1);
+      stoppedCountDownLatch = new CountDownLatch(1);
+    }
+
+    public static String getStateEvent(int playbackState) {
+      return "state " + playbackState;
+    }
+
+    public static String getLoadingEvent(boolean isLoading) {
+      return "loading " + isLoading;
+    }
+
+    @Override
+    public void onLoadingChanged(boolean isLoading) {
+      events.add(getLoadingEvent(isLoading));
+    }
+
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+      events.add(getStateEvent(playbackState));
+      if (playbackState == ExoPlayer.STATE_READY) {
+        readyCountDownLatch.countDown();
+      } else if (playbackState == ExoPlayer.STATE_IDLE && readyCountDownLatch.getCount() == 0) {
+        stoppedCountDownLatch.countDown();
+      }
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, Object manifest) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onPlayerError(ExoPlaybackException error) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onPositionDiscontinuity() {
+      // Do nothing.
+    }
+
+  }
+
+  /**
+   * Handler for the events posted by an {@link ExoPlayerImplInternal}, which records the events in
+   * each message and releases their batch, as {@link ExoPlayerImpl} does.
+   */
+  private static final class BatchRecordingHandler extends Handler {
+
+    public final ArrayList<List<String>> messages;
+    public final ArrayList<ExoPlayerImplInternal.EventBatch> batches;
+    public final CountDownLatch readyCountDownLatch;
+    public final CountDownLatch stoppedCountDownLatch;
+
+    // Set before the player is prepared.
+    public ExoPlayerImplInternal internalPlayer;
+
+    public BatchRecordingHandler(Looper looper) {
+      super(looper);
+      messages = new ArrayList<>();
+      batches = new ArrayList<>();
+      readyCountDownLatch = new CountDownLatch(1);
+      stoppedCountDownLatch = new CountDownLatch(1);
+    }
+
+    @Override
+    public void handleMessage(Message msg) {
+      assertEquals(ExoPlayerImplInternal.MSG_EVENTS, msg.what);
+      ExoPlayerImplInternal.EventBatch batch = (ExoPlayerImplInternal.EventBatch) msg.obj;
+      ArrayList<String> events = new ArrayList<>();
+      boolean ready = false;
+      boolean idle = false;
+      for (int i = 0; i < batch.size(); i++) {
+        int type = batch.getType(i);
+        if (type == ExoPlayerImplInternal.MSG_STATE_CHANGED) {
+          int playbackState = batch.getArg(i);
+          ready |= playbackState == ExoPlayer.STATE_READY;
+          idle |= playbackState == ExoPlayer.STATE_IDLE;
+          events.add(RecordingListener.getStateEvent(playbackState));
+        } else if (type == ExoPlayerImplInternal.MSG_LOADING_CHANGED) {
+          events.add(RecordingListener.getLoadingEvent(batch.getArg(i) != 0));
+        } else {
+          events.add("event " + type);
+        }
+      }
+      messages.add(events);
+      batches.add(batch);
+      internalPlayer.releaseEventBatch(batch);
+      if (ready) {
+        readyCountDownLatch.countDown();
+      } else if (idle && readyCountDownLatch.getCount() == 0) {
+        stoppedCountDownLatch.countDown();
+      }
+    }
+
   }
 
   /**
@@ -607,6 +1374,65 @@ public final class ExoPlayerTest extends TestCase {
 
   }
 
+  /**
+   * Fake {@link LivePlaybackSpeedControl} that records the first live offset it is given and the
+   * number of position resets, and never adjusts the playback speed.
+   */
+  private static final class FakeLivePlaybackSpeedControl implements LivePlaybackSpeedControl {
+
+    public final CountDownLatch speedRequestedCountDownLatch;
+    public final CountDownLatch positionResetCountDownLatch;
+
+    public volatile long firstLiveOffsetUs;
+    public volatile int positionResetCount;
+
+    public FakeLivePlaybackSpeedControl() {
+      speedRequestedCountDownLatch = new CountDownLatch(1);
+      positionResetCountDownLatch = new CountDownLatch(2);
+      firstLiveOffsetUs = C.TIME_UNSET;
+    }
+
+    @Override
+    public float getAdjustedPlaybackSpeed(long liveOffsetUs, long bufferedDurationUs) {
+      if (firstLiveOffsetUs == C.TIME_UNSET) {
+        firstLiveOffsetUs = liveOffsetUs;
+        speedRequestedCountDownLatch.countDown();
+      }
+      return 1f;
+    }
+
+    @SuppressWarnings("NonAtomicVolatileUpdate")
+    @Override
+    public void onPositionReset() {
+      positionResetCount++;
+      positionResetCountDownLatch.countDown();
+    }
+
+  }
+
+  /**
+   * Fake {@link WallClock} whose wall clock time is fixed.
+   */
+  private static final class FakeClock implements WallClock {
+
+    private final long currentTimeMs;
+
+    public FakeClock(long currentTimeMs) {
+      this.currentTimeMs = currentTimeMs;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return currentTimeMs;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return SystemClock.elapsedRealtime();
+    }
+
+  }
+
   private abstract static class FakeMediaClockRenderer extends FakeRenderer implements MediaClock {
 
     public FakeMediaClockRenderer(Format expectedFormat) {
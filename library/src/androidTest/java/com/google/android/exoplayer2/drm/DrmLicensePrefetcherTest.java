@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.media.MediaDrm;
+import android.os.HandlerThread;
+import android.test.InstrumentationTestCase;
+import android.test.MoreAsserts;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.drm.DrmInitData.SchemeData;
+import com.google.android.exoplayer2.source.LicensePrefetchingMediaSource;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.Period;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SingleSegmentBase;
+import com.google.android.exoplayer2.testutil.FakeMediaDrmCallback;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.mockito.Mock;
+
+/**
+ * Tests {@link DrmLicensePrefetcher}, {@link DrmLicenseCache} and their use by
+ * {@link DefaultDrmSessionManager}.
+ */
+public class DrmLicensePrefetcherTest extends InstrumentationTestCase {
+
+  private static final byte[] SESSION_ID = new byte[] {1, 2, 3};
+  private static final byte[] KEY_SET_ID = new byte[] {2, 5, 8};
+
+  @Mock private ExoMediaDrm<ExoMediaCrypto> mediaDrm;
+
+  private FakeMediaDrmCallback mediaDrmCallback;
+  private DrmLicenseCache licenseCache;
+  private DrmLicensePrefetcher licensePrefetcher;
+  private HandlerThread playbackThread;
+
+  @Override
+  protected void setUp() throws Exception {
+    TestUtil.setUpMockito(this);
+    when(mediaDrm.openSession()).thenReturn(SESSION_ID);
+    when(mediaDrm.provideKeyResponse(any(byte[].class), any(byte[].class)))
+        .thenReturn(KEY_SET_ID);
+    setStubLicenseDurationRemainingSec(1000);
+
+    mediaDrmCallback = new FakeMediaDrmCallback(new byte[0], new byte[] {4, 5, 6});
+    licenseCache = new DrmLicenseCache(C.WIDEVINE_UUID);
+    licensePrefetcher = new DrmLicensePrefetcher(
+        new OfflineLicenseHelper<>(mediaDrm, mediaDrmCallback, null), licenseCache);
+    playbackThread = new HandlerThread("Playback");
+    playbackThread.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    licensePrefetcher.release();
+    playbackThread.quit();
+  }
+
+  public void testCacheEvictsLeastRecentlyUsedEntry() {
+    DrmLicenseCache cache = new DrmLicenseCache(C.WIDEVINE_UUID, 2);
+    cache.put(newDrmInitData(1), new byte[] {1});
+    cache.put(newDrmInitData(2), new byte[] {2});
+    assertNotNull(cache.get(newDrmInitData(1)));
+    cache.put(newDrmInitData(3), new byte[] {3});
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(newDrmInitData(1)));
+    assertNull(cache.get(newDrmInitData(2)));
+    assertNotNull(cache.get(newDrmInitData(3)));
+  }
+
+  public void testCacheNotifiesListenerOfRemovedKeySetIds() {
+    DrmLicenseCache cache = new DrmLicenseCache(C.WIDEVINE_UUID, 2);
+    final List<byte[]> removedKeySetIds = new ArrayList<>();
+    cache.setListener(new DrmLicenseCache.Listener() {
+      @Override
+      public void onKeySetIdRemoved(byte[] keySetId) {
+        removedKeySetIds.add(keySetId);
+      }
+    });
+    cache.put(newDrmInitData(1), new byte[] {1});
+    cache.put(newDrmInitData(2), new byte[] {2});
+    cache.put(newDrmInitData(3), new byte[] {3});
+    cache.put(newDrmInitData(3), new byte[] {4});
+    cache.remove(newDrmInitData(2));
+    cache.clear();
+    assertEquals(4, removedKeySetIds.size());
+    // Evicted, replaced, removed and cleared, in that order.
+    MoreAsserts.assertEquals(new byte[] {1}, removedKeySetIds.get(0));
+    MoreAsserts.assertEquals(new byte[] {3}, removedKeySetIds.get(1));
+    MoreAsserts.assertEquals(new byte[] {2}, removedKeySetIds.get(2));
+    MoreAsserts.assertEquals(new byte[] {4}, removedKeySetIds.get(3));
+  }
+
+  public void testCacheIgnoresOtherSchemes() {
+    DrmInitData playReadyInitData = new DrmInitData(
+        new SchemeData(C.PLAYREADY_UUID, "mimeType", new byte[] {1}));
+    licenseCache.put(playReadyInitData, KEY_SET_ID);
+    assertEquals(0, licenseCache.size());
+    assertNull(licenseCache.get(playReadyInitData));
+  }
+
+  public void testPrefetchCachesLicense() {
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+
+    MoreAsserts.assertEquals(KEY_SET_ID, licenseCache.get(newDrmInitData(1)));
+    assertEquals(1, mediaDrmCallback.getKeyRequestCount());
+  }
+
+  public void testPrefetchSkipsCachedLicense() {
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+
+    assertEquals(1, mediaDrmCallback.getKeyRequestCount());
+  }
+
+  public void testPrefetchContinuesAfterError() {
+    mediaDrmCallback.setKeyRequestError(new Exception());
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    assertEquals(0, licenseCache.size());
+
+    mediaDrmCallback.setKeyRequestError(null);
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    assertEquals(1, licenseCache.size());
+  }
+
+  public void testPrefetcherReleasesRemovedLicense() throws Exception {
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    verify(mediaDrm, never()).getKeyRequest(any(byte[].class), any(byte[].class),
+        any(String.class), eq(MediaDrm.KEY_TYPE_RELEASE), any(HashMap.class));
+
+    licenseCache.remove(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    verify(mediaDrm).getKeyRequest(eq(KEY_SET_ID), any(byte[].class), any(String.class),
+        eq(MediaDrm.KEY_TYPE_RELEASE), any(HashMap.class));
+  }
+
+  public void testPlaylistPrefetchesNextItemOnly() {
+    LicensePrefetchingMediaSource mediaSource = new LicensePrefetchingMediaSource(
+        licensePrefetcher, new FakeDashItemSource(1), new FakeDashItemSource(2),
+        new FakeDashItemSource(3));
+    mediaSource.prepareSource(null, true, mock(MediaSource.Listener.class));
+    licensePrefetcher.blockUntilIdle();
+    assertEquals(0, licenseCache.size());
+
+    // Starting playback of the first item prefetches the license of the second item only.
+    MediaPeriod firstPeriod = mediaSource.createPeriod(0, null, 0);
+    licensePrefetcher.blockUntilIdle();
+    assertNull(licenseCache.get(newDrmInitData(1)));
+    assertNotNull(licenseCache.get(newDrmInitData(2)));
+    assertNull(licenseCache.get(newDrmInitData(3)));
+
+    // Loading the second item ahead of its playback prefetches the license of the third item.
+    MediaPeriod secondPeriod = mediaSource.createPeriod(1, null, 0);
+    licensePrefetcher.blockUntilIdle();
+    assertNull(licenseCache.get(newDrmInitData(1)));
+    assertNotNull(licenseCache.get(newDrmInitData(3)));
+    assertEquals(2, mediaDrmCallback.getKeyRequestCount());
+
+    mediaSource.releasePeriod(firstPeriod);
+    mediaSource.releasePeriod(secondPeriod);
+    mediaSource.releaseSource();
+  }
+
+  public void testPlaylistDoesNotPrefetchItemSeekedTo() {
+    LicensePrefetchingMediaSource mediaSource = new LicensePrefetchingMediaSource(
+        licensePrefetcher, new FakeDashItemSource(1), new FakeDashItemSource(2),
+        new FakeDashItemSource(3));
+    mediaSource.prepareSource(null, true, mock(MediaSource.Listener.class));
+    MediaPeriod period = mediaSource.createPeriod(2, null, 0);
+    mediaSource.releasePeriod(period);
+    period = mediaSource.createPeriod(0, null, 0);
+    licensePrefetcher.blockUntilIdle();
+    assertEquals(1, licenseCache.size());
+    assertNotNull(licenseCache.get(newDrmInitData(2)));
+    mediaSource.releasePeriod(period);
+    mediaSource.releaseSource();
+  }
+
+  public void testPlaybackRestoresCachedLicense() throws Exception {
+    licensePrefetcher.prefetch(newDrmInitData(1));
+    licensePrefetcher.blockUntilIdle();
+    int keyRequestCount = mediaDrmCallback.getKeyRequestCount();
+
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager = newPlaybackSessionManager();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackThread.getLooper(), newDrmInitData(1));
+
+    assertEquals(DrmSession.STATE_OPENED_WITH_KEYS, session.getState());
+    verify(mediaDrm).restoreKeys(SESSION_ID, KEY_SET_ID);
+    verify(mediaDrm, never()).getKeyRequest(any(byte[].class), any(byte[].class),
+        any(String.class), eq(MediaDrm.KEY_TYPE_STREAMING), any(HashMap.class));
+    assertEquals(keyRequestCount, mediaDrmCallback.getKeyRequestCount());
+    drmSessionManager.releaseSession(session);
+  }
+
+  public void testPlaybackRequestsStreamingLicenseIfNotCached() throws Exception {
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager = newPlaybackSessionManager();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackThread.getLooper(), newDrmInitData(1));
+
+    verify(mediaDrm, never()).restoreKeys(any(byte[].class), any(byte[].class));
+    verify(mediaDrm).getKeyRequest(any(byte[].class), any(byte[].class), any(String.class),
+        eq(MediaDrm.KEY_TYPE_STREAMING), any(HashMap.class));
+    drmSessionManager.releaseSession(session);
+  }
+
+  public void testPlaybackFallsBackToStreamingLicenseIfRestoreFails() throws Exception {
+    licenseCache.put(newDrmInitData(1), KEY_SET_ID);
+    doThrow(new IllegalStateException()).when(mediaDrm).restoreKeys(SESSION_ID, KEY_SET_ID);
+
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager = newPlaybackSessionManager();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackThread.getLooper(), newDrmInitData(1));
+
+    assertTrue(session.getState() != DrmSession.STATE_ERROR);
+    assertNull(licenseCache.get(newDrmInitData(1)));
+    verify(mediaDrm).getKeyRequest(any(byte[].class), any(byte[].class), any(String.class),
+        eq(MediaDrm.KEY_TYPE_STREAMING), any(HashMap.class));
+    drmSessionManager.releaseSession(session);
+  }
+
+  public void testPlaybackFallsBackToStreamingLicenseIfCachedLicenseExpiring() throws Exception {
+    licenseCache.put(newDrmInitData(1), KEY_SET_ID);
+    setStubLicenseDurationRemainingSec(10);
+
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager = newPlaybackSessionManager();
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackThread.getLooper(), newDrmInitData(1));
+
+    assertNull(licenseCache.get(newDrmInitData(1)));
+    verify(mediaDrm).getKeyRequest(any(byte[].class), any(byte[].class), any(String.class),
+        eq(MediaDrm.KEY_TYPE_STREAMING), any(HashMap.class));
+    // The expiring license is released, since it's no longer cached.
+    licensePrefetcher.blockUntilIdle();
+    verify(mediaDrm).getKeyRequest(eq(KEY_SET_ID), any(byte[].class), any(String.class),
+        eq(MediaDrm.KEY_TYPE_RELEASE), any(HashMap.class));
+    drmSessionManager.releaseSession(session);
+  }
+
+  private DefaultDrmSessionManager<ExoMediaCrypto> newPlaybackSessionManager() {
+    DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager = new DefaultDrmSessionManager<>(
+        C.WIDEVINE_UUID, mediaDrm, mediaDrmCallback, null, null, null);
+    drmSessionManager.setLicenseCache(licenseCache);
+    return drmSessionManager;
+  }
+
+  private void setStubLicenseDurationRemainingSec(long durationSec) {
+    HashMap<String, String> keyStatus = new HashMap<>();
+    keyStatus.put(WidevineUtil.PROPERTY_LICENSE_DURATION_REMAINING, String.valueOf(durationSec));
+    keyStatus.put(WidevineUtil.PROPERTY_PLAYBACK_DURATION_REMAINING, String.valueOf(durationSec));
+    when(mediaDrm.queryKeyStatus(any(byte[].class))).thenReturn(keyStatus);
+  }
+
+  private static DrmInitData newDrmInitData(int id) {
+    return new DrmInitData(new SchemeData(C.WIDEVINE_UUID, "mimeType", new byte[] {1, 4, 7,
+        (byte) id}));
+  }
+
+  /**
+   * A playlist item whose DASH manifest declares the {@link DrmInitData} of
+   * {@link #newDrmInitData(int)} for its id.
+   */
+  private static final class FakeDashItemSource implements MediaSource {
+
+    private final DashManifest manifest;
+
+    public FakeDashItemSource(int id) {
+      Format format = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null,
+          Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE, null, newDrmInitData(id));
+      Representation representation = Representation.newInstance(null, 0, format, "",
+          new SingleSegmentBase());
+      AdaptationSet adaptationSet = new AdaptationSet(0, C.TRACK_TYPE_VIDEO,
+          Collections.singletonList(representation), null);
+      Period period = new Period(null, 0, Collections.singletonList(adaptationSet));
+      manifest = new DashManifest(0, 10000, 0, false, 0, 0, 0, null, null,
+          Collections.singletonList(period));
+    }
+
+    @Override
+    public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+      listener.onSourceInfoRefreshed(new SinglePeriodTimeline(10 * C.MICROS_PER_SECOND, false),
+          manifest);
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() {
+      // Do nothing.
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+      return mock(MediaPeriod.class);
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      // Do nothing.
+    }
+
+    @Override
+    public void releaseSource() {
+      // Do nothing.
+    }
+
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link IncrementalSeekMap}.
+ */
+public final class IncrementalSeekMapTest extends TestCase {
+
+  public void testEmptyIndexSeeksToStart() {
+    IncrementalSeekMap seekMap = new IncrementalSeekMap(C.TIME_UNSET, 0);
+    assertTrue(seekMap.isSeekable());
+    assertEquals(0, seekMap.getPosition(1000));
+  }
+
+  public void testGetPosition() {
+    IncrementalSeekMap seekMap = new IncrementalSeekMap(10000, 0);
+    assertTrue(seekMap.add(1000, 100));
+    assertTrue(seekMap.add(2000, 200));
+    assertTrue(seekMap.add(3000, 300));
+    assertEquals(10000, seekMap.getDurationUs());
+    assertEquals(0, seekMap.getPosition(999));
+    assertEquals(100, seekMap.getPosition(1000));
+    assertEquals(100, seekMap.getPosition(1999));
+    assertEquals(200, seekMap.getPosition(2000));
+    // Seeking beyond the indexed points seeks to the last point.
+    assertEquals(300, seekMap.getPosition(9000));
+  }
+
+  public void testIgnoresPointsNotFollowingLastPoint() {
+    IncrementalSeekMap seekMap = new IncrementalSeekMap(C.TIME_UNSET, 0);
+    assertTrue(seekMap.add(1000, 100));
+    assertFalse(seekMap.add(1000, 200));
+    assertFalse(seekMap.add(2000, 100));
+    assertFalse(seekMap.add(500, 50));
+    assertEquals(1, seekMap.getPointCount());
+  }
+
+  public void testMinimumInterval() {
+    IncrementalSeekMap seekMap = new IncrementalSeekMap(C.TIME_UNSET, 1000);
+    for (int i = 0; i < 100; i++) {
+      seekMap.add(i * 100, i * 10);
+    }
+    assertEquals(10, seekMap.getPointCount());
+    assertEquals(100, seekMap.getPosition(1999));
+  }
+
+  public void testGrowsBeyondInitialCapacity() {
+    IncrementalSeekMap seekMap = new IncrementalSeekMap(C.TIME_UNSET, 0);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(seekMap.add(i * 1000, i * 100));
+    }
+    assertEquals(1000, seekMap.getPointCount());
+    assertEquals(54300, seekMap.getPosition(543210));
+  }
+
+}
@@ -16,8 +16,15 @@
 package com.google.android.exoplayer2.extractor.flv;
 
 import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  * Unit test for {@link FlvExtractor}.
@@ -33,4 +40,82 @@ public final class FlvExtractorTest extends InstrumentationTestCase {
     }, "flv/sample.flv", getInstrumentation());
   }
 
+  public void testSeekIndexFromParsedKeyframes() throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), "flv/sample.flv");
+    SeekMap seekMap = extract(data).seekMap;
+    assertTrue(seekMap.isSeekable());
+    // The sample has keyframe tags at 0ms (positions 400 and 482) and 967ms (position 100878).
+    assertEquals(400, seekMap.getPosition(0));
+    assertEquals(400, seekMap.getPosition(966999));
+    assertEquals(100878, seekMap.getPosition(967000));
+    assertEquals(100878, seekMap.getPosition(seekMap.getDurationUs()));
+  }
+
+  public void testSeekIndexFromMetadataKeyframes() throws Exception {
+    SeekMap seekMap = extract(createFlvWithMetadataKeyframes(new double[] {0, 1, 2},
+        new double[] {13, 5000, 9000})).seekMap;
+    assertTrue(seekMap.isSeekable());
+    assertEquals(3 * C.MICROS_PER_SECOND, seekMap.getDurationUs());
+    assertEquals(13, seekMap.getPosition(500000));
+    assertEquals(5000, seekMap.getPosition(1500000));
+    assertEquals(9000, seekMap.getPosition(2500000));
+  }
+
+  private static FakeExtractorOutput extract(byte[] data) throws Exception {
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    return TestUtil.consumeTestData(new FlvExtractor(), input, 0);
+  }
+
+  /**
+   * Returns an FLV stream without audio or video, containing only an onMetaData script tag that
+   * lists keyframes.
+   */
+  private static byte[] createFlvWithMetadataKeyframes(double[] times, double[] filePositions)
+      throws IOException {
+    ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(payloadBytes);
+    payload.writeByte(2); // AMF string
+    payload.writeUTF("onMetaData");
+    payload.writeByte(8); // AMF ECMA array
+    payload.writeInt(2);
+    payload.writeUTF("duration");
+    payload.writeByte(0); // AMF number
+    payload.writeDouble(times.length);
+    payload.writeUTF("keyframes");
+    payload.writeByte(3); // AMF object
+    payload.writeUTF("times");
+    writeAmfStrictArray(payload, times);
+    payload.writeUTF("filepositions");
+    writeAmfStrictArray(payload, filePositions);
+    payload.writeUTF("");
+    payload.writeByte(9); // AMF object end marker
+
+    ByteArrayOutputStream flvBytes = new ByteArrayOutputStream();
+    DataOutputStream flv = new DataOutputStream(flvBytes);
+    flv.writeBytes("FLV");
+    flv.writeByte(1); // version
+    flv.writeByte(0); // no audio or video
+    flv.writeInt(9); // header size
+    flv.writeInt(0); // previous tag size
+    flv.writeByte(18); // script data tag
+    flv.writeByte(payloadBytes.size() >> 16);
+    flv.writeShort(payloadBytes.size());
+    flv.writeInt(0); // timestamp
+    flv.writeByte(0); // stream id
+    flv.writeShort(0);
+    payloadBytes.writeTo(flv);
+    flv.writeInt(11 + payloadBytes.size()); // previous tag size
+    return flvBytes.toByteArray();
+  }
+
+  private static void writeAmfStrictArray(DataOutputStream output, double[] values)
+      throws IOException {
+    output.writeByte(10); // AMF strict array
+    output.writeInt(values.length);
+    for (double value : values) {
+      output.writeByte(0); // AMF number
+      output.writeDouble(value);
+    }
+  }
+
 }
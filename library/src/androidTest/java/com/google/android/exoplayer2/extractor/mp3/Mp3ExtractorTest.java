@@ -16,14 +16,34 @@
 package com.google.android.exoplayer2.extractor.mp3;
 
 import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
 
 /**
  * Unit test for {@link Mp3Extractor}.
  */
 public final class Mp3ExtractorTest extends InstrumentationTestCase {
 
+  // A header-less VBR stream of MPEG-1 layer III frames at 44.1kHz. The first half of the frames
+  // are 32kbps and the second half are 320kbps.
+  private static final int VBR_FRAME_COUNT = 400;
+  private static final int VBR_SAMPLE_RATE = 44100;
+  private static final int VBR_SAMPLES_PER_FRAME = 1152;
+  private static final int VBR_HEADER_32_KBPS = 0xFFFB1000;
+  private static final int VBR_HEADER_320_KBPS = 0xFFFBE000;
+  private static final long INDEX_INTERVAL_US = 500000;
+
   public void testMp3Sample() throws Exception {
     TestUtil.assertOutput(new TestUtil.ExtractorFactory() {
       @Override
@@ -42,4 +62,126 @@ public final class Mp3ExtractorTest extends InstrumentationTestCase {
     }, "mp3/play-trimmed.mp3", getInstrumentation());
   }
 
+  public void testIndexSeekingOnHeaderlessVbr() throws Exception {
+    long[] framePositions = new long[VBR_FRAME_COUNT + 1];
+    byte[] data = createVbrStream(framePositions);
+    Mp3Extractor extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    SeekMap seekMap = TestUtil.consumeTestData(extractor, input, 0).seekMap;
+    assertTrue(seekMap.isSeekable());
+    for (long timeUs : new long[] {0, 1000000, 5500000, 8000000, 10000000}) {
+      int frameIndex = Arrays.binarySearch(framePositions, seekMap.getPosition(timeUs));
+      assertTrue(frameIndex >= 0);
+      long frameTimeUs = getVbrFrameTimeUs(frameIndex);
+      assertTrue(frameTimeUs <= timeUs);
+      assertTrue(timeUs - frameTimeUs < INDEX_INTERVAL_US + getVbrFrameTimeUs(1));
+    }
+  }
+
+  public void testConstantBitrateSeekingOnHeaderlessVbrIsInaccurate() throws Exception {
+    long[] framePositions = new long[VBR_FRAME_COUNT + 1];
+    byte[] data = createVbrStream(framePositions);
+    Mp3Extractor extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_CONSTANT_BITRATE_SEEKING);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    SeekMap seekMap = TestUtil.consumeTestData(extractor, input, 0).seekMap;
+    int frameIndex = Arrays.binarySearch(framePositions, seekMap.getPosition(8000000));
+    frameIndex = frameIndex < 0 ? -(frameIndex + 1) : frameIndex;
+    assertTrue(8000000 - getVbrFrameTimeUs(frameIndex) > C.MICROS_PER_SECOND);
+  }
+
+  public void testIndexSeekingWithinPartiallyIndexedStream() throws Exception {
+    long[] framePositions = new long[VBR_FRAME_COUNT + 1];
+    byte[] data = createVbrStream(framePositions);
+    Mp3Extractor extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    PositionHolder seekPositionHolder = new PositionHolder();
+    // Read the first 300 frames.
+    while (input.getPosition() < framePositions[300]) {
+      extractor.read(input, seekPositionHolder);
+    }
+    SeekMap seekMap = output.seekMap;
+    int frameIndex = Arrays.binarySearch(framePositions, seekMap.getPosition(6000000));
+    assertTrue(frameIndex >= 0);
+    assertTrue(6000000 - getVbrFrameTimeUs(frameIndex) < INDEX_INTERVAL_US + getVbrFrameTimeUs(1));
+    // Positions for times beyond the indexed region are never inside it.
+    assertTrue(seekMap.getPosition(getVbrFrameTimeUs(350)) >= framePositions[299]);
+  }
+
+  public void testSeekToIndexedFrameOutputsExactTimestamps() throws Exception {
+    long[] framePositions = new long[VBR_FRAME_COUNT + 1];
+    byte[] data = createVbrStream(framePositions);
+    Mp3Extractor extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    FakeExtractorOutput output = TestUtil.consumeTestData(extractor, input, 0);
+    long position = output.seekMap.getPosition(7000000);
+    int frameIndex = Arrays.binarySearch(framePositions, position);
+    FakeTrackOutput trackOutput = output.trackOutputs.get(0);
+    trackOutput.clear();
+    input.setPosition((int) position);
+    extractor.seek(position, 7000000);
+    extractor.read(input, new PositionHolder());
+    trackOutput.assertSample(0,
+        Arrays.copyOfRange(data, (int) position, (int) framePositions[frameIndex + 1]),
+        getVbrFrameTimeUs(frameIndex), C.BUFFER_FLAG_KEY_FRAME, null);
+  }
+
+  public void testPersistedFrameIndex() throws Exception {
+    long[] framePositions = new long[VBR_FRAME_COUNT + 1];
+    byte[] data = createVbrStream(framePositions);
+    FrameIndex frameIndex = new FrameIndex();
+    Mp3Extractor extractor =
+        new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING, C.TIME_UNSET, frameIndex);
+    TestUtil.consumeTestData(extractor, new FakeExtractorInput.Builder().setData(data).build(), 0);
+    assertTrue(frameIndex.isComplete());
+    ByteArrayOutputStream persistedIndex = new ByteArrayOutputStream();
+    frameIndex.writeTo(new DataOutputStream(persistedIndex));
+
+    // Restore the index and read only the first frame of the stream.
+    FrameIndex restoredIndex = FrameIndex.readFrom(
+        new DataInputStream(new ByteArrayInputStream(persistedIndex.toByteArray())));
+    extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING, C.TIME_UNSET,
+        restoredIndex);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    extractor.read(new FakeExtractorInput.Builder().setData(data).build(), new PositionHolder());
+    SeekMap seekMap = output.seekMap;
+    assertEquals(getVbrFrameTimeUs(VBR_FRAME_COUNT), seekMap.getDurationUs());
+    int seekFrameIndex = Arrays.binarySearch(framePositions, seekMap.getPosition(9000000));
+    assertTrue(seekFrameIndex >= 0);
+    assertTrue(9000000 - getVbrFrameTimeUs(seekFrameIndex)
+        < INDEX_INTERVAL_US + getVbrFrameTimeUs(1));
+  }
+
+  /**
+   * Returns a header-less VBR stream, setting the position of each frame and the length of the
+   * stream in {@code framePositions}. Each frame's payload starts with its index.
+   */
+  private static byte[] createVbrStream(long[] framePositions) {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    for (int i = 0; i < VBR_FRAME_COUNT; i++) {
+      framePositions[i] = stream.size();
+      int header = i < VBR_FRAME_COUNT / 2 ? VBR_HEADER_32_KBPS : VBR_HEADER_320_KBPS;
+      int bitrate = i < VBR_FRAME_COUNT / 2 ? 32000 : 320000;
+      byte[] frame = new byte[144 * bitrate / VBR_SAMPLE_RATE];
+      writeInt(frame, 0, header);
+      writeInt(frame, 4, i);
+      stream.write(frame, 0, frame.length);
+    }
+    framePositions[VBR_FRAME_COUNT] = stream.size();
+    return stream.toByteArray();
+  }
+
+  private static long getVbrFrameTimeUs(int frameIndex) {
+    return frameIndex * VBR_SAMPLES_PER_FRAME * C.MICROS_PER_SECOND / VBR_SAMPLE_RATE;
+  }
+
+  private static void writeInt(byte[] data, int offset, int value) {
+    data[offset] = (byte) (value >> 24);
+    data[offset + 1] = (byte) (value >> 16);
+    data[offset + 2] = (byte) (value >> 8);
+    data[offset + 3] = (byte) value;
+  }
+
 }
@@ -50,6 +50,9 @@ public final class AtomParsersTest extends TestCase {
     AtomParsers.Stz2SampleSizeBox box = new AtomParsers.Stz2SampleSizeBox(stz2Atom);
     assertEquals(4, box.getSampleCount());
     assertFalse(box.isFixedSampleSize());
+    for (int i = box.getSampleCount() - 1; i >= 0; i--) {
+      assertEquals(i + 1, box.getSampleSize(i));
+    }
     for (int i = 0; i < box.getSampleCount(); i++) {
       assertEquals(i + 1, box.readNextSampleSize());
     }
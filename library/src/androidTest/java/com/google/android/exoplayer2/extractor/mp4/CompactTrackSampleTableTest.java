@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.GaplessInfoHolder;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link CompactTrackSampleTable}.
+ */
+public final class CompactTrackSampleTableTest extends TestCase {
+
+  private static final int TIMESCALE = 90000;
+  private static final int FRAME_DURATION = 3003;
+  private static final int SYNC_SAMPLE_INTERVAL = 30;
+
+  public void testSequentialAccess() throws Exception {
+    SampleTableData data = new SampleTableData(new Random(0), 10000, false, false, true, true);
+    TrackSampleTable sampleTable = data.parseStbl(null, null);
+    assertTrue(sampleTable instanceof CompactTrackSampleTable);
+    assertEquals(data.sampleCount, sampleTable.sampleCount);
+    assertEquals(data.maximumSize, sampleTable.maximumSize);
+    for (int i = 0; i < data.sampleCount; i++) {
+      data.assertSampleEquals(sampleTable, i, 0);
+    }
+  }
+
+  public void testRandomAccess() throws Exception {
+    Random random = new Random(0);
+    SampleTableData data = new SampleTableData(random, 10000, false, false, true, true);
+    TrackSampleTable sampleTable = data.parseStbl(null, null);
+    for (int i = 0; i < 20000; i++) {
+      data.assertSampleEquals(sampleTable, random.nextInt(data.sampleCount), 0);
+    }
+  }
+
+  public void testFixedSampleSizeWithLongChunkOffsets() throws Exception {
+    Random random = new Random(0);
+    SampleTableData data = new SampleTableData(random, 5000, true, true, false, false);
+    TrackSampleTable sampleTable = data.parseStbl(null, null);
+    assertEquals(data.maximumSize, sampleTable.maximumSize);
+    for (int i = 0; i < data.sampleCount; i++) {
+      data.assertSampleEquals(sampleTable, i, 0);
+    }
+    for (int i = 0; i < 5000; i++) {
+      data.assertSampleEquals(sampleTable, random.nextInt(data.sampleCount), 0);
+    }
+  }
+
+  public void testSynchronizationSampleLookup() throws Exception {
+    SampleTableData data = new SampleTableData(new Random(0), 3000, false, false, true, true);
+    TrackSampleTable sampleTable = data.parseStbl(null, null);
+    TrackSampleTable expectedSampleTable = data.buildArrayTrackSampleTable(0);
+    long lastTimestampUs = expectedSampleTable.getTimestampUs(data.sampleCount - 1);
+    for (long timeUs = -100000; timeUs < lastTimestampUs + 100000; timeUs += 7919) {
+      assertEquals(expectedSampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs),
+          sampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertEquals(expectedSampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs),
+          sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+  }
+
+  public void testEditIncludingAllSamplesIsAppliedWithoutExpansion() throws Exception {
+    SampleTableData data = new SampleTableData(new Random(0), 1000, false, false, true, true);
+    long mediaTime = data.firstTimestamp;
+    long duration = Util.scaleLargeTimestamp(data.lastSampleEndTime + 4 * FRAME_DURATION, 1000,
+        TIMESCALE);
+    TrackSampleTable sampleTable = data.parseStbl(new long[] {duration}, new long[] {mediaTime});
+    assertTrue(sampleTable instanceof CompactTrackSampleTable);
+    for (int i = 0; i < data.sampleCount; i++) {
+      data.assertSampleEquals(sampleTable, i, mediaTime);
+    }
+  }
+
+  public void testEditDiscardingSamplesIsApplied() throws Exception {
+    SampleTableData data = new SampleTableData(new Random(0), 1000, false, false, true, true);
+    long mediaTime = 100 * FRAME_DURATION;
+    long duration = Util.scaleLargeTimestamp(100 * FRAME_DURATION, 1000, TIMESCALE);
+    TrackSampleTable sampleTable = data.parseStbl(new long[] {duration}, new long[] {mediaTime});
+    assertTrue(sampleTable instanceof ArrayTrackSampleTable);
+    assertTrue(sampleTable.sampleCount < data.sampleCount);
+  }
+
+  public void testThreeHourTrackMatchesExpandedTable() throws Exception {
+    int sampleCount = 3 * 60 * 60 * 30;
+    SampleTableData data = new SampleTableData(new Random(0), sampleCount, false, false, true,
+        true);
+    TrackSampleTable sampleTable = data.parseStbl(null, null);
+    TrackSampleTable expandedSampleTable = data.buildArrayTrackSampleTable(0);
+    assertEquals(expandedSampleTable.getOffset(sampleCount - 1),
+        sampleTable.getOffset(sampleCount - 1));
+    assertEquals(expandedSampleTable.getTimestampUs(sampleCount - 1),
+        sampleTable.getTimestampUs(sampleCount - 1));
+  }
+
+  /**
+   * Randomly generated samples of a video track, and the corresponding sample table boxes.
+   */
+  private static final class SampleTableData {
+
+    public final int sampleCount;
+    public final int maximumSize;
+    public final long firstTimestamp;
+    public final long lastSampleEndTime;
+
+    private final int[] sizes;
+    private final long[] offsets;
+    private final long[] timestamps;
+    private final boolean[] isSyncSample;
+    private final Atom.ContainerAtom stblAtom;
+
+    public SampleTableData(Random random, int sampleCount, boolean fixedSampleSize,
+        boolean useLongChunkOffsets, boolean hasTimestampOffsets, boolean hasSyncSampleTable)
+        throws IOException {
+      this.sampleCount = sampleCount;
+      sizes = new int[sampleCount];
+      offsets = new long[sampleCount];
+      timestamps = new long[sampleCount];
+      isSyncSample = new boolean[sampleCount];
+
+      // Sample sizes.
+      int maximumSize = 0;
+      for (int i = 0; i < sampleCount; i++) {
+        sizes[i] = fixedSampleSize ? 417 : 1 + random.nextInt(5000);
+        maximumSize = Math.max(maximumSize, sizes[i]);
+      }
+      this.maximumSize = maximumSize;
+      BoxBuilder stsz = new BoxBuilder(Atom.TYPE_stsz);
+      stsz.writeInt(fixedSampleSize ? 417 : 0);
+      stsz.writeInt(sampleCount);
+      for (int i = 0; i < sampleCount && !fixedSampleSize; i++) {
+        stsz.writeInt(sizes[i]);
+      }
+
+      // Chunks, in runs with the same number of samples per chunk.
+      BoxBuilder stsc = new BoxBuilder(Atom.TYPE_stsc);
+      List<Long> chunkOffsets = new ArrayList<>();
+      int stscEntryCount = 0;
+      long position = useLongChunkOffsets ? 0x100000000L : 1000;
+      int sampleIndex = 0;
+      while (sampleIndex < sampleCount) {
+        int samplesPerChunk = stscEntryCount == 1 ? 0 : 1 + random.nextInt(12);
+        int chunkCount = 1 + random.nextInt(20);
+        stsc.writeInt(chunkOffsets.size() + 1);
+        stsc.writeInt(samplesPerChunk);
+        stsc.writeInt(1);
+        stscEntryCount++;
+        for (int i = 0; i < chunkCount; i++) {
+          position += random.nextInt(100);
+          chunkOffsets.add(position);
+          for (int j = 0; j < samplesPerChunk && sampleIndex < sampleCount; j++) {
+            offsets[sampleIndex] = position;
+            position += sizes[sampleIndex++];
+          }
+        }
+      }
+      stsc.writeIntAtStart(stscEntryCount);
+      BoxBuilder chunkOffsetBox = new BoxBuilder(useLongChunkOffsets ? Atom.TYPE_co64
+          : Atom.TYPE_stco);
+      chunkOffsetBox.writeInt(chunkOffsets.size());
+      for (long chunkOffset : chunkOffsets) {
+        if (useLongChunkOffsets) {
+          chunkOffsetBox.writeLong(chunkOffset);
+        } else {
+          chunkOffsetBox.writeInt((int) chunkOffset);
+        }
+      }
+
+      // Decoding timestamps, in runs with the same duration.
+      BoxBuilder stts = new BoxBuilder(Atom.TYPE_stts);
+      int sttsEntryCount = 0;
+      long time = 0;
+      sampleIndex = 0;
+      while (sampleIndex < sampleCount) {
+        int count = Math.min(sampleCount - sampleIndex, 1 + random.nextInt(50));
+        int delta = FRAME_DURATION - 3 + random.nextInt(7);
+        stts.writeInt(count);
+        stts.writeInt(delta);
+        sttsEntryCount++;
+        for (int i = 0; i < count; i++) {
+          timestamps[sampleIndex++] = time;
+          time += delta;
+        }
+      }
+      stts.writeIntAtStart(sttsEntryCount);
+      lastSampleEndTime = time;
+
+      // Composition time offsets, for an I P B B pattern.
+      BoxBuilder ctts = new BoxBuilder(Atom.TYPE_ctts);
+      int cttsEntryCount = 0;
+      for (int i = 0; i < sampleCount; i++) {
+        int timestampOffset = new int[] {FRAME_DURATION, 3 * FRAME_DURATION, 0, FRAME_DURATION}
+            [i % 4];
+        timestamps[i] += hasTimestampOffsets ? timestampOffset : 0;
+        ctts.writeInt(1);
+        ctts.writeInt(timestampOffset);
+        cttsEntryCount++;
+      }
+      ctts.writeIntAtStart(cttsEntryCount);
+      long firstTimestamp = Long.MAX_VALUE;
+      for (int i = 0; i < sampleCount; i++) {
+        firstTimestamp = Math.min(firstTimestamp, timestamps[i]);
+      }
+      this.firstTimestamp = firstTimestamp;
+
+      // Synchronization samples.
+      BoxBuilder stss = new BoxBuilder(Atom.TYPE_stss);
+      int stssEntryCount = 0;
+      for (int i = 0; i < sampleCount; i++) {
+        isSyncSample[i] = !hasSyncSampleTable || i % SYNC_SAMPLE_INTERVAL == 0;
+        if (i % SYNC_SAMPLE_INTERVAL == 0) {
+          stss.writeInt(i + 1);
+          stssEntryCount++;
+        }
+      }
+      stss.writeIntAtStart(stssEntryCount);
+
+      stblAtom = new Atom.ContainerAtom(Atom.TYPE_stbl, 0);
+      stblAtom.add(stsz.build());
+      stblAtom.add(stsc.build());
+      stblAtom.add(chunkOffsetBox.build());
+      stblAtom.add(stts.build());
+      if (hasTimestampOffsets) {
+        stblAtom.add(ctts.build());
+      }
+      if (hasSyncSampleTable) {
+        stblAtom.add(stss.build());
+      }
+    }
+
+    public TrackSampleTable parseStbl(long[] editListDurations, long[] editListMediaTimes)
+        throws Exception {
+      Format format = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null,
+          Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE, null, null);
+      Track track = new Track(1, C.TRACK_TYPE_VIDEO, TIMESCALE, 1000, C.TIME_UNSET, format,
+          Track.TRANSFORMATION_NONE, null, 4, editListDurations, editListMediaTimes);
+      return AtomParsers.parseStbl(track, stblAtom, new GaplessInfoHolder());
+    }
+
+    public ArrayTrackSampleTable buildArrayTrackSampleTable(long mediaTimeOffset) {
+      long[] timestampsUs = new long[sampleCount];
+      int[] flags = new int[sampleCount];
+      for (int i = 0; i < sampleCount; i++) {
+        timestampsUs[i] = getTimestampUs(i, mediaTimeOffset);
+        flags[i] = getFlags(i);
+      }
+      return new ArrayTrackSampleTable(offsets.clone(), sizes.clone(), maximumSize, timestampsUs,
+          flags);
+    }
+
+    public void assertSampleEquals(TrackSampleTable sampleTable, int index, long mediaTimeOffset) {
+      assertEquals(offsets[index], sampleTable.getOffset(index));
+      assertEquals(sizes[index], sampleTable.getSize(index));
+      assertEquals(getTimestampUs(index, mediaTimeOffset), sampleTable.getTimestampUs(index));
+      assertEquals(getFlags(index), sampleTable.getFlags(index));
+    }
+
+    private long getTimestampUs(int index, long mediaTimeOffset) {
+      return Util.scaleLargeTimestamp(timestamps[index] - mediaTimeOffset, C.MICROS_PER_SECOND,
+          TIMESCALE);
+    }
+
+    private int getFlags(int index) {
+      return isSyncSample[index] ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    }
+
+  }
+
+  /**
+   * Builds a full box, whose content is written after a placeholder for the version and flags.
+   */
+  private static final class BoxBuilder {
+
+    private final int type;
+    private final ByteArrayOutputStream content;
+    private final DataOutputStream output;
+
+    private int firstInt;
+    private boolean hasFirstInt;
+
+    public BoxBuilder(int type) {
+      this.type = type;
+      content = new ByteArrayOutputStream();
+      output = new DataOutputStream(content);
+    }
+
+    public void writeInt(int value) throws IOException {
+      output.writeInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+      output.writeLong(value);
+    }
+
+    /**
+     * Sets an int to write at the start of the content, such as an entry count.
+     */
+    public void writeIntAtStart(int value) {
+      firstInt = value;
+      hasFirstInt = true;
+    }
+
+    public Atom.LeafAtom build() throws IOException {
+      ByteArrayOutputStream box = new ByteArrayOutputStream();
+      DataOutputStream boxOutput = new DataOutputStream(box);
+      byte[] contentBytes = content.toByteArray();
+      boxOutput.writeInt(Atom.FULL_HEADER_SIZE + (hasFirstInt ? 4 : 0) + contentBytes.length);
+      boxOutput.writeInt(type);
+      boxOutput.writeInt(0);
+      if (hasFirstInt) {
+        boxOutput.writeInt(firstInt);
+      }
+      boxOutput.write(contentBytes);
+      return new Atom.LeafAtom(type, new ParsableByteArray(box.toByteArray()));
+    }
+
+  }
+
+}
@@ -16,15 +16,30 @@
 package com.google.android.exoplayer2.extractor.mp4;
 
 import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import java.util.Arrays;
 
 /**
  * Unit test for {@link FragmentedMp4Extractor}.
  */
 public final class FragmentedMp4ExtractorTest extends InstrumentationTestCase {
 
+  // The position of the mfra box in mp4/sample_fragmented.mp4, and of its only moof box.
+  private static final int SAMPLE_MFRA_POSITION = 106026;
+  private static final int SAMPLE_MOOF_POSITION = 1244;
+  // The ids and timescales of the video and audio tracks in mp4/sample_fragmented.mp4.
+  private static final int VIDEO_TRACK_ID = 1;
+  private static final int VIDEO_TIMESCALE = 30000;
+  private static final int AUDIO_TRACK_ID = 2;
+  private static final int AUDIO_TIMESCALE = 44100;
+
   public void testSample() throws Exception {
     TestUtil.assertOutput(getExtractorFactory(), "mp4/sample_fragmented.mp4", getInstrumentation());
   }
@@ -40,6 +55,159 @@ public final class FragmentedMp4ExtractorTest extends InstrumentationTestCase {
         getInstrumentation(), ParserException.class);
   }
 
+  public void testSampleMfraIsReadWithOneRangeRequest() throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), "mp4/sample_fragmented.mp4");
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    // One request for the end of the stream, and one to resume reading the first mdat.
+    assertEquals(2, extract(new FragmentedMp4Extractor(), data, false, output));
+    assertTrue(output.seekMap.isSeekable());
+    assertEquals(SAMPLE_MOOF_POSITION, output.seekMap.getPosition(0));
+  }
+
+  public void testSeekMapFromMfra() throws Exception {
+    byte[] mfra = createMfra(false, new int[] {VIDEO_TRACK_ID, AUDIO_TRACK_ID},
+        new long[][] {
+            new long[] {0, VIDEO_TIMESCALE, 2 * VIDEO_TIMESCALE},
+            new long[] {0, AUDIO_TIMESCALE * 9 / 10}},
+        new long[][] {
+            new long[] {SAMPLE_MOOF_POSITION, 50000, 90000},
+            new long[] {SAMPLE_MOOF_POSITION, 45000}});
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    assertEquals(2, extract(new FragmentedMp4Extractor(), replaceSampleMfra(mfra), false, output));
+    SeekMap seekMap = output.seekMap;
+    assertTrue(seekMap.isSeekable());
+    assertEquals(SAMPLE_MOOF_POSITION, seekMap.getPosition(-1));
+    assertEquals(SAMPLE_MOOF_POSITION, seekMap.getPosition(899999));
+    // Audio can start decoding from the second audio entry, but video needs the first video entry.
+    assertEquals(SAMPLE_MOOF_POSITION, seekMap.getPosition(900000));
+    assertEquals(45000, seekMap.getPosition(C.MICROS_PER_SECOND));
+    assertEquals(45000, seekMap.getPosition(2 * C.MICROS_PER_SECOND));
+  }
+
+  public void testSeekMapFromLargeMfra() throws Exception {
+    int entryCount = 2000;
+    long[] times = new long[entryCount];
+    long[] positions = new long[entryCount];
+    for (int i = 0; i < entryCount; i++) {
+      times[i] = (long) i * VIDEO_TIMESCALE;
+      positions[i] = SAMPLE_MOOF_POSITION + i * 1000L;
+    }
+    byte[] mfra = createMfra(true, new int[] {VIDEO_TRACK_ID}, new long[][] {times},
+        new long[][] {positions});
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    // The mfra box does not fit in the data read from the end of the stream, so is read in full.
+    assertEquals(3, extract(new FragmentedMp4Extractor(), replaceSampleMfra(mfra), false, output));
+    SeekMap seekMap = output.seekMap;
+    assertTrue(seekMap.isSeekable());
+    assertEquals(SAMPLE_MOOF_POSITION + 1234 * 1000L,
+        seekMap.getPosition(1234 * C.MICROS_PER_SECOND + 500000));
+    assertEquals(SAMPLE_MOOF_POSITION + 1999 * 1000L,
+        seekMap.getPosition(5000 * C.MICROS_PER_SECOND));
+  }
+
+  public void testWithoutMfra() throws Exception {
+    byte[] data = replaceSampleMfra(new byte[0]);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    assertEquals(2, extract(new FragmentedMp4Extractor(), data, false, output));
+    assertFalse(output.seekMap.isSeekable());
+  }
+
+  public void testMfraIsNotReadIfLengthUnknown() throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), "mp4/sample_fragmented.mp4");
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    assertEquals(0, extract(new FragmentedMp4Extractor(), data, true, output));
+    assertFalse(output.seekMap.isSeekable());
+  }
+
+  public void testFragmentIndexWithoutMfra() throws Exception {
+    byte[] data = replaceSampleMfra(new byte[0]);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extract(new FragmentedMp4Extractor(FragmentedMp4Extractor.FLAG_ENABLE_FRAGMENT_INDEX), data,
+        true, output);
+    assertTrue(output.seekMap.isSeekable());
+    assertEquals(SAMPLE_MOOF_POSITION, output.seekMap.getPosition(0));
+    assertEquals(SAMPLE_MOOF_POSITION, output.seekMap.getPosition(C.MICROS_PER_SECOND));
+  }
+
+  /**
+   * Extracts {@code data} from the start, returning the number of seeks requested by the extractor.
+   */
+  private static int extract(Extractor extractor, byte[] data, boolean simulateUnknownLength,
+      FakeExtractorOutput output) throws Exception {
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data)
+        .setSimulateUnknownLength(simulateUnknownLength).build();
+    extractor.init(output);
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int seekCount = 0;
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, seekPositionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) seekPositionHolder.position);
+        seekCount++;
+      }
+    }
+    return seekCount;
+  }
+
+  private byte[] replaceSampleMfra(byte[] mfra) throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), "mp4/sample_fragmented.mp4");
+    byte[] result = Arrays.copyOf(data, SAMPLE_MFRA_POSITION + mfra.length);
+    System.arraycopy(mfra, 0, result, SAMPLE_MFRA_POSITION, mfra.length);
+    return result;
+  }
+
+  /**
+   * Returns an mfra box followed by an mfro box, with a tfra box for each track.
+   */
+  private static byte[] createMfra(boolean version1, int[] trackIds, long[][] times,
+      long[][] moofOffsets) {
+    int entrySize = (version1 ? 16 : 8) + 3;
+    int mfraSize = Atom.HEADER_SIZE + 16;
+    for (long[] trackTimes : times) {
+      mfraSize += Atom.FULL_HEADER_SIZE + 12 + trackTimes.length * entrySize;
+    }
+    byte[] mfra = new byte[mfraSize];
+    int position = writeInt(mfra, 0, mfraSize);
+    position = writeInt(mfra, position, Atom.TYPE_mfra);
+    for (int i = 0; i < trackIds.length; i++) {
+      int entryCount = times[i].length;
+      position = writeInt(mfra, position, Atom.FULL_HEADER_SIZE + 12 + entryCount * entrySize);
+      position = writeInt(mfra, position, Atom.TYPE_tfra);
+      position = writeInt(mfra, position, version1 ? 0x01000000 : 0);
+      position = writeInt(mfra, position, trackIds[i]);
+      position = writeInt(mfra, position, 0); // traf, trun and sample numbers are one byte.
+      position = writeInt(mfra, position, entryCount);
+      for (int j = 0; j < entryCount; j++) {
+        if (version1) {
+          position = writeInt(mfra, position, (int) (times[i][j] >>> 32));
+          position = writeInt(mfra, position, (int) times[i][j]);
+          position = writeInt(mfra, position, (int) (moofOffsets[i][j] >>> 32));
+          position = writeInt(mfra, position, (int) moofOffsets[i][j]);
+        } else {
+          position = writeInt(mfra, position, (int) times[i][j]);
+          position = writeInt(mfra, position, (int) moofOffsets[i][j]);
+        }
+        mfra[position++] = 1; // traf_number
+        mfra[position++] = 1; // trun_number
+        mfra[position++] = 1; // sample_number
+      }
+    }
+    position = writeInt(mfra, position, 16);
+    position = writeInt(mfra, position, Atom.TYPE_mfro);
+    position = writeInt(mfra, position, 0);
+    writeInt(mfra, position, mfraSize);
+    return mfra;
+  }
+
+  private static int writeInt(byte[] data, int position, int value) {
+    data[position] = (byte) (value >> 24);
+    data[position + 1] = (byte) (value >> 16);
+    data[position + 2] = (byte) (value >> 8);
+    data[position + 3] = (byte) value;
+    return position + 4;
+  }
+
   private static TestUtil.ExtractorFactory getExtractorFactory() {
     return getExtractorFactory(0);
   }
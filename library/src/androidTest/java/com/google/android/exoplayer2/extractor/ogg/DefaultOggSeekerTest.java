@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.extractor.ogg;
 
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
@@ -27,6 +29,8 @@ import junit.framework.TestCase;
  */
 public final class DefaultOggSeekerTest extends TestCase {
 
+  private static final int SEEK_COUNT = 1000;
+
   public void testSetupWithUnsetEndPositionFails() {
     try {
       new DefaultOggSeeker(0, C.LENGTH_UNSET, new TestStreamReader(), 1, 1);
@@ -116,6 +120,94 @@ public final class DefaultOggSeekerTest extends TestCase {
     }
   }
 
+  public void testSeekingCost() throws IOException, InterruptedException {
+    Random random = new Random(0);
+    OggTestFile testFile = OggTestFile.generate(random, 5000);
+    CountingExtractorInput input = new CountingExtractorInput(testFile.data);
+    DefaultOggSeeker oggSeeker = new DefaultOggSeeker(0, testFile.data.length,
+        new TestStreamReader(), testFile.firstPayloadPageSize,
+        testFile.firstPayloadPageGranulePosition, false);
+    SeekMap seekMap = initialize(oggSeeker, input);
+
+    input.resetCounts();
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      long targetGranule = 1 + (long) (random.nextDouble() * (testFile.lastGranule - 1));
+      seekTo(input, oggSeeker, seekMap, targetGranule, testFile);
+    }
+    // Each seek requires at least one request, from the position given by the seek map. Searching
+    // without interpolation or a cache of pages requires over three requests and 19KB per seek.
+    assertTrue("Requests: " + input.requestCount, input.requestCount < SEEK_COUNT * 3 / 2);
+    assertTrue("Bytes read: " + input.bytesRead, input.bytesRead < SEEK_COUNT * 10000);
+  }
+
+  public void testSeekingCostWithFullScan() throws IOException, InterruptedException {
+    Random random = new Random(0);
+    OggTestFile testFile = OggTestFile.generate(random, 5000);
+    CountingExtractorInput input = new CountingExtractorInput(testFile.data);
+    DefaultOggSeeker oggSeeker = new DefaultOggSeeker(0, testFile.data.length,
+        new TestStreamReader(), testFile.firstPayloadPageSize,
+        testFile.firstPayloadPageGranulePosition, true);
+    SeekMap seekMap = initialize(oggSeeker, input);
+    assertEquals(testFile.lastGranule, seekMap.getDurationUs());
+    assertEquals(testFile.pageCount, oggSeeker.getCachedPageCount());
+
+    input.resetCounts();
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      long targetGranule = 1 + (long) (random.nextDouble() * (testFile.lastGranule - 1));
+      seekTo(input, oggSeeker, seekMap, targetGranule, testFile);
+    }
+    // The seek map gives the exact position of each target page.
+    assertTrue("Requests: " + input.requestCount, input.requestCount <= SEEK_COUNT);
+    assertTrue("Bytes read: " + input.bytesRead, input.bytesRead < SEEK_COUNT * 100);
+  }
+
+  private static SeekMap initialize(DefaultOggSeeker oggSeeker, CountingExtractorInput input)
+      throws IOException, InterruptedException {
+    while (true) {
+      long nextSeekPosition = oggSeeker.read(input);
+      if (nextSeekPosition == -1) {
+        break;
+      }
+      input.open(nextSeekPosition);
+    }
+    return oggSeeker.createSeekMap();
+  }
+
+  private static void seekTo(CountingExtractorInput input, DefaultOggSeeker oggSeeker,
+      SeekMap seekMap, long targetGranule, OggTestFile testFile)
+      throws IOException, InterruptedException {
+    // The seek map position is where the player starts loading after the seek.
+    input.open(seekMap.getPosition(targetGranule));
+    oggSeeker.startSeek(targetGranule);
+    long result;
+    int count = 0;
+    while ((result = oggSeeker.read(input)) >= 0) {
+      input.open(result);
+      if (count++ > 100) {
+        fail("infinite loop?");
+      }
+    }
+    long currentGranule = -(result + 2);
+    // The input must be at the start of the first page whose granule is at or after the target.
+    // Reads made to check this are not counted.
+    int requestCount = input.requestCount;
+    long bytesRead = input.bytesRead;
+    long position = input.getPosition();
+    OggPageHeader pageHeader = new OggPageHeader();
+    assertTrue(pageHeader.populate(input, true));
+    assertTrue(pageHeader.granulePosition >= targetGranule);
+    input.resetPeekPosition();
+    if (position > 0) {
+      input.open(testFile.findPreviousPageStart(position));
+      assertTrue(pageHeader.populate(input, true));
+      assertTrue(pageHeader.granulePosition < targetGranule);
+      assertEquals(pageHeader.granulePosition, currentGranule);
+      input.open(position);
+    }
+    input.requestCount = requestCount;
+    input.bytesRead = bytesRead;
+  }
+
   private long seekTo(FakeExtractorInput input, DefaultOggSeeker oggSeeker, long targetGranule,
       int initialPosition) throws IOException, InterruptedException {
     long nextSeekPosition = initialPosition;
@@ -135,6 +227,17 @@ public final class DefaultOggSeekerTest extends TestCase {
   }
 
   private static class TestStreamReader extends StreamReader {
+
+    @Override
+    protected long convertGranuleToTime(long granule) {
+      return granule;
+    }
+
+    @Override
+    protected long convertTimeToGranule(long timeUs) {
+      return timeUs;
+    }
+
     @Override
     protected long preparePayload(ParsableByteArray packet) {
       return 0;
@@ -146,4 +249,131 @@ public final class DefaultOggSeekerTest extends TestCase {
       return false;
     }
   }
+
+  /**
+   * Counts the requests and bytes that would be read from the upstream source, treating each
+   * change of position that isn't a forward read as a new request.
+   */
+  private static final class CountingExtractorInput implements ExtractorInput {
+
+    private final FakeExtractorInput input;
+
+    public int requestCount;
+    public long bytesRead;
+    private long furthestPosition;
+
+    public CountingExtractorInput(byte[] data) {
+      input = new FakeExtractorInput.Builder().setData(data).build();
+    }
+
+    public void open(long position) {
+      if (position != input.getPosition()) {
+        requestCount++;
+        input.setPosition((int) position);
+        furthestPosition = position;
+      }
+    }
+
+    public void resetCounts() {
+      requestCount = 0;
+      bytesRead = 0;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      return count(input.read(target, offset, length));
+    }
+
+    @Override
+    public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput)
+        throws IOException {
+      return count(input.readFully(target, offset, length, allowEndOfInput));
+    }
+
+    @Override
+    public void readFully(byte[] target, int offset, int length) throws IOException {
+      input.readFully(target, offset, length);
+      count(true);
+    }
+
+    @Override
+    public int skip(int length) throws IOException {
+      return count(input.skip(length));
+    }
+
+    @Override
+    public boolean skipFully(int length, boolean allowEndOfInput) throws IOException {
+      return count(input.skipFully(length, allowEndOfInput));
+    }
+
+    @Override
+    public void skipFully(int length) throws IOException {
+      input.skipFully(length);
+      count(true);
+    }
+
+    @Override
+    public boolean peekFully(byte[] target, int offset, int length, boolean allowEndOfInput)
+        throws IOException {
+      return count(input.peekFully(target, offset, length, allowEndOfInput));
+    }
+
+    @Override
+    public void peekFully(byte[] target, int offset, int length) throws IOException {
+      input.peekFully(target, offset, length);
+      count(true);
+    }
+
+    @Override
+    public boolean advancePeekPosition(int length, boolean allowEndOfInput) throws IOException {
+      return count(input.advancePeekPosition(length, allowEndOfInput));
+    }
+
+    @Override
+    public void advancePeekPosition(int length) throws IOException {
+      input.advancePeekPosition(length);
+      count(true);
+    }
+
+    @Override
+    public void resetPeekPosition() {
+      input.resetPeekPosition();
+    }
+
+    @Override
+    public long getPeekPosition() {
+      return input.getPeekPosition();
+    }
+
+    @Override
+    public long getPosition() {
+      return input.getPosition();
+    }
+
+    @Override
+    public long getLength() {
+      return input.getLength();
+    }
+
+    @Override
+    public <E extends Throwable> void setRetryPosition(long position, E e) throws E {
+      throw e;
+    }
+
+    private int count(int result) {
+      count(true);
+      return result;
+    }
+
+    private boolean count(boolean result) {
+      long position = Math.max(input.getPosition(), input.getPeekPosition());
+      if (position > furthestPosition) {
+        bytesRead += position - furthestPosition;
+        furthestPosition = position;
+      }
+      return result;
+    }
+
+  }
+
 }
@@ -34,6 +34,13 @@ public final class OggExtractorTest extends InstrumentationTestCase {
     }
   };
 
+  private static final ExtractorFactory FULL_SCAN_OGG_EXTRACTOR_FACTORY = new ExtractorFactory() {
+    @Override
+    public Extractor create() {
+      return new OggExtractor(OggExtractor.FLAG_ENABLE_FULL_SCAN_SEEKING);
+    }
+  };
+
   public void testOpus() throws Exception {
     TestUtil.assertOutput(OGG_EXTRACTOR_FACTORY, "ogg/bear.opus", getInstrumentation());
   }
@@ -51,6 +58,15 @@ public final class OggExtractorTest extends InstrumentationTestCase {
     TestUtil.assertOutput(OGG_EXTRACTOR_FACTORY, "ogg/bear_vorbis.ogg", getInstrumentation());
   }
 
+  public void testVorbisWithFullScan() throws Exception {
+    TestUtil.assertOutput(FULL_SCAN_OGG_EXTRACTOR_FACTORY, "ogg/bear_vorbis.ogg",
+        getInstrumentation());
+  }
+
+  public void testOpusWithFullScan() throws Exception {
+    TestUtil.assertOutput(FULL_SCAN_OGG_EXTRACTOR_FACTORY, "ogg/bear.opus", getInstrumentation());
+  }
+
   public void testSniffVorbis() throws Exception {
     byte[] data = TestUtil.joinByteArrays(
         TestData.buildOggHeader(0x02, 0, 1000, 1),
@@ -19,9 +19,11 @@ import android.test.InstrumentationTestCase;
 import android.util.SparseArray;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.EsInfo;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
@@ -41,6 +43,7 @@ public final class TsExtractorTest extends InstrumentationTestCase {
 
   private static final int TS_PACKET_SIZE = 188;
   private static final int TS_SYNC_BYTE = 0x47; // First byte of each TS packet.
+  private static final int STREAM_REPETITION_COUNT = 200;
 
   public void testSample() throws Exception {
     TestUtil.assertOutput(new TestUtil.ExtractorFactory() {
@@ -116,6 +119,29 @@ public final class TsExtractorTest extends InstrumentationTestCase {
     assertEquals(1, factory.sdtReader.consumedSdts);
   }
 
+  /**
+   * Demultiplexes a long stream, with sample data discarded by the track outputs.
+   */
+  public void testDemuxLongStreamWithBulkReads() throws Exception {
+    byte[] fileData = TestUtil.getByteArray(getInstrumentation(), "ts/sample.ts");
+    byte[] streamData = new byte[fileData.length * STREAM_REPETITION_COUNT];
+    for (int i = 0; i < STREAM_REPETITION_COUNT; i++) {
+      System.arraycopy(fileData, 0, streamData, i * fileData.length, fileData.length);
+    }
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(streamData).build();
+    TsExtractor tsExtractor = new TsExtractor(TsExtractor.MODE_HLS, new TimestampAdjuster(0),
+        new DefaultTsPayloadReaderFactory());
+    tsExtractor.init(new DiscardingExtractorOutput());
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readCount = 0;
+    while (tsExtractor.read(input, seekPositionHolder) != Extractor.RESULT_END_OF_INPUT) {
+      readCount++;
+    }
+    assertEquals(streamData.length, input.getPosition());
+    // Many packets are demultiplexed by each read.
+    assertTrue(readCount < streamData.length / TS_PACKET_SIZE / 10);
+  }
+
   private static void writeJunkData(ByteArrayOutputStream out, int length) {
     for (int i = 0; i < length; i++) {
       if (((byte) i) == TS_SYNC_BYTE) {
@@ -248,4 +274,25 @@ public final class TsExtractorTest extends InstrumentationTestCase {
 
   }
 
+  private static final class DiscardingExtractorOutput implements ExtractorOutput {
+
+    private final DummyTrackOutput trackOutput = new DummyTrackOutput();
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      // Do nothing.
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      // Do nothing.
+    }
+
+  }
+
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaCrypto;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RendererConfiguration;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for keeping and reusing the codec of {@link MediaCodecRenderer}.
+ */
+public class MediaCodecRendererTest extends TestCase {
+
+  private static final List<byte[]> CSD_1 = Collections.singletonList(new byte[] {0, 0, 1, 103});
+  private static final List<byte[]> CSD_2 = Collections.singletonList(new byte[] {0, 0, 1, 104});
+
+  private TestRenderer renderer;
+
+  @Override
+  public void setUp() {
+    renderer = new TestRenderer();
+  }
+
+  @Override
+  public void tearDown() {
+    if (renderer.getState() == Renderer.STATE_ENABLED) {
+      renderer.disable();
+    }
+    // Release any codec kept when the renderer was disabled.
+    renderer.reset();
+  }
+
+  public void testCanReuseCodecForSameAudioConfiguration() {
+    Format oldFormat = newAudioFormat("id1", 44100, CSD_1);
+    Format newFormat = newAudioFormat("id2", 44100, CSD_1);
+    assertTrue(renderer.canReuseCodec(null, false, oldFormat, newFormat));
+  }
+
+  public void testCannotReuseCodecForDifferentAudioConfiguration() {
+    Format oldFormat = newAudioFormat("id1", 44100, CSD_1);
+    assertFalse(renderer.canReuseCodec(null, false, oldFormat,
+        newAudioFormat("id2", 48000, CSD_1)));
+    assertFalse(renderer.canReuseCodec(null, false, oldFormat,
+        newAudioFormat("id2", 44100, CSD_2)));
+  }
+
+  public void testCanReuseCodecForSameVideoConfiguration() {
+    Format oldFormat = newVideoFormat("id1", 1280, 720, CSD_1);
+    Format newFormat = newVideoFormat("id2", 1280, 720, CSD_1);
+    assertTrue(renderer.canReuseCodec(null, false, oldFormat, newFormat));
+  }
+
+  public void testReuseForDifferentVideoConfigurationDefersToReconfigurationPolicy() {
+    Format oldFormat = newVideoFormat("id1", 1280, 720, CSD_1);
+    Format newFormat = newVideoFormat("id2", 1920, 1080, CSD_2);
+    assertFalse(renderer.canReuseCodec(null, true, oldFormat, newFormat));
+    renderer.canReconfigureCodec = true;
+    assertTrue(renderer.canReuseCodec(null, true, oldFormat, newFormat));
+  }
+
+  public void testCannotReuseCodecForDifferentMimeType() {
+    Format oldFormat = newVideoFormat("id1", 1280, 720, CSD_1);
+    Format newFormat = Format.createVideoSampleFormat("id2", MimeTypes.VIDEO_H265, null,
+        Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE, CSD_1, null);
+    assertFalse(renderer.canReuseCodec(null, false, oldFormat, newFormat));
+  }
+
+  public void testKeepsCodecAcrossPeriodTransitionAndSeek() throws ExoPlaybackException {
+    enableAndRender(newVideoFormat("id1", 1280, 720, null));
+    assertCodecCounts(1, 0, 0);
+    // A transition to another period disables the renderer and enables it with a new stream.
+    renderer.disable();
+    assertCodecCounts(1, 1, 0);
+    enableAndRender(newVideoFormat("id2", 1280, 720, null));
+    assertCodecCounts(1, 1, 0);
+    assertEquals(1, renderer.getDecoderReuseCount());
+    // A seek within the period flushes the codec.
+    renderer.resetPosition(0);
+    renderer.render(0, 0);
+    assertCodecCounts(1, 2, 0);
+    renderer.disable();
+    renderer.reset();
+    assertCodecCounts(1, 3, 1);
+  }
+
+  public void testReusesCodecOnFormatChangeIfReconfigurable() throws ExoPlaybackException {
+    renderer.canReconfigureCodec = true;
+    enableAndRender(newVideoFormat("id1", 1280, 720, null));
+    renderer.disable();
+    enableAndRender(newVideoFormat("id2", 1920, 1080, null));
+    assertCodecCounts(1, 1, 0);
+    assertEquals(1, renderer.getDecoderReuseCount());
+  }
+
+  public void testReplacesCodecOnFormatChangeIfNotReconfigurable() throws ExoPlaybackException {
+    enableAndRender(newVideoFormat("id1", 1280, 720, null));
+    renderer.disable();
+    enableAndRender(newVideoFormat("id2", 1920, 1080, null));
+    assertCodecCounts(2, 1, 1);
+    assertEquals(0, renderer.getDecoderReuseCount());
+  }
+
+  private void enableAndRender(Format format) throws ExoPlaybackException {
+    renderer.enable(RendererConfiguration.DEFAULT, new Format[] {format},
+        new FakeSampleStream(format), 0, false, 0);
+    renderer.render(0, 0);
+  }
+
+  private void assertCodecCounts(int createCount, int flushCount, int releaseCount) {
+    assertEquals(createCount, renderer.codecCreateCount);
+    assertEquals(flushCount, renderer.codecFlushCount);
+    assertEquals(releaseCount, renderer.codecReleaseCount);
+  }
+
+  private static Format newAudioFormat(String id, int sampleRate, List<byte[]> csd) {
+    return Format.createAudioSampleFormat(id, MimeTypes.AUDIO_AAC, null, Format.NO_VALUE,
+        Format.NO_VALUE, 2, sampleRate, csd, null, 0, null);
+  }
+
+  private static Format newVideoFormat(String id, int width, int height, List<byte[]> csd) {
+    return Format.createVideoSampleFormat(id, MimeTypes.VIDEO_H264, null, Format.NO_VALUE,
+        Format.NO_VALUE, width, height, Format.NO_VALUE, csd, null);
+  }
+
+  /**
+   * A renderer that counts the creation, flushes and releases of its codec.
+   */
+  private static final class TestRenderer extends MediaCodecRenderer {
+
+    public boolean canReconfigureCodec;
+    public int codecCreateCount;
+    public int codecFlushCount;
+    public int codecReleaseCount;
+
+    public TestRenderer() {
+      super(C.TRACK_TYPE_VIDEO, MediaCodecSelector.DEFAULT, null, false);
+    }
+
+    public int getDecoderReuseCount() {
+      return decoderCounters.decoderReuseCount;
+    }
+
+    @Override
+    protected int supportsFormat(MediaCodecSelector mediaCodecSelector, Format format) {
+      return FORMAT_HANDLED;
+    }
+
+    @Override
+    protected void configureCodec(MediaCodecInfo codecInfo, MediaCodec codec, Format format,
+        MediaCrypto crypto) {
+      codec.configure(format.getFrameworkMediaFormatV16(), null, crypto, 0);
+    }
+
+    @Override
+    protected void onCodecInitialized(String name, long initializedTimestampMs,
+        long initializationDurationMs) {
+      codecCreateCount++;
+    }
+
+    @Override
+    protected void flushCodec() throws ExoPlaybackException {
+      if (getCodec() != null) {
+        codecFlushCount++;
+      }
+      super.flushCodec();
+    }
+
+    @Override
+    protected void releaseCodec() {
+      if (getCodec() != null) {
+        codecReleaseCount++;
+      }
+      super.releaseCodec();
+    }
+
+    @Override
+    protected boolean canReconfigureCodec(MediaCodec codec, boolean codecIsAdaptive,
+        Format oldFormat, Format newFormat) {
+      return canReconfigureCodec;
+    }
+
+    @Override
+    protected boolean processOutputBuffer(long positionUs, long elapsedRealtimeUs,
+        MediaCodec codec, ByteBuffer buffer, int bufferIndex, int bufferFlags,
+        long bufferPresentationTimeUs, boolean shouldSkip) {
+      return true;
+    }
+
+  }
+
+  /**
+   * A {@link SampleStream} that provides a format and no samples.
+   */
+  private static final class FakeSampleStream implements SampleStream {
+
+    private final Format format;
+
+    private boolean readFormat;
+
+    public FakeSampleStream(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void maybeThrowError() {
+      // Do nothing.
+    }
+
+    @Override
+    public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer,
+        boolean formatRequired) {
+      if (formatRequired || !readFormat) {
+        formatHolder.format = format;
+        readFormat = true;
+        return C.RESULT_FORMAT_READ;
+      }
+      return C.RESULT_NOTHING_READ;
+    }
+
+    @Override
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return false;
+    }
+
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import android.os.Build;
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil.CodecKey;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests {@link MediaCodecUtil} and its persistent codec cache.
+ */
+public class MediaCodecUtilTest extends InstrumentationTestCase {
+
+  private static final String FINGERPRINT = "brand/product/device:7.1/NMF26F/123:user/release-keys";
+
+  private File cacheDir;
+
+  @Override
+  public void setUp() throws Exception {
+    cacheDir = Util.createTempDirectory(getInstrumentation().getContext(), "ExoPlayerTest");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MediaCodecUtil.resetForTesting();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  public void testWriteAndRead() throws Exception {
+    HashMap<CodecKey, List<MediaCodecInfo>> written = new HashMap<>();
+    written.put(new CodecKey(MimeTypes.VIDEO_H264, false),
+        Collections.singletonList(MediaCodecInfo.newUnresolvedInstance("OMX.test.avc.decoder",
+            MimeTypes.VIDEO_H264, true, false, new CodecProfileLevel[] {
+                newProfileLevel(CodecProfileLevel.AVCProfileHigh, CodecProfileLevel.AVCLevel41),
+                newProfileLevel(CodecProfileLevel.AVCProfileMain, CodecProfileLevel.AVCLevel4)})));
+    written.put(new CodecKey(MimeTypes.VIDEO_H264, true),
+        Collections.singletonList(MediaCodecInfo.newUnresolvedInstance(
+            "OMX.test.avc.decoder.secure", MimeTypes.VIDEO_H264, false, true,
+            new CodecProfileLevel[0])));
+    written.put(new CodecKey(MimeTypes.AUDIO_OPUS, false),
+        Collections.<MediaCodecInfo>emptyList());
+    new DecoderInfoCacheFile(cacheDir, FINGERPRINT).write(written);
+
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    assertTrue(new DecoderInfoCacheFile(cacheDir, FINGERPRINT).read(read));
+    assertEquals(3, read.size());
+    assertEquals(0, read.get(new CodecKey(MimeTypes.AUDIO_OPUS, false)).size());
+
+    MediaCodecInfo info = read.get(new CodecKey(MimeTypes.VIDEO_H264, false)).get(0);
+    assertEquals("OMX.test.avc.decoder", info.name);
+    assertTrue(info.adaptive);
+    assertFalse(info.tunneling);
+    assertFalse(info.isResolved());
+    CodecProfileLevel[] profileLevels = info.getProfileLevels();
+    assertEquals(2, profileLevels.length);
+    assertEquals(CodecProfileLevel.AVCProfileHigh, profileLevels[0].profile);
+    assertEquals(CodecProfileLevel.AVCLevel41, profileLevels[0].level);
+    assertEquals(CodecProfileLevel.AVCProfileMain, profileLevels[1].profile);
+    assertEquals(CodecProfileLevel.AVCLevel4, profileLevels[1].level);
+    assertTrue(info.isCodecSupported("avc1.640029"));
+    assertFalse(info.isCodecSupported("avc1.64002A"));
+
+    MediaCodecInfo secureInfo = read.get(new CodecKey(MimeTypes.VIDEO_H264, true)).get(0);
+    assertEquals("OMX.test.avc.decoder.secure", secureInfo.name);
+    assertFalse(secureInfo.adaptive);
+    assertTrue(secureInfo.tunneling);
+  }
+
+  public void testReadDoesNotOverwriteExistingEntries() throws Exception {
+    CodecKey key = new CodecKey(MimeTypes.VIDEO_H264, false);
+    HashMap<CodecKey, List<MediaCodecInfo>> written = new HashMap<>();
+    written.put(key, Collections.singletonList(newInfo("OMX.test.stale")));
+    new DecoderInfoCacheFile(cacheDir, FINGERPRINT).write(written);
+
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    List<MediaCodecInfo> existing = Collections.singletonList(newInfo("OMX.test.fresh"));
+    read.put(key, existing);
+    assertTrue(new DecoderInfoCacheFile(cacheDir, FINGERPRINT).read(read));
+    assertSame(existing, read.get(key));
+  }
+
+  public void testReadWithDifferentFingerprintIgnoresFile() throws Exception {
+    HashMap<CodecKey, List<MediaCodecInfo>> written = new HashMap<>();
+    written.put(new CodecKey(MimeTypes.VIDEO_H264, false),
+        Collections.singletonList(newInfo("OMX.test.avc.decoder")));
+    new DecoderInfoCacheFile(cacheDir, FINGERPRINT).write(written);
+
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    assertFalse(new DecoderInfoCacheFile(cacheDir, FINGERPRINT + "2").read(read));
+    assertTrue(read.isEmpty());
+    assertFalse(new File(cacheDir, DecoderInfoCacheFile.FILE_NAME).exists());
+  }
+
+  public void testReadCorruptFileIgnoresFile() throws Exception {
+    FileOutputStream output =
+        new FileOutputStream(new File(cacheDir, DecoderInfoCacheFile.FILE_NAME));
+    output.write(new byte[] {0, 0, 0, 1, 0, 3, 65});
+    output.close();
+
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    assertFalse(new DecoderInfoCacheFile(cacheDir, FINGERPRINT).read(read));
+    assertTrue(read.isEmpty());
+    assertFalse(new File(cacheDir, DecoderInfoCacheFile.FILE_NAME).exists());
+  }
+
+  public void testReadMissingFile() throws Exception {
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    assertFalse(new DecoderInfoCacheFile(cacheDir, FINGERPRINT).read(read));
+    assertTrue(read.isEmpty());
+  }
+
+  public void testQueryUsesPersistentCache() throws Exception {
+    // The cached decoder doesn't exist, so it's only returned if the query uses the cache.
+    List<MediaCodecInfo> cachedDecoderInfos =
+        Collections.singletonList(newInfo("OMX.test.avc.decoder"));
+    HashMap<CodecKey, List<MediaCodecInfo>> written = new HashMap<>();
+    written.put(new CodecKey(MimeTypes.VIDEO_H264, false), cachedDecoderInfos);
+    new DecoderInfoCacheFile(cacheDir, Build.FINGERPRINT).write(written);
+
+    MediaCodecUtil.enablePersistentDecoderInfoCache(cacheDir);
+    List<MediaCodecInfo> decoderInfos = MediaCodecUtil.getDecoderInfos(MimeTypes.VIDEO_H264, false);
+    MediaCodecUtil.blockUntilBackgroundTasksCompleteForTesting();
+    assertEquals(1, decoderInfos.size());
+    assertEquals("OMX.test.avc.decoder", decoderInfos.get(0).name);
+    // Subsequent queries return the same list from the in-memory cache.
+    assertSame(decoderInfos, MediaCodecUtil.getDecoderInfos(MimeTypes.VIDEO_H264, false));
+  }
+
+  public void testQueryResultsAreWrittenToPersistentCache() throws Exception {
+    MediaCodecUtil.enablePersistentDecoderInfoCache(cacheDir);
+    List<MediaCodecInfo> decoderInfos = MediaCodecUtil.getDecoderInfos(MimeTypes.VIDEO_H264, false);
+    assertSame(decoderInfos, MediaCodecUtil.getDecoderInfos(MimeTypes.VIDEO_H264, false));
+    MediaCodecUtil.blockUntilBackgroundTasksCompleteForTesting();
+
+    HashMap<CodecKey, List<MediaCodecInfo>> read = new HashMap<>();
+    assertTrue(new DecoderInfoCacheFile(cacheDir, Build.FINGERPRINT).read(read));
+    List<MediaCodecInfo> readDecoderInfos = read.get(new CodecKey(MimeTypes.VIDEO_H264, false));
+    assertEquals(decoderInfos.size(), readDecoderInfos.size());
+    for (int i = 0; i < decoderInfos.size(); i++) {
+      assertEquals(decoderInfos.get(i).name, readDecoderInfos.get(i).name);
+    }
+  }
+
+  private static MediaCodecInfo newInfo(String name) {
+    return MediaCodecInfo.newUnresolvedInstance(name, MimeTypes.VIDEO_H264, false, false,
+        new CodecProfileLevel[0]);
+  }
+
+  private static CodecProfileLevel newProfileLevel(int profile, int level) {
+    CodecProfileLevel profileLevel = new CodecProfileLevel();
+    profileLevel.profile = profile;
+    profileLevel.level = level;
+    return profileLevel;
+  }
+
+}
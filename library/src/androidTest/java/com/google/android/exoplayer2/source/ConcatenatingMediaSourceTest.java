@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.Timeline.Period;
+import com.google.android.exoplayer2.Timeline.Window;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+import junit.framework.TestCase;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link ConcatenatingMediaSource}.
+ */
+public final class ConcatenatingMediaSourceTest extends TestCase {
+
+  private static final int PLAYLIST_SIZE = 500;
+  private static final int MANIFEST_SIZE = 16 * 1024;
+  private static final long CHILD_DURATION_US = 10 * C.MICROS_PER_SECOND;
+
+  private CountingDataSource dataSource;
+  private Timeline timeline;
+  private Window window;
+  private Period period;
+
+  @Override
+  public void setUp() {
+    dataSource = new CountingDataSource();
+    window = new Window();
+    period = new Period();
+  }
+
+  public void testEagerPreparation() {
+    FakeMediaSource[] children = buildChildren(3, true);
+    ConcatenatingMediaSource mediaSource = new ConcatenatingMediaSource(children);
+    prepare(mediaSource);
+    assertEquals(3, dataSource.openCount);
+    assertEquals(3, timeline.getWindowCount());
+    assertEquals(CHILD_DURATION_US, timeline.getWindow(2, window).getDurationUs());
+  }
+
+  public void testLazyPreparationAtStartup() {
+    int distance = 2;
+    FakeMediaSource[] eagerChildren = buildChildren(PLAYLIST_SIZE, true);
+    prepare(new ConcatenatingMediaSource(eagerChildren));
+    int eagerOpenCount = dataSource.openCount;
+    long eagerManifestBytes = getManifestBytes(eagerChildren);
+
+    dataSource = new CountingDataSource();
+    FakeMediaSource[] lazyChildren = buildChildren(PLAYLIST_SIZE, true);
+    ConcatenatingMediaSource mediaSource = new ConcatenatingMediaSource(distance, lazyChildren);
+    prepare(mediaSource);
+    // The timeline is reported straight away, with placeholder windows.
+    assertEquals(0, dataSource.openCount);
+    assertEquals(PLAYLIST_SIZE, timeline.getWindowCount());
+    assertEquals(C.TIME_UNSET, timeline.getWindow(0, window).getDurationUs());
+    assertTrue(window.isDynamic);
+    // Creating the first period prepares the sources up to the distance ahead of it.
+    mediaSource.createPeriod(0, null, 0);
+    assertEquals(distance + 1, dataSource.openCount);
+    assertEquals(CHILD_DURATION_US, timeline.getWindow(distance, window).getDurationUs());
+    assertEquals(C.TIME_UNSET, timeline.getWindow(distance + 1, window).getDurationUs());
+    long lazyManifestBytes = getManifestBytes(lazyChildren);
+    assertEquals(PLAYLIST_SIZE, eagerOpenCount);
+    assertEquals((distance + 1) * MANIFEST_SIZE, lazyManifestBytes);
+  }
+
+  public void testPlaceholderPeriodIdKeptWhenPrepared() {
+    FakeMediaSource[] children = buildChildren(2, false);
+    ConcatenatingMediaSource mediaSource = new ConcatenatingMediaSource(0, children);
+    prepare(mediaSource);
+    Object placeholderUid = timeline.getPeriod(0, period, true).uid;
+    MediaPeriod mediaPeriod = mediaSource.createPeriod(0, null, 0);
+    MediaPeriod.Callback callback = Mockito.mock(MediaPeriod.Callback.class);
+    mediaPeriod.prepare(callback);
+    assertTrue(children[0].prepared);
+    assertNull(children[0].createdPeriod);
+
+    children[0].reportTimeline();
+    assertEquals(CHILD_DURATION_US, timeline.getWindow(0, window).getDurationUs());
+    assertEquals(0, timeline.getIndexOfPeriod(placeholderUid));
+    assertEquals(placeholderUid, timeline.getPeriod(0, period, true).uid);
+    Mockito.verify(children[0].createdPeriod).prepare(Mockito.any(MediaPeriod.Callback.class));
+
+    mediaSource.releasePeriod(mediaPeriod);
+    assertEquals(0, children[0].activePeriodCount);
+  }
+
+  public void testPreparationFollowsPlayingPeriod() {
+    FakeMediaSource[] children = buildChildren(4, true);
+    ConcatenatingMediaSource mediaSource = new ConcatenatingMediaSource(1, children);
+    prepare(mediaSource);
+    MediaPeriod playingPeriod = mediaSource.createPeriod(0, null, 0);
+    // Loading ahead into the next source doesn't move the preparation window.
+    MediaPeriod loadingPeriod = mediaSource.createPeriod(1, null, 0);
+    assertTrue(children[1].prepared);
+    assertFalse(children[2].prepared);
+    // Playback moving into the next source does.
+    mediaSource.releasePeriod(playingPeriod);
+    assertTrue(children[2].prepared);
+    assertFalse(children[3].prepared);
+    mediaSource.releasePeriod(loadingPeriod);
+    mediaSource.releaseSource();
+  }
+
+  public void testReleasesDistantSources() {
+    FakeMediaSource[] children = buildChildren(6, true);
+    ConcatenatingMediaSource mediaSource = new ConcatenatingMediaSource(1, children);
+    prepare(mediaSource);
+    MediaPeriod mediaPeriod = mediaSource.createPeriod(0, null, 0);
+    assertTrue(children[0].prepared);
+    assertTrue(children[1].prepared);
+    assertFalse(children[2].prepared);
+
+    mediaSource.releasePeriod(mediaPeriod);
+    mediaPeriod = mediaSource.createPeriod(4, null, 0);
+    assertFalse(children[0].prepared);
+    assertFalse(children[1].prepared);
+    assertTrue(children[4].prepared);
+    assertTrue(children[5].prepared);
+    // Released sources keep their timelines, so the period indices are unchanged.
+    assertEquals(CHILD_DURATION_US, timeline.getWindow(0, window).getDurationUs());
+    assertEquals(6, timeline.getPeriodCount());
+
+    // Going back to a released source prepares it again.
+    mediaSource.releasePeriod(mediaPeriod);
+    mediaPeriod = mediaSource.createPeriod(0, null, 0);
+    assertTrue(children[0].prepared);
+    assertEquals(1, children[0].activePeriodCount);
+    assertFalse(children[4].prepared);
+    mediaSource.releasePeriod(mediaPeriod);
+    mediaSource.releaseSource();
+    for (FakeMediaSource child : children) {
+      assertFalse(child.prepared);
+    }
+  }
+
+  // Internal methods.
+
+  private void prepare(MediaSource mediaSource) {
+    timeline = null;
+    mediaSource.prepareSource(null, true, new MediaSource.Listener() {
+      @Override
+      public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        ConcatenatingMediaSourceTest.this.timeline = timeline;
+      }
+    });
+  }
+
+  private FakeMediaSource[] buildChildren(int count, boolean reportOnPrepare) {
+    FakeMediaSource[] children = new FakeMediaSource[count];
+    for (int i = 0; i < count; i++) {
+      children[i] = new FakeMediaSource(dataSource, reportOnPrepare);
+    }
+    return children;
+  }
+
+  private static long getManifestBytes(FakeMediaSource[] children) {
+    long manifestBytes = 0;
+    for (FakeMediaSource child : children) {
+      if (child.manifest != null) {
+        manifestBytes += child.manifest.length;
+      }
+    }
+    return manifestBytes;
+  }
+
+  /**
+   * A source that loads a manifest of {@link #MANIFEST_SIZE} bytes when prepared, as an adaptive
+   * streaming source would, and holds it until released.
+   */
+  private static final class FakeMediaSource implements MediaSource {
+
+    private final DataSource dataSource;
+    private final boolean reportOnPrepare;
+    private final Timeline timeline;
+
+    private Listener listener;
+
+    public boolean prepared;
+    public byte[] manifest;
+    public int activePeriodCount;
+    public MediaPeriod createdPeriod;
+
+    public FakeMediaSource(DataSource dataSource, boolean reportOnPrepare) {
+      this.dataSource = dataSource;
+      this.reportOnPrepare = reportOnPrepare;
+      timeline = new SinglePeriodTimeline(CHILD_DURATION_US, true);
+    }
+
+    public void reportTimeline() {
+      listener.onSourceInfoRefreshed(timeline, manifest);
+    }
+
+    @Override
+    public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+      assertFalse(prepared);
+      prepared = true;
+      this.listener = listener;
+      try {
+        dataSource.open(new DataSpec(Uri.parse("manifest")));
+        manifest = new byte[MANIFEST_SIZE];
+        dataSource.read(manifest, 0, MANIFEST_SIZE);
+        dataSource.close();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      if (reportOnPrepare) {
+        reportTimeline();
+      }
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
+      // Do nothing.
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+      assertTrue(prepared);
+      activePeriodCount++;
+      createdPeriod = Mockito.mock(MediaPeriod.class);
+      return createdPeriod;
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      activePeriodCount--;
+    }
+
+    @Override
+    public void releaseSource() {
+      assertTrue(prepared);
+      assertEquals(0, activePeriodCount);
+      prepared = false;
+      manifest = null;
+      listener = null;
+    }
+
+  }
+
+  /**
+   * A {@link DataSource} that counts the requests opened through it.
+   */
+  private static final class CountingDataSource implements DataSource {
+
+    public int openCount;
+
+    private Uri uri;
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      openCount++;
+      uri = dataSpec.uri;
+      return C.LENGTH_UNSET;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      return readLength;
+    }
+
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+
+  }
+
+}
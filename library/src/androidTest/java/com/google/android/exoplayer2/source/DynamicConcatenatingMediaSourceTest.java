@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static org.mockito.Mockito.doAnswer;
+
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayer.ExoPlayerMessage;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.Timeline.Period;
+import com.google.android.exoplayer2.Timeline.Window;
+import com.google.android.exoplayer2.source.MediaSource.Listener;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.Allocator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link DynamicConcatenatingMediaSource}.
+ */
+public final class DynamicConcatenatingMediaSourceTest extends InstrumentationTestCase {
+
+  private static final int LARGE_PLAYLIST_CHILD_COUNT = 10000;
+  private static final int LARGE_PLAYLIST_MODIFICATION_COUNT = 200;
+
+  @Mock
+  private ExoPlayer mockPlayer;
+  private Timeline timeline;
+  private int timelineCount;
+  private Window window;
+  private Period period;
+
+  @Override
+  protected void setUp() throws Exception {
+    TestUtil.setUpMockito(this);
+    // Deliver messages synchronously, as if the test thread were the playback thread.
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        for (Object argument : invocation.getArguments()) {
+          ExoPlayerMessage message = (ExoPlayerMessage) argument;
+          message.target.handleMessage(message.messageType, message.message);
+        }
+        return null;
+      }
+    }).when(mockPlayer).sendMessages(Mockito.<ExoPlayerMessage>anyVararg());
+    window = new Window();
+    period = new Period();
+  }
+
+  public void testPlaylistModifications() {
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    FakeMediaSource source1 = new FakeMediaSource(new FakeTimeline(1));
+    FakeMediaSource source2 = new FakeMediaSource(new FakeTimeline(2));
+    FakeMediaSource source3 = new FakeMediaSource(new FakeTimeline(3));
+    mediaSource.addMediaSource(source1);
+    mediaSource.addMediaSource(source3);
+    prepare(mediaSource);
+    assertEquals(1, timelineCount);
+    assertConcatenation(timeline, 1, 3);
+
+    // Insert in the middle, keeping the identity of the periods after it.
+    Object lastPeriodUid = timeline.getPeriod(3, period, true).uid;
+    mediaSource.addMediaSource(1, source2);
+    assertConcatenation(timeline, 1, 2, 3);
+    assertEquals(5, timeline.getIndexOfPeriod(lastPeriodUid));
+    assertEquals(3, mediaSource.getSize());
+    assertSame(source2, mediaSource.getMediaSource(1));
+
+    mediaSource.moveMediaSource(2, 0);
+    assertConcatenation(timeline, 3, 1, 2);
+    assertEquals(2, timeline.getIndexOfPeriod(lastPeriodUid));
+
+    mediaSource.removeMediaSource(0);
+    assertConcatenation(timeline, 1, 2);
+    assertEquals(C.INDEX_UNSET, timeline.getIndexOfPeriod(lastPeriodUid));
+    assertTrue(source3.released);
+    assertFalse(source1.released);
+  }
+
+  public void testRandomModificationsMatchModel() {
+    Random random = new Random(0);
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    ArrayList<Integer> windowCounts = new ArrayList<>();
+    prepare(mediaSource);
+    for (int i = 0; i < 500; i++) {
+      int operation = random.nextInt(4);
+      int size = windowCounts.size();
+      if (size == 0 || operation == 0) {
+        int index = random.nextInt(size + 1);
+        int windowCount = random.nextInt(4);
+        windowCounts.add(index, windowCount);
+        mediaSource.addMediaSource(index, new FakeMediaSource(new FakeTimeline(windowCount)));
+      } else if (operation == 1) {
+        int index = random.nextInt(size);
+        windowCounts.remove(index);
+        mediaSource.removeMediaSource(index);
+      } else if (operation == 2) {
+        int currentIndex = random.nextInt(size);
+        int newIndex = random.nextInt(size);
+        windowCounts.add(newIndex, windowCounts.remove(currentIndex));
+        mediaSource.moveMediaSource(currentIndex, newIndex);
+      } else {
+        // Refresh a child with a different number of windows.
+        int index = random.nextInt(size);
+        int windowCount = random.nextInt(4);
+        windowCounts.set(index, windowCount);
+        ((FakeMediaSource) mediaSource.getMediaSource(index))
+            .setTimeline(new FakeTimeline(windowCount));
+      }
+      int[] expectedWindowCounts = new int[windowCounts.size()];
+      for (int j = 0; j < expectedWindowCounts.length; j++) {
+        expectedWindowCounts[j] = windowCounts.get(j);
+      }
+      assertConcatenation(timeline, expectedWindowCounts);
+    }
+  }
+
+  public void testFirstTimelineWaitsForChildren() {
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    FakeMediaSource source1 = new FakeMediaSource(null);
+    FakeMediaSource source2 = new FakeMediaSource(new FakeTimeline(1));
+    mediaSource.addMediaSource(source1);
+    mediaSource.addMediaSource(source2);
+    prepare(mediaSource);
+    assertNull(timeline);
+    source1.setTimeline(new FakeTimeline(2));
+    assertConcatenation(timeline, 2, 1);
+    // A child added later is left out until it reports its timeline.
+    FakeMediaSource source3 = new FakeMediaSource(null);
+    mediaSource.addMediaSource(0, source3);
+    assertConcatenation(timeline, 2, 1);
+    source3.setTimeline(new FakeTimeline(1));
+    assertConcatenation(timeline, 1, 2, 1);
+  }
+
+  public void testEmptyPlaylist() {
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    prepare(mediaSource);
+    assertEquals(0, timeline.getWindowCount());
+    assertEquals(0, timeline.getPeriodCount());
+    mediaSource.addMediaSource(new FakeMediaSource(new FakeTimeline(1)));
+    assertConcatenation(timeline, 1);
+  }
+
+  public void testRemovedSourceReleasedAfterItsPeriods() {
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    FakeMediaSource source1 = new FakeMediaSource(new FakeTimeline(1));
+    FakeMediaSource source2 = new FakeMediaSource(new FakeTimeline(1));
+    mediaSource.addMediaSource(source1);
+    mediaSource.addMediaSource(source2);
+    prepare(mediaSource);
+    MediaPeriod mediaPeriod = mediaSource.createPeriod(1, null, 0);
+    assertEquals(1, source2.activePeriodCount);
+    mediaSource.removeMediaSource(1);
+    assertFalse(source2.released);
+    mediaSource.releasePeriod(mediaPeriod);
+    assertEquals(0, source2.activePeriodCount);
+    assertTrue(source2.released);
+    mediaSource.releaseSource();
+    assertTrue(source1.released);
+  }
+
+  /**
+   * Tests inserting children at the start of, and refreshing children within, a playlist of
+   * {@link #LARGE_PLAYLIST_CHILD_COUNT} children.
+   */
+  public void testLargePlaylist() {
+    FakeMediaSource[] children = new FakeMediaSource[LARGE_PLAYLIST_CHILD_COUNT];
+    DynamicConcatenatingMediaSource mediaSource = new DynamicConcatenatingMediaSource();
+    for (int i = 0; i < LARGE_PLAYLIST_CHILD_COUNT; i++) {
+      children[i] = new FakeMediaSource(new FakeTimeline(1));
+      mediaSource.addMediaSource(children[i]);
+    }
+    prepare(mediaSource);
+    assertEquals(1, timelineCount);
+    assertEquals(LARGE_PLAYLIST_CHILD_COUNT, timeline.getWindowCount());
+    assertPeriodLookups(timeline);
+
+    Random random = new Random(0);
+    for (int i = 0; i < LARGE_PLAYLIST_MODIFICATION_COUNT; i++) {
+      children[random.nextInt(LARGE_PLAYLIST_CHILD_COUNT)].setTimeline(new FakeTimeline(1));
+    }
+    assertEquals(1 + LARGE_PLAYLIST_MODIFICATION_COUNT, timelineCount);
+    assertEquals(LARGE_PLAYLIST_CHILD_COUNT, timeline.getWindowCount());
+
+    for (int i = 0; i < LARGE_PLAYLIST_MODIFICATION_COUNT; i++) {
+      mediaSource.addMediaSource(0, new FakeMediaSource(new FakeTimeline(1)));
+    }
+    assertEquals(1 + 2 * LARGE_PLAYLIST_MODIFICATION_COUNT, timelineCount);
+    assertEquals(LARGE_PLAYLIST_CHILD_COUNT + LARGE_PLAYLIST_MODIFICATION_COUNT,
+        timeline.getWindowCount());
+    assertPeriodLookups(timeline);
+    mediaSource.releaseSource();
+  }
+
+  // Internal methods.
+
+  private void prepare(MediaSource mediaSource) {
+    timeline = null;
+    timelineCount = 0;
+    mediaSource.prepareSource(mockPlayer, true, new Listener() {
+      @Override
+      public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        DynamicConcatenatingMediaSourceTest.this.timeline = timeline;
+        timelineCount++;
+      }
+    });
+  }
+
+  /**
+   * Asserts that the uids of randomly chosen periods of {@code timeline} map back to their
+   * indices.
+   */
+  private void assertPeriodLookups(Timeline timeline) {
+    Random random = new Random(0);
+    int periodCount = timeline.getPeriodCount();
+    for (int i = 0; i < LARGE_PLAYLIST_MODIFICATION_COUNT; i++) {
+      int periodIndex = random.nextInt(periodCount);
+      Object uid = timeline.getPeriod(periodIndex, period, true).uid;
+      assertEquals(periodIndex, timeline.getIndexOfPeriod(uid));
+    }
+  }
+
+  /**
+   * Asserts that {@code timeline} is the concatenation of children with the given window counts,
+   * each window having one period.
+   */
+  private void assertConcatenation(Timeline timeline, int... windowCounts) {
+    int windowIndex = 0;
+    for (int childIndex = 0; childIndex < windowCounts.length; childIndex++) {
+      for (int i = 0; i < windowCounts[childIndex]; i++) {
+        timeline.getWindow(windowIndex, window);
+        assertEquals(windowIndex, window.firstPeriodIndex);
+        assertEquals(windowIndex, window.lastPeriodIndex);
+        assertEquals(windowCounts[childIndex] * C.MICROS_PER_SECOND + i, window.getDurationUs());
+        timeline.getPeriod(windowIndex, period, true);
+        assertEquals(windowIndex, period.windowIndex);
+        assertEquals(windowIndex, timeline.getIndexOfPeriod(period.uid));
+        windowIndex++;
+      }
+    }
+    assertEquals(windowIndex, timeline.getWindowCount());
+    assertEquals(windowIndex, timeline.getPeriodCount());
+  }
+
+  /**
+   * A timeline with a given number of windows, each with one period. The duration of each window
+   * identifies the timeline's window count and the window's index within it.
+   */
+  private static final class FakeTimeline extends Timeline {
+
+    private final int windowCount;
+
+    public FakeTimeline(int windowCount) {
+      this.windowCount = windowCount;
+    }
+
+    @Override
+    public int getWindowCount() {
+      return windowCount;
+    }
+
+    @Override
+    public Window getWindow(int windowIndex, Window window, boolean setIds,
+        long defaultPositionProjectionUs) {
+      return window.set(null, C.TIME_UNSET, C.TIME_UNSET, true, false, 0,
+          windowCount * C.MICROS_PER_SECOND + windowIndex, windowIndex, windowIndex, 0);
+    }
+
+    @Override
+    public int getPeriodCount() {
+      return windowCount;
+    }
+
+    @Override
+    public Period getPeriod(int periodIndex, Period period, boolean setIds) {
+      Object id = setIds ? periodIndex : null;
+      return period.set(id, id, periodIndex, C.MICROS_PER_SECOND, 0);
+    }
+
+    @Override
+    public int getIndexOfPeriod(Object uid) {
+      if (!(uid instanceof Integer)) {
+        return C.INDEX_UNSET;
+      }
+      int index = (Integer) uid;
+      return index >= 0 && index < windowCount ? index : C.INDEX_UNSET;
+    }
+
+  }
+
+  /**
+   * A source that reports a given timeline, which may be updated, and counts its active periods.
+   */
+  private static final class FakeMediaSource implements MediaSource {
+
+    private Timeline timeline;
+    private Listener listener;
+
+    public int activePeriodCount;
+    public boolean released;
+
+    public FakeMediaSource(Timeline timeline) {
+      this.timeline = timeline;
+    }
+
+    public void setTimeline(Timeline timeline) {
+      this.timeline = timeline;
+      if (listener != null) {
+        listener.onSourceInfoRefreshed(timeline, null);
+      }
+    }
+
+    @Override
+    public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+      this.listener = listener;
+      released = false;
+      if (timeline != null) {
+        listener.onSourceInfoRefreshed(timeline, null);
+      }
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
+      // Do nothing.
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+      activePeriodCount++;
+      return Mockito.mock(MediaPeriod.class);
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      activePeriodCount--;
+    }
+
+    @Override
+    public void releaseSource() {
+      listener = null;
+      released = true;
+    }
+
+  }
+
+}
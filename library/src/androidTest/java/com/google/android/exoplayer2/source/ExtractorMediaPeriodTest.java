@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.FileTypes;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.Ac3Extractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.PsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import com.google.android.exoplayer2.source.ExtractorMediaPeriod.ExtractorHolder;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.mockito.Mockito;
+
+/**
+ * Tests extractor selection by {@link ExtractorMediaPeriod}, and the response headers it uses as
+ * hints.
+ */
+public class ExtractorMediaPeriodTest extends InstrumentationTestCase {
+
+  private static final Map<String, List<String>> RESPONSE_HEADERS =
+      Collections.singletonMap("Content-Type", Collections.singletonList("video/mp2t"));
+
+  private static final String[] SAMPLE_FILES = new String[] {
+      "mkv/sample.mkv", "mp4/sample_fragmented.mp4", "mp4/sample.mp4", "mp3/bear.mp3",
+      "ts/sample.adts", "ts/sample.ac3", "ts/sample.ts", "flv/sample.flv", "ogg/bear_vorbis.ogg",
+      "ts/sample.ps", "wav/sample.wav"};
+  private static final Class<?>[] EXTRACTOR_CLASSES = new Class<?>[] {
+      MatroskaExtractor.class, FragmentedMp4Extractor.class, Mp4Extractor.class,
+      Mp3Extractor.class, AdtsExtractor.class, Ac3Extractor.class, TsExtractor.class,
+      FlvExtractor.class, OggExtractor.class, PsExtractor.class, WavExtractor.class};
+
+  public void testSelectExtractorWithHints() throws Exception {
+    for (int i = 0; i < SAMPLE_FILES.length; i++) {
+      byte[] data = TestUtil.getByteArray(getInstrumentation(), SAMPLE_FILES[i]);
+      Extractor extractor = selectExtractor(new DefaultExtractorsFactory(), data,
+          Uri.parse("http://test/" + SAMPLE_FILES[i]), null);
+      assertEquals(SAMPLE_FILES[i], EXTRACTOR_CLASSES[i], extractor.getClass());
+    }
+  }
+
+  public void testSelectExtractorWithoutHints() throws Exception {
+    for (int i = 0; i < SAMPLE_FILES.length; i++) {
+      byte[] data = TestUtil.getByteArray(getInstrumentation(), SAMPLE_FILES[i]);
+      Extractor extractor = selectExtractor(new DefaultExtractorsFactory(), data,
+          Uri.parse("http://test/media"), null);
+      assertEquals(SAMPLE_FILES[i], EXTRACTOR_CLASSES[i], extractor.getClass());
+    }
+  }
+
+  public void testSelectExtractorWithMisleadingHints() throws Exception {
+    for (int i = 0; i < SAMPLE_FILES.length; i++) {
+      byte[] data = TestUtil.getByteArray(getInstrumentation(), SAMPLE_FILES[i]);
+      Extractor extractor = selectExtractor(new DefaultExtractorsFactory(), data,
+          Uri.parse("http://test/media.wav"), RESPONSE_HEADERS);
+      assertEquals(SAMPLE_FILES[i], EXTRACTOR_CLASSES[i], extractor.getClass());
+    }
+  }
+
+  public void testSelectExtractorFromCustomFactory() throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), "ogg/bear_vorbis.ogg");
+    Extractor extractor = selectExtractor(newNonDefaultExtractorsFactory(), data,
+        Uri.parse("http://test/bear_vorbis.ogg"), null);
+    assertEquals(OggExtractor.class, extractor.getClass());
+  }
+
+  public void testSelectExtractorForUnrecognizedInput() throws Exception {
+    try {
+      selectExtractor(new DefaultExtractorsFactory(), new byte[1024],
+          Uri.parse("http://test/media.mp4"), null);
+      fail();
+    } catch (UnrecognizedInputFormatException e) {
+      // Expected.
+    }
+  }
+
+  public void testInferFileType() {
+    assertEquals(FileTypes.TS, FileTypes.inferFileTypeFromMimeType("video/MP2T; charset=x"));
+    assertEquals(FileTypes.MATROSKA, FileTypes.inferFileTypeFromMimeType("video/webm"));
+    assertEquals(FileTypes.UNKNOWN, FileTypes.inferFileTypeFromMimeType("text/html"));
+    assertEquals(FileTypes.MP4, FileTypes.inferFileTypeFromUri(Uri.parse("http://a/b.M4A?c=d")));
+    assertEquals(FileTypes.UNKNOWN, FileTypes.inferFileTypeFromUri(Uri.parse("http://a/b")));
+    assertEquals(FileTypes.OGG, FileTypes.inferFileTypeFromResponseHeaders(
+        Collections.singletonMap("content-type", Collections.singletonList("audio/ogg"))));
+  }
+
+  public void testResponseHeadersOfHttpDataSource() throws Exception {
+    HttpDataSource httpDataSource = newHttpDataSource();
+    assertEquals(RESPONSE_HEADERS, ExtractorMediaPeriod.getResponseHeaders(httpDataSource));
+  }
+
+  public void testResponseHeadersThroughDefaultDataSource() throws Exception {
+    DefaultDataSource dataSource = new DefaultDataSource(getInstrumentation().getContext(), null,
+        newHttpDataSource());
+    assertNull(ExtractorMediaPeriod.getResponseHeaders(dataSource));
+    dataSource.open(new DataSpec(Uri.parse("http://test/media")));
+    assertEquals(RESPONSE_HEADERS, ExtractorMediaPeriod.getResponseHeaders(dataSource));
+    dataSource.close();
+    assertNull(ExtractorMediaPeriod.getResponseHeaders(dataSource));
+  }
+
+  public void testResponseHeadersUnavailableThroughOtherDataSources() throws Exception {
+    DataSource dataSource = new ByteArrayDataSource(new byte[1]);
+    assertNull(ExtractorMediaPeriod.getResponseHeaders(dataSource));
+  }
+
+  private static Extractor selectExtractor(ExtractorsFactory extractorsFactory, byte[] data,
+      Uri uri, Map<String, List<String>> responseHeaders) throws Exception {
+    ExtractorHolder extractorHolder =
+        new ExtractorHolder(extractorsFactory, new FakeExtractorOutput());
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    return extractorHolder.selectExtractor(input, uri, responseHeaders);
+  }
+
+  private static HttpDataSource newHttpDataSource() throws Exception {
+    HttpDataSource httpDataSource = Mockito.mock(HttpDataSource.class);
+    Mockito.when(httpDataSource.open(Mockito.any(DataSpec.class))).thenReturn(1L);
+    Mockito.when(httpDataSource.getResponseHeaders()).thenReturn(RESPONSE_HEADERS);
+    return httpDataSource;
+  }
+
+  /**
+   * Returns a factory for the default extractors that is not a {@link DefaultExtractorsFactory},
+   * so that all extractors are instantiated and sniff the input in order.
+   */
+  private static ExtractorsFactory newNonDefaultExtractorsFactory() {
+    return new ExtractorsFactory() {
+      @Override
+      public Extractor[] createExtractors() {
+        return new DefaultExtractorsFactory().createExtractors();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash;
+
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.ChunkHolder;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Unit tests for {@link DefaultDashChunkSource} loading a low-latency live stream from a stand-in
+ * origin that delivers chunked CMAF segments as they are produced.
+ */
+public class DefaultDashChunkSourceTest extends InstrumentationTestCase {
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://origin.example.com/live.mpd");
+  private static final String SAMPLE_FRAGMENTED_MP4 = "mp4/sample_fragmented.mp4";
+  // The offsets of the moov and moof atoms, and of the base data offsets of the track fragments in
+  // the sample file.
+  private static final int MOOF_POSITION = 1244;
+  private static final int MFRA_POSITION = 106026;
+  private static final int[] BASE_DATA_OFFSET_POSITIONS = new int[] {1292, 1600};
+  private static final int MOOF_AND_MDAT_HEADER_LENGTH = 584 + 8;
+
+  private static final long SEGMENT_DURATION_MS = 1000;
+  private static final int CHUNKS_PER_SEGMENT = 5;
+  private static final long CHUNK_DURATION_MS = SEGMENT_DURATION_MS / CHUNKS_PER_SEGMENT;
+  // A playback position beyond the live edge, so that loading starts from the latest segment.
+  private static final long BEYOND_LIVE_EDGE_POSITION_US = 60000000;
+
+  private byte[] initializationData;
+  private byte[] segmentData;
+
+  @Override
+  public void setUp() throws Exception {
+    byte[] data = TestUtil.getByteArray(getInstrumentation(), SAMPLE_FRAGMENTED_MP4);
+    initializationData = Arrays.copyOf(data, MOOF_POSITION);
+    // Every segment is the fragment of the sample file, with data offsets relative to its moof.
+    segmentData = Arrays.copyOfRange(data, MOOF_POSITION, MFRA_POSITION);
+    for (int position : BASE_DATA_OFFSET_POSITIONS) {
+      Arrays.fill(segmentData, position - MOOF_POSITION, position - MOOF_POSITION + 8, (byte) 0);
+    }
+  }
+
+  public void testParsesAvailabilityTimeOffset() throws IOException {
+    DashManifest manifest = parseManifest(0, "0.8");
+    assertEquals(800000, getRepresentation(manifest).getAvailabilityTimeOffsetUs());
+    manifest = parseManifest(0, "INF");
+    assertEquals(Long.MAX_VALUE, getRepresentation(manifest).getAvailabilityTimeOffsetUs());
+    manifest = parseManifest(0, null);
+    assertEquals(C.TIME_UNSET, getRepresentation(manifest).getAvailabilityTimeOffsetUs());
+  }
+
+  public void testRequestsInProgressSegmentWithAvailabilityTimeOffset() throws Exception {
+    long availabilityStartTimeMs = System.currentTimeMillis() - 2500;
+    ChunkedOrigin origin = new ChunkedOrigin(availabilityStartTimeMs);
+    // Without an offset the last available segment is the last complete one.
+    DefaultDashChunkSource chunkSource =
+        newChunkSource(parseManifest(availabilityStartTimeMs, null), origin);
+    assertEquals(2, getFirstMediaChunk(chunkSource).chunkIndex);
+    // With an offset the segment being produced is available once its first chunk is.
+    chunkSource = newChunkSource(parseManifest(availabilityStartTimeMs, "0.8"), origin);
+    assertEquals(3, getFirstMediaChunk(chunkSource).chunkIndex);
+    // A segment that has not started yet is never available.
+    chunkSource = newChunkSource(parseManifest(availabilityStartTimeMs, "2"), origin);
+    assertEquals(3, getFirstMediaChunk(chunkSource).chunkIndex);
+  }
+
+  private DefaultDashChunkSource newChunkSource(DashManifest manifest, DataSource dataSource) {
+    AdaptationSet adaptationSet = manifest.getPeriod(0).adaptationSets.get(0);
+    TrackGroup trackGroup = new TrackGroup(adaptationSet.representations.get(0).format);
+    return new DefaultDashChunkSource(new LoaderErrorThrower.Dummy(), manifest, 0, 0,
+        new FixedTrackSelection(trackGroup, 0), dataSource, 0, 1, false, false);
+  }
+
+  private static MediaChunk getFirstMediaChunk(DefaultDashChunkSource chunkSource)
+      throws IOException, InterruptedException {
+    ChunkHolder chunkHolder = new ChunkHolder();
+    chunkSource.getNextChunk(null, BEYOND_LIVE_EDGE_POSITION_US, chunkHolder);
+    // Load the initialization chunk.
+    chunkHolder.chunk.load();
+    chunkSource.onChunkLoadCompleted(chunkHolder.chunk);
+    chunkHolder.clear();
+    chunkSource.getNextChunk(null, BEYOND_LIVE_EDGE_POSITION_US, chunkHolder);
+    return (MediaChunk) chunkHolder.chunk;
+  }
+
+  private static MultiSegmentRepresentation getRepresentation(DashManifest manifest) {
+    return (MultiSegmentRepresentation)
+        manifest.getPeriod(0).adaptationSets.get(0).representations.get(0);
+  }
+
+  private static DashManifest parseManifest(long availabilityStartTimeMs,
+      String availabilityTimeOffset) throws IOException {
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    String manifest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<MPD type=\"dynamic\" minimumUpdatePeriod=\"PT10S\" minBufferTime=\"PT1S\""
+        + " availabilityStartTime=\"" + dateFormat.format(new Date(availabilityStartTimeMs))
+        + "\">\n"
+        + "  <Period id=\"0\" start=\"PT0S\">\n"
+        + "    <AdaptationSet mimeType=\"video/mp4\" contentType=\"video\">\n"
+        + "      <SegmentTemplate timescale=\"1000\" duration=\"" + SEGMENT_DURATION_MS + "\""
+        + " initialization=\"init.mp4\" media=\"seg$Number$.m4s\""
+        + (availabilityTimeOffset != null
+            ? " availabilityTimeOffset=\"" + availabilityTimeOffset + "\"" : "") + "/>\n"
+        + "      <Representation id=\"0\" codecs=\"avc1.64001F\" bandwidth=\"1000000\""
+        + " width=\"1080\" height=\"720\"/>\n"
+        + "    </AdaptationSet>\n"
+        + "  </Period>\n"
+        + "</MPD>\n";
+    return new DashManifestParser().parse(MANIFEST_URI,
+        new ByteArrayInputStream(manifest.getBytes(Charset.forName(C.UTF8_NAME))));
+  }
+
+  /**
+   * Stands in for an origin that produces each segment in chunks in real time, and delivers a
+   * segment requested before it is complete using chunked transfer encoding.
+   */
+  private final class ChunkedOrigin implements DataSource {
+
+    private final long availabilityStartTimeMs;
+
+    private Uri uri;
+    private byte[] data;
+    private long segmentStartTimeMs;
+    private int readPosition;
+
+    public ChunkedOrigin(long availabilityStartTimeMs) {
+      this.availabilityStartTimeMs = availabilityStartTimeMs;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      uri = dataSpec.uri;
+      String name = uri.getLastPathSegment();
+      if (name.equals("init.mp4")) {
+        data = initializationData;
+        segmentStartTimeMs = 0;
+      } else {
+        int segmentNum = Integer.parseInt(name.substring(3, name.indexOf('.')));
+        segmentStartTimeMs = availabilityStartTimeMs + (segmentNum - 1) * SEGMENT_DURATION_MS;
+        if (System.currentTimeMillis() < segmentStartTimeMs + CHUNK_DURATION_MS) {
+          throw new IOException("Segment not available: " + segmentNum);
+        }
+        data = segmentData;
+      }
+      readPosition = (int) dataSpec.position;
+      return C.LENGTH_UNSET;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      if (readPosition == data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int availableLength;
+      while ((availableLength = getProducedLength() - readPosition) <= 0) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+      readLength = Math.min(readLength, availableLength);
+      System.arraycopy(data, readPosition, buffer, offset, readLength);
+      readPosition += readLength;
+      return readLength;
+    }
+
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+
+    private int getProducedLength() {
+      if (data == initializationData) {
+        return data.length;
+      }
+      long chunkCount = Math.min(CHUNKS_PER_SEGMENT,
+          (System.currentTimeMillis() - segmentStartTimeMs) / CHUNK_DURATION_MS);
+      int mdatPayloadLength = data.length - MOOF_AND_MDAT_HEADER_LENGTH;
+      return MOOF_AND_MDAT_HEADER_LENGTH
+          + (int) (mdatPayloadLength * chunkCount / CHUNKS_PER_SEGMENT);
+    }
+
+  }
+
+}
@@ -16,7 +16,10 @@
 package com.google.android.exoplayer2.source.dash.manifest;
 
 import android.net.Uri;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.DrmInitData.SchemeData;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SingleSegmentBase;
 import java.util.Arrays;
 import java.util.Collections;
@@ -161,6 +164,22 @@ public class DashManifestTest extends TestCase {
     }
   }
 
+  public void testGetDrmInitDatas() {
+    DrmInitData drmInitData1 = new DrmInitData(
+        new SchemeData(C.WIDEVINE_UUID, "video/mp4", new byte[] {1}));
+    DrmInitData drmInitData2 = new DrmInitData(
+        new SchemeData(C.WIDEVINE_UUID, "video/mp4", new byte[] {2}));
+    DashManifest manifest = newDashManifest(10,
+        newPeriod("1", 0,
+            newAdaptationSet(2, newRepresentation(drmInitData1), newRepresentation())),
+        newPeriod("4", 4,
+            newAdaptationSet(5, newRepresentation(drmInitData2)),
+            newAdaptationSet(6, newRepresentation(drmInitData1))));
+    assertEquals(Arrays.asList(drmInitData1, drmInitData2), manifest.getDrmInitDatas());
+    assertTrue(newDashManifest(10, newPeriod("1", 0, newAdaptationSet(2, newRepresentation())))
+        .getDrmInitDatas().isEmpty());
+  }
+
   private static Representation[][][] newRepresentations(int periodCount, int adaptationSetCounts,
       int representationCounts) {
     Representation[][][] representations = new Representation[periodCount][][];
@@ -180,6 +199,11 @@ public class DashManifestTest extends TestCase {
     return Representation.newInstance("", 0, DUMMY_FORMAT, "", DUMMY_SEGMENT_BASE);
   }
 
+  private static Representation newRepresentation(DrmInitData drmInitData) {
+    return Representation.newInstance("", 0, DUMMY_FORMAT.copyWithDrmInitData(drmInitData), "",
+        DUMMY_SEGMENT_BASE);
+  }
+
   private static DashManifest newDashManifest(int duration, Period... periods) {
     return new DashManifest(0, duration, 1, false, 2, 3, 4, DUMMY_UTC_TIMING, Uri.EMPTY,
         Arrays.asList(periods));
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import android.net.Uri;
+import android.test.MoreAsserts;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link Aes128DataSource}.
+ */
+public class Aes128DataSourceTest extends TestCase {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("test"));
+  private static final byte[] KEY_1 = TestUtil.buildTestData(16, 1);
+  private static final byte[] KEY_2 = TestUtil.buildTestData(16, 2);
+  private static final byte[] IV_1 = TestUtil.buildTestData(16, 3);
+  private static final byte[] IV_2 = TestUtil.buildTestData(16, 4);
+
+  public void testDecryptWithVariousReadLengths() throws Exception {
+    byte[] plaintext = TestUtil.buildTestData(100000);
+    byte[] ciphertext = encrypt(plaintext, KEY_1, IV_1);
+    for (int readLength : new int[] {1, 15, 16, 188, 9400, 65536, 200000}) {
+      Aes128DataSource dataSource =
+          new Aes128DataSource(new ByteArrayDataSource(ciphertext), KEY_1, IV_1);
+      MoreAsserts.assertEquals(plaintext, readFully(dataSource, readLength));
+    }
+  }
+
+  public void testDecryptEmptyAndShortStreams() throws Exception {
+    for (int length : new int[] {0, 1, 15, 16, 17}) {
+      byte[] plaintext = TestUtil.buildTestData(length);
+      Aes128DataSource dataSource = new Aes128DataSource(
+          new ByteArrayDataSource(encrypt(plaintext, KEY_1, IV_1)), KEY_1, IV_1);
+      MoreAsserts.assertEquals(plaintext, readFully(dataSource, 4096));
+    }
+  }
+
+  public void testReuseCipherFromPreviousSource() throws Exception {
+    byte[] plaintext1 = TestUtil.buildTestData(50000, 1);
+    byte[] plaintext2 = TestUtil.buildTestData(40000, 2);
+    byte[] plaintext3 = TestUtil.buildTestData(30000, 3);
+    byte[] plaintext4 = TestUtil.buildTestData(20000, 4);
+
+    Aes128DataSource dataSource1 = new Aes128DataSource(
+        new ByteArrayDataSource(encrypt(plaintext1, KEY_1, IV_1)), KEY_1, IV_1);
+    MoreAsserts.assertEquals(plaintext1, readFully(dataSource1, 9400));
+    // Same key and initialization vector.
+    Aes128DataSource dataSource2 = new Aes128DataSource(
+        new ByteArrayDataSource(encrypt(plaintext2, KEY_1, IV_1)), KEY_1, IV_1, dataSource1);
+    MoreAsserts.assertEquals(plaintext2, readFully(dataSource2, 9400));
+    // Same key, different initialization vector.
+    Aes128DataSource dataSource3 = new Aes128DataSource(
+        new ByteArrayDataSource(encrypt(plaintext3, KEY_1, IV_2)), KEY_1, IV_2, dataSource2);
+    MoreAsserts.assertEquals(plaintext3, readFully(dataSource3, 9400));
+    // Different key.
+    Aes128DataSource dataSource4 = new Aes128DataSource(
+        new ByteArrayDataSource(encrypt(plaintext4, KEY_2, IV_2)), KEY_2, IV_2, dataSource3);
+    MoreAsserts.assertEquals(plaintext4, readFully(dataSource4, 9400));
+  }
+
+  public void testReopenAfterPartialRead() throws Exception {
+    byte[] plaintext = TestUtil.buildTestData(50000);
+    Aes128DataSource dataSource = new Aes128DataSource(
+        new ByteArrayDataSource(encrypt(plaintext, KEY_1, IV_1)), KEY_1, IV_1);
+    dataSource.open(DATA_SPEC);
+    dataSource.read(new byte[1000], 0, 1000);
+    dataSource.close();
+    // Decryption must restart from the beginning of the stream.
+    MoreAsserts.assertEquals(plaintext, readFully(dataSource, 9400));
+  }
+
+  private static byte[] encrypt(byte[] plaintext, byte[] key, byte[] iv) throws Exception {
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    return cipher.doFinal(plaintext);
+  }
+
+  private static byte[] readFully(DataSource dataSource, int readLength) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[readLength];
+    dataSource.open(DATA_SPEC);
+    try {
+      int bytesRead;
+      while ((bytesRead = dataSource.read(buffer, 0, readLength)) != C.RESULT_END_OF_INPUT) {
+        output.write(buffer, 0, bytesRead);
+      }
+    } finally {
+      dataSource.close();
+    }
+    return output.toByteArray();
+  }
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.chunk.Chunk;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.HlsUrl;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link HlsChunkSource} loading a low-latency live stream from a stand-in origin
+ * that supports partial segments and blocking playlist reloads.
+ */
+public class HlsChunkSourceTest extends TestCase {
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://origin.example.com/live.m3u8");
+  private static final int PARTS_PER_SEGMENT = 4;
+  private static final long PART_DURATION_US = 500000;
+  private static final long SEGMENT_DURATION_US = PARTS_PER_SEGMENT * PART_DURATION_US;
+  private static final long TIMEOUT_MS = 10000;
+  private static final String KEY_PATH = "key.bin";
+
+  private LowLatencyOrigin origin;
+  private HandlerThread playbackThread;
+  private Handler playbackHandler;
+  private HlsPlaylistTracker playlistTracker;
+  private List<HlsMediaPlaylist> primarySnapshots;
+
+  @Override
+  public void setUp() {
+    origin = new LowLatencyOrigin();
+    primarySnapshots = new ArrayList<>();
+    playbackThread = new HandlerThread("Playback");
+    playbackThread.start();
+    playbackHandler = new Handler(playbackThread.getLooper());
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        if (playlistTracker != null) {
+          playlistTracker.release();
+        }
+      }
+    });
+    playbackThread.quit();
+  }
+
+  public void testBlockingReloadRequestsNextPart() throws Exception {
+    origin.publishParts(2 * PARTS_PER_SEGMENT + 1);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 1);
+    assertEquals(PLAYLIST_URI.toString(), origin.getRequestedUri(0));
+
+    // The tracker should immediately ask for the next part, which the origin holds until ready.
+    assertEquals(PLAYLIST_URI + "?_HLS_msn=2&_HLS_part=1", origin.waitForRequestedUri(1));
+    origin.publishParts(1);
+    waitForPrimarySnapshot(2, 2);
+    assertEquals(PLAYLIST_URI + "?_HLS_msn=2&_HLS_part=2", origin.waitForRequestedUri(2));
+    origin.publishParts(1);
+    waitForPrimarySnapshot(2, 3);
+    origin.publishParts(1);
+    // The segment is complete, so the next request is for the first part of the next one.
+    waitForPrimarySnapshot(3, 0);
+    assertEquals(PLAYLIST_URI + "?_HLS_msn=3&_HLS_part=0", origin.waitForRequestedUri(4));
+  }
+
+  public void testStartsFromIndependentPartAtLiveEdge() throws Exception {
+    origin.publishParts(2 * PARTS_PER_SEGMENT + 3);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 3);
+    HlsChunkSource chunkSource = createChunkSource();
+    // A position within the parts of the segment being produced starts from its first part, which
+    // is the only independent one.
+    HlsMediaChunk chunk = getNextChunk(chunkSource, null, 2 * SEGMENT_DURATION_US + 1200000);
+    assertChunk(chunk, "seg2.part0.ts", 2, 0, 2 * SEGMENT_DURATION_US);
+    assertFalse(chunk.isPreloadHint);
+  }
+
+  public void testLoadsPartsAndPreloadHintsInOrder() throws Exception {
+    origin.publishParts(2 * PARTS_PER_SEGMENT + 1);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 1);
+    HlsChunkSource chunkSource = createChunkSource();
+
+    HlsMediaChunk chunk = getNextChunk(chunkSource, null, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg1.ts", 1, C.INDEX_UNSET, SEGMENT_DURATION_US);
+    // The next segment is still being produced, so it is loaded part by part.
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part0.ts", 2, 0, 2 * SEGMENT_DURATION_US);
+    // The next part is requested from the preload hint before the playlist lists it.
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part1.ts", 2, 1, 2 * SEGMENT_DURATION_US + PART_DURATION_US);
+    assertTrue(chunk.isPreloadHint);
+
+    origin.publishParts(1);
+    waitForPrimarySnapshot(2, 2);
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part2.ts", 2, 2, 2 * SEGMENT_DURATION_US + 2 * PART_DURATION_US);
+    assertTrue(chunk.isPreloadHint);
+
+    // Complete the segment. The remaining part is listed in the completed segment.
+    origin.publishParts(2);
+    waitForPrimarySnapshot(3, 0);
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part3.ts", 2, 3, 2 * SEGMENT_DURATION_US + 3 * PART_DURATION_US);
+    assertFalse(chunk.isPreloadHint);
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg3.part0.ts", 3, 0, 3 * SEGMENT_DURATION_US);
+    assertTrue(chunk.isPreloadHint);
+  }
+
+  public void testContinuesIntoNextSegmentAfterLastPart() throws Exception {
+    origin.publishParts(2 * PARTS_PER_SEGMENT + 3);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 3);
+    HlsChunkSource chunkSource = createChunkSource();
+    HlsMediaChunk chunk = getNextChunk(chunkSource, null, 2 * SEGMENT_DURATION_US + 1);
+    assertChunk(chunk, "seg2.part0.ts", 2, 0, 2 * SEGMENT_DURATION_US);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part3.ts", 2, 3, 2 * SEGMENT_DURATION_US + 3 * PART_DURATION_US);
+    assertTrue(chunk.isPreloadHint);
+
+    // The hinted part completes segment 2, so loading continues with the parts of segment 3.
+    origin.publishParts(2);
+    waitForPrimarySnapshot(3, 1);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg3.part0.ts", 3, 0, 3 * SEGMENT_DURATION_US);
+    assertFalse(chunk.isPreloadHint);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg3.part1.ts", 3, 1, 3 * SEGMENT_DURATION_US + PART_DURATION_US);
+    assertTrue(chunk.isPreloadHint);
+  }
+
+  public void testEncryptedPartsWaitForCompleteSegment() throws Exception {
+    origin.encrypted = true;
+    origin.publishParts(2 * PARTS_PER_SEGMENT);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 0);
+    HlsChunkSource chunkSource = createChunkSource();
+    HlsChunkSource.HlsChunkHolder holder = getNextChunkHolder(chunkSource, null,
+        SEGMENT_DURATION_US);
+    loadEncryptionKey(chunkSource, holder.chunk);
+    HlsMediaChunk chunk = getNextChunk(chunkSource, null, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg1.ts", 1, C.INDEX_UNSET, SEGMENT_DURATION_US);
+
+    // The preload hint of the next segment is encrypted, so it isn't requested.
+    holder = getNextChunkHolder(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertNull(holder.chunk);
+    assertNotNull(holder.playlist);
+
+    // Nor are the encrypted parts of the segment once they're listed, whether continuing from the
+    // previous segment or starting at the live edge.
+    origin.publishParts(1);
+    waitForPrimarySnapshot(2, 1);
+    holder = getNextChunkHolder(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertNull(holder.chunk);
+    assertNotNull(holder.playlist);
+    holder = getNextChunkHolder(chunkSource, null, 2 * SEGMENT_DURATION_US + 1);
+    assertNull(holder.chunk);
+    assertNotNull(holder.playlist);
+
+    // The segment is loaded, with decryption, once it's complete.
+    origin.publishParts(PARTS_PER_SEGMENT - 1);
+    waitForPrimarySnapshot(3, 0);
+    chunk = getNextChunk(chunkSource, chunk, SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.ts", 2, C.INDEX_UNSET, 2 * SEGMENT_DURATION_US);
+  }
+
+  public void testEncryptedPreloadHintAfterPartIsNotRequested() throws Exception {
+    origin.publishParts(2 * PARTS_PER_SEGMENT + 1);
+    startPlaylistTracker();
+    waitForPrimarySnapshot(2, 1);
+    HlsChunkSource chunkSource = createChunkSource();
+    HlsMediaChunk chunk = getNextChunk(chunkSource, null, 2 * SEGMENT_DURATION_US + 1);
+    assertChunk(chunk, "seg2.part0.ts", 2, 0, 2 * SEGMENT_DURATION_US);
+    chunk = getNextChunk(chunkSource, chunk, 2 * SEGMENT_DURATION_US);
+    assertChunk(chunk, "seg2.part1.ts", 2, 1, 2 * SEGMENT_DURATION_US + PART_DURATION_US);
+
+    // Encryption starts with the next playlist, so the part hinted after the listed parts can't be
+    // loaded individually.
+    origin.encrypted = true;
+    origin.publishParts(1);
+    waitForPrimarySnapshot(2, 2);
+    HlsChunkSource.HlsChunkHolder holder = getNextChunkHolder(chunkSource, chunk,
+        2 * SEGMENT_DURATION_US);
+    assertNull(holder.chunk);
+    assertNotNull(holder.playlist);
+  }
+
+  public void testGetStartingPartIndex() {
+    List<HlsMediaPlaylist.Part> parts = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      parts.add(new HlsMediaPlaylist.Part("part" + i, PART_DURATION_US, 0, i * PART_DURATION_US,
+          i == 1 || i == 4, false, 0, C.LENGTH_UNSET, false));
+    }
+    assertEquals(1, HlsChunkSource.getStartingPartIndex(parts, 0));
+    assertEquals(1, HlsChunkSource.getStartingPartIndex(parts, 3 * PART_DURATION_US));
+    assertEquals(4, HlsChunkSource.getStartingPartIndex(parts, 4 * PART_DURATION_US));
+    assertEquals(4, HlsChunkSource.getStartingPartIndex(parts, 10 * PART_DURATION_US));
+
+    // Without independent parts, any part may be used.
+    parts.clear();
+    for (int i = 0; i < 3; i++) {
+      parts.add(new HlsMediaPlaylist.Part("part" + i, PART_DURATION_US, 0, i * PART_DURATION_US,
+          false, false, 0, C.LENGTH_UNSET, false));
+    }
+    assertEquals(2, HlsChunkSource.getStartingPartIndex(parts, 2 * PART_DURATION_US + 1));
+    assertEquals(C.INDEX_UNSET,
+        HlsChunkSource.getStartingPartIndex(Collections.<HlsMediaPlaylist.Part>emptyList(), 0));
+  }
+
+  // Internal methods.
+
+  private void startPlaylistTracker() throws InterruptedException {
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        playlistTracker = new HlsPlaylistTracker(PLAYLIST_URI, new OriginDataSourceFactory(),
+            new EventDispatcher(null, null), 3,
+            new HlsPlaylistTracker.PrimaryPlaylistListener() {
+              @Override
+              public void onPrimaryPlaylistRefreshed(HlsMediaPlaylist mediaPlaylist) {
+                synchronized (primarySnapshots) {
+                  primarySnapshots.add(mediaPlaylist);
+                  primarySnapshots.notifyAll();
+                }
+              }
+            });
+        playlistTracker.start();
+      }
+    });
+  }
+
+  private HlsMediaPlaylist waitForPrimarySnapshot(int segmentCount, int trailingPartCount)
+      throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    synchronized (primarySnapshots) {
+      while (System.currentTimeMillis() < deadlineMs) {
+        if (!primarySnapshots.isEmpty()) {
+          HlsMediaPlaylist snapshot = primarySnapshots.get(primarySnapshots.size() - 1);
+          if (snapshot.segments.size() == segmentCount
+              && snapshot.trailingParts.size() == trailingPartCount) {
+            return snapshot;
+          }
+        }
+        primarySnapshots.wait(100);
+      }
+    }
+    fail("Timed out waiting for snapshot with " + segmentCount + " segments and "
+        + trailingPartCount + " parts");
+    return null;
+  }
+
+  private HlsChunkSource createChunkSource() throws InterruptedException {
+    final HlsChunkSource[] chunkSource = new HlsChunkSource[1];
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        HlsUrl variant = playlistTracker.getMasterPlaylist().variants.get(0);
+        chunkSource[0] = new HlsChunkSource(playlistTracker, new HlsUrl[] {variant},
+            new OriginDataSourceFactory(), new TimestampAdjusterProvider(),
+            Collections.<Format>emptyList(), 0);
+        chunkSource[0].setIsTimestampMaster(true);
+      }
+    });
+    return chunkSource[0];
+  }
+
+  private HlsMediaChunk getNextChunk(HlsChunkSource chunkSource, HlsMediaChunk previous,
+      long playbackPositionUs) throws InterruptedException {
+    HlsChunkSource.HlsChunkHolder holder = getNextChunkHolder(chunkSource, previous,
+        playbackPositionUs);
+    assertNotNull(holder.chunk);
+    return (HlsMediaChunk) holder.chunk;
+  }
+
+  private HlsChunkSource.HlsChunkHolder getNextChunkHolder(final HlsChunkSource chunkSource,
+      final HlsMediaChunk previous, final long playbackPositionUs) throws InterruptedException {
+    final HlsChunkSource.HlsChunkHolder holder = new HlsChunkSource.HlsChunkHolder();
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        chunkSource.getNextChunk(previous, playbackPositionUs, holder);
+      }
+    });
+    return holder;
+  }
+
+  private void loadEncryptionKey(final HlsChunkSource chunkSource, final Chunk keyChunk)
+      throws Exception {
+    assertNotNull(keyChunk);
+    assertEquals(KEY_PATH, keyChunk.dataSpec.uri.getLastPathSegment());
+    keyChunk.load();
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        chunkSource.onChunkLoadCompleted(keyChunk);
+      }
+    });
+  }
+
+  private void runOnPlaybackThread(final Runnable runnable) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    playbackHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        runnable.run();
+        latch.countDown();
+      }
+    });
+    assertTrue(latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private static void assertChunk(HlsMediaChunk chunk, String url, int mediaSequence,
+      int partIndex, long startTimeUs) {
+    assertEquals(url, chunk.dataSpec.uri.getLastPathSegment());
+    assertEquals(mediaSequence, chunk.chunkIndex);
+    assertEquals(partIndex, chunk.partIndex);
+    assertEquals(startTimeUs, chunk.startTimeUs);
+  }
+
+  /**
+   * A stand-in for an origin serving a low-latency live playlist, which holds blocking playlist
+   * reloads until the requested part has been published.
+   */
+  private static final class LowLatencyOrigin {
+
+    public boolean encrypted;
+
+    private final List<String> requestedUris;
+    private int publishedPartCount;
+
+    public LowLatencyOrigin() {
+      requestedUris = new ArrayList<>();
+    }
+
+    public synchronized void publishParts(int count) {
+      publishedPartCount += count;
+      notifyAll();
+    }
+
+    public synchronized String getRequestedUri(int index) {
+      return requestedUris.get(index);
+    }
+
+    public synchronized String waitForRequestedUri(int index) throws InterruptedException {
+      long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+      while (requestedUris.size() <= index && System.currentTimeMillis() < deadlineMs) {
+        wait(100);
+      }
+      assertTrue(requestedUris.size() > index);
+      return requestedUris.get(index);
+    }
+
+    public synchronized byte[] getPlaylist(Uri uri) throws IOException {
+      requestedUris.add(uri.toString());
+      notifyAll();
+      String mediaSequence = uri.getQueryParameter("_HLS_msn");
+      if (mediaSequence != null) {
+        String part = uri.getQueryParameter("_HLS_part");
+        int requiredPartCount = Integer.parseInt(mediaSequence) * PARTS_PER_SEGMENT
+            + (part != null ? Integer.parseInt(part) : 0) + 1;
+        while (publishedPartCount < requiredPartCount) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+          }
+        }
+      }
+      return buildPlaylist().getBytes(Charset.forName(C.UTF8_NAME));
+    }
+
+    private String buildPlaylist() {
+      StringBuilder playlist = new StringBuilder("#EXTM3U\n"
+          + "#EXT-X-VERSION:6\n"
+          + "#EXT-X-TARGETDURATION:2\n"
+          + "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=1.5\n"
+          + "#EXT-X-PART-INF:PART-TARGET=0.5\n"
+          + "#EXT-X-MEDIA-SEQUENCE:0\n");
+      if (encrypted) {
+        playlist.append("#EXT-X-KEY:METHOD=AES-128,URI=\"").append(KEY_PATH).append("\"\n");
+      }
+      int segmentCount = publishedPartCount / PARTS_PER_SEGMENT;
+      for (int i = 0; i <= segmentCount; i++) {
+        int partCount = i < segmentCount ? PARTS_PER_SEGMENT
+            : publishedPartCount % PARTS_PER_SEGMENT;
+        for (int j = 0; j < partCount; j++) {
+          playlist.append("#EXT-X-PART:DURATION=0.5,URI=\"seg").append(i).append(".part")
+              .append(j).append(".ts\"").append(j == 0 ? ",INDEPENDENT=YES\n" : "\n");
+        }
+        if (i < segmentCount) {
+          playlist.append("#EXTINF:2.0,\nseg").append(i).append(".ts\n");
+        }
+      }
+      playlist.append("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"seg").append(segmentCount)
+          .append(".part").append(publishedPartCount % PARTS_PER_SEGMENT).append(".ts\"\n");
+      return playlist.toString();
+    }
+
+  }
+
+  private final class OriginDataSourceFactory implements HlsDataSourceFactory {
+
+    @Override
+    public DataSource createDataSource(int dataType) {
+      return new OriginDataSource();
+    }
+
+  }
+
+  /**
+   * Serves playlists from the {@link LowLatencyOrigin}, and an encryption key.
+   */
+  private final class OriginDataSource implements DataSource {
+
+    private Uri uri;
+    private byte[] data;
+    private int readPosition;
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      uri = dataSpec.uri;
+      data = KEY_PATH.equals(uri.getLastPathSegment()) ? new byte[16] : origin.getPlaylist(uri);
+      readPosition = 0;
+      return data.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      if (readPosition == data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      readLength = Math.min(readLength, data.length - readPosition);
+      System.arraycopy(data, readPosition, buffer, offset, readLength);
+      readPosition += readLength;
+      return readLength;
+    }
+
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+
+  }
+
+}
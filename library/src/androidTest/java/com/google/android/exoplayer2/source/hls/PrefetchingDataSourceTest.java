@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import android.net.Uri;
+import android.test.MoreAsserts;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PrefetchingDataSource}.
+ */
+public class PrefetchingDataSourceTest extends TestCase {
+
+  private static final int SEGMENT_COUNT = 8;
+  private static final int SEGMENT_LENGTH = 100000;
+
+  private byte[][] segmentData;
+  private DataSpec[] segmentDataSpecs;
+
+  @Override
+  public void setUp() {
+    segmentData = new byte[SEGMENT_COUNT][];
+    segmentDataSpecs = new DataSpec[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segmentData[i] = TestUtil.buildTestData(SEGMENT_LENGTH, i);
+      segmentDataSpecs[i] = new DataSpec(Uri.parse("segment" + i));
+    }
+  }
+
+  public void testReadsPrefetchedSegments() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    SegmentDataSource prefetchUpstream = new SegmentDataSource(0, 0);
+    PrefetchingDataSource dataSource = new PrefetchingDataSource(upstream, prefetchUpstream);
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      dataSource.prefetch(segmentDataSpecs[i], getDataSpecs(i + 1, 2));
+      MoreAsserts.assertEquals(segmentData[i], readFully(dataSource, segmentDataSpecs[i]));
+    }
+    dataSource.release();
+    // Only the first segment is loaded from the upstream source.
+    assertEquals(1, upstream.openCount);
+    assertEquals(SEGMENT_COUNT - 1, prefetchUpstream.openCount);
+  }
+
+  public void testReadsUnknownDataFromUpstream() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    PrefetchingDataSource dataSource =
+        new PrefetchingDataSource(upstream, new SegmentDataSource(0, 0));
+    dataSource.prefetch(segmentDataSpecs[0], getDataSpecs(1, 1));
+    MoreAsserts.assertEquals(segmentData[2], readFully(dataSource, segmentDataSpecs[2]));
+    assertEquals(1, upstream.openCount);
+    dataSource.release();
+  }
+
+  public void testReadsRemainderOfPrefetchedSegment() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    PrefetchingDataSource dataSource =
+        new PrefetchingDataSource(upstream, new SegmentDataSource(0, 0));
+    dataSource.prefetch(segmentDataSpecs[0], getDataSpecs(1, 1));
+    DataSpec remainderDataSpec = Util.getRemainderDataSpec(segmentDataSpecs[1], 1000);
+    MoreAsserts.assertEquals(Arrays.copyOfRange(segmentData[1], 1000, SEGMENT_LENGTH),
+        readFully(dataSource, remainderDataSpec));
+    assertEquals(0, upstream.openCount);
+    dataSource.release();
+  }
+
+  public void testFallsBackToUpstreamIfPrefetchFails() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    SegmentDataSource prefetchUpstream = new SegmentDataSource(0, 0);
+    prefetchUpstream.failOpen = true;
+    PrefetchingDataSource dataSource = new PrefetchingDataSource(upstream, prefetchUpstream);
+    dataSource.prefetch(segmentDataSpecs[0], getDataSpecs(1, 1));
+    MoreAsserts.assertEquals(segmentData[1], readFully(dataSource, segmentDataSpecs[1]));
+    assertEquals(1, upstream.openCount);
+    assertEquals(0, dataSource.getPrefetchedSegmentCount());
+    dataSource.release();
+  }
+
+  public void testDiscardsSegmentsNoLongerRequired() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    PrefetchingDataSource dataSource =
+        new PrefetchingDataSource(upstream, new SegmentDataSource(0, 0));
+    dataSource.prefetch(segmentDataSpecs[0], getDataSpecs(1, 2));
+    assertEquals(2, dataSource.getPrefetchedSegmentCount());
+    // Simulate a seek to a later segment.
+    dataSource.prefetch(segmentDataSpecs[5], getDataSpecs(6, 1));
+    assertEquals(1, dataSource.getPrefetchedSegmentCount());
+    MoreAsserts.assertEquals(segmentData[1], readFully(dataSource, segmentDataSpecs[1]));
+    assertEquals(1, upstream.openCount);
+    dataSource.release();
+  }
+
+  public void testReadsFromUpstreamAfterRelease() throws IOException {
+    SegmentDataSource upstream = new SegmentDataSource(0, 0);
+    PrefetchingDataSource dataSource =
+        new PrefetchingDataSource(upstream, new SegmentDataSource(0, 0));
+    dataSource.prefetch(segmentDataSpecs[0], getDataSpecs(1, 1));
+    dataSource.release();
+    MoreAsserts.assertEquals(segmentData[1], readFully(dataSource, segmentDataSpecs[1]));
+    assertEquals(1, upstream.openCount);
+  }
+
+  private DataSpec[] getDataSpecs(int firstIndex, int count) {
+    return Arrays.copyOfRange(segmentDataSpecs, firstIndex,
+        Math.min(firstIndex + count, SEGMENT_COUNT));
+  }
+
+  private static byte[] readFully(DataSource dataSource, DataSpec dataSpec) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    try {
+      dataSource.open(dataSpec);
+      int bytesRead;
+      while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+        output.write(buffer, 0, bytesRead);
+      }
+    } finally {
+      dataSource.close();
+    }
+    return output.toByteArray();
+  }
+
+  private static void sleep(int delayMs) throws IOException {
+    try {
+      Thread.sleep(delayMs);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Serves the test segments identified by the URIs "segment[index]", optionally followed by a
+   * suffix, with a latency for each request and a delay for each read.
+   */
+  private final class SegmentDataSource implements DataSource {
+
+    public static final int MAX_READ_LENGTH = 10 * 1024;
+
+    private final int latencyMs;
+    private final int readDelayMs;
+
+    public volatile int openCount;
+    public boolean failOpen;
+
+    private Uri uri;
+    private byte[] data;
+    private int readPosition;
+    private int bytesRemaining;
+
+    public SegmentDataSource(int latencyMs, int readDelayMs) {
+      this.latencyMs = latencyMs;
+      this.readDelayMs = readDelayMs;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      if (failOpen) {
+        throw new IOException("Open failed");
+      }
+      openCount++;
+      sleep(latencyMs);
+      uri = dataSpec.uri;
+      String segmentName = uri.toString().substring("segment".length());
+      int suffixIndex = segmentName.indexOf('_');
+      if (suffixIndex != -1) {
+        segmentName = segmentName.substring(0, suffixIndex);
+      }
+      data = segmentData[Integer.parseInt(segmentName)];
+      readPosition = (int) dataSpec.position;
+      bytesRemaining = data.length - readPosition;
+      return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      if (bytesRemaining == 0) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      sleep(readDelayMs);
+      readLength = Math.min(Math.min(readLength, bytesRemaining), MAX_READ_LENGTH);
+      System.arraycopy(data, readPosition, buffer, offset, readLength);
+      readPosition += readLength;
+      bytesRemaining -= readLength;
+      return readLength;
+    }
+
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+
+  }
+
+}
@@ -141,4 +141,57 @@ public class HlsMediaPlaylistParserTest extends TestCase {
     }
   }
 
+  public void testParseLowLatencyMediaPlaylist() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/low-latency.m3u8");
+    String playlistString = "#EXTM3U\n"
+        + "#EXT-X-TARGETDURATION:4\n"
+        + "#EXT-X-VERSION:6\n"
+        + "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,HOLD-BACK=12.0,PART-HOLD-BACK=3.0\n"
+        + "#EXT-X-PART-INF:PART-TARGET=1.0\n"
+        + "#EXT-X-MEDIA-SEQUENCE:100\n"
+        + "#EXTINF:4.0,\n"
+        + "fileSequence100.mp4\n"
+        + "#EXT-X-PART:DURATION=2.0,INDEPENDENT=YES,URI=\"fileSequence101.mp4\","
+        + "BYTERANGE=\"1000@0\"\n"
+        + "#EXT-X-PART:DURATION=2.0,URI=\"fileSequence101.mp4\",BYTERANGE=\"1200\"\n"
+        + "#EXTINF:4.0,\n"
+        + "fileSequence101.mp4\n"
+        + "#EXT-X-PART:DURATION=1.0,INDEPENDENT=YES,URI=\"filePart102.0.mp4\"\n"
+        + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"filePart102.1.mp4\"\n";
+    InputStream inputStream = new ByteArrayInputStream(
+        playlistString.getBytes(Charset.forName(C.UTF8_NAME)));
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist) new HlsPlaylistParser().parse(playlistUri, inputStream);
+
+    assertTrue(playlist.canBlockReload);
+    assertEquals(12000000, playlist.holdBackUs);
+    assertEquals(3000000, playlist.partHoldBackUs);
+    assertEquals(1000000, playlist.partTargetDurationUs);
+    assertEquals(2, playlist.segments.size());
+    assertTrue(playlist.segments.get(0).parts.isEmpty());
+
+    List<HlsMediaPlaylist.Part> parts = playlist.segments.get(1).parts;
+    assertEquals(2, parts.size());
+    assertTrue(parts.get(0).isIndependent);
+    assertEquals(4000000, parts.get(0).relativeStartTimeUs);
+    assertEquals(0, parts.get(0).byterangeOffset);
+    assertEquals(1000, parts.get(0).byterangeLength);
+    assertFalse(parts.get(1).isIndependent);
+    assertEquals(6000000, parts.get(1).relativeStartTimeUs);
+    assertEquals(1000, parts.get(1).byterangeOffset);
+    assertEquals(1200, parts.get(1).byterangeLength);
+
+    assertEquals(1, playlist.trailingParts.size());
+    assertEquals("filePart102.0.mp4", playlist.trailingParts.get(0).url);
+    assertEquals(8000000, playlist.trailingParts.get(0).relativeStartTimeUs);
+    assertEquals(1000000, playlist.trailingPartsDurationUs);
+    assertEquals(9000000, playlist.getEndTimeIncludingPartsUs());
+
+    HlsMediaPlaylist.Part preloadHintPart = playlist.preloadHintPart;
+    assertEquals("filePart102.1.mp4", preloadHintPart.url);
+    assertTrue(preloadHintPart.isPreloadHint);
+    assertEquals(9000000, preloadHintPart.relativeStartTimeUs);
+    assertEquals(C.LENGTH_UNSET, preloadHintPart.byterangeLength);
+  }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.test.InstrumentationTestCase;
+import android.text.Layout.Alignment;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.style.ForegroundColorSpan;
+import com.google.android.exoplayer2.text.CaptionStyleCompat;
+import com.google.android.exoplayer2.text.Cue;
+
+/**
+ * Unit tests for {@link SubtitlePainter} and {@link SubtitleLayoutCache}.
+ */
+public final class SubtitlePainterTest extends InstrumentationTestCase {
+
+  private static final int VIEW_WIDTH = 1280;
+  private static final int VIEW_HEIGHT = 720;
+  private static final float TEXT_SIZE_PX = VIEW_HEIGHT * SubtitleView.DEFAULT_TEXT_SIZE_FRACTION;
+  private static final CaptionStyleCompat STYLE = new CaptionStyleCompat(Color.WHITE,
+      Color.BLACK, Color.TRANSPARENT, CaptionStyleCompat.EDGE_TYPE_DROP_SHADOW, Color.BLACK, null);
+
+  private Context context;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    context = getInstrumentation().getContext();
+  }
+
+  public void testLayoutCacheReusesLayouts() {
+    SubtitleLayoutCache layoutCache = new SubtitleLayoutCache();
+    StaticLayout layout = getLayout(layoutCache, new StringBuilder("Line 1"));
+    // Equal text in a different instance, as produced when captions roll up.
+    assertSame(layout, getLayout(layoutCache, new StringBuilder("Line 1")));
+    assertSame(layout, getLayout(layoutCache, "Line 1"));
+    assertNotSame(layout, getLayout(layoutCache, "Line 2"));
+    assertNotSame(layout, layoutCache.getLayout("Line 1", false, VIEW_WIDTH / 2,
+        Alignment.ALIGN_CENTER, TEXT_SIZE_PX, null, 1f, 0f));
+  }
+
+  public void testLayoutCacheComparesSpansOfStyledText() {
+    SubtitleLayoutCache layoutCache = new SubtitleLayoutCache();
+    StaticLayout layout = getStyledLayout(layoutCache, createColoredText(Color.RED));
+    // Equal spans in different instances, as produced when captions roll up.
+    assertSame(layout, getStyledLayout(layoutCache, createColoredText(Color.RED)));
+    assertNotSame(layout, getStyledLayout(layoutCache, createColoredText(Color.GREEN)));
+    assertNotSame(layout, getStyledLayout(layoutCache, "Line 1"));
+    // Spans are ignored if embedded styles aren't applied.
+    StaticLayout unstyledLayout = getLayout(layoutCache, createColoredText(Color.RED));
+    assertNotSame(layout, unstyledLayout);
+    assertSame(unstyledLayout, getLayout(layoutCache, createColoredText(Color.GREEN)));
+  }
+
+  public void testLayoutCacheEvictsLeastRecentlyUsed() {
+    SubtitleLayoutCache layoutCache = new SubtitleLayoutCache(2);
+    StaticLayout layout1 = getLayout(layoutCache, "Line 1");
+    StaticLayout layout2 = getLayout(layoutCache, "Line 2");
+    assertSame(layout1, getLayout(layoutCache, "Line 1"));
+    // Line 2 is now the least recently used, so is evicted to make room for line 3.
+    getLayout(layoutCache, "Line 3");
+    assertSame(layout1, getLayout(layoutCache, "Line 1"));
+    assertNotSame(layout2, getLayout(layoutCache, "Line 2"));
+  }
+
+  public void testDisabledLayoutCacheCreatesNewLayouts() {
+    SubtitleLayoutCache layoutCache = new SubtitleLayoutCache(0);
+    StaticLayout layout = getLayout(layoutCache, "Line 1");
+    assertNotSame(layout, getLayout(layoutCache, "Line 1"));
+  }
+
+  public void testRenderToBitmapRedrawsIdenticalFrames() {
+    SubtitlePainter painter = new SubtitlePainter(context, new SubtitleLayoutCache());
+    Cue cue1 = createCue("Line 1");
+    Cue cue2 = createCue("Line 2");
+    Bitmap firstDraw = draw(painter, cue1);
+    // The second draw uses the cached bitmap, which must produce the same output.
+    Bitmap secondDraw = draw(painter, cue1);
+    assertTrue(firstDraw.sameAs(secondDraw));
+    // Changing the cue invalidates the cached bitmap.
+    assertFalse(firstDraw.sameAs(draw(painter, cue2)));
+    assertTrue(firstDraw.sameAs(draw(painter, cue1)));
+  }
+
+  private static StaticLayout getLayout(SubtitleLayoutCache layoutCache, CharSequence text) {
+    return layoutCache.getLayout(text, false, VIEW_WIDTH, Alignment.ALIGN_CENTER, TEXT_SIZE_PX,
+        null, 1f, 0f);
+  }
+
+  private static StaticLayout getStyledLayout(SubtitleLayoutCache layoutCache,
+      CharSequence text) {
+    return layoutCache.getLayout(text, true, VIEW_WIDTH, Alignment.ALIGN_CENTER, TEXT_SIZE_PX,
+        null, 1f, 0f);
+  }
+
+  private static CharSequence createColoredText(int color) {
+    SpannableStringBuilder text = new SpannableStringBuilder("Line 1");
+    text.setSpan(new ForegroundColorSpan(color), 0, 4, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    return text;
+  }
+
+  private static Cue createCue(CharSequence text) {
+    return new Cue(text, null, -1, Cue.LINE_TYPE_NUMBER, Cue.ANCHOR_TYPE_START, Cue.DIMEN_UNSET,
+        Cue.TYPE_UNSET, Cue.DIMEN_UNSET);
+  }
+
+  /**
+   * Draws {@code cue} into a new bitmap of the size of the view, rendering its text to a cached
+   * bitmap, and returns the new bitmap.
+   */
+  private static Bitmap draw(SubtitlePainter painter, Cue cue) {
+    Bitmap bitmap = Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    painter.draw(cue, true, true, STYLE, TEXT_SIZE_PX,
+        SubtitleView.DEFAULT_BOTTOM_PADDING_FRACTION, canvas, 0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+    return bitmap;
+  }
+
+}
@@ -183,4 +183,26 @@ public class AesFlushingCipherTest extends TestCase {
     assertEquals(0, differingByteCount);
   }
 
+  // Test decryption from random locations after repositioning a partially used cipher
+  public void testSeek() {
+    byte[] reference = TestUtil.buildTestData(DATA_LENGTH);
+    byte[] data = reference.clone();
+    Random random = new Random(RANDOM_SEED);
+    encryptCipher.updateInPlace(data, 0, data.length);
+
+    // Leave the cipher in the middle of a block.
+    decryptCipher.updateInPlace(new byte[7], 0, 7);
+    for (int i = 0; i < 10; i++) {
+      int offset = random.nextInt(data.length);
+      int length = Math.min(1 + random.nextInt(4095), data.length - offset);
+      byte[] chunk = new byte[length];
+      System.arraycopy(data, offset, chunk, 0, length);
+      decryptCipher.seek(NONCE, offset + START_OFFSET);
+      decryptCipher.updateInPlace(chunk, 0, length);
+      for (int j = 0; j < length; j++) {
+        assertEquals(reference[offset + j], chunk[j]);
+      }
+    }
+  }
+
 }
@@ -17,14 +17,21 @@ package com.google.android.exoplayer2.util;
 
 import static com.google.android.exoplayer2.testutil.TestUtil.createByteArray;
 
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import junit.framework.TestCase;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Tests for {@link NalUnitUtil}.
  */
-public class NalUnitUtilTest extends TestCase {
+public class NalUnitUtilTest extends InstrumentationTestCase {
+
+  private static final int TS_PACKET_SIZE = 188;
 
   private static final int TEST_PARTIAL_NAL_POSITION = 4;
   private static final int TEST_NAL_POSITION = 10;
@@ -116,6 +123,74 @@ public class NalUnitUtilTest extends TestCase {
     assertPrefixFlagsCleared(prefixFlags);
   }
 
+  public void testFindNalUnitMatchesReference() {
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      byte[] data = buildRandomStartCodeData(random, 1 + random.nextInt(64));
+      // Split the data into arrays at random positions, as when data arrives in TS packets.
+      boolean[] prefixFlags = new boolean[3];
+      boolean[] referencePrefixFlags = new boolean[3];
+      int offset = 0;
+      while (offset < data.length) {
+        int limit = Math.min(data.length, offset + 1 + random.nextInt(8));
+        byte[] array = Arrays.copyOfRange(data, offset, limit);
+        int searchOffset = 0;
+        while (true) {
+          int result = NalUnitUtil.findNalUnit(array, searchOffset, array.length, prefixFlags);
+          int referenceResult = findNalUnitReference(array, searchOffset, array.length,
+              referencePrefixFlags);
+          assertEquals(referenceResult, result);
+          assertTrue(Arrays.equals(referencePrefixFlags, prefixFlags));
+          if (result == array.length) {
+            break;
+          }
+          searchOffset = Math.max(searchOffset, result + 3);
+        }
+        offset = limit;
+      }
+    }
+  }
+
+  public void testUnescapeMatchesReference() {
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      byte[] data = buildRandomStartCodeData(random, random.nextInt(64));
+      for (int j = 0; j < data.length; j++) {
+        if (data[j] == 1) {
+          data[j] = 3;
+        }
+      }
+      byte[] expected = unescapeStreamReference(data);
+      int length = NalUnitUtil.unescapeStream(data, data.length);
+      assertTrue(Arrays.equals(expected, Arrays.copyOf(data, length)));
+    }
+  }
+
+  public void testFindNalUnitInVideoPayloads() throws Exception {
+    List<byte[]> payloads = getVideoPayloads(
+        TestUtil.getByteArray(getInstrumentation(), "ts/sample.ts"));
+    boolean[] prefixFlags = new boolean[3];
+    boolean[] referencePrefixFlags = new boolean[3];
+    int nalUnitCount = 0;
+    for (byte[] payload : payloads) {
+      int offset = 0;
+      int referenceOffset = 0;
+      while (offset < payload.length) {
+        offset = NalUnitUtil.findNalUnit(payload, offset, payload.length, prefixFlags);
+        referenceOffset = findNalUnitReference(payload, referenceOffset, payload.length,
+            referencePrefixFlags);
+        assertEquals(referenceOffset, offset);
+        if (offset < payload.length) {
+          nalUnitCount++;
+          offset = Math.max(0, offset + 3);
+          referenceOffset = offset;
+        }
+      }
+      assertTrue(Arrays.equals(referencePrefixFlags, prefixFlags));
+    }
+    assertTrue(nalUnitCount > 0);
+  }
+
   public void testParseSpsNalUnit() {
     NalUnitUtil.SpsData data = NalUnitUtil.parseSpsNalUnit(SPS_TEST_DATA, SPS_TEST_DATA_OFFSET,
         SPS_TEST_DATA.length);
@@ -175,6 +250,99 @@ public class NalUnitUtilTest extends TestCase {
     return data;
   }
 
+  /**
+   * Returns random data in which zeros and ones are common, so that it contains many complete and
+   * partial NAL unit start codes.
+   */
+  private static byte[] buildRandomStartCodeData(Random random, int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      int type = random.nextInt(4);
+      data[i] = (byte) (type == 0 ? 0 : type == 1 ? 1 : random.nextInt(256));
+    }
+    return data;
+  }
+
+  /**
+   * Returns the payloads of the transport stream packets carrying the first video stream.
+   */
+  private static List<byte[]> getVideoPayloads(byte[] transportStream) {
+    List<byte[]> payloads = new ArrayList<>();
+    int videoPid = -1;
+    for (int position = 0; position + TS_PACKET_SIZE <= transportStream.length;
+        position += TS_PACKET_SIZE) {
+      int pid = ((transportStream[position + 1] & 0x1F) << 8)
+          | (transportStream[position + 2] & 0xFF);
+      boolean payloadUnitStart = (transportStream[position + 1] & 0x40) != 0;
+      boolean adaptationFieldExists = (transportStream[position + 3] & 0x20) != 0;
+      boolean payloadExists = (transportStream[position + 3] & 0x10) != 0;
+      int payloadOffset = position + 4;
+      if (adaptationFieldExists) {
+        payloadOffset += 1 + (transportStream[payloadOffset] & 0xFF);
+      }
+      if (!payloadExists || payloadOffset >= position + TS_PACKET_SIZE) {
+        continue;
+      }
+      if (videoPid == -1 && payloadUnitStart && transportStream[payloadOffset] == 0
+          && transportStream[payloadOffset + 1] == 0 && transportStream[payloadOffset + 2] == 1
+          && (transportStream[payloadOffset + 3] & 0xF0) == 0xE0) {
+        videoPid = pid;
+      }
+      if (pid == videoPid) {
+        payloads.add(Arrays.copyOfRange(transportStream, payloadOffset,
+            position + TS_PACKET_SIZE));
+      }
+    }
+    return payloads;
+  }
+
+  /**
+   * Equivalent to {@link NalUnitUtil#findNalUnit(byte[], int, int, boolean[])}, but examines every
+   * byte of the data.
+   */
+  private static int findNalUnitReference(byte[] data, int startOffset, int endOffset,
+      boolean[] prefixFlags) {
+    // Bytes before startOffset that are known from the prefix flags.
+    int knownZeros = prefixFlags[1] ? 2 : prefixFlags[2] ? 1 : 0;
+    boolean knownStartCode = prefixFlags[0];
+    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    if (startOffset == endOffset) {
+      return endOffset;
+    }
+    if (knownStartCode) {
+      return startOffset - 3;
+    }
+    int zeros = knownZeros;
+    for (int i = startOffset; i < endOffset; i++) {
+      if (data[i] == 1 && zeros >= 2 && i < endOffset - 1) {
+        return i - 2;
+      }
+      zeros = data[i] == 0 ? zeros + 1 : 0;
+    }
+    int length = endOffset - startOffset;
+    prefixFlags[0] = data[endOffset - 1] == 1
+        && (length >= 3 ? data[endOffset - 2] == 0 && data[endOffset - 3] == 0
+        : length == 2 ? data[endOffset - 2] == 0 && knownZeros >= 1 : knownZeros >= 2);
+    prefixFlags[1] = data[endOffset - 1] == 0
+        && (length >= 2 ? data[endOffset - 2] == 0 : knownZeros >= 1);
+    prefixFlags[2] = data[endOffset - 1] == 0;
+    return endOffset;
+  }
+
+  private static byte[] unescapeStreamReference(byte[] data) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (int i = 0; i < data.length; i++) {
+      if (i + 2 < data.length && data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 3) {
+        output.write(0);
+        output.write(0);
+        i += 2;
+      } else {
+        output.write(data[i]);
+      }
+    }
+    return output.toByteArray();
+  }
+
   private static void assertPrefixFlagsCleared(boolean[] flags) {
     assertEquals(false, flags[0] || flags[1] || flags[2]);
   }
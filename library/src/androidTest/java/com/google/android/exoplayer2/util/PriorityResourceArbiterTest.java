@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import com.google.android.exoplayer2.C;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PriorityResourceArbiter}.
+ */
+public class PriorityResourceArbiterTest extends TestCase {
+
+  private static final int FOREGROUND_PRIORITY = C.PRIORITY_PLAYBACK;
+  private static final int PREVIEW_PRIORITY = C.PRIORITY_PLAYBACK - 1;
+  private static final long AVAILABLE_BITRATE = 8000000;
+  private static final long TOTAL_BUFFER_BYTES = 6000000;
+
+  private PriorityResourceArbiter arbiter;
+
+  @Override
+  public void setUp() {
+    arbiter = new PriorityResourceArbiter(AVAILABLE_BITRATE, TOTAL_BUFFER_BYTES);
+  }
+
+  public void testDividesBufferByPriority() {
+    PriorityResourceArbiter.Task foreground = arbiter.register(FOREGROUND_PRIORITY);
+    assertEquals(TOTAL_BUFFER_BYTES, foreground.getBufferShareBytes());
+    PriorityResourceArbiter.Task preview1 = arbiter.register(PREVIEW_PRIORITY);
+    PriorityResourceArbiter.Task preview2 = arbiter.register(PREVIEW_PRIORITY);
+    // The weights are 1, 0.25 and 0.25.
+    assertEquals(4000000, foreground.getBufferShareBytes());
+    assertEquals(1000000, preview1.getBufferShareBytes());
+    assertEquals(1000000, preview2.getBufferShareBytes());
+  }
+
+  public void testThrottlesOnlyBelowHighestTransferringPriority() {
+    PriorityResourceArbiter.Task foreground = arbiter.register(FOREGROUND_PRIORITY);
+    PriorityResourceArbiter.Task preview = arbiter.register(PREVIEW_PRIORITY);
+    preview.onTransferStart();
+    assertEquals(PriorityResourceArbiter.BITRATE_UNLIMITED, preview.getBitrateShare());
+    foreground.onTransferStart();
+    assertEquals(PriorityResourceArbiter.BITRATE_UNLIMITED, foreground.getBitrateShare());
+    assertEquals(AVAILABLE_BITRATE / 5, preview.getBitrateShare());
+    foreground.onTransferEnd();
+    assertEquals(PriorityResourceArbiter.BITRATE_UNLIMITED, preview.getBitrateShare());
+  }
+
+  public void testReprioritizesTasks() {
+    PriorityResourceArbiter.Task task1 = arbiter.register(FOREGROUND_PRIORITY);
+    PriorityResourceArbiter.Task task2 = arbiter.register(PREVIEW_PRIORITY);
+    task1.onTransferStart();
+    task2.onTransferStart();
+    assertEquals(AVAILABLE_BITRATE / 5, task2.getBitrateShare());
+    // Swap the priorities, as when a preview is brought to the foreground.
+    task1.setPriority(PREVIEW_PRIORITY);
+    task2.setPriority(FOREGROUND_PRIORITY);
+    assertEquals(PriorityResourceArbiter.BITRATE_UNLIMITED, task2.getBitrateShare());
+    assertEquals(AVAILABLE_BITRATE / 5, task1.getBitrateShare());
+    assertEquals(TOTAL_BUFFER_BYTES * 4 / 5, task2.getBufferShareBytes());
+  }
+
+  public void testReleaseRedistributesShares() {
+    PriorityResourceArbiter.Task foreground = arbiter.register(FOREGROUND_PRIORITY);
+    PriorityResourceArbiter.Task preview = arbiter.register(PREVIEW_PRIORITY);
+    foreground.release();
+    assertEquals(TOTAL_BUFFER_BYTES, preview.getBufferShareBytes());
+    assertEquals(0, foreground.getBufferShareBytes());
+  }
+
+  public void testThrottlesTransfers() throws IOException {
+    PriorityResourceArbiter.Task foreground = arbiter.register(FOREGROUND_PRIORITY);
+    PriorityResourceArbiter.Task preview = arbiter.register(PREVIEW_PRIORITY);
+    foreground.onTransferStart();
+    preview.onTransferStart();
+    // The preview's share is 1.6Mbps, so 40000 bytes take 200ms.
+    long startTimeMs = elapsedRealtimeMs();
+    for (int i = 0; i < 10; i++) {
+      preview.onBytesTransferred(4000);
+    }
+    long elapsedMs = elapsedRealtimeMs() - startTimeMs;
+    assertTrue(elapsedMs >= 150);
+    foreground.onTransferEnd();
+    startTimeMs = elapsedRealtimeMs();
+    for (int i = 0; i < 10; i++) {
+      preview.onBytesTransferred(4000);
+    }
+    elapsedMs = elapsedRealtimeMs() - startTimeMs;
+    assertTrue(elapsedMs < 150);
+  }
+
+  private static long elapsedRealtimeMs() {
+    return System.nanoTime() / 1000000;
+  }
+
+}
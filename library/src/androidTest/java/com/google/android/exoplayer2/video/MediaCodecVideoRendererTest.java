@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.RendererConfiguration;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+/**
+ * Unit tests for {@link MediaCodecVideoRenderer}.
+ */
+public final class MediaCodecVideoRendererTest extends InstrumentationTestCase {
+
+  private static final Format VIDEO_FORMAT = Format.createVideoSampleFormat(null,
+      MimeTypes.VIDEO_H264, null, Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE,
+      null, null);
+  private static final long POSITION_US = 10 * C.MICROS_PER_SECOND;
+  private static final long VERY_LATE_BUFFER_TIME_US = POSITION_US - C.MICROS_PER_SECOND;
+
+  private FakeSampleStream stream;
+  private TestRenderer renderer;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    stream = new FakeSampleStream();
+    renderer = new TestRenderer(getInstrumentation().getContext());
+    renderer.enable(RendererConfiguration.DEFAULT, new Format[] {VIDEO_FORMAT}, stream, 0, false,
+        0);
+    renderer.start();
+    // Only frames after the first one are dropped when late.
+    renderer.maybeNotifyRenderedFirstFrame();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    renderer.stop();
+    renderer.disable();
+    super.tearDown();
+  }
+
+  public void testVeryLateBufferDropsToBufferedKeyframe() throws ExoPlaybackException {
+    stream.hasKeyframeBeforePosition = true;
+    // The codec is flushed, so there's no output buffer left to process.
+    assertFalse(processOutputBuffer(VERY_LATE_BUFFER_TIME_US));
+    assertEquals(POSITION_US, stream.lastSkipTimeUs);
+    assertEquals(1, renderer.droppedBufferCount);
+    assertEquals(1, renderer.flushCount);
+    assertEquals(1, renderer.getDroppedToKeyframeCount());
+  }
+
+  public void testVeryLateBufferWithoutBufferedKeyframeIsDroppedAlone()
+      throws ExoPlaybackException {
+    stream.hasKeyframeBeforePosition = false;
+    // Flushing the codec would discard input until the next keyframe is loaded, so only the late
+    // buffer is dropped and decoding continues.
+    assertTrue(processOutputBuffer(VERY_LATE_BUFFER_TIME_US));
+    assertEquals(POSITION_US, stream.lastSkipTimeUs);
+    assertEquals(1, renderer.droppedBufferCount);
+    assertEquals(0, renderer.flushCount);
+    assertEquals(0, renderer.getDroppedToKeyframeCount());
+  }
+
+  public void testSlightlyLateBufferIsDroppedWithoutSkipping() throws ExoPlaybackException {
+    stream.hasKeyframeBeforePosition = true;
+    assertTrue(processOutputBuffer(POSITION_US - 100000));
+    assertEquals(C.TIME_UNSET, stream.lastSkipTimeUs);
+    assertEquals(1, renderer.droppedBufferCount);
+    assertEquals(0, renderer.flushCount);
+  }
+
+  private boolean processOutputBuffer(long bufferPresentationTimeUs)
+      throws ExoPlaybackException {
+    return renderer.processOutputBuffer(POSITION_US, SystemClock.elapsedRealtime() * 1000, null,
+        null, 0, 0, bufferPresentationTimeUs, false);
+  }
+
+  /**
+   * A renderer that records the buffers it drops and the flushes of its codec, rather than
+   * operating on a real codec.
+   */
+  private static final class TestRenderer extends MediaCodecVideoRenderer {
+
+    public int droppedBufferCount;
+    public int flushCount;
+
+    public TestRenderer(Context context) {
+      super(context, MediaCodecSelector.DEFAULT);
+    }
+
+    public int getDroppedToKeyframeCount() {
+      return decoderCounters.droppedToKeyframeCount;
+    }
+
+    @Override
+    protected void dropOutputBuffer(MediaCodec codec, int bufferIndex) {
+      droppedBufferCount++;
+    }
+
+    @Override
+    protected void flushCodec() {
+      flushCount++;
+    }
+
+  }
+
+  /**
+   * A {@link SampleStream} that records the time passed to {@link #skipToKeyframeBefore(long)}.
+   */
+  private static final class FakeSampleStream implements SampleStream {
+
+    public boolean hasKeyframeBeforePosition;
+    public long lastSkipTimeUs = C.TIME_UNSET;
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void maybeThrowError() {
+      // Do nothing.
+    }
+
+    @Override
+    public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer,
+        boolean formatRequired) {
+      return C.RESULT_NOTHING_READ;
+    }
+
+    @Override
+    public boolean skipToKeyframeBefore(long timeUs) {
+      lastSkipTimeUs = timeUs;
+      return hasKeyframeBeforePosition;
+    }
+
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link VideoFrameReleaseTimeHelper}.
+ * <p>
+ * Playback is simulated against a fixed vsync signal, with deterministic decode delays and render
+ * loop jitter, so that the cadence of released frames and the number of dropped and late frames
+ * can be checked.
+ */
+public class VideoFrameReleaseTimeHelperTest extends TestCase {
+
+  private static final long VSYNC_TIME_NS = 1000000000L;
+  private static final int FRAME_COUNT = 600;
+  private static final int WARM_UP_FRAME_COUNT = 12;
+
+  public void testDetectsFrameRate() {
+    assertEquals(24f, simulate(24, 60, 5).frameRate, 0.05f);
+    assertEquals(25f, simulate(25, 60, 5).frameRate, 0.05f);
+    assertEquals(30f, simulate(30, 60, 5).frameRate, 0.05f);
+  }
+
+  public void testFrameRateUnknownBeforeFirstFrame() {
+    VideoFrameReleaseTimeHelper helper = new VideoFrameReleaseTimeHelper(60, VSYNC_TIME_NS);
+    helper.enable();
+    assertEquals(-1f, helper.getFrameRate());
+  }
+
+  public void test24FpsOn60HzUsesPulldownCadence() {
+    SimulationResult result = simulate(24, 60, 5);
+    assertEquals(0, result.droppedFrameCount);
+    assertEquals(0, result.lateFrameCount);
+    List<Integer> vsyncsPerFrame = result.getVsyncsPerFrame();
+    for (int i = 1; i < vsyncsPerFrame.size(); i++) {
+      int vsyncs = vsyncsPerFrame.get(i);
+      assertTrue(vsyncs == 2 || vsyncs == 3);
+      // 3:2 pulldown alternates between frames held for two and three vsyncs.
+      assertTrue(vsyncs != vsyncsPerFrame.get(i - 1));
+    }
+  }
+
+  public void test30FpsOn60HzIsJudderFree() {
+    SimulationResult result = simulate(30, 60, 5);
+    assertEquals(0, result.droppedFrameCount);
+    for (int vsyncs : result.getVsyncsPerFrame()) {
+      assertEquals(2, vsyncs);
+    }
+  }
+
+  public void test25FpsOn50HzIsJudderFree() {
+    SimulationResult result = simulate(25, 50, 5);
+    assertEquals(0, result.droppedFrameCount);
+    for (int vsyncs : result.getVsyncsPerFrame()) {
+      assertEquals(2, vsyncs);
+    }
+  }
+
+  public void testSlowDecodeReportsDroppedAndLateFrames() {
+    SimulationResult fastResult = simulate(30, 60, 10);
+    assertEquals(0, fastResult.droppedFrameCount);
+    assertEquals(0, fastResult.lateFrameCount);
+    // Decoding takes longer than the frame duration on average, so the decoder falls behind.
+    SimulationResult slowResult = simulate(30, 60, 50);
+    assertTrue(slowResult.lateFrameCount > 0);
+    assertTrue(slowResult.droppedFrameCount > 0);
+  }
+
+  /**
+   * Simulates the playback of {@link #FRAME_COUNT} frames.
+   *
+   * @param frameRate The frame rate of the content.
+   * @param refreshRate The refresh rate of the display.
+   * @param maxDecodeTimeMs The maximum time taken to decode a frame. Decode times are distributed
+   *     uniformly between half of this value and this value.
+   * @return The result of the simulation.
+   */
+  private static SimulationResult simulate(int frameRate, int refreshRate, int maxDecodeTimeMs) {
+    Random random = new Random(frameRate * 1000 + refreshRate);
+    VideoFrameReleaseTimeHelper helper =
+        new VideoFrameReleaseTimeHelper(refreshRate, VSYNC_TIME_NS);
+    helper.enable();
+    long vsyncDurationNs = C.NANOS_PER_SECOND / refreshRate;
+    long playbackStartTimeNs = VSYNC_TIME_NS + 123456789;
+    long decodeAheadNs = 100000000L;
+    long maxDecodeTimeNs = maxDecodeTimeMs * 1000000L;
+
+    SimulationResult result = new SimulationResult();
+    long decoderAvailableTimeNs = 0;
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      // Containers often store timestamps with millisecond granularity.
+      long presentationTimeUs = ((i * 1000L) / frameRate) * 1000;
+      // The render loop computes the unadjusted release time with some jitter.
+      long jitterNs = (random.nextInt(2001) - 1000) * 1000L;
+      long unadjustedReleaseTimeNs = playbackStartTimeNs + presentationTimeUs * 1000 + jitterNs;
+      // Frames are queued to the decoder ahead of their release, and decoded in order.
+      long decodeStartTimeNs = Math.max(decoderAvailableTimeNs,
+          unadjustedReleaseTimeNs - decodeAheadNs);
+      long decodeTimeNs = maxDecodeTimeNs / 2 + (long) (random.nextDouble() * maxDecodeTimeNs / 2);
+      long decodedTimeNs = decodeStartTimeNs + decodeTimeNs;
+      decoderAvailableTimeNs = decodedTimeNs;
+
+      long releaseTimeNs = helper.adjustReleaseTime(presentationTimeUs, unadjustedReleaseTimeNs);
+      long earlyUs = (releaseTimeNs - decodedTimeNs) / 1000;
+      if (earlyUs < -30000) {
+        // The renderer drops frames that are more than 30ms late.
+        result.droppedFrameCount++;
+      } else if (earlyUs < 0) {
+        result.lateFrameCount++;
+      } else if (i >= WARM_UP_FRAME_COUNT) {
+        // The frame is displayed at the first vsync following its release.
+        long vsyncIndex = (releaseTimeNs - VSYNC_TIME_NS + vsyncDurationNs - 1) / vsyncDurationNs;
+        result.displayedVsyncIndices.add(vsyncIndex);
+      }
+    }
+    result.frameRate = helper.getFrameRate();
+    helper.disable();
+    return result;
+  }
+
+  private static final class SimulationResult {
+
+    public final List<Long> displayedVsyncIndices;
+    public int droppedFrameCount;
+    public int lateFrameCount;
+    public float frameRate;
+
+    public SimulationResult() {
+      displayedVsyncIndices = new ArrayList<>();
+    }
+
+    public List<Integer> getVsyncsPerFrame() {
+      List<Integer> vsyncsPerFrame = new ArrayList<>();
+      for (int i = 1; i < displayedVsyncIndices.size(); i++) {
+        vsyncsPerFrame.add((int) (displayedVsyncIndices.get(i) - displayedVsyncIndices.get(i - 1)));
+      }
+      return vsyncsPerFrame;
+    }
+
+  }
+
+}
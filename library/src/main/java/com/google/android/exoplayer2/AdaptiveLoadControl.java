@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import android.os.Handler;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * A {@link LoadControl} that adapts the durations of media it buffers to the network and device.
+ * <p>
+ * The maximum buffer duration is interpolated between a short duration for stable networks and a
+ * long duration for unstable ones. Stability is judged from the variation of the throughput
+ * samples passed to {@link #onBandwidthSample(int, long, long)} and from how much the throughput
+ * exceeds the bitrate of the selected tracks, so the instance should be registered as the
+ * {@link BandwidthMeter.EventListener} of the {@link BandwidthMeter} used for loading. The minimum
+ * buffer duration is half of the maximum.
+ * <p>
+ * Both durations are capped so that the media buffered at the selected bitrate fits within a
+ * memory budget, which by default is a fraction of the maximum heap size. Loading also stops
+ * whenever the allocated buffer memory reaches the budget, unless less media is buffered than is
+ * required for playback to start.
+ */
+public final class AdaptiveLoadControl implements PrebufferingLoadControl,
+    BandwidthMeter.EventListener {
+
+  /**
+   * Listener of {@link AdaptiveLoadControl} events.
+   */
+  public interface EventListener {
+
+    /**
+     * Called when the buffer durations targeted by the instance change.
+     *
+     * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+     *     buffered, in milliseconds.
+     * @param maxBufferMs The maximum duration of media that the player will attempt to buffer, in
+     *     milliseconds.
+     * @param bitrate The bitrate of the selected tracks, in bits per second, or
+     *     {@link Format#NO_VALUE} if unknown.
+     * @param memoryLimited Whether the durations were reduced to fit within the memory budget.
+     */
+    void onBufferTargetsChanged(long minBufferMs, long maxBufferMs, int bitrate,
+        boolean memoryLimited);
+
+  }
+
+  /**
+   * The default maximum duration of media to buffer on a stable network, in milliseconds.
+   */
+  public static final int DEFAULT_STABLE_MAX_BUFFER_MS = 15000;
+
+  /**
+   * The default maximum duration of media to buffer on an unstable network, in milliseconds.
+   */
+  public static final int DEFAULT_UNSTABLE_MAX_BUFFER_MS = 50000;
+
+  /**
+   * The default coefficient of variation of the throughput at and above which the network is
+   * considered to be unstable.
+   */
+  public static final float DEFAULT_UNSTABLE_THROUGHPUT_VARIATION = 0.5f;
+
+  /**
+   * The default fraction of the maximum heap size that may be used to buffer media.
+   */
+  public static final float DEFAULT_MEMORY_BUDGET_FRACTION = 0.25f;
+
+  /**
+   * The ratio of throughput to bitrate at and above which the network is considered to have enough
+   * headroom to be stable.
+   */
+  private static final float STABLE_THROUGHPUT_RATIO = 2f;
+
+  /**
+   * The weight given to each new throughput sample by the moving averages.
+   */
+  private static final float THROUGHPUT_SAMPLE_WEIGHT = 0.05f;
+
+  /**
+   * The granularity of the targeted buffer durations. Rounding the durations stops the targets
+   * and events from changing with every throughput sample.
+   */
+  private static final long TARGET_GRANULARITY_US = 1000000;
+
+  private final DefaultAllocator allocator;
+  private final long memoryBudgetBytes;
+  private final long stableMaxBufferUs;
+  private final long unstableMaxBufferUs;
+  private final float unstableThroughputVariation;
+  private final long bufferForPlaybackUs;
+  private final long bufferForPlaybackAfterRebufferUs;
+  private final int prebufferPeriodCount;
+  private final long prebufferUs;
+  private final Handler eventHandler;
+  private final EventListener eventListener;
+
+  private TrackSelectionArray trackSelections;
+  private long minBufferUs;
+  private long maxBufferUs;
+  private int bitrate;
+  private boolean memoryLimited;
+  private boolean isBuffering;
+
+  // Guarded by this, as samples are delivered on the thread of the bandwidth meter's handler.
+  private int throughputSampleCount;
+  private double throughputMean;
+  private double throughputVariance;
+
+  /**
+   * Constructs a new instance, using the {@code DEFAULT_*} constants defined in this class and
+   * {@link DefaultLoadControl}.
+   */
+  public AdaptiveLoadControl() {
+    this(null, null);
+  }
+
+  /**
+   * Constructs a new instance, using the {@code DEFAULT_*} constants defined in this class and
+   * {@link DefaultLoadControl}.
+   *
+   * @param eventHandler A handler for events. May be null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   */
+  public AdaptiveLoadControl(Handler eventHandler, EventListener eventListener) {
+    this(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_BUDGET_FRACTION),
+        DEFAULT_STABLE_MAX_BUFFER_MS, DEFAULT_UNSTABLE_MAX_BUFFER_MS,
+        DEFAULT_UNSTABLE_THROUGHPUT_VARIATION, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS, eventHandler,
+        eventListener);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param memoryBudgetBytes The maximum number of bytes of media to buffer.
+   * @param stableMaxBufferMs The maximum duration of media to buffer on a stable network, in
+   *     milliseconds.
+   * @param unstableMaxBufferMs The maximum duration of media to buffer on an unstable network, in
+   *     milliseconds.
+   * @param unstableThroughputVariation The coefficient of variation of the throughput at and above
+   *     which the network is considered to be unstable.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param eventHandler A handler for events. May be null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   */
+  public AdaptiveLoadControl(DefaultAllocator allocator, long memoryBudgetBytes,
+      int stableMaxBufferMs, int unstableMaxBufferMs, float unstableThroughputVariation,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs, Handler eventHandler,
+      EventListener eventListener) {
+    this(allocator, memoryBudgetBytes, stableMaxBufferMs, unstableMaxBufferMs,
+        unstableThroughputVariation, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+        DefaultLoadControl.DEFAULT_PREBUFFER_PERIOD_COUNT, DefaultLoadControl.DEFAULT_PREBUFFER_MS,
+        eventHandler, eventListener);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param memoryBudgetBytes The maximum number of bytes of media to buffer.
+   * @param stableMaxBufferMs The maximum duration of media to buffer on a stable network, in
+   *     milliseconds.
+   * @param unstableMaxBufferMs The maximum duration of media to buffer on an unstable network, in
+   *     milliseconds.
+   * @param unstableThroughputVariation The coefficient of variation of the throughput at and above
+   *     which the network is considered to be unstable.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param prebufferPeriodCount The maximum number of periods after the one being buffered for
+   *     playback that the player will prepare and load in advance. Zero disables prebuffering.
+   * @param prebufferMs The maximum duration of media that the player will load in advance for each
+   *     of these periods, in milliseconds. Prebuffering also stops when the memory budget is
+   *     reached.
+   * @param eventHandler A handler for events. May be null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   */
+  public AdaptiveLoadControl(DefaultAllocator allocator, long memoryBudgetBytes,
+      int stableMaxBufferMs, int unstableMaxBufferMs, float unstableThroughputVariation,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs, int prebufferPeriodCount,
+      int prebufferMs, Handler eventHandler, EventListener eventListener) {
+    this.allocator = allocator;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    stableMaxBufferUs = stableMaxBufferMs * 1000L;
+    unstableMaxBufferUs = unstableMaxBufferMs * 1000L;
+    this.unstableThroughputVariation = unstableThroughputVariation;
+    bufferForPlaybackUs = bufferForPlaybackMs * 1000L;
+    bufferForPlaybackAfterRebufferUs = bufferForPlaybackAfterRebufferMs * 1000L;
+    this.prebufferPeriodCount = prebufferPeriodCount;
+    prebufferUs = prebufferMs * 1000L;
+    this.eventHandler = eventHandler;
+    this.eventListener = eventListener;
+    bitrate = Format.NO_VALUE;
+  }
+
+  /**
+   * Returns the minimum duration of media that the player currently attempts to ensure is
+   * buffered, in microseconds.
+   */
+  public long getMinBufferUs() {
+    return minBufferUs;
+  }
+
+  /**
+   * Returns the maximum duration of media that the player currently attempts to buffer, in
+   * microseconds.
+   */
+  public long getMaxBufferUs() {
+    return maxBufferUs;
+  }
+
+  // BandwidthMeter.EventListener implementation.
+
+  @Override
+  public synchronized void onBandwidthSample(int elapsedMs, long bytes, long bitrate) {
+    if (elapsedMs <= 0) {
+      return;
+    }
+    double throughput = (bytes * 8000d) / elapsedMs;
+    if (throughputSampleCount++ == 0) {
+      throughputMean = throughput;
+      throughputVariance = 0;
+    } else {
+      // Exponentially weighted moving mean and variance.
+      double delta = throughput - throughputMean;
+      throughputMean += THROUGHPUT_SAMPLE_WEIGHT * delta;
+      throughputVariance = (1 - THROUGHPUT_SAMPLE_WEIGHT)
+          * (throughputVariance + THROUGHPUT_SAMPLE_WEIGHT * delta * delta);
+    }
+  }
+
+  // LoadControl implementation.
+
+  @Override
+  public void onPrepared() {
+    reset(false);
+  }
+
+  @Override
+  public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+      TrackSelectionArray trackSelections) {
+    this.trackSelections = trackSelections;
+    allocator.setTargetBufferSize((int) Math.min(memoryBudgetBytes, Integer.MAX_VALUE));
+    updateTargets();
+  }
+
+  @Override
+  public void onStopped() {
+    reset(true);
+  }
+
+  @Override
+  public void onReleased() {
+    reset(true);
+  }
+
+  @Override
+  public Allocator getAllocator() {
+    return allocator;
+  }
+
+  @Override
+  public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+    long minBufferDurationUs = rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
+    if (maxBufferUs > 0) {
+      // Loading stops at the maximum buffer duration, which may be reduced below these durations.
+      minBufferDurationUs = Math.min(minBufferDurationUs, maxBufferUs);
+    }
+    return minBufferDurationUs <= 0 || bufferedDurationUs >= minBufferDurationUs
+        || allocator.getTotalBytesAllocated() >= memoryBudgetBytes;
+  }
+
+  @Override
+  public boolean shouldContinueLoading(long bufferedDurationUs) {
+    updateTargets();
+    if (allocator.getTotalBytesAllocated() >= memoryBudgetBytes) {
+      // Exceeding the budget risks running out of memory, but stopping while there is not enough
+      // media to start playback would stall it forever.
+      isBuffering = bufferedDurationUs < bufferForPlaybackUs;
+    } else if (bufferedDurationUs < minBufferUs) {
+      isBuffering = true;
+    } else if (bufferedDurationUs > maxBufferUs) {
+      isBuffering = false;
+    }
+    return isBuffering;
+  }
+
+  @Override
+  public boolean shouldPrebuffer(int periodsAhead, long bufferedDurationUs) {
+    if (periodsAhead > prebufferPeriodCount) {
+      return false;
+    }
+    return bufferedDurationUs == 0
+        || (bufferedDurationUs < prebufferUs
+        && allocator.getTotalBytesAllocated() < memoryBudgetBytes);
+  }
+
+  // Internal methods.
+
+  private void updateTargets() {
+    int bitrate = getSelectedBitrate();
+    long maxBufferUs = getUnconstrainedMaxBufferUs(bitrate);
+    boolean memoryLimited = false;
+    if (bitrate != Format.NO_VALUE) {
+      long memoryLimitUs = (long) ((memoryBudgetBytes * 8d * C.MICROS_PER_SECOND) / bitrate);
+      if (memoryLimitUs < maxBufferUs) {
+        maxBufferUs = memoryLimitUs;
+        memoryLimited = true;
+      }
+    }
+    maxBufferUs = Math.max(TARGET_GRANULARITY_US,
+        (maxBufferUs / TARGET_GRANULARITY_US) * TARGET_GRANULARITY_US);
+    long minBufferUs = memoryLimited ? maxBufferUs / 2
+        : Math.max(maxBufferUs / 2, Math.min(bufferForPlaybackAfterRebufferUs, maxBufferUs));
+    if (maxBufferUs != this.maxBufferUs || minBufferUs != this.minBufferUs
+        || bitrate != this.bitrate || memoryLimited != this.memoryLimited) {
+      this.maxBufferUs = maxBufferUs;
+      this.minBufferUs = minBufferUs;
+      this.bitrate = bitrate;
+      this.memoryLimited = memoryLimited;
+      notifyBufferTargetsChanged(minBufferUs / 1000, maxBufferUs / 1000, bitrate, memoryLimited);
+    }
+  }
+
+  private synchronized long getUnconstrainedMaxBufferUs(int bitrate) {
+    float instability;
+    if (throughputSampleCount == 0) {
+      // Nothing is known about the network yet.
+      instability = 0.5f;
+    } else {
+      instability = (float) (Math.sqrt(throughputVariance) / throughputMean)
+          / unstableThroughputVariation;
+      if (bitrate != Format.NO_VALUE) {
+        // Treat throughput that barely exceeds the bitrate as unstable.
+        float headroomInstability = STABLE_THROUGHPUT_RATIO
+            - (float) (throughputMean / bitrate);
+        instability = Math.max(instability, headroomInstability);
+      }
+      instability = Math.max(0, Math.min(instability, 1));
+    }
+    return stableMaxBufferUs + (long) (instability * (unstableMaxBufferUs - stableMaxBufferUs));
+  }
+
+  private int getSelectedBitrate() {
+    if (trackSelections == null) {
+      return Format.NO_VALUE;
+    }
+    int totalBitrate = 0;
+    for (int i = 0; i < trackSelections.length; i++) {
+      TrackSelection trackSelection = trackSelections.get(i);
+      if (trackSelection != null) {
+        int bitrate = trackSelection.getSelectedFormat().bitrate;
+        if (bitrate != Format.NO_VALUE) {
+          totalBitrate += bitrate;
+        }
+      }
+    }
+    return totalBitrate > 0 ? totalBitrate : Format.NO_VALUE;
+  }
+
+  private void reset(boolean resetAllocator) {
+    trackSelections = null;
+    isBuffering = false;
+    if (resetAllocator) {
+      allocator.reset();
+    }
+  }
+
+  private void notifyBufferTargetsChanged(final long minBufferMs, final long maxBufferMs,
+      final int bitrate, final boolean memoryLimited) {
+    if (eventHandler != null && eventListener != null) {
+      eventHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          eventListener.onBufferTargetsChanged(minBufferMs, maxBufferMs, bitrate, memoryLimited);
+        }
+      });
+    }
+  }
+
+}
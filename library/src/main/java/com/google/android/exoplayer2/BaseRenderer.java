@@ -147,6 +147,18 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     streamIsFinal = false;
   }
 
+  /**
+   * Forces the renderer to give up any resources (e.g. media decoders) that it may be holding
+   * whilst disabled. If the renderer is not holding any resources, the call is a no-op.
+   * <p>
+   * This method may be called when the renderer is in the following states:
+   * {@link #STATE_DISABLED}.
+   */
+  public final void reset() {
+    Assertions.checkState(state == STATE_DISABLED);
+    onReset();
+  }
+
   // RendererCapabilities implementation.
 
   @Override
@@ -238,6 +250,15 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     // Do nothing.
   }
 
+  /**
+   * Called when the renderer is reset.
+   * <p>
+   * The default implementation is a no-op.
+   */
+  protected void onReset() {
+    // Do nothing.
+  }
+
   // Methods to be called by subclasses.
 
   /**
@@ -309,9 +330,10 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
    * Attempts to skip to the keyframe before the specified time.
    *
    * @param timeUs The specified time.
+   * @return Whether the stream is now positioned at a keyframe at or before the specified time.
    */
-  protected void skipToKeyframeBefore(long timeUs) {
-    stream.skipToKeyframeBefore(timeUs - streamOffsetUs);
+  protected boolean skipToKeyframeBefore(long timeUs) {
+    return stream.skipToKeyframeBefore(timeUs - streamOffsetUs);
   }
 
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.SystemClock;
+
+/**
+ * The default {@link LivePlaybackSpeedControl} implementation.
+ * <p>
+ * The speed is adjusted in proportion to the difference between the current and target live
+ * offsets, within a narrow range so that the change is not noticeable. Playback is never sped up
+ * while little media is buffered, since doing so would make a rebuffer more likely. After a seek
+ * further from the live edge than the target, the offset reached by the seek becomes the target.
+ */
+public final class DefaultLivePlaybackSpeedControl implements LivePlaybackSpeedControl {
+
+  /**
+   * The default minimum playback speed.
+   */
+  public static final float DEFAULT_MIN_PLAYBACK_SPEED = 0.97f;
+
+  /**
+   * The default maximum playback speed.
+   */
+  public static final float DEFAULT_MAX_PLAYBACK_SPEED = 1.03f;
+
+  /**
+   * The default change in playback speed for each second of difference between the current and
+   * target live offsets.
+   */
+  public static final float DEFAULT_PROPORTIONAL_CONTROL_FACTOR = 0.1f;
+
+  /**
+   * The default difference between the current and target live offsets below which playback is at
+   * normal speed, in milliseconds.
+   */
+  public static final long DEFAULT_ACCEPTABLE_OFFSET_ERROR_MS = 50;
+
+  /**
+   * The default minimum interval between changes of playback speed, in milliseconds.
+   */
+  public static final long DEFAULT_MIN_UPDATE_INTERVAL_MS = 1000;
+
+  /**
+   * The default minimum duration of buffered media for playback to be sped up, in milliseconds.
+   */
+  public static final long DEFAULT_MIN_BUFFER_FOR_SPEED_UP_MS = 1000;
+
+  private final long targetLiveOffsetUs;
+  private final float minPlaybackSpeed;
+  private final float maxPlaybackSpeed;
+  private final float proportionalControlFactor;
+  private final long acceptableOffsetErrorUs;
+  private final long minUpdateIntervalMs;
+  private final long minBufferForSpeedUpUs;
+  private final Clock clock;
+
+  private long currentTargetLiveOffsetUs;
+  private boolean pendingTargetReset;
+  private long lastUpdateTimeMs;
+
+  private volatile long currentLiveOffsetUs;
+  private volatile float currentPlaybackSpeed;
+
+  /**
+   * Constructs an instance, using the {@code DEFAULT_*} constants defined in this class.
+   *
+   * @param targetLiveOffsetMs The offset from the live edge at which to play, in milliseconds.
+   */
+  public DefaultLivePlaybackSpeedControl(long targetLiveOffsetMs) {
+    this(targetLiveOffsetMs, DEFAULT_MIN_PLAYBACK_SPEED, DEFAULT_MAX_PLAYBACK_SPEED,
+        DEFAULT_PROPORTIONAL_CONTROL_FACTOR, DEFAULT_ACCEPTABLE_OFFSET_ERROR_MS,
+        DEFAULT_MIN_UPDATE_INTERVAL_MS, DEFAULT_MIN_BUFFER_FOR_SPEED_UP_MS, new SystemClock());
+  }
+
+  /**
+   * Constructs an instance.
+   *
+   * @param targetLiveOffsetMs The offset from the live edge at which to play, in milliseconds.
+   * @param minPlaybackSpeed The minimum playback speed.
+   * @param maxPlaybackSpeed The maximum playback speed.
+   * @param proportionalControlFactor The change in playback speed for each second of difference
+   *     between the current and target live offsets.
+   * @param acceptableOffsetErrorMs The difference between the current and target live offsets
+   *     below which playback is at normal speed, in milliseconds.
+   * @param minUpdateIntervalMs The minimum interval between changes of playback speed, in
+   *     milliseconds.
+   * @param minBufferForSpeedUpMs The minimum duration of buffered media for playback to be sped up,
+   *     in milliseconds.
+   * @param clock A {@link Clock}.
+   */
+  public DefaultLivePlaybackSpeedControl(long targetLiveOffsetMs, float minPlaybackSpeed,
+      float maxPlaybackSpeed, float proportionalControlFactor, long acceptableOffsetErrorMs,
+      long minUpdateIntervalMs, long minBufferForSpeedUpMs, Clock clock) {
+    this.targetLiveOffsetUs = C.msToUs(targetLiveOffsetMs);
+    this.minPlaybackSpeed = minPlaybackSpeed;
+    this.maxPlaybackSpeed = maxPlaybackSpeed;
+    this.proportionalControlFactor = proportionalControlFactor;
+    this.acceptableOffsetErrorUs = C.msToUs(acceptableOffsetErrorMs);
+    this.minUpdateIntervalMs = minUpdateIntervalMs;
+    this.minBufferForSpeedUpUs = C.msToUs(minBufferForSpeedUpMs);
+    this.clock = clock;
+    currentTargetLiveOffsetUs = targetLiveOffsetUs;
+    lastUpdateTimeMs = C.TIME_UNSET;
+    currentLiveOffsetUs = C.TIME_UNSET;
+    currentPlaybackSpeed = 1f;
+  }
+
+  /**
+   * Returns the most recent offset of the playback position from the live edge, in microseconds,
+   * or {@link C#TIME_UNSET} if no live stream has been played. May be called from any thread.
+   */
+  public long getCurrentLiveOffsetUs() {
+    return currentLiveOffsetUs;
+  }
+
+  /**
+   * Returns the offset from the live edge on which playback is converging, in microseconds.
+   */
+  public long getTargetLiveOffsetUs() {
+    return currentTargetLiveOffsetUs;
+  }
+
+  /**
+   * Returns the most recently requested playback speed. May be called from any thread.
+   */
+  public float getCurrentPlaybackSpeed() {
+    return currentPlaybackSpeed;
+  }
+
+  // LivePlaybackSpeedControl implementation.
+
+  @Override
+  public float getAdjustedPlaybackSpeed(long liveOffsetUs, long bufferedDurationUs) {
+    currentLiveOffsetUs = liveOffsetUs;
+    if (pendingTargetReset) {
+      pendingTargetReset = false;
+      currentTargetLiveOffsetUs = Math.max(targetLiveOffsetUs, liveOffsetUs);
+    }
+    long nowMs = clock.elapsedRealtime();
+    if (lastUpdateTimeMs != C.TIME_UNSET && nowMs - lastUpdateTimeMs < minUpdateIntervalMs) {
+      return currentPlaybackSpeed;
+    }
+    lastUpdateTimeMs = nowMs;
+    long offsetErrorUs = liveOffsetUs - currentTargetLiveOffsetUs;
+    float playbackSpeed;
+    if (Math.abs(offsetErrorUs) < acceptableOffsetErrorUs) {
+      playbackSpeed = 1f;
+    } else {
+      playbackSpeed = 1f + proportionalControlFactor * offsetErrorUs / C.MICROS_PER_SECOND;
+      playbackSpeed = Math.max(minPlaybackSpeed, Math.min(playbackSpeed, maxPlaybackSpeed));
+      if (playbackSpeed > 1f && bufferedDurationUs < minBufferForSpeedUpUs) {
+        playbackSpeed = 1f;
+      }
+    }
+    currentPlaybackSpeed = playbackSpeed;
+    return playbackSpeed;
+  }
+
+  @Override
+  public void onPositionReset() {
+    pendingTargetReset = true;
+    lastUpdateTimeMs = C.TIME_UNSET;
+  }
+
+}
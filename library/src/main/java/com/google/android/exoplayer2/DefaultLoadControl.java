@@ -19,13 +19,14 @@ import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.PriorityResourceArbiter;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.Util;
 
 /**
  * The default {@link LoadControl} implementation.
  */
-public final class DefaultLoadControl implements LoadControl {
+public final class DefaultLoadControl implements PrebufferingLoadControl {
 
   /**
    * The default minimum duration of media that the player will attempt to ensure is buffered at all
@@ -51,6 +52,18 @@ public final class DefaultLoadControl implements LoadControl {
    */
   public static final int DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS  = 5000;
 
+  /**
+   * The default maximum number of periods after the one being buffered for playback that the
+   * player will prepare and load in advance. Prebuffering is disabled by default.
+   */
+  public static final int DEFAULT_PREBUFFER_PERIOD_COUNT = 0;
+
+  /**
+   * The default maximum duration of media that the player will load in advance for each period
+   * after the one being buffered for playback, if prebuffering is enabled, in milliseconds.
+   */
+  public static final int DEFAULT_PREBUFFER_MS = 2500;
+
   private static final int ABOVE_HIGH_WATERMARK = 0;
   private static final int BETWEEN_WATERMARKS = 1;
   private static final int BELOW_LOW_WATERMARK = 2;
@@ -62,6 +75,9 @@ public final class DefaultLoadControl implements LoadControl {
   private final long bufferForPlaybackUs;
   private final long bufferForPlaybackAfterRebufferUs;
   private final PriorityTaskManager priorityTaskManager;
+  private final PriorityResourceArbiter.Task arbiterTask;
+  private final int prebufferPeriodCount;
+  private final long prebufferUs;
 
   private int targetBufferSize;
   private boolean isBuffering;
@@ -123,12 +139,73 @@ public final class DefaultLoadControl implements LoadControl {
   public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
       long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs,
       PriorityTaskManager priorityTaskManager) {
+    this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+        priorityTaskManager, null);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+   *     buffered at all times, in milliseconds.
+   * @param maxBufferMs The maximum duration of media that the player will attempt buffer, in
+   *     milliseconds.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param priorityTaskManager If not null, registers itself as a task with priority
+   *     {@link C#PRIORITY_PLAYBACK} during loading periods, and unregisters itself during draining
+   *     periods.
+   * @param arbiterTask If not null, loading stops when the allocated buffer memory reaches the
+   *     task's share, unless less media is buffered than is required for playback to start.
+   */
+  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs,
+      PriorityTaskManager priorityTaskManager, PriorityResourceArbiter.Task arbiterTask) {
+    this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+        priorityTaskManager, arbiterTask, DEFAULT_PREBUFFER_PERIOD_COUNT, DEFAULT_PREBUFFER_MS);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+   *     buffered at all times, in milliseconds.
+   * @param maxBufferMs The maximum duration of media that the player will attempt buffer, in
+   *     milliseconds.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param priorityTaskManager If not null, registers itself as a task with priority
+   *     {@link C#PRIORITY_PLAYBACK} during loading periods, and unregisters itself during draining
+   *     periods.
+   * @param arbiterTask If not null, loading stops when the allocated buffer memory reaches the
+   *     task's share, unless less media is buffered than is required for playback to start.
+   * @param prebufferPeriodCount The maximum number of periods after the one being buffered for
+   *     playback that the player will prepare and load in advance. Zero disables prebuffering.
+   * @param prebufferMs The maximum duration of media that the player will load in advance for each
+   *     of these periods, in milliseconds. Prebuffering also stops when the target buffer size is
+   *     reached.
+   */
+  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs,
+      PriorityTaskManager priorityTaskManager, PriorityResourceArbiter.Task arbiterTask,
+      int prebufferPeriodCount, int prebufferMs) {
     this.allocator = allocator;
     minBufferUs = minBufferMs * 1000L;
     maxBufferUs = maxBufferMs * 1000L;
     bufferForPlaybackUs = bufferForPlaybackMs * 1000L;
     bufferForPlaybackAfterRebufferUs = bufferForPlaybackAfterRebufferMs * 1000L;
     this.priorityTaskManager = priorityTaskManager;
+    this.arbiterTask = arbiterTask;
+    this.prebufferPeriodCount = prebufferPeriodCount;
+    prebufferUs = prebufferMs * 1000L;
   }
 
   @Override
@@ -166,7 +243,8 @@ public final class DefaultLoadControl implements LoadControl {
   @Override
   public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
     long minBufferDurationUs = rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
-    return minBufferDurationUs <= 0 || bufferedDurationUs >= minBufferDurationUs;
+    return minBufferDurationUs <= 0 || bufferedDurationUs >= minBufferDurationUs
+        || isBufferShareReached();
   }
 
   @Override
@@ -176,6 +254,9 @@ public final class DefaultLoadControl implements LoadControl {
     boolean wasBuffering = isBuffering;
     isBuffering = bufferTimeState == BELOW_LOW_WATERMARK
         || (bufferTimeState == BETWEEN_WATERMARKS && isBuffering && !targetBufferSizeReached);
+    if (isBuffering && bufferedDurationUs >= bufferForPlaybackUs && isBufferShareReached()) {
+      isBuffering = false;
+    }
     if (priorityTaskManager != null && isBuffering != wasBuffering) {
       if (isBuffering) {
         priorityTaskManager.add(C.PRIORITY_PLAYBACK);
@@ -186,11 +267,26 @@ public final class DefaultLoadControl implements LoadControl {
     return isBuffering;
   }
 
+  @Override
+  public boolean shouldPrebuffer(int periodsAhead, long bufferedDurationUs) {
+    if (periodsAhead > prebufferPeriodCount) {
+      return false;
+    }
+    // Preparing a period is allowed regardless of the memory in use, as it allocates very little.
+    return bufferedDurationUs == 0 || (bufferedDurationUs < prebufferUs
+        && allocator.getTotalBytesAllocated() < targetBufferSize && !isBufferShareReached());
+  }
+
   private int getBufferTimeState(long bufferedDurationUs) {
     return bufferedDurationUs > maxBufferUs ? ABOVE_HIGH_WATERMARK
         : (bufferedDurationUs < minBufferUs ? BELOW_LOW_WATERMARK : BETWEEN_WATERMARKS);
   }
 
+  private boolean isBufferShareReached() {
+    return arbiterTask != null
+        && allocator.getTotalBytesAllocated() >= arbiterTask.getBufferShareBytes();
+  }
+
   private void reset(boolean resetAllocator) {
     targetBufferSize = 0;
     if (priorityTaskManager != null && isBuffering) {
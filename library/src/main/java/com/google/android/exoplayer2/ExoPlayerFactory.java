@@ -106,6 +106,31 @@ public final class ExoPlayerFactory {
         extensionRendererMode, allowedVideoJoiningTimeMs);
   }
 
+  /**
+   * Creates a {@link SimpleExoPlayer} instance. Must be called from a thread that has an associated
+   * {@link Looper}.
+   *
+   * @param context A {@link Context}.
+   * @param trackSelector The {@link TrackSelector} that will be used by the instance.
+   * @param loadControl The {@link LoadControl} that will be used by the instance.
+   * @param drmSessionManager An optional {@link DrmSessionManager}. May be null if the instance
+   *     will not be used for DRM protected playbacks.
+   * @param extensionRendererMode The extension renderer mode, which determines if and how available
+   *     extension renderers are used. Note that extensions must be included in the application
+   *     build for them to be considered available.
+   * @param allowedVideoJoiningTimeMs The maximum duration for which a video renderer can attempt to
+   *     seamlessly join an ongoing playback.
+   * @param livePlaybackSpeedControl The {@link LivePlaybackSpeedControl} that will adjust the
+   *     playback speed of live streams, or null to always play at normal speed.
+   */
+  public static SimpleExoPlayer newSimpleInstance(Context context, TrackSelector trackSelector,
+      LoadControl loadControl, DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+      @SimpleExoPlayer.ExtensionRendererMode int extensionRendererMode,
+      long allowedVideoJoiningTimeMs, LivePlaybackSpeedControl livePlaybackSpeedControl) {
+    return new SimpleExoPlayer(context, trackSelector, loadControl, drmSessionManager,
+        extensionRendererMode, allowedVideoJoiningTimeMs, livePlaybackSpeedControl);
+  }
+
   /**
    * Creates an {@link ExoPlayer} instance. Must be called from a thread that has an associated
    * {@link Looper}.
@@ -130,4 +155,19 @@ public final class ExoPlayerFactory {
     return new ExoPlayerImpl(renderers, trackSelector, loadControl);
   }
 
+  /**
+   * Creates an {@link ExoPlayer} instance. Must be called from a thread that has an associated
+   * {@link Looper}.
+   *
+   * @param renderers The {@link Renderer}s that will be used by the instance.
+   * @param trackSelector The {@link TrackSelector} that will be used by the instance.
+   * @param loadControl The {@link LoadControl} that will be used by the instance.
+   * @param livePlaybackSpeedControl The {@link LivePlaybackSpeedControl} that will adjust the
+   *     playback speed of live streams, or null to always play at normal speed.
+   */
+  public static ExoPlayer newInstance(Renderer[] renderers, TrackSelector trackSelector,
+      LoadControl loadControl, LivePlaybackSpeedControl livePlaybackSpeedControl) {
+    return new ExoPlayerImpl(renderers, trackSelector, loadControl, livePlaybackSpeedControl);
+  }
+
 }
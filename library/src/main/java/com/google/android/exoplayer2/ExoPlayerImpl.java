@@ -29,8 +29,10 @@ import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.SystemClock;
 import com.google.android.exoplayer2.util.Util;
-import java.util.concurrent.CopyOnWriteArraySet;
+import com.google.android.exoplayer2.util.WallClock;
+import java.util.Arrays;
 
 /**
  * An {@link ExoPlayer} implementation. Instances can be obtained from {@link ExoPlayerFactory}.
@@ -44,15 +46,20 @@ import java.util.concurrent.CopyOnWriteArraySet;
   private final TrackSelectionArray emptyTrackSelections;
   private final Handler eventHandler;
   private final ExoPlayerImplInternal internalPlayer;
-  private final CopyOnWriteArraySet<EventListener> listeners;
   private final Timeline.Window window;
   private final Timeline.Period period;
 
+  // Replaced rather than modified when listeners are added or removed, so that events can be
+  // dispatched without allocating an iterator and listeners can be removed during dispatch.
+  // Volatile so that a listener added on another thread is published safely to the dispatching
+  // thread.
+  private volatile EventListener[] listeners;
   private boolean tracksSelected;
   private boolean playWhenReady;
   private int playbackState;
   private int pendingSeekAcks;
   private boolean isLoading;
+  private boolean released;
   private Timeline timeline;
   private Object manifest;
   private TrackGroupArray trackGroups;
@@ -72,15 +79,44 @@ import java.util.concurrent.CopyOnWriteArraySet;
    * @param trackSelector The {@link TrackSelector} that will be used by the instance.
    * @param loadControl The {@link LoadControl} that will be used by the instance.
    */
-  @SuppressLint("HandlerLeak")
   public ExoPlayerImpl(Renderer[] renderers, TrackSelector trackSelector, LoadControl loadControl) {
+    this(renderers, trackSelector, loadControl, null);
+  }
+
+  /**
+   * Constructs an instance. Must be called from a thread that has an associated {@link Looper}.
+   *
+   * @param renderers The {@link Renderer}s that will be used by the instance.
+   * @param trackSelector The {@link TrackSelector} that will be used by the instance.
+   * @param loadControl The {@link LoadControl} that will be used by the instance.
+   * @param livePlaybackSpeedControl The {@link LivePlaybackSpeedControl} that will adjust the
+   *     playback speed of live streams, or null to always play at normal speed.
+   */
+  public ExoPlayerImpl(Renderer[] renderers, TrackSelector trackSelector, LoadControl loadControl,
+      LivePlaybackSpeedControl livePlaybackSpeedControl) {
+    this(renderers, trackSelector, loadControl, livePlaybackSpeedControl, new SystemClock());
+  }
+
+  /**
+   * Constructs an instance. Must be called from a thread that has an associated {@link Looper}.
+   *
+   * @param renderers The {@link Renderer}s that will be used by the instance.
+   * @param trackSelector The {@link TrackSelector} that will be used by the instance.
+   * @param loadControl The {@link LoadControl} that will be used by the instance.
+   * @param livePlaybackSpeedControl The {@link LivePlaybackSpeedControl} that will adjust the
+   *     playback speed of live streams, or null to always play at normal speed.
+   * @param clock The {@link WallClock} used to determine the live edge of live streams.
+   */
+  @SuppressLint("HandlerLeak")
+  public ExoPlayerImpl(Renderer[] renderers, TrackSelector trackSelector, LoadControl loadControl,
+      LivePlaybackSpeedControl livePlaybackSpeedControl, WallClock clock) {
     Log.i(TAG, "Init " + ExoPlayerLibraryInfo.VERSION + " [" + Util.DEVICE_DEBUG_INFO + "]");
     Assertions.checkState(renderers.length > 0);
     this.renderers = Assertions.checkNotNull(renderers);
     this.trackSelector = Assertions.checkNotNull(trackSelector);
     this.playWhenReady = false;
     this.playbackState = STATE_IDLE;
-    this.listeners = new CopyOnWriteArraySet<>();
+    listeners = new EventListener[0];
     emptyTrackSelections = new TrackSelectionArray(new TrackSelection[renderers.length]);
     timeline = Timeline.EMPTY;
     window = new Timeline.Window();
@@ -94,18 +130,30 @@ import java.util.concurrent.CopyOnWriteArraySet;
       }
     };
     playbackInfo = new ExoPlayerImplInternal.PlaybackInfo(0, 0);
-    internalPlayer = new ExoPlayerImplInternal(renderers, trackSelector, loadControl, playWhenReady,
-        eventHandler, playbackInfo, this);
+    internalPlayer = new ExoPlayerImplInternal(renderers, trackSelector, loadControl,
+        livePlaybackSpeedControl, clock, playWhenReady, eventHandler, playbackInfo, this);
   }
 
   @Override
-  public void addListener(EventListener listener) {
-    listeners.add(listener);
+  public synchronized void addListener(EventListener listener) {
+    EventListener[] listeners = this.listeners;
+    if (indexOfListener(listeners, listener) == C.INDEX_UNSET) {
+      EventListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+      newListeners[listeners.length] = listener;
+      this.listeners = newListeners;
+    }
   }
 
   @Override
-  public void removeListener(EventListener listener) {
-    listeners.remove(listener);
+  public synchronized void removeListener(EventListener listener) {
+    EventListener[] listeners = this.listeners;
+    int index = indexOfListener(listeners, listener);
+    if (index != C.INDEX_UNSET) {
+      EventListener[] newListeners = new EventListener[listeners.length - 1];
+      System.arraycopy(listeners, 0, newListeners, 0, index);
+      System.arraycopy(listeners, index + 1, newListeners, index, newListeners.length - index);
+      this.listeners = newListeners;
+    }
   }
 
   @Override
@@ -203,6 +251,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
   @Override
   public void release() {
+    released = true;
     internalPlayer.release();
     eventHandler.removeCallbacksAndMessages(null);
   }
@@ -317,25 +366,42 @@ import java.util.concurrent.CopyOnWriteArraySet;
     return manifest;
   }
 
+  private static int indexOfListener(EventListener[] listeners, EventListener listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i].equals(listener)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
   // Not private so it can be called from an inner class without going through a thunk method.
   /* package */ void handleEvent(Message msg) {
-    switch (msg.what) {
+    ExoPlayerImplInternal.EventBatch events = (ExoPlayerImplInternal.EventBatch) msg.obj;
+    for (int i = 0; i < events.size() && !released; i++) {
+      handleEvent(events.getType(i), events.getArg(i), events.getObject(i));
+    }
+    internalPlayer.releaseEventBatch(events);
+  }
+
+  private void handleEvent(int type, int arg, Object object) {
+    switch (type) {
       case ExoPlayerImplInternal.MSG_STATE_CHANGED: {
-        playbackState = msg.arg1;
+        playbackState = arg;
         for (EventListener listener : listeners) {
           listener.onPlayerStateChanged(playWhenReady, playbackState);
         }
         break;
       }
       case ExoPlayerImplInternal.MSG_LOADING_CHANGED: {
-        isLoading = msg.arg1 != 0;
+        isLoading = arg != 0;
         for (EventListener listener : listeners) {
           listener.onLoadingChanged(isLoading);
         }
         break;
       }
       case ExoPlayerImplInternal.MSG_TRACKS_CHANGED: {
-        TrackSelectorResult trackSelectorResult = (TrackSelectorResult) msg.obj;
+        TrackSelectorResult trackSelectorResult = (TrackSelectorResult) object;
         tracksSelected = true;
         trackGroups = trackSelectorResult.groups;
         trackSelections = trackSelectorResult.selections;
@@ -347,8 +413,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
       }
       case ExoPlayerImplInternal.MSG_SEEK_ACK: {
         if (--pendingSeekAcks == 0) {
-          playbackInfo = (ExoPlayerImplInternal.PlaybackInfo) msg.obj;
-          if (msg.arg1 != 0) {
+          playbackInfo = (ExoPlayerImplInternal.PlaybackInfo) object;
+          if (arg != 0) {
             for (EventListener listener : listeners) {
               listener.onPositionDiscontinuity();
             }
@@ -358,7 +424,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
       }
       case ExoPlayerImplInternal.MSG_POSITION_DISCONTINUITY: {
         if (pendingSeekAcks == 0) {
-          playbackInfo = (ExoPlayerImplInternal.PlaybackInfo) msg.obj;
+          playbackInfo = (ExoPlayerImplInternal.PlaybackInfo) object;
           for (EventListener listener : listeners) {
             listener.onPositionDiscontinuity();
           }
@@ -366,7 +432,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
         break;
       }
       case ExoPlayerImplInternal.MSG_SOURCE_INFO_REFRESHED: {
-        SourceInfo sourceInfo = (SourceInfo) msg.obj;
+        SourceInfo sourceInfo = (SourceInfo) object;
         timeline = sourceInfo.timeline;
         manifest = sourceInfo.manifest;
         playbackInfo = sourceInfo.playbackInfo;
@@ -377,7 +443,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
         break;
       }
       case ExoPlayerImplInternal.MSG_ERROR: {
-        ExoPlaybackException exception = (ExoPlaybackException) msg.obj;
+        ExoPlaybackException exception = (ExoPlaybackException) object;
         for (EventListener listener : listeners) {
           listener.onPlayerError(exception);
         }
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2;
 
+import android.annotation.TargetApi;
+import android.media.PlaybackParams;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
@@ -35,7 +37,11 @@ import com.google.android.exoplayer2.util.MediaClock;
 import com.google.android.exoplayer2.util.PriorityHandlerThread;
 import com.google.android.exoplayer2.util.StandaloneMediaClock;
 import com.google.android.exoplayer2.util.TraceUtil;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.util.WallClock;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Implements the internal behavior of {@link ExoPlayerImpl}.
@@ -87,9 +93,68 @@ import java.io.IOException;
 
   }
 
+  /**
+   * The events that occurred on the playback thread while it handled a message, in the order in
+   * which they occurred. Each event has a type, which is one of the external event types below, an
+   * int argument and an object. Instances are reused once they have been passed to
+   * {@link #releaseEventBatch(EventBatch)}.
+   */
+  public static final class EventBatch {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int size;
+    private int[] types;
+    private int[] args;
+    private Object[] objects;
+
+    private EventBatch() {
+      types = new int[INITIAL_CAPACITY];
+      args = new int[INITIAL_CAPACITY];
+      objects = new Object[INITIAL_CAPACITY];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public int getType(int index) {
+      return types[index];
+    }
+
+    public int getArg(int index) {
+      return args[index];
+    }
+
+    public Object getObject(int index) {
+      return objects[index];
+    }
+
+    private void add(int type, int arg, Object object) {
+      if (size == types.length) {
+        types = Arrays.copyOf(types, size * 2);
+        args = Arrays.copyOf(args, size * 2);
+        objects = Arrays.copyOf(objects, size * 2);
+      }
+      types[size] = type;
+      args[size] = arg;
+      objects[size] = object;
+      size++;
+    }
+
+    private void clear() {
+      Arrays.fill(objects, 0, size, null);
+      size = 0;
+    }
+
+  }
+
   private static final String TAG = "ExoPlayerImplInternal";
 
   // External messages
+  public static final int MSG_EVENTS = 0;
+
+  // External event types
   public static final int MSG_STATE_CHANGED = 1;
   public static final int MSG_LOADING_CHANGED = 2;
   public static final int MSG_TRACKS_CHANGED = 3;
@@ -110,11 +175,18 @@ import java.io.IOException;
   private static final int MSG_SOURCE_CONTINUE_LOADING_REQUESTED = 8;
   private static final int MSG_TRACK_SELECTION_INVALIDATED = 9;
   private static final int MSG_CUSTOM = 10;
+  private static final int MSG_RESET_DISABLED_RENDERERS = 11;
 
   private static final int PREPARING_SOURCE_INTERVAL_MS = 10;
   private static final int RENDERING_INTERVAL_MS = 10;
   private static final int IDLE_INTERVAL_MS = 1000;
 
+  /**
+   * The time for which renderers can hold resources (e.g. media decoders) whilst disabled, so that
+   * they can reuse them if re-enabled, before they are reset.
+   */
+  private static final int DISABLED_RENDERER_RESET_DELAY_MS = 5000;
+
   /**
    * Limits the maximum number of periods to buffer ahead of the current playing period. The
    * buffering policy normally prevents buffering too far ahead, but the policy could allow too many
@@ -134,10 +206,13 @@ import java.io.IOException;
   private final RendererCapabilities[] rendererCapabilities;
   private final TrackSelector trackSelector;
   private final LoadControl loadControl;
+  private final LivePlaybackSpeedControl livePlaybackSpeedControl;
+  private final WallClock clock;
   private final StandaloneMediaClock standaloneMediaClock;
   private final Handler handler;
   private final HandlerThread internalPlaybackThread;
   private final Handler eventHandler;
+  private final ArrayList<EventBatch> eventBatchPool;
   private final ExoPlayer player;
   private final Timeline.Window window;
   private final Timeline.Period period;
@@ -152,9 +227,12 @@ import java.io.IOException;
   private boolean rebuffering;
   private boolean isLoading;
   private int state;
+  private EventBatch pendingEvents;
   private int customMessagesSent;
   private int customMessagesProcessed;
   private long elapsedRealtimeUs;
+  private float playbackSpeed;
+  private long timelineRefreshRealtimeMs;
 
   private int pendingInitialSeekCount;
   private SeekPosition pendingSeekPosition;
@@ -163,17 +241,21 @@ import java.io.IOException;
   private MediaPeriodHolder loadingPeriodHolder;
   private MediaPeriodHolder readingPeriodHolder;
   private MediaPeriodHolder playingPeriodHolder;
+  private TrackSelectorResult loadControlTrackSelectorResult;
 
   private Timeline timeline;
 
   public ExoPlayerImplInternal(Renderer[] renderers, TrackSelector trackSelector,
-      LoadControl loadControl, boolean playWhenReady, Handler eventHandler,
-      PlaybackInfo playbackInfo, ExoPlayer player) {
+      LoadControl loadControl, LivePlaybackSpeedControl livePlaybackSpeedControl, WallClock clock,
+      boolean playWhenReady, Handler eventHandler, PlaybackInfo playbackInfo, ExoPlayer player) {
     this.renderers = renderers;
     this.trackSelector = trackSelector;
     this.loadControl = loadControl;
+    this.livePlaybackSpeedControl = livePlaybackSpeedControl;
+    this.clock = clock;
     this.playWhenReady = playWhenReady;
     this.eventHandler = eventHandler;
+    eventBatchPool = new ArrayList<>();
     this.state = ExoPlayer.STATE_IDLE;
     this.playbackInfo = playbackInfo;
     this.player = player;
@@ -184,6 +266,7 @@ import java.io.IOException;
       rendererCapabilities[i] = renderers[i].getCapabilities();
     }
     standaloneMediaClock = new StandaloneMediaClock();
+    playbackSpeed = 1f;
     enabledRenderers = new Renderer[0];
     window = new Timeline.Window();
     period = new Timeline.Period();
@@ -255,6 +338,17 @@ import java.io.IOException;
     internalPlaybackThread.quit();
   }
 
+  /**
+   * Returns a batch of events that has been dispatched on the application thread, so that it can
+   * be reused.
+   */
+  public void releaseEventBatch(EventBatch events) {
+    events.clear();
+    synchronized (eventBatchPool) {
+      eventBatchPool.add(events);
+    }
+  }
+
   // MediaSource.Listener implementation.
 
   @Override
@@ -332,25 +426,30 @@ import java.io.IOException;
           sendMessagesInternal((ExoPlayerMessage[]) msg.obj);
           return true;
         }
+        case MSG_RESET_DISABLED_RENDERERS: {
+          resetDisabledRenderers();
+          return true;
+        }
         default:
           return false;
       }
     } catch (ExoPlaybackException e) {
       Log.e(TAG, "Renderer error.", e);
-      eventHandler.obtainMessage(MSG_ERROR, e).sendToTarget();
+      notifyEvent(MSG_ERROR, 0, e);
       stopInternal();
       return true;
     } catch (IOException e) {
       Log.e(TAG, "Source error.", e);
-      eventHandler.obtainMessage(MSG_ERROR, ExoPlaybackException.createForSource(e)).sendToTarget();
+      notifyEvent(MSG_ERROR, 0, ExoPlaybackException.createForSource(e));
       stopInternal();
       return true;
     } catch (RuntimeException e) {
       Log.e(TAG, "Internal runtime error.", e);
-      eventHandler.obtainMessage(MSG_ERROR, ExoPlaybackException.createForUnexpected(e))
-          .sendToTarget();
+      notifyEvent(MSG_ERROR, 0, ExoPlaybackException.createForUnexpected(e));
       stopInternal();
       return true;
+    } finally {
+      maybeSendEvents();
     }
   }
 
@@ -359,14 +458,40 @@ import java.io.IOException;
   private void setState(int state) {
     if (this.state != state) {
       this.state = state;
-      eventHandler.obtainMessage(MSG_STATE_CHANGED, state, 0).sendToTarget();
+      notifyEvent(MSG_STATE_CHANGED, state, null);
     }
   }
 
   private void setIsLoading(boolean isLoading) {
     if (this.isLoading != isLoading) {
       this.isLoading = isLoading;
-      eventHandler.obtainMessage(MSG_LOADING_CHANGED, isLoading ? 1 : 0, 0).sendToTarget();
+      notifyEvent(MSG_LOADING_CHANGED, isLoading ? 1 : 0, null);
+    }
+  }
+
+  /**
+   * Adds an event to the batch that is sent to the application thread once the current message has
+   * been handled.
+   */
+  private void notifyEvent(int type, int arg, Object object) {
+    if (pendingEvents == null) {
+      synchronized (eventBatchPool) {
+        int poolSize = eventBatchPool.size();
+        pendingEvents = poolSize > 0 ? eventBatchPool.remove(poolSize - 1) : new EventBatch();
+      }
+    }
+    pendingEvents.add(type, arg, object);
+  }
+
+  /**
+   * Sends the events that occurred while handling the current message to the application thread.
+   * Events are sent once per handled message rather than as they occur, so that all the events of
+   * an iteration of the playback loop are delivered in a single message.
+   */
+  private void maybeSendEvents() {
+    if (pendingEvents != null) {
+      eventHandler.obtainMessage(MSG_EVENTS, pendingEvents).sendToTarget();
+      pendingEvents = null;
     }
   }
 
@@ -442,6 +567,59 @@ import java.io.IOException;
         : bufferedPositionUs;
   }
 
+  private void updateLivePlaybackSpeed() throws ExoPlaybackException {
+    long liveOffsetUs = getLiveOffsetUs();
+    if (liveOffsetUs == C.TIME_UNSET) {
+      setPlaybackSpeed(1f);
+    } else if (state == ExoPlayer.STATE_READY && playWhenReady) {
+      long bufferedDurationUs = playbackInfo.bufferedPositionUs - playbackInfo.positionUs;
+      setPlaybackSpeed(
+          livePlaybackSpeedControl.getAdjustedPlaybackSpeed(liveOffsetUs, bufferedDurationUs));
+    }
+  }
+
+  /**
+   * Returns the offset of the playback position from the live edge of the playing window, or
+   * {@link C#TIME_UNSET} if the window is not live or its live edge is unknown.
+   */
+  private long getLiveOffsetUs() {
+    timeline.getPeriod(playingPeriodHolder.index, period);
+    timeline.getWindow(period.windowIndex, window);
+    if (!window.isDynamic) {
+      return C.TIME_UNSET;
+    }
+    long positionInWindowUs = period.getPositionInWindowUs() + playbackInfo.positionUs;
+    if (window.windowStartTimeMs != C.TIME_UNSET) {
+      return C.msToUs(clock.currentTimeMillis() - window.windowStartTimeMs) - positionInWindowUs;
+    } else if (window.durationUs != C.TIME_UNSET) {
+      // Assume that the live edge has advanced in real time since the timeline was refreshed.
+      long timeSinceRefreshUs = C.msToUs(clock.elapsedRealtime() - timelineRefreshRealtimeMs);
+      return window.durationUs + timeSinceRefreshUs - positionInWindowUs;
+    }
+    return C.TIME_UNSET;
+  }
+
+  private void setPlaybackSpeed(float playbackSpeed) throws ExoPlaybackException {
+    if (this.playbackSpeed == playbackSpeed) {
+      return;
+    }
+    this.playbackSpeed = playbackSpeed;
+    standaloneMediaClock.setPlaybackSpeed(playbackSpeed);
+    if (Util.SDK_INT >= 23) {
+      setAudioPlaybackSpeedV23(playbackSpeed);
+    }
+  }
+
+  @TargetApi(23)
+  private void setAudioPlaybackSpeedV23(float playbackSpeed) throws ExoPlaybackException {
+    PlaybackParams playbackParams = new PlaybackParams().setSpeed(playbackSpeed);
+    for (Renderer renderer : renderers) {
+      if (renderer.getTrackType() == C.TRACK_TYPE_AUDIO) {
+        renderer.handleMessage(C.MSG_SET_PLAYBACK_PARAMS, playbackParams);
+      }
+    }
+  }
+
   private void doSomeWork() throws ExoPlaybackException, IOException {
     long operationStartTimeMs = SystemClock.elapsedRealtime();
     updatePeriods();
@@ -456,6 +634,9 @@ import java.io.IOException;
 
     updatePlaybackPositions();
     playingPeriodHolder.mediaPeriod.discardBuffer(playbackInfo.positionUs);
+    if (livePlaybackSpeedControl != null) {
+      updateLivePlaybackSpeed();
+    }
 
     boolean allRenderersEnded = true;
     boolean allRenderersReadyOrEnded = true;
@@ -546,7 +727,7 @@ import java.io.IOException;
       // The seek position was valid for the timeline that it was performed into, but the
       // timeline has changed and a suitable seek position could not be resolved in the new one.
       playbackInfo = new PlaybackInfo(0, 0);
-      eventHandler.obtainMessage(MSG_SEEK_ACK, 1, 0, playbackInfo).sendToTarget();
+      notifyEvent(MSG_SEEK_ACK, 1, playbackInfo);
       // Set the internal position to (0,TIME_UNSET) so that a subsequent seek to (0,0) isn't
       // ignored.
       playbackInfo = new PlaybackInfo(0, C.TIME_UNSET);
@@ -561,6 +742,12 @@ import java.io.IOException;
     long periodPositionUs = periodPosition.second;
 
     try {
+      if (livePlaybackSpeedControl != null) {
+        // Every seek resets the target live offset, even if the position doesn't change, so that
+        // seeking to the default position returns to the target after an explicit seek away from
+        // the live edge.
+        livePlaybackSpeedControl.onPositionReset();
+      }
       if (periodIndex == playbackInfo.periodIndex
           && ((periodPositionUs / 1000) == (playbackInfo.positionUs / 1000))) {
         // Seek position equals the current position. Do nothing.
@@ -571,8 +758,7 @@ import java.io.IOException;
       periodPositionUs = newPeriodPositionUs;
     } finally {
       playbackInfo = new PlaybackInfo(periodIndex, periodPositionUs);
-      eventHandler.obtainMessage(MSG_SEEK_ACK, seekPositionAdjusted ? 1 : 0, 0, playbackInfo)
-          .sendToTarget();
+      notifyEvent(MSG_SEEK_ACK, seekPositionAdjusted ? 1 : 0, playbackInfo);
     }
   }
 
@@ -608,6 +794,7 @@ import java.io.IOException;
       for (Renderer renderer : enabledRenderers) {
         renderer.disable();
       }
+      scheduleDisabledRendererReset();
       enabledRenderers = new Renderer[0];
       rendererMediaClock = null;
       rendererMediaClockSource = null;
@@ -656,6 +843,8 @@ import java.io.IOException;
     resetInternal(true);
     loadControl.onReleased();
     setState(ExoPlayer.STATE_IDLE);
+    // Send the pending events before release returns, so that ExoPlayerImpl can discard them.
+    maybeSendEvents();
     synchronized (this) {
       released = true;
       notifyAll();
@@ -664,6 +853,7 @@ import java.io.IOException;
 
   private void resetInternal(boolean releaseMediaSource) {
     handler.removeMessages(MSG_DO_SOME_WORK);
+    handler.removeMessages(MSG_RESET_DISABLED_RENDERERS);
     rebuffering = false;
     standaloneMediaClock.stop();
     rendererMediaClock = null;
@@ -679,11 +869,26 @@ import java.io.IOException;
       }
     }
     enabledRenderers = new Renderer[0];
+    for (Renderer renderer : renderers) {
+      try {
+        resetRenderer(renderer);
+      } catch (RuntimeException e) {
+        // There's nothing we can do.
+        Log.e(TAG, "Reset failed.", e);
+      }
+    }
+    try {
+      setPlaybackSpeed(1f);
+    } catch (ExoPlaybackException | RuntimeException e) {
+      // There's nothing we can do.
+      Log.e(TAG, "Resetting playback speed failed.", e);
+    }
     releasePeriodHoldersFrom(playingPeriodHolder != null ? playingPeriodHolder
         : loadingPeriodHolder);
     loadingPeriodHolder = null;
     readingPeriodHolder = null;
     playingPeriodHolder = null;
+    loadControlTrackSelectorResult = null;
     setIsLoading(false);
     if (releaseMediaSource) {
       if (mediaSource != null) {
@@ -711,6 +916,38 @@ import java.io.IOException;
     }
   }
 
+  /**
+   * Schedules renderers that are still disabled after {@link #DISABLED_RENDERER_RESET_DELAY_MS}
+   * to be reset, so that they don't hold resources indefinitely. Any previously scheduled reset is
+   * postponed, so every renderer that's reset has been disabled for at least the delay.
+   */
+  private void scheduleDisabledRendererReset() {
+    handler.removeMessages(MSG_RESET_DISABLED_RENDERERS);
+    handler.sendEmptyMessageDelayed(MSG_RESET_DISABLED_RENDERERS,
+        DISABLED_RENDERER_RESET_DELAY_MS);
+  }
+
+  private void resetDisabledRenderers() {
+    for (Renderer renderer : renderers) {
+      if (renderer.getState() == Renderer.STATE_DISABLED) {
+        try {
+          resetRenderer(renderer);
+        } catch (RuntimeException e) {
+          // Playback can continue without the renderer's resources being released.
+          Log.e(TAG, "Reset failed.", e);
+        }
+      }
+    }
+  }
+
+  private static void resetRenderer(Renderer renderer) {
+    // Renderer has no reset method, so only renderers that extend BaseRenderer can be asked to
+    // give up resources that they hold whilst disabled.
+    if (renderer instanceof BaseRenderer) {
+      ((BaseRenderer) renderer).reset();
+    }
+  }
+
   private void ensureStopped(Renderer renderer) throws ExoPlaybackException {
     if (renderer.getState() == Renderer.STATE_STARTED) {
       renderer.stop();
@@ -781,14 +1018,14 @@ import java.io.IOException;
             }
             ensureStopped(renderer);
             renderer.disable();
+            scheduleDisabledRendererReset();
           } else if (streamResetFlags[i]) {
             // The renderer will continue to consume from its current stream, but needs to be reset.
             renderer.resetPosition(rendererPositionUs);
           }
         }
       }
-      eventHandler.obtainMessage(MSG_TRACKS_CHANGED, periodHolder.trackSelectorResult)
-          .sendToTarget();
+      notifyEvent(MSG_TRACKS_CHANGED, 0, periodHolder.trackSelectorResult);
       enableRenderers(rendererWasEnabledFlags, enabledRendererCount);
     } else {
       // Release and re-prepare/buffer periods after the one whose selection changed.
@@ -817,30 +1054,34 @@ import java.io.IOException;
   }
 
   private boolean haveSufficientBuffer(boolean rebuffering) {
-    long loadingPeriodBufferedPositionUs = !loadingPeriodHolder.prepared
-        ? loadingPeriodHolder.startPositionUs
-        : loadingPeriodHolder.mediaPeriod.getBufferedPositionUs();
+    MediaPeriodHolder bufferingPeriodHolder = getBufferingPeriodHolder();
+    long loadingPeriodBufferedPositionUs = !bufferingPeriodHolder.prepared
+        ? bufferingPeriodHolder.startPositionUs
+        : bufferingPeriodHolder.mediaPeriod.getBufferedPositionUs();
     if (loadingPeriodBufferedPositionUs == C.TIME_END_OF_SOURCE) {
-      if (loadingPeriodHolder.isLast) {
+      if (bufferingPeriodHolder.isLast) {
         return true;
       }
-      loadingPeriodBufferedPositionUs = timeline.getPeriod(loadingPeriodHolder.index, period)
+      loadingPeriodBufferedPositionUs = timeline.getPeriod(bufferingPeriodHolder.index, period)
           .getDurationUs();
     }
     return loadControl.shouldStartPlayback(
-        loadingPeriodBufferedPositionUs - loadingPeriodHolder.toPeriodTime(rendererPositionUs),
+        loadingPeriodBufferedPositionUs - bufferingPeriodHolder.toPeriodTime(rendererPositionUs),
         rebuffering);
   }
 
   private void maybeThrowPeriodPrepareError() throws IOException {
-    if (loadingPeriodHolder != null && !loadingPeriodHolder.prepared
-        && (readingPeriodHolder == null || readingPeriodHolder.next == loadingPeriodHolder)) {
+    // Only throw errors for the period that will be read next. Errors preparing periods that are
+    // being prebuffered further ahead are thrown once they are needed.
+    MediaPeriodHolder nextPeriodHolder = readingPeriodHolder == null ? loadingPeriodHolder
+        : readingPeriodHolder.next;
+    if (nextPeriodHolder != null && !nextPeriodHolder.prepared) {
       for (Renderer renderer : enabledRenderers) {
         if (!renderer.hasReadStreamToEnd()) {
           return;
         }
       }
-      loadingPeriodHolder.mediaPeriod.maybeThrowPrepareError();
+      nextPeriodHolder.mediaPeriod.maybeThrowPrepareError();
     }
   }
 
@@ -848,6 +1089,7 @@ import java.io.IOException;
       throws ExoPlaybackException {
     Timeline oldTimeline = timeline;
     timeline = timelineAndManifest.first;
+    timelineRefreshRealtimeMs = clock.elapsedRealtime();
     Object manifest = timelineAndManifest.second;
 
     int processedInitialSeekCount = 0;
@@ -972,8 +1214,8 @@ import java.io.IOException;
   }
 
   private void notifySourceInfoRefresh(Object manifest, int processedInitialSeekCount) {
-    eventHandler.obtainMessage(MSG_SOURCE_INFO_REFRESHED,
-        new SourceInfo(timeline, manifest, playbackInfo, processedInitialSeekCount)).sendToTarget();
+    notifyEvent(MSG_SOURCE_INFO_REFRESHED, 0,
+        new SourceInfo(timeline, manifest, playbackInfo, processedInitialSeekCount));
   }
 
   /**
@@ -1102,9 +1344,11 @@ import java.io.IOException;
 
     // Update the loading period if required.
     maybeUpdateLoadingPeriod();
-    if (loadingPeriodHolder == null || loadingPeriodHolder.isFullyBuffered()) {
+    MediaPeriodHolder bufferingPeriodHolder = getBufferingPeriodHolder();
+    maybeNotifyTracksSelected(bufferingPeriodHolder);
+    if (bufferingPeriodHolder == null || bufferingPeriodHolder.isFullyBuffered()) {
       setIsLoading(false);
-    } else if (loadingPeriodHolder != null && loadingPeriodHolder.needsContinueLoading) {
+    } else if (bufferingPeriodHolder.needsContinueLoading) {
       maybeContinueLoading();
     }
 
@@ -1123,7 +1367,7 @@ import java.io.IOException;
       playbackInfo = new PlaybackInfo(playingPeriodHolder.index,
           playingPeriodHolder.startPositionUs);
       updatePlaybackPositions();
-      eventHandler.obtainMessage(MSG_POSITION_DISCONTINUITY, playbackInfo).sendToTarget();
+      notifyEvent(MSG_POSITION_DISCONTINUITY, 0, playbackInfo);
     }
 
     if (readingPeriodHolder.isLast) {
@@ -1195,10 +1439,17 @@ import java.io.IOException;
       newLoadingPeriodIndex = playbackInfo.periodIndex;
     } else {
       int loadingPeriodIndex = loadingPeriodHolder.index;
-      if (loadingPeriodHolder.isLast || !loadingPeriodHolder.isFullyBuffered()
+      if (loadingPeriodHolder.isLast
           || timeline.getPeriod(loadingPeriodIndex, period).getDurationUs() == C.TIME_UNSET) {
         // Either the existing loading period is the last period, or we are not ready to advance to
-        // loading the next period because it hasn't been fully buffered or its duration is unknown.
+        // loading the next period because its duration is unknown.
+        return;
+      }
+      if (!loadingPeriodHolder.isFullyBuffered() && (playingPeriodHolder == null
+          || !loadingPeriodHolder.prepared || !shouldPrebuffer(
+              loadingPeriodIndex + 1 - getBufferingPeriodHolder().index, 0))) {
+        // The next period can only be prebuffered once playback has started and the periods
+        // before it are prepared, and only if the load control allows it.
         return;
       }
       if (playingPeriodHolder != null
@@ -1260,51 +1511,129 @@ import java.io.IOException;
     }
     loadingPeriodHolder = newPeriodHolder;
     loadingPeriodHolder.mediaPeriod.prepare(this);
-    setIsLoading(true);
+    if (loadingPeriodHolder == getBufferingPeriodHolder()) {
+      setIsLoading(true);
+    }
   }
 
   private void handlePeriodPrepared(MediaPeriod period) throws ExoPlaybackException {
-    if (loadingPeriodHolder == null || loadingPeriodHolder.mediaPeriod != period) {
+    MediaPeriodHolder periodHolder = getBufferingPeriodHolder(period);
+    if (periodHolder == null) {
       // Stale event.
       return;
     }
-    loadingPeriodHolder.handlePrepared();
+    periodHolder.handlePrepared();
     if (playingPeriodHolder == null) {
       // This is the first prepared period, so start playing it.
-      readingPeriodHolder = loadingPeriodHolder;
+      readingPeriodHolder = periodHolder;
       resetRendererPosition(readingPeriodHolder.startPositionUs);
       setPlayingPeriodHolder(readingPeriodHolder);
     }
-    maybeContinueLoading();
+    maybeContinueLoading(periodHolder);
   }
 
   private void handleContinueLoadingRequested(MediaPeriod period) {
-    if (loadingPeriodHolder == null || loadingPeriodHolder.mediaPeriod != period) {
+    MediaPeriodHolder periodHolder = getBufferingPeriodHolder(period);
+    if (periodHolder == null) {
       // Stale event.
       return;
     }
-    maybeContinueLoading();
+    maybeContinueLoading(periodHolder);
+  }
+
+  private void maybeContinueLoading(MediaPeriodHolder periodHolder) {
+    MediaPeriodHolder bufferingPeriodHolder = getBufferingPeriodHolder();
+    if (periodHolder == bufferingPeriodHolder) {
+      maybeContinueLoading();
+    } else {
+      maybeContinuePrebuffering(periodHolder, periodHolder.index - bufferingPeriodHolder.index);
+    }
   }
 
   private void maybeContinueLoading() {
-    long nextLoadPositionUs = !loadingPeriodHolder.prepared ? 0
-        : loadingPeriodHolder.mediaPeriod.getNextLoadPositionUs();
+    MediaPeriodHolder bufferingPeriodHolder = getBufferingPeriodHolder();
+    maybeNotifyTracksSelected(bufferingPeriodHolder);
+    long nextLoadPositionUs = !bufferingPeriodHolder.prepared ? 0
+        : bufferingPeriodHolder.mediaPeriod.getNextLoadPositionUs();
     if (nextLoadPositionUs == C.TIME_END_OF_SOURCE) {
       setIsLoading(false);
     } else {
-      long loadingPeriodPositionUs = loadingPeriodHolder.toPeriodTime(rendererPositionUs);
+      long loadingPeriodPositionUs = bufferingPeriodHolder.toPeriodTime(rendererPositionUs);
       long bufferedDurationUs = nextLoadPositionUs - loadingPeriodPositionUs;
       boolean continueLoading = loadControl.shouldContinueLoading(bufferedDurationUs);
       setIsLoading(continueLoading);
       if (continueLoading) {
-        loadingPeriodHolder.needsContinueLoading = false;
-        loadingPeriodHolder.mediaPeriod.continueLoading(loadingPeriodPositionUs);
+        bufferingPeriodHolder.needsContinueLoading = false;
+        bufferingPeriodHolder.mediaPeriod.continueLoading(loadingPeriodPositionUs);
       } else {
-        loadingPeriodHolder.needsContinueLoading = true;
+        bufferingPeriodHolder.needsContinueLoading = true;
       }
     }
   }
 
+  private void maybeContinuePrebuffering(MediaPeriodHolder periodHolder, int periodsAhead) {
+    long nextLoadPositionUs = !periodHolder.prepared ? periodHolder.startPositionUs
+        : periodHolder.mediaPeriod.getNextLoadPositionUs();
+    if (nextLoadPositionUs == C.TIME_END_OF_SOURCE) {
+      return;
+    }
+    long bufferedDurationUs = nextLoadPositionUs - periodHolder.startPositionUs;
+    if (shouldPrebuffer(periodsAhead, bufferedDurationUs)) {
+      periodHolder.needsContinueLoading = false;
+      periodHolder.mediaPeriod.continueLoading(periodHolder.startPositionUs);
+    } else {
+      // Loading will continue once the period is the one being buffered for playback.
+      periodHolder.needsContinueLoading = true;
+    }
+  }
+
+  /**
+   * Notifies the {@link LoadControl} of the track selection of {@code bufferingPeriodHolder}, if it
+   * is prepared and the load control has not yet been notified of that selection. Selections of
+   * periods that are being prebuffered are only passed on once they become the buffering period, so
+   * that they don't affect the buffer targets of the periods before them.
+   */
+  private void maybeNotifyTracksSelected(MediaPeriodHolder bufferingPeriodHolder) {
+    if (bufferingPeriodHolder == null || !bufferingPeriodHolder.prepared
+        || bufferingPeriodHolder.trackSelectorResult == loadControlTrackSelectorResult) {
+      return;
+    }
+    loadControlTrackSelectorResult = bufferingPeriodHolder.trackSelectorResult;
+    loadControl.onTracksSelected(renderers, loadControlTrackSelectorResult.groups,
+        loadControlTrackSelectorResult.selections);
+  }
+
+  private boolean shouldPrebuffer(int periodsAhead, long bufferedDurationUs) {
+    return loadControl instanceof PrebufferingLoadControl && ((PrebufferingLoadControl) loadControl)
+        .shouldPrebuffer(periodsAhead, bufferedDurationUs);
+  }
+
+  /**
+   * Returns the holder of the first period that is not fully buffered, or the last holder if all
+   * periods are fully buffered. This is the period whose loading is controlled by the
+   * {@link LoadControl}'s buffer durations. Any later holders are prebuffering.
+   */
+  private MediaPeriodHolder getBufferingPeriodHolder() {
+    MediaPeriodHolder periodHolder = playingPeriodHolder != null ? playingPeriodHolder
+        : loadingPeriodHolder;
+    while (periodHolder != loadingPeriodHolder && periodHolder.isFullyBuffered()) {
+      periodHolder = periodHolder.next;
+    }
+    return periodHolder;
+  }
+
+  /**
+   * Returns the holder of {@code period} if it is the holder returned by
+   * {@link #getBufferingPeriodHolder()} or one after it, or null otherwise.
+   */
+  private MediaPeriodHolder getBufferingPeriodHolder(MediaPeriod period) {
+    MediaPeriodHolder periodHolder = getBufferingPeriodHolder();
+    while (periodHolder != null && periodHolder.mediaPeriod != period) {
+      periodHolder = periodHolder.next;
+    }
+    return periodHolder;
+  }
+
   private void releasePeriodHoldersFrom(MediaPeriodHolder periodHolder) {
     while (periodHolder != null) {
       periodHolder.release();
@@ -1340,11 +1669,12 @@ import java.io.IOException;
         }
         ensureStopped(renderer);
         renderer.disable();
+        scheduleDisabledRendererReset();
       }
     }
 
     playingPeriodHolder = periodHolder;
-    eventHandler.obtainMessage(MSG_TRACKS_CHANGED, periodHolder.trackSelectorResult).sendToTarget();
+    notifyEvent(MSG_TRACKS_CHANGED, 0, periodHolder.trackSelectorResult);
     enableRenderers(rendererWasEnabledFlags, enabledRendererCount);
   }
 
@@ -1413,7 +1743,6 @@ import java.io.IOException;
     private final Renderer[] renderers;
     private final RendererCapabilities[] rendererCapabilities;
     private final TrackSelector trackSelector;
-    private final LoadControl loadControl;
     private final MediaSource mediaSource;
 
     private TrackSelectorResult periodTrackSelectorResult;
@@ -1426,7 +1755,6 @@ import java.io.IOException;
       this.rendererCapabilities = rendererCapabilities;
       this.rendererPositionOffsetUs = rendererPositionOffsetUs;
       this.trackSelector = trackSelector;
-      this.loadControl = loadControl;
       this.mediaSource = mediaSource;
       this.uid = Assertions.checkNotNull(periodUid);
       this.index = periodIndex;
@@ -1504,9 +1832,6 @@ import java.io.IOException;
           Assertions.checkState(trackSelections.get(i) == null);
         }
       }
-
-      // The track selection has changed.
-      loadControl.onTracksSelected(renderers, trackSelectorResult.groups, trackSelections);
       return positionUs;
     }
 
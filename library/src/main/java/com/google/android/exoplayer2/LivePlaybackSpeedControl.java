@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+/**
+ * Controls the playback speed of live streams, so that playback converges on a target offset from
+ * the live edge.
+ * <p>
+ * The player asks for a speed while it is playing a dynamic window whose live edge can be
+ * determined, and plays at normal speed otherwise. Adjusting the speed of audio playback requires
+ * API level 23 or above, and overrides the speed of any {@link android.media.PlaybackParams} set on
+ * the audio renderers.
+ */
+public interface LivePlaybackSpeedControl {
+
+  /**
+   * Called by the player to determine the speed at which to play.
+   *
+   * @param liveOffsetUs The current offset of the playback position from the live edge, in
+   *     microseconds.
+   * @param bufferedDurationUs The duration of media that is buffered ahead of the playback
+   *     position, in microseconds.
+   * @return The playback speed to use.
+   */
+  float getAdjustedPlaybackSpeed(long liveOffsetUs, long bufferedDurationUs);
+
+  /**
+   * Called by the player when the playback position is changed by a seek.
+   */
+  void onPositionReset();
+
+}
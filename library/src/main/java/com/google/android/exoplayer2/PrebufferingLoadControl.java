@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+/**
+ * A {@link LoadControl} that allows the player to prepare and load the periods that follow the
+ * period being buffered for playback, before that period has been fully buffered. Media loaded in
+ * this way allows playback to move into the next period without waiting for it to load.
+ * <p>
+ * The player only prebuffers if its {@link LoadControl} implements this interface.
+ */
+public interface PrebufferingLoadControl extends LoadControl {
+
+  /**
+   * Called by the player to determine whether it should prepare and load a period that follows the
+   * period being buffered for playback.
+   *
+   * @param periodsAhead The number of periods between the period being buffered for playback and
+   *     the period to prebuffer. This is 1 for the period that immediately follows it.
+   * @param bufferedDurationUs The duration of media that's currently buffered for the period to
+   *     prebuffer.
+   * @return Whether the period should be prepared, or its loading should continue.
+   */
+  boolean shouldPrebuffer(int periodsAhead, long bufferedDurationUs);
+
+}
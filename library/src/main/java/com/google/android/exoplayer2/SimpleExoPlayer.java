@@ -150,6 +150,14 @@ public class SimpleExoPlayer implements ExoPlayer {
   protected SimpleExoPlayer(Context context, TrackSelector trackSelector, LoadControl loadControl,
       DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
       @ExtensionRendererMode int extensionRendererMode, long allowedVideoJoiningTimeMs) {
+    this(context, trackSelector, loadControl, drmSessionManager, extensionRendererMode,
+        allowedVideoJoiningTimeMs, null);
+  }
+
+  protected SimpleExoPlayer(Context context, TrackSelector trackSelector, LoadControl loadControl,
+      DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+      @ExtensionRendererMode int extensionRendererMode, long allowedVideoJoiningTimeMs,
+      LivePlaybackSpeedControl livePlaybackSpeedControl) {
     mainHandler = new Handler();
     componentListener = new ComponentListener();
 
@@ -182,7 +190,7 @@ public class SimpleExoPlayer implements ExoPlayer {
     videoScalingMode = C.VIDEO_SCALING_MODE_DEFAULT;
 
     // Build the player and associated objects.
-    player = new ExoPlayerImpl(renderers, trackSelector, loadControl);
+    player = new ExoPlayerImpl(renderers, trackSelector, loadControl, livePlaybackSpeedControl);
   }
 
   /**
@@ -32,6 +32,11 @@ public final class DecoderCounters {
    * The number of times a decoder has been released.
    */
   public int decoderReleaseCount;
+  /**
+   * The number of times a decoder kept whilst the renderer was disabled has been reused, rather
+   * than being released and re-initialized.
+   */
+  public int decoderReuseCount;
   /**
    * The number of queued input buffers.
    */
@@ -59,6 +64,14 @@ public final class DecoderCounters {
    * Skipped output buffers are ignored for the purposes of calculating this value.
    */
   public int maxConsecutiveDroppedOutputBufferCount;
+  /**
+   * The number of times all buffers up to a keyframe were dropped.
+   * <p>
+   * Each time buffers are dropped to a keyframe, the decoder is flushed and subsequent input is
+   * discarded until the next keyframe is read, so that a decoder that's fallen far behind playback
+   * can catch up.
+   */
+  public int droppedToKeyframeCount;
 
   /**
    * Should be called to ensure counter values are made visible across threads. The playback thread
@@ -78,12 +91,14 @@ public final class DecoderCounters {
   public void merge(DecoderCounters other) {
     decoderInitCount += other.decoderInitCount;
     decoderReleaseCount += other.decoderReleaseCount;
+    decoderReuseCount += other.decoderReuseCount;
     inputBufferCount += other.inputBufferCount;
     renderedOutputBufferCount += other.renderedOutputBufferCount;
     skippedOutputBufferCount += other.skippedOutputBufferCount;
     droppedOutputBufferCount += other.droppedOutputBufferCount;
     maxConsecutiveDroppedOutputBufferCount = Math.max(maxConsecutiveDroppedOutputBufferCount,
         other.maxConsecutiveDroppedOutputBufferCount);
+    droppedToKeyframeCount += other.droppedToKeyframeCount;
   }
 
 }
@@ -137,6 +137,9 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
   private String schemeMimeType;
   private byte[] sessionId;
   private byte[] offlineLicenseKeySetId;
+  private DrmLicenseCache licenseCache;
+  private DrmInitData cachedLicenseDrmInitData;
+  private byte[] cachedLicenseKeySetId;
 
   /**
    * Instantiates a new instance using the Widevine scheme.
@@ -305,6 +308,22 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     this.offlineLicenseKeySetId = offlineLicenseKeySetId;
   }
 
+  /**
+   * Sets a cache of offline licenses to consult when a session is acquired in
+   * {@link #MODE_PLAYBACK} without an offline license key set id. If the cache holds a license for
+   * the session's {@link DrmInitData} then its keys are restored instead of requesting a streaming
+   * license. If restoring fails, or the license has expired or will expire soon, the entry is
+   * removed from the cache and a streaming license is requested instead. This must be called
+   * before {@link #acquireSession(Looper, DrmInitData)} is called.
+   *
+   * @param licenseCache The cache to consult, or null to disable the use of a cache.
+   */
+  public void setLicenseCache(DrmLicenseCache licenseCache) {
+    Assertions.checkState(openCount == 0);
+    Assertions.checkArgument(licenseCache == null || uuid.equals(licenseCache.getUuid()));
+    this.licenseCache = licenseCache;
+  }
+
   // DrmSessionManager implementation.
 
   @Override
@@ -347,6 +366,10 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
         // Prior to API level 26 the ClearKey CDM only accepted "cenc" as the scheme for MP4.
         schemeMimeType = CENC_SCHEME_MIME_TYPE;
       }
+      if (mode == MODE_PLAYBACK && licenseCache != null) {
+        cachedLicenseKeySetId = licenseCache.get(drmInitData);
+        cachedLicenseDrmInitData = cachedLicenseKeySetId != null ? drmInitData : null;
+      }
     }
     state = STATE_OPENING;
     openInternal(true);
@@ -368,6 +391,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     requestHandlerThread = null;
     schemeInitData = null;
     schemeMimeType = null;
+    cachedLicenseDrmInitData = null;
+    cachedLicenseKeySetId = null;
     mediaCrypto = null;
     lastException = null;
     if (sessionId != null) {
@@ -476,7 +501,11 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     switch (mode) {
       case MODE_PLAYBACK:
       case MODE_QUERY:
-        if (offlineLicenseKeySetId == null) {
+        if (offlineLicenseKeySetId == null && cachedLicenseKeySetId != null) {
+          if (!restoreCachedKeys()) {
+            postKeyRequest(sessionId, MediaDrm.KEY_TYPE_STREAMING);
+          }
+        } else if (offlineLicenseKeySetId == null) {
           postKeyRequest(sessionId, MediaDrm.KEY_TYPE_STREAMING);
         } else {
           if (restoreKeys()) {
@@ -531,6 +560,32 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     return false;
   }
 
+  private boolean restoreCachedKeys() {
+    try {
+      mediaDrm.restoreKeys(sessionId, cachedLicenseKeySetId);
+      long licenseDurationRemainingSec = getLicenseDurationRemainingSec();
+      if (licenseDurationRemainingSec > MAX_LICENSE_DURATION_TO_RENEW) {
+        state = STATE_OPENED_WITH_KEYS;
+        if (eventHandler != null && eventListener != null) {
+          eventHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              eventListener.onDrmKeysRestored();
+            }
+          });
+        }
+        return true;
+      }
+    } catch (Exception e) {
+      Log.w(TAG, "Error trying to restore cached keys.", e);
+    }
+    // Fall back to a streaming license, and don't try to use the cached license again.
+    licenseCache.remove(cachedLicenseDrmInitData);
+    cachedLicenseDrmInitData = null;
+    cachedLicenseKeySetId = null;
+    return false;
+  }
+
   private long getLicenseDurationRemainingSec() {
     if (!C.WIDEVINE_UUID.equals(uuid)) {
       return Long.MAX_VALUE;
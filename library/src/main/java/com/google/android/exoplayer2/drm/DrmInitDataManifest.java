@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import java.util.List;
+
+/**
+ * A manifest that declares the {@link DrmInitData} of the media that it describes, allowing
+ * licenses to be acquired before the media itself is loaded.
+ */
+public interface DrmInitDataManifest {
+
+  /**
+   * Returns the distinct {@link DrmInitData} declared by the manifest.
+   *
+   * @return The distinct {@link DrmInitData} declared by the manifest. May be empty.
+   */
+  List<DrmInitData> getDrmInitDatas();
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import com.google.android.exoplayer2.drm.DrmInitData.SchemeData;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A bounded, least recently used cache of offline license key set ids, keyed by the scheme
+ * initialization data (e.g. the PSSH box) for which each license was acquired.
+ * <p>
+ * Entries are typically added by a {@link DrmLicensePrefetcher} and consumed by a
+ * {@link DefaultDrmSessionManager} to which the cache has been set, so that the keys for an item
+ * can be restored from the CDM rather than requested from the license server when playback of the
+ * item starts. When an entry is evicted, replaced or removed, the {@link Listener} is notified so
+ * that the corresponding license can be released. A {@link DrmLicensePrefetcher} using the cache
+ * releases the licenses of removed entries.
+ * <p>
+ * This class is thread safe.
+ */
+public final class DrmLicenseCache {
+
+  /**
+   * Listener of key set ids being removed from a {@link DrmLicenseCache}.
+   */
+  public interface Listener {
+
+    /**
+     * Called when a key set id is no longer cached, because its entry was evicted, replaced or
+     * removed. Called on the thread that modified the cache, without the cache's lock held.
+     *
+     * @param keySetId The key set id of the license that is no longer cached.
+     */
+    void onKeySetIdRemoved(byte[] keySetId);
+
+  }
+
+  /**
+   * The default maximum number of entries.
+   */
+  public static final int DEFAULT_MAX_ENTRY_COUNT = 16;
+
+  private final UUID uuid;
+  private final LinkedHashMap<SchemeData, byte[]> keySetIds;
+
+  private Listener listener;
+  private byte[] evictedKeySetId;
+
+  /**
+   * Constructs an instance with {@link #DEFAULT_MAX_ENTRY_COUNT}.
+   *
+   * @param uuid The UUID of the DRM scheme whose licenses are cached.
+   */
+  public DrmLicenseCache(UUID uuid) {
+    this(uuid, DEFAULT_MAX_ENTRY_COUNT);
+  }
+
+  /**
+   * @param uuid The UUID of the DRM scheme whose licenses are cached.
+   * @param maxEntryCount The maximum number of entries. When exceeded, the least recently used
+   *     entry is evicted.
+   */
+  public DrmLicenseCache(UUID uuid, final int maxEntryCount) {
+    Assertions.checkArgument(maxEntryCount > 0);
+    this.uuid = Assertions.checkNotNull(uuid);
+    keySetIds = new LinkedHashMap<SchemeData, byte[]>(maxEntryCount + 1, 1, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<SchemeData, byte[]> eldest) {
+        if (size() > maxEntryCount) {
+          evictedKeySetId = eldest.getValue();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Sets the listener to be notified when key set ids are removed from the cache.
+   *
+   * @param listener The listener, or null to clear the listener.
+   */
+  public synchronized void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the UUID of the DRM scheme whose licenses are cached.
+   */
+  public UUID getUuid() {
+    return uuid;
+  }
+
+  /**
+   * Returns the cached key set id for the given initialization data, or null if none is cached.
+   *
+   * @param drmInitData The initialization data.
+   * @return The cached key set id, or null.
+   */
+  public synchronized byte[] get(DrmInitData drmInitData) {
+    SchemeData schemeData = drmInitData.get(uuid);
+    return schemeData == null ? null : keySetIds.get(schemeData);
+  }
+
+  /**
+   * Caches a key set id for the given initialization data. Does nothing if the initialization
+   * data has no data for the cached scheme.
+   *
+   * @param drmInitData The initialization data for which the license was acquired.
+   * @param keySetId The key set id of the license.
+   */
+  public void put(DrmInitData drmInitData, byte[] keySetId) {
+    SchemeData schemeData = drmInitData.get(uuid);
+    if (schemeData == null) {
+      return;
+    }
+    Assertions.checkNotNull(keySetId);
+    byte[] replacedKeySetId;
+    byte[] evictedKeySetId;
+    Listener listener;
+    synchronized (this) {
+      replacedKeySetId = keySetIds.put(schemeData, keySetId);
+      evictedKeySetId = this.evictedKeySetId;
+      this.evictedKeySetId = null;
+      listener = this.listener;
+    }
+    if (replacedKeySetId != null && !Arrays.equals(replacedKeySetId, keySetId)) {
+      notifyKeySetIdRemoved(listener, replacedKeySetId);
+    }
+    notifyKeySetIdRemoved(listener, evictedKeySetId);
+  }
+
+  /**
+   * Removes the key set id cached for the given initialization data, if any.
+   *
+   * @param drmInitData The initialization data.
+   */
+  public void remove(DrmInitData drmInitData) {
+    SchemeData schemeData = drmInitData.get(uuid);
+    if (schemeData == null) {
+      return;
+    }
+    byte[] removedKeySetId;
+    Listener listener;
+    synchronized (this) {
+      removedKeySetId = keySetIds.remove(schemeData);
+      listener = this.listener;
+    }
+    notifyKeySetIdRemoved(listener, removedKeySetId);
+  }
+
+  /**
+   * Returns the number of cached entries.
+   */
+  public synchronized int size() {
+    return keySetIds.size();
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    List<byte[]> removedKeySetIds;
+    Listener listener;
+    synchronized (this) {
+      removedKeySetIds = new ArrayList<>(keySetIds.values());
+      keySetIds.clear();
+      listener = this.listener;
+    }
+    for (int i = 0; i < removedKeySetIds.size(); i++) {
+      notifyKeySetIdRemoved(listener, removedKeySetIds.get(i));
+    }
+  }
+
+  private static void notifyKeySetIdRemoved(Listener listener, byte[] keySetId) {
+    if (listener != null && keySetId != null) {
+      listener.onKeySetIdRemoved(keySetId);
+    }
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import com.google.android.exoplayer2.drm.DrmSession.DrmSessionException;
+import java.util.HashSet;
+
+/**
+ * Acquires offline licenses ahead of playback on a background thread, and stores their key set ids
+ * in a {@link DrmLicenseCache}.
+ * <p>
+ * A typical use is to prefetch the licenses of upcoming playlist items while the current item is
+ * playing, so that a {@link DefaultDrmSessionManager} using the same cache can restore the keys of
+ * each item without a license request when playback of the item starts. Note that the license
+ * server must grant offline (persistable) licenses for prefetched licenses to be restorable.
+ * <p>
+ * Licenses whose key set ids are removed from the cache, for example because they are evicted to
+ * make room for newer ones, are released so that they don't remain persisted by the CDM.
+ */
+public final class DrmLicensePrefetcher implements DrmLicenseCache.Listener {
+
+  private static final String TAG = "DrmLicensePrefetcher";
+
+  private final OfflineLicenseHelper<?> offlineLicenseHelper;
+  private final DrmLicenseCache licenseCache;
+  private final HandlerThread handlerThread;
+  private final Handler handler;
+  private final HashSet<DrmInitData> pendingDrmInitDatas;
+
+  private boolean released;
+
+  /**
+   * @param offlineLicenseHelper The helper used to download licenses. The prefetcher takes
+   *     ownership of the helper, which is released when the prefetcher is released.
+   * @param licenseCache The cache into which the key set ids of downloaded licenses are put. The
+   *     prefetcher sets itself as the cache's listener until it is released.
+   */
+  public DrmLicensePrefetcher(OfflineLicenseHelper<?> offlineLicenseHelper,
+      DrmLicenseCache licenseCache) {
+    this.offlineLicenseHelper = offlineLicenseHelper;
+    this.licenseCache = licenseCache;
+    pendingDrmInitDatas = new HashSet<>();
+    handlerThread = new HandlerThread("DrmLicensePrefetcher");
+    handlerThread.start();
+    handler = new Handler(handlerThread.getLooper());
+    licenseCache.setListener(this);
+  }
+
+  /**
+   * Returns the cache into which the key set ids of downloaded licenses are put.
+   */
+  public DrmLicenseCache getLicenseCache() {
+    return licenseCache;
+  }
+
+  /**
+   * Requests that the license for the given initialization data is acquired in the background.
+   * Does nothing if the license is already cached or being acquired.
+   * <p>
+   * This method may be called from any thread.
+   *
+   * @param drmInitData The initialization data of the content whose license should be acquired.
+   */
+  public void prefetch(final DrmInitData drmInitData) {
+    if (drmInitData.get(licenseCache.getUuid()) == null || licenseCache.get(drmInitData) != null) {
+      return;
+    }
+    synchronized (this) {
+      if (released || !pendingDrmInitDatas.add(drmInitData)) {
+        return;
+      }
+    }
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (!isReleased() && licenseCache.get(drmInitData) == null) {
+            byte[] keySetId = offlineLicenseHelper.download(drmInitData);
+            if (keySetId != null && keySetId.length != 0) {
+              licenseCache.put(drmInitData, keySetId);
+            }
+          }
+        } catch (DrmSessionException e) {
+          Log.w(TAG, "Failed to prefetch license.", e);
+        } finally {
+          synchronized (DrmLicensePrefetcher.this) {
+            pendingDrmInitDatas.remove(drmInitData);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until all prefetches requested before the call have completed.
+   */
+  public void blockUntilIdle() {
+    final ConditionVariable idle = new ConditionVariable();
+    if (!handler.post(new Runnable() {
+      @Override
+      public void run() {
+        idle.open();
+      }
+    })) {
+      return;
+    }
+    idle.block();
+  }
+
+  /**
+   * Releases the prefetcher. Pending prefetches are abandoned. Licenses that have already been
+   * cached remain in the cache, but are no longer released when removed from it.
+   */
+  public void release() {
+    synchronized (this) {
+      released = true;
+      pendingDrmInitDatas.clear();
+    }
+    licenseCache.setListener(null);
+    // Pending prefetches are skipped, but pending license releases still run before the thread
+    // quits.
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        offlineLicenseHelper.releaseResources();
+        handlerThread.quit();
+      }
+    });
+  }
+
+  // DrmLicenseCache.Listener implementation.
+
+  @Override
+  public void onKeySetIdRemoved(final byte[] keySetId) {
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          offlineLicenseHelper.release(keySetId);
+        } catch (DrmSessionException e) {
+          Log.w(TAG, "Failed to release license.", e);
+        }
+      }
+    });
+  }
+
+  private synchronized boolean isReleased() {
+    return released;
+  }
+
+}
@@ -185,6 +185,18 @@ public final class OfflineLicenseHelper<T extends ExoMediaCrypto> {
         return null;
       }
     }
+    return download(drmInitData);
+  }
+
+  /**
+   * Downloads an offline license.
+   *
+   * @param drmInitData The {@link DrmInitData} of the content.
+   * @return The downloaded offline license key set id.
+   * @throws DrmSessionException Thrown when there is an error during DRM session.
+   */
+  public byte[] download(DrmInitData drmInitData) throws DrmSessionException {
+    Assertions.checkNotNull(drmInitData);
     blockingKeyRequest(DefaultDrmSessionManager.MODE_DOWNLOAD, null, drmInitData);
     return drmSessionManager.getOfflineLicenseKeySetId();
   }
@@ -234,10 +246,11 @@ public final class OfflineLicenseHelper<T extends ExoMediaCrypto> {
     DrmSession<T> session = openBlockingKeyRequest(licenseMode, offlineLicenseKeySetId,
         drmInitData);
     DrmSessionException error = session.getError();
+    // Release the session before throwing, so that the helper can be used again after an error.
+    drmSessionManager.releaseSession(session);
     if (error != null) {
       throw error;
     }
-    drmSessionManager.releaseSession(session);
   }
 
   private DrmSession<T> openBlockingKeyRequest(@Mode int licenseMode, byte[] offlineLicenseKeySetId,
@@ -38,8 +38,9 @@ import java.util.List;
  */
 public final class DefaultExtractorsFactory implements ExtractorsFactory {
 
-  // Lazily initialized default extractor classes in priority order.
+  // Lazily initialized default extractor classes in priority order, and the file types they read.
   private static List<Class<? extends Extractor>> defaultExtractorClasses;
+  private static List<Integer> defaultExtractorFileTypes;
 
   /**
    * Creates a new factory for the default extractors.
@@ -49,6 +50,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
       if (defaultExtractorClasses == null) {
         // Lazily initialize defaultExtractorClasses.
         List<Class<? extends Extractor>> extractorClasses = new ArrayList<>();
+        List<Integer> fileTypes = new ArrayList<>();
         // We reference extractors using reflection so that they can be deleted cleanly.
         // Class.forName is used so that automated tools like proguard can detect the use of
         // reflection (see http://proguard.sourceforge.net/FAQ.html#forname).
@@ -56,6 +58,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.MATROSKA);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -63,6 +66,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.MP4);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -70,6 +74,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.mp4.Mp4Extractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.MP4);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -77,6 +82,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.mp3.Mp3Extractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.MP3);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -84,6 +90,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.ts.AdtsExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.ADTS);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -91,6 +98,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.ts.Ac3Extractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.AC3);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -98,6 +106,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.ts.TsExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.TS);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -105,6 +114,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.flv.FlvExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.FLV);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -112,6 +122,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.ogg.OggExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.OGG);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -119,6 +130,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.ts.PsExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.PS);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -126,6 +138,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.extractor.wav.WavExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.WAV);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -133,10 +146,12 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
           extractorClasses.add(
               Class.forName("com.google.android.exoplayer2.ext.flac.FlacExtractor")
                   .asSubclass(Extractor.class));
+          fileTypes.add(FileTypes.FLAC);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
         defaultExtractorClasses = extractorClasses;
+        defaultExtractorFileTypes = fileTypes;
       }
     }
   }
@@ -145,14 +160,43 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   public Extractor[] createExtractors() {
     Extractor[] extractors = new Extractor[defaultExtractorClasses.size()];
     for (int i = 0; i < extractors.length; i++) {
-      try {
-        extractors[i] = defaultExtractorClasses.get(i).getConstructor().newInstance();
-      } catch (Exception e) {
-        // Should never happen.
-        throw new IllegalStateException("Unexpected error creating default extractor", e);
-      }
+      extractors[i] = createExtractor(i);
     }
     return extractors;
   }
 
+  /**
+   * Returns the number of extractors returned by {@link #createExtractors()}.
+   */
+  public int getExtractorCount() {
+    return defaultExtractorClasses.size();
+  }
+
+  /**
+   * Returns the {@link FileTypes.Type} read by an extractor.
+   *
+   * @param index The index of the extractor in the array returned by {@link #createExtractors()}.
+   * @return The file type read by the extractor.
+   */
+  @FileTypes.Type
+  public int getExtractorFileType(int index) {
+    return defaultExtractorFileTypes.get(index);
+  }
+
+  /**
+   * Creates a single extractor. Allows extractors to be instantiated lazily, for example only
+   * when the file type they read has been inferred from hints about the input.
+   *
+   * @param index The index of the extractor in the array returned by {@link #createExtractors()}.
+   * @return A new instance of the extractor.
+   */
+  public Extractor createExtractor(int index) {
+    try {
+      return defaultExtractorClasses.get(index).getConstructor().newInstance();
+    } catch (Exception e) {
+      // Should never happen.
+      throw new IllegalStateException("Unexpected error creating default extractor", e);
+    }
+  }
+
 }
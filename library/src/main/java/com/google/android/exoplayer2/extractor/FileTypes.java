@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import android.net.Uri;
+import android.support.annotation.IntDef;
+import android.text.TextUtils;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Infers the container file type of media from cheap hints: the MIME type of the response, the
+ * extension of the {@link Uri} and the first bytes of the stream.
+ * <p>
+ * Inferred file types are hints only. The extractor for the inferred type should still be asked
+ * to {@link Extractor#sniff(ExtractorInput)} the stream.
+ */
+public final class FileTypes {
+
+  /**
+   * File types. One of {@link #UNKNOWN}, {@link #AC3}, {@link #ADTS}, {@link #FLAC}, {@link #FLV},
+   * {@link #MATROSKA}, {@link #MP3}, {@link #MP4}, {@link #OGG}, {@link #PS}, {@link #TS} or
+   * {@link #WAV}.
+   */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({UNKNOWN, AC3, ADTS, FLAC, FLV, MATROSKA, MP3, MP4, OGG, PS, TS, WAV})
+  public @interface Type {}
+  /**
+   * Unknown file type.
+   */
+  public static final int UNKNOWN = -1;
+  /**
+   * File type for the AC-3 and E-AC-3 formats.
+   */
+  public static final int AC3 = 0;
+  /**
+   * File type for the ADTS format.
+   */
+  public static final int ADTS = 1;
+  /**
+   * File type for the FLAC format.
+   */
+  public static final int FLAC = 2;
+  /**
+   * File type for the FLV format.
+   */
+  public static final int FLV = 3;
+  /**
+   * File type for the Matroska and WebM formats.
+   */
+  public static final int MATROSKA = 4;
+  /**
+   * File type for the MP3 format.
+   */
+  public static final int MP3 = 5;
+  /**
+   * File type for the MP4 format, including fragmented MP4.
+   */
+  public static final int MP4 = 6;
+  /**
+   * File type for the Ogg format.
+   */
+  public static final int OGG = 7;
+  /**
+   * File type for the MPEG-PS format.
+   */
+  public static final int PS = 8;
+  /**
+   * File type for the MPEG-TS format.
+   */
+  public static final int TS = 9;
+  /**
+   * File type for the WAV format.
+   */
+  public static final int WAV = 10;
+
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int PROBE_LENGTH = 12;
+
+  private static final int ID_EBML = 0x1A45DFA3;
+  private static final int ID_OGGS = Util.getIntegerCodeForString("OggS");
+  private static final int ID_FLAC = Util.getIntegerCodeForString("fLaC");
+  private static final int ID_RIFF = Util.getIntegerCodeForString("RIFF");
+  private static final int ID_WAVE = Util.getIntegerCodeForString("WAVE");
+  private static final int ID_FTYP = Util.getIntegerCodeForString("ftyp");
+  private static final int ID_MOOV = Util.getIntegerCodeForString("moov");
+  private static final int ID_MOOF = Util.getIntegerCodeForString("moof");
+  private static final int ID_STYP = Util.getIntegerCodeForString("styp");
+  private static final int ID_SIDX = Util.getIntegerCodeForString("sidx");
+  private static final int ID_FLV = Util.getIntegerCodeForString("FLV");
+  private static final int ID_ID3 = Util.getIntegerCodeForString("ID3");
+  private static final int PACK_START_CODE = 0x000001BA;
+  private static final int AC3_SYNC_WORD = 0x0B77;
+  private static final int TS_SYNC_BYTE = 0x47;
+
+  private FileTypes() {}
+
+  /**
+   * Returns the file type inferred from the Content-Type of the given response headers.
+   *
+   * @param responseHeaders The response headers, or null.
+   * @return The inferred file type, or {@link #UNKNOWN}.
+   */
+  @Type
+  public static int inferFileTypeFromResponseHeaders(Map<String, List<String>> responseHeaders) {
+    if (responseHeaders == null) {
+      return UNKNOWN;
+    }
+    for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+      if (HEADER_CONTENT_TYPE.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+          && !header.getValue().isEmpty()) {
+        return inferFileTypeFromMimeType(header.getValue().get(0));
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Returns the file type inferred from a MIME type.
+   *
+   * @param mimeType The MIME type, possibly with parameters, or null.
+   * @return The inferred file type, or {@link #UNKNOWN}.
+   */
+  @Type
+  public static int inferFileTypeFromMimeType(String mimeType) {
+    if (TextUtils.isEmpty(mimeType)) {
+      return UNKNOWN;
+    }
+    int parametersIndex = mimeType.indexOf(';');
+    if (parametersIndex != -1) {
+      mimeType = mimeType.substring(0, parametersIndex);
+    }
+    switch (Util.toLowerInvariant(mimeType.trim())) {
+      case "audio/ac3":
+      case "audio/eac3":
+        return AC3;
+      case "audio/aac":
+      case "audio/aacp":
+      case "audio/x-aac":
+        return ADTS;
+      case "audio/flac":
+      case "audio/x-flac":
+        return FLAC;
+      case "video/x-flv":
+        return FLV;
+      case "video/webm":
+      case "audio/webm":
+      case "application/webm":
+      case "video/x-matroska":
+      case "audio/x-matroska":
+        return MATROSKA;
+      case "audio/mpeg":
+      case "audio/mp3":
+        return MP3;
+      case "video/mp4":
+      case "audio/mp4":
+      case "application/mp4":
+      case "audio/x-m4a":
+      case "video/quicktime":
+        return MP4;
+      case "audio/ogg":
+      case "video/ogg":
+      case "application/ogg":
+        return OGG;
+      case "video/mp2p":
+      case "video/mpeg":
+        return PS;
+      case "video/mp2t":
+        return TS;
+      case "audio/wav":
+      case "audio/wave":
+      case "audio/x-wav":
+        return WAV;
+      default:
+        return UNKNOWN;
+    }
+  }
+
+  /**
+   * Returns the file type inferred from the extension of the last path segment of a {@link Uri}.
+   *
+   * @param uri The {@link Uri}.
+   * @return The inferred file type, or {@link #UNKNOWN}.
+   */
+  @Type
+  public static int inferFileTypeFromUri(Uri uri) {
+    String lastPathSegment = uri.getLastPathSegment();
+    if (lastPathSegment == null) {
+      return UNKNOWN;
+    }
+    int extensionIndex = lastPathSegment.lastIndexOf('.');
+    if (extensionIndex == -1) {
+      return UNKNOWN;
+    }
+    switch (Util.toLowerInvariant(lastPathSegment.substring(extensionIndex + 1))) {
+      case "ac3":
+      case "ec3":
+        return AC3;
+      case "aac":
+      case "adts":
+        return ADTS;
+      case "flac":
+        return FLAC;
+      case "flv":
+        return FLV;
+      case "mkv":
+      case "mka":
+      case "webm":
+        return MATROSKA;
+      case "mp3":
+        return MP3;
+      case "mp4":
+      case "m4a":
+      case "m4v":
+      case "mov":
+      case "3gp":
+        return MP4;
+      case "ogg":
+      case "oga":
+      case "ogv":
+      case "opus":
+        return OGG;
+      case "ps":
+      case "mpg":
+      case "mpeg":
+      case "vob":
+        return PS;
+      case "ts":
+      case "m2ts":
+      case "mts":
+        return TS;
+      case "wav":
+      case "wave":
+        return WAV;
+      default:
+        return UNKNOWN;
+    }
+  }
+
+  /**
+   * Returns the file type inferred from the magic number at the start of the input. The peek
+   * position of the input is reset before returning.
+   * <p>
+   * Streams starting with an ID3 tag may be in one of several formats, and are reported as
+   * {@link #UNKNOWN}.
+   *
+   * @param input The input, whose peek position must be at the start of the stream.
+   * @return The inferred file type, or {@link #UNKNOWN}.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread was interrupted.
+   */
+  @Type
+  public static int inferFileTypeFromHeader(ExtractorInput input)
+      throws IOException, InterruptedException {
+    byte[] header = new byte[PROBE_LENGTH];
+    try {
+      if (!input.peekFully(header, 0, PROBE_LENGTH, true)) {
+        return UNKNOWN;
+      }
+      int fileType = inferFileTypeFromHeader(header);
+      if (fileType == UNKNOWN && (header[0] & 0xFF) == TS_SYNC_BYTE) {
+        // Require a second sync byte one packet later.
+        if (input.advancePeekPosition(TS_PACKET_SIZE - PROBE_LENGTH, true)
+            && input.peekFully(header, 0, 1, true) && (header[0] & 0xFF) == TS_SYNC_BYTE) {
+          fileType = TS;
+        }
+      }
+      return fileType;
+    } finally {
+      input.resetPeekPosition();
+    }
+  }
+
+  @Type
+  private static int inferFileTypeFromHeader(byte[] header) {
+    int word0 = readInt(header, 0);
+    int word1 = readInt(header, 4);
+    if (word0 == ID_EBML) {
+      return MATROSKA;
+    } else if (word1 == ID_FTYP || word1 == ID_MOOV || word1 == ID_MOOF || word1 == ID_STYP
+        || word1 == ID_SIDX) {
+      return MP4;
+    } else if (word0 == ID_OGGS) {
+      return OGG;
+    } else if (word0 == ID_FLAC) {
+      return FLAC;
+    } else if (word0 == ID_RIFF && readInt(header, 8) == ID_WAVE) {
+      return WAV;
+    } else if (word0 == PACK_START_CODE) {
+      return PS;
+    } else if ((word0 >>> 8) == ID_FLV) {
+      return FLV;
+    } else if ((word0 >>> 8) == ID_ID3) {
+      // ID3 tags may precede MP3, ADTS and AC-3 streams.
+      return UNKNOWN;
+    } else if ((word0 >>> 16) == AC3_SYNC_WORD) {
+      return AC3;
+    } else if ((header[0] & 0xFF) == 0xFF && (header[1] & 0xF6) == 0xF0) {
+      // ADTS sync word, with layer set to 0.
+      return ADTS;
+    } else if ((header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0
+        && (header[1] & 0x06) != 0) {
+      // MPEG audio frame sync, with a valid layer.
+      return MP3;
+    }
+    return UNKNOWN;
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+        | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+  }
+
+}
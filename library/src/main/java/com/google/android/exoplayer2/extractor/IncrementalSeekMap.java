@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import java.util.Arrays;
+
+/**
+ * A {@link SeekMap} that is populated with random access points as the stream is parsed.
+ * <p>
+ * Seeking to a time before the first indexed point seeks to the start of the stream, and seeking
+ * beyond the last indexed point seeks to the last indexed point, from which the extractor will
+ * parse forward. Points may be added by the loading thread while positions are queried by another
+ * thread.
+ */
+public final class IncrementalSeekMap implements SeekMap {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final long durationUs;
+  private final long minimumIntervalUs;
+
+  private long[] timesUs;
+  private long[] positions;
+  private int size;
+
+  /**
+   * @param durationUs The duration of the stream in microseconds, or {@link C#TIME_UNSET} if
+   *     unknown.
+   * @param minimumIntervalUs The minimum interval between indexed points in microseconds. Points
+   *     closer than this to the last indexed point are ignored.
+   */
+  public IncrementalSeekMap(long durationUs, long minimumIntervalUs) {
+    this.durationUs = durationUs;
+    this.minimumIntervalUs = minimumIntervalUs;
+    timesUs = new long[INITIAL_CAPACITY];
+    positions = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Adds a random access point to the index. The point is ignored unless it strictly follows the
+   * last indexed point in both time and position.
+   *
+   * @param timeUs The time of the random access point in microseconds.
+   * @param position The byte offset from which the random access point can be read.
+   * @return Whether the point was added.
+   */
+  public synchronized boolean add(long timeUs, long position) {
+    if (size > 0 && (position <= positions[size - 1] || timeUs <= timesUs[size - 1]
+        || timeUs < timesUs[size - 1] + minimumIntervalUs)) {
+      return false;
+    }
+    if (size == timesUs.length) {
+      timesUs = Arrays.copyOf(timesUs, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    timesUs[size] = timeUs;
+    positions[size] = position;
+    size++;
+    return true;
+  }
+
+  /**
+   * Returns the number of indexed points.
+   */
+  public synchronized int getPointCount() {
+    return size;
+  }
+
+  // SeekMap implementation.
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  @Override
+  public synchronized long getPosition(long timeUs) {
+    if (size == 0 || timeUs < timesUs[0]) {
+      return 0;
+    }
+    int index = Arrays.binarySearch(timesUs, 0, size, timeUs);
+    if (index < 0) {
+      index = -(index + 1) - 1;
+    }
+    return positions[index];
+  }
+
+}
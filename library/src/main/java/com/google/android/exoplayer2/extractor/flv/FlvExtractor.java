@@ -20,6 +20,7 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IncrementalSeekMap;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.util.ParsableByteArray;
@@ -61,11 +62,18 @@ public final class FlvExtractor implements Extractor, SeekMap {
   // FLV container identifier.
   private static final int FLV_TAG = Util.getIntegerCodeForString("FLV");
 
+  // Video frame type of keyframes.
+  private static final int VIDEO_FRAME_KEYFRAME = 1;
+
+  // The minimum interval between points in the seek index.
+  private static final long MIN_SEEK_INDEX_INTERVAL_US = 500000;
+
   // Temporary buffers.
   private final ParsableByteArray scratch;
   private final ParsableByteArray headerBuffer;
   private final ParsableByteArray tagHeaderBuffer;
   private final ParsableByteArray tagData;
+  private final IncrementalSeekMap seekIndex;
 
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
@@ -73,6 +81,9 @@ public final class FlvExtractor implements Extractor, SeekMap {
   // State variables.
   private int parserState;
   private int bytesToNextTagHeader;
+  private long tagPosition;
+  private boolean addedMetadataKeyframes;
+  private volatile boolean isSeekable;
   public int tagType;
   public int tagDataSize;
   public long tagTimestampUs;
@@ -87,6 +98,7 @@ public final class FlvExtractor implements Extractor, SeekMap {
     headerBuffer = new ParsableByteArray(FLV_HEADER_SIZE);
     tagHeaderBuffer = new ParsableByteArray(FLV_TAG_HEADER_SIZE);
     tagData = new ParsableByteArray();
+    seekIndex = new IncrementalSeekMap(C.TIME_UNSET, MIN_SEEK_INDEX_INTERVAL_US);
     parserState = STATE_READING_FLV_HEADER;
   }
 
@@ -128,7 +140,8 @@ public final class FlvExtractor implements Extractor, SeekMap {
 
   @Override
   public void seek(long position, long timeUs) {
-    parserState = STATE_READING_FLV_HEADER;
+    // Positions other than the start of the stream are tag positions obtained from the seek index.
+    parserState = position == 0 ? STATE_READING_FLV_HEADER : STATE_READING_TAG_HEADER;
     bytesToNextTagHeader = 0;
   }
 
@@ -143,7 +156,7 @@ public final class FlvExtractor implements Extractor, SeekMap {
     while (true) {
       switch (parserState) {
         case STATE_READING_FLV_HEADER:
-          if (!readFlvHeader(input)) {
+          if (!readFlvHeader(input, seekPosition)) {
             return RESULT_END_OF_INPUT;
           }
           break;
@@ -168,11 +181,13 @@ public final class FlvExtractor implements Extractor, SeekMap {
    * Reads an FLV container header from the provided {@link ExtractorInput}.
    *
    * @param input The {@link ExtractorInput} from which to read.
+   * @param seekPosition The holder passed to {@link #read(ExtractorInput, PositionHolder)}.
    * @return True if header was read successfully. False if the end of stream was reached.
    * @throws IOException If an error occurred reading or parsing data from the source.
    * @throws InterruptedException If the thread was interrupted.
    */
-  private boolean readFlvHeader(ExtractorInput input) throws IOException, InterruptedException {
+  private boolean readFlvHeader(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
     if (!input.readFully(headerBuffer.data, 0, FLV_HEADER_SIZE, true)) {
       // We've reached the end of the stream.
       return false;
@@ -195,6 +210,8 @@ public final class FlvExtractor implements Extractor, SeekMap {
       metadataReader = new ScriptTagPayloadReader(null);
     }
     extractorOutput.endTracks();
+    // Seeking is possible if the caller can reposition the input within a stream of known length.
+    isSeekable = seekPosition != null && input.getLength() != C.LENGTH_UNSET;
     extractorOutput.seekMap(this);
 
     // We need to skip any additional content in the FLV header, plus the 4 byte previous tag size.
@@ -225,10 +242,12 @@ public final class FlvExtractor implements Extractor, SeekMap {
    * @throws InterruptedException If the thread was interrupted.
    */
   private boolean readTagHeader(ExtractorInput input) throws IOException, InterruptedException {
+    long position = input.getPosition();
     if (!input.readFully(tagHeaderBuffer.data, 0, FLV_TAG_HEADER_SIZE, true)) {
       // We've reached the end of the stream.
       return false;
     }
+    tagPosition = position;
 
     tagHeaderBuffer.setPosition(0);
     tagType = tagHeaderBuffer.readUnsignedByte();
@@ -251,11 +270,20 @@ public final class FlvExtractor implements Extractor, SeekMap {
   private boolean readTagData(ExtractorInput input) throws IOException, InterruptedException {
     boolean wasConsumed = true;
     if (tagType == TAG_TYPE_AUDIO && audioReader != null) {
-      audioReader.consume(prepareTagData(input), tagTimestampUs);
+      ParsableByteArray data = prepareTagData(input);
+      if (videoReader == null) {
+        seekIndex.add(tagTimestampUs, tagPosition);
+      }
+      audioReader.consume(data, tagTimestampUs);
     } else if (tagType == TAG_TYPE_VIDEO && videoReader != null) {
-      videoReader.consume(prepareTagData(input), tagTimestampUs);
+      ParsableByteArray data = prepareTagData(input);
+      if (tagDataSize > 0 && ((data.data[0] >> 4) & 0x0F) == VIDEO_FRAME_KEYFRAME) {
+        seekIndex.add(tagTimestampUs, tagPosition);
+      }
+      videoReader.consume(data, tagTimestampUs);
     } else if (tagType == TAG_TYPE_SCRIPT_DATA && metadataReader != null) {
       metadataReader.consume(prepareTagData(input), tagTimestampUs);
+      maybeAddMetadataKeyframes();
     } else {
       input.skipFully(tagDataSize);
       wasConsumed = false;
@@ -265,6 +293,22 @@ public final class FlvExtractor implements Extractor, SeekMap {
     return wasConsumed;
   }
 
+  /**
+   * Adds the keyframes listed in the metadata to the seek index, so that seeking beyond the parsed
+   * part of the stream is possible.
+   */
+  private void maybeAddMetadataKeyframes() {
+    long[] keyframeTimesUs = metadataReader.getKeyframeTimesUs();
+    long[] keyframeFilePositions = metadataReader.getKeyframeFilePositions();
+    if (addedMetadataKeyframes || keyframeTimesUs == null) {
+      return;
+    }
+    for (int i = 0; i < keyframeTimesUs.length; i++) {
+      seekIndex.add(keyframeTimesUs[i], keyframeFilePositions[i]);
+    }
+    addedMetadataKeyframes = true;
+  }
+
   private ParsableByteArray prepareTagData(ExtractorInput input) throws IOException,
       InterruptedException {
     if (tagDataSize > tagData.capacity()) {
@@ -281,7 +325,7 @@ public final class FlvExtractor implements Extractor, SeekMap {
 
   @Override
   public boolean isSeekable() {
-    return false;
+    return isSeekable;
   }
 
   @Override
@@ -291,7 +335,7 @@ public final class FlvExtractor implements Extractor, SeekMap {
 
   @Override
   public long getPosition(long timeUs) {
-    return 0;
+    return isSeekable ? seekIndex.getPosition(timeUs) : 0;
   }
 
 }
@@ -22,6 +22,7 @@ import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +32,9 @@ import java.util.Map;
 
   private static final String NAME_METADATA = "onMetaData";
   private static final String KEY_DURATION = "duration";
+  private static final String KEY_KEYFRAMES = "keyframes";
+  private static final String KEY_FILE_POSITIONS = "filepositions";
+  private static final String KEY_TIMES = "times";
 
   // AMF object types
   private static final int AMF_TYPE_NUMBER = 0;
@@ -43,6 +47,8 @@ import java.util.Map;
   private static final int AMF_TYPE_DATE = 11;
 
   private long durationUs;
+  private long[] keyframeTimesUs;
+  private long[] keyframeFilePositions;
 
   /**
    * @param output A {@link TrackOutput} to which samples should be written.
@@ -56,6 +62,22 @@ import java.util.Map;
     return durationUs;
   }
 
+  /**
+   * Returns the times of the keyframes listed in the metadata in microseconds, or null if the
+   * metadata did not list keyframes.
+   */
+  public long[] getKeyframeTimesUs() {
+    return keyframeTimesUs;
+  }
+
+  /**
+   * Returns the positions of the tags of the keyframes listed in the metadata, or null if the
+   * metadata did not list keyframes.
+   */
+  public long[] getKeyframeFilePositions() {
+    return keyframeFilePositions;
+  }
+
   @Override
   public void seek() {
     // Do nothing.
@@ -91,6 +113,33 @@ import java.util.Map;
         durationUs = (long) (durationSeconds * C.MICROS_PER_SECOND);
       }
     }
+    // Read the keyframe index added by some muxers, if present.
+    Object keyframes = metadata.get(KEY_KEYFRAMES);
+    if (keyframes instanceof Map) {
+      Object filePositions = ((Map<?, ?>) keyframes).get(KEY_FILE_POSITIONS);
+      Object times = ((Map<?, ?>) keyframes).get(KEY_TIMES);
+      if (filePositions instanceof List && times instanceof List
+          && ((List<?>) filePositions).size() == ((List<?>) times).size()) {
+        parseKeyframes((List<?>) times, (List<?>) filePositions);
+      }
+    }
+  }
+
+  private void parseKeyframes(List<?> times, List<?> filePositions) {
+    int keyframeCount = times.size();
+    long[] timesUs = new long[keyframeCount];
+    long[] positions = new long[keyframeCount];
+    for (int i = 0; i < keyframeCount; i++) {
+      Object time = times.get(i);
+      Object position = filePositions.get(i);
+      if (!(time instanceof Double) || !(position instanceof Double)) {
+        return;
+      }
+      timesUs[i] = (long) ((double) time * C.MICROS_PER_SECOND);
+      positions[i] = (long) (double) position;
+    }
+    keyframeTimesUs = timesUs;
+    keyframeFilePositions = positions;
   }
 
   private static int readAmfType(ParsableByteArray data) {
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.IncrementalSeekMap;
 import com.google.android.exoplayer2.extractor.MpegAudioHeader;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
@@ -103,6 +104,7 @@ public final class MatroskaExtractor implements Extractor {
   private static final int VORBIS_MAX_INPUT_SIZE = 8192;
   private static final int OPUS_MAX_INPUT_SIZE = 5760;
   private static final int ENCRYPTION_IV_SIZE = 8;
+  private static final int TRACK_TYPE_VIDEO = 1;
   private static final int TRACK_TYPE_AUDIO = 2;
 
   private static final int ID_EBML = 0x1A45DFA3;
@@ -259,6 +261,13 @@ public final class MatroskaExtractor implements Extractor {
   private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
 
+  // Cluster index related elements, used if the Cues element is omitted.
+  private boolean canIndexClusters;
+  private IncrementalSeekMap clusterIndex;
+  private int clusterIndexTrackNumber;
+  private long clusterContentPosition;
+  private boolean clusterIndexed;
+
   // Block reading state.
   private int blockState;
   private long blockTimeUs;
@@ -320,6 +329,8 @@ public final class MatroskaExtractor implements Extractor {
   @Override
   public void seek(long position, long timeUs) {
     clusterTimecodeUs = C.TIME_UNSET;
+    // The seek may be to the middle of a cluster that has already been indexed.
+    clusterIndexed = true;
     blockState = BLOCK_STATE_START;
     reader.reset();
     varintReader.reset();
@@ -335,6 +346,9 @@ public final class MatroskaExtractor implements Extractor {
   public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException,
       InterruptedException {
     sampleRead = false;
+    // Clusters can be indexed if the caller can reposition the input within a stream of known
+    // length.
+    canIndexClusters = seekPosition != null && input.getLength() != C.LENGTH_UNSET;
     boolean continueReading = true;
     while (continueReading && !sampleRead) {
       continueReading = reader.read(input);
@@ -452,11 +466,15 @@ public final class MatroskaExtractor implements Extractor {
             seekForCues = true;
           } else {
             // We don't know where the Cues element is located. It's most likely omitted. Allow
-            // playback, but disable seeking.
-            extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+            // playback, and seeking to clusters as they are parsed if possible.
+            extractorOutput.seekMap(buildClusterIndex());
             sentSeekMap = true;
           }
         }
+        if (clusterIndex != null) {
+          clusterContentPosition = contentPosition;
+          clusterIndexed = false;
+        }
         break;
       case ID_BLOCK_GROUP:
         sampleSeenReferenceBlock = false;
@@ -882,6 +900,13 @@ public final class MatroskaExtractor implements Extractor {
   }
 
   private void commitSampleToOutput(Track track, long timeUs) {
+    if (!clusterIndexed && clusterIndex != null && track.number == clusterIndexTrackNumber
+        && (blockFlags & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+      // Index the cluster at its first keyframe. Reading from the start of the cluster's content
+      // outputs the keyframe before any sample that follows it.
+      clusterIndex.add(timeUs, clusterContentPosition);
+      clusterIndexed = true;
+    }
     if (CODEC_ID_SUBRIP.equals(track.codecId)) {
       writeSubripSample(track);
     }
@@ -1173,6 +1198,27 @@ public final class MatroskaExtractor implements Extractor {
     return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
   }
 
+  /**
+   * Returns a {@link SeekMap} to use if the Cues element is omitted. If clusters can be indexed,
+   * the returned map is populated with the positions of clusters as they are parsed, indexed by
+   * the first keyframe of a video track (or of the first track, if there is no video track) in
+   * each cluster.
+   */
+  private SeekMap buildClusterIndex() {
+    if (!canIndexClusters || tracks.size() == 0) {
+      return new SeekMap.Unseekable(durationUs);
+    }
+    clusterIndexTrackNumber = tracks.valueAt(0).number;
+    for (int i = 0; i < tracks.size(); i++) {
+      if (tracks.valueAt(i).type == TRACK_TYPE_VIDEO) {
+        clusterIndexTrackNumber = tracks.valueAt(i).number;
+        break;
+      }
+    }
+    clusterIndex = new IncrementalSeekMap(durationUs, 0);
+    return clusterIndex;
+  }
+
   /**
    * Updates the position of the holder to Cues element's position if the extractor configuration
    * permits use of master seek entry. After building Cues sets the holder's position back to where
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import com.google.android.exoplayer2.C;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An index mapping times to the positions of frames in an MP3 stream, built by
+ * {@link Mp3Extractor} as it reads frames in order from the start of the stream.
+ * <p>
+ * The index covers the stream from its first frame up to {@link #getEndPosition()}. Positions
+ * obtained from the index are exact frame boundaries, so seeking within the indexed region is
+ * accurate regardless of whether the stream has a constant bitrate or a seeking header.
+ * <p>
+ * An index can be persisted using {@link #writeTo(DataOutput)} and restored using
+ * {@link #readFrom(DataInput)}, then passed to
+ * {@link Mp3Extractor#Mp3Extractor(int, long, FrameIndex)} so that a later playback of the same
+ * stream can seek accurately immediately. An index is discarded by the extractor if it does not
+ * match the length and first frame position of the stream being extracted.
+ */
+public final class FrameIndex {
+
+  private static final int SERIALIZATION_VERSION = 1;
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * The minimum interval between indexed frames. Seeking reads forward from the preceding indexed
+   * frame, so this bounds the amount of data read and discarded after a seek.
+   */
+  private static final long INDEX_INTERVAL_US = 500000;
+
+  private long inputLength;
+  private long firstFramePosition;
+  private long endPosition;
+  private long endTimeUs;
+  private long[] timesUs;
+  private long[] positions;
+  private int size;
+
+  public FrameIndex() {
+    timesUs = new long[INITIAL_CAPACITY];
+    positions = new long[INITIAL_CAPACITY];
+    inputLength = C.LENGTH_UNSET;
+    firstFramePosition = C.POSITION_UNSET;
+    endPosition = C.POSITION_UNSET;
+    endTimeUs = C.TIME_UNSET;
+  }
+
+  /**
+   * Returns the position up to which the stream is indexed, or {@link C#POSITION_UNSET} if no
+   * frames are indexed.
+   */
+  public synchronized long getEndPosition() {
+    return size == 0 ? C.POSITION_UNSET : endPosition;
+  }
+
+  /**
+   * Returns the time up to which the stream is indexed in microseconds, or {@link C#TIME_UNSET} if
+   * no frames are indexed.
+   */
+  public synchronized long getEndTimeUs() {
+    return size == 0 ? C.TIME_UNSET : endTimeUs;
+  }
+
+  /**
+   * Returns whether the whole stream is indexed.
+   */
+  public synchronized boolean isComplete() {
+    return size > 0 && endPosition == inputLength;
+  }
+
+  /**
+   * Writes the index to an output.
+   *
+   * @param output The output to write to.
+   * @throws IOException If an error occurs writing to the output.
+   */
+  public synchronized void writeTo(DataOutput output) throws IOException {
+    output.writeInt(SERIALIZATION_VERSION);
+    output.writeLong(inputLength);
+    output.writeLong(firstFramePosition);
+    output.writeLong(endPosition);
+    output.writeLong(endTimeUs);
+    output.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      output.writeLong(timesUs[i]);
+      output.writeLong(positions[i]);
+    }
+  }
+
+  /**
+   * Reads an index written by {@link #writeTo(DataOutput)}.
+   *
+   * @param input The input to read from.
+   * @return The index.
+   * @throws IOException If an error occurs reading from the input, or if the data is not a valid
+   *     index.
+   */
+  public static FrameIndex readFrom(DataInput input) throws IOException {
+    if (input.readInt() != SERIALIZATION_VERSION) {
+      throw new IOException("Unsupported frame index version");
+    }
+    FrameIndex index = new FrameIndex();
+    index.inputLength = input.readLong();
+    index.firstFramePosition = input.readLong();
+    index.endPosition = input.readLong();
+    index.endTimeUs = input.readLong();
+    int size = input.readInt();
+    if (size < 0) {
+      throw new IOException("Invalid frame index size: " + size);
+    }
+    index.timesUs = new long[Math.max(size, INITIAL_CAPACITY)];
+    index.positions = new long[index.timesUs.length];
+    for (int i = 0; i < size; i++) {
+      index.timesUs[i] = input.readLong();
+      index.positions[i] = input.readLong();
+    }
+    index.size = size;
+    return index;
+  }
+
+  /**
+   * Prepares the index for use with a stream, clearing it if it was built for a different stream.
+   *
+   * @param inputLength The length of the stream.
+   * @param firstFramePosition The position of the first audio frame in the stream.
+   */
+  /* package */ synchronized void bind(long inputLength, long firstFramePosition) {
+    if (this.inputLength != inputLength || this.firstFramePosition != firstFramePosition) {
+      this.inputLength = inputLength;
+      this.firstFramePosition = firstFramePosition;
+      size = 0;
+    }
+    if (size == 0) {
+      endPosition = firstFramePosition;
+      endTimeUs = C.TIME_UNSET;
+    }
+  }
+
+  /**
+   * Called when a frame has been read. The frame is indexed if it starts at the end of the indexed
+   * region.
+   *
+   * @param position The position of the frame.
+   * @param timeUs The time of the frame in microseconds.
+   * @param size The size of the frame in bytes.
+   * @param durationUs The duration of the frame in microseconds.
+   */
+  /* package */ synchronized void onFrameRead(long position, long timeUs, int size,
+      long durationUs) {
+    if (position != endPosition) {
+      return;
+    }
+    if (this.size == 0 || timeUs >= timesUs[this.size - 1] + INDEX_INTERVAL_US) {
+      if (this.size == timesUs.length) {
+        timesUs = Arrays.copyOf(timesUs, this.size * 2);
+        positions = Arrays.copyOf(positions, this.size * 2);
+      }
+      timesUs[this.size] = timeUs;
+      positions[this.size] = position;
+      this.size++;
+    }
+    endPosition = position + size;
+    endTimeUs = timeUs + durationUs;
+  }
+
+  /**
+   * Called when data that is not part of a frame has been skipped. The indexed region is extended
+   * over the skipped data if it starts at the end of the indexed region.
+   *
+   * @param position The position of the skipped data.
+   * @param endPosition The position following the skipped data.
+   */
+  /* package */ synchronized void onDataSkipped(long position, long endPosition) {
+    if (size > 0 && position == this.endPosition) {
+      this.endPosition = endPosition;
+    }
+  }
+
+  /**
+   * Returns the position of the last indexed frame at or before the given time, or
+   * {@link C#POSITION_UNSET} if the time is outside of the indexed region.
+   */
+  /* package */ synchronized long getPosition(long timeUs) {
+    if (size == 0 || timeUs >= endTimeUs) {
+      return C.POSITION_UNSET;
+    }
+    int index = Arrays.binarySearch(timesUs, 0, size, timeUs);
+    if (index < 0) {
+      index = Math.max(0, -(index + 1) - 1);
+    }
+    return positions[index];
+  }
+
+  /**
+   * Returns the time of the frame at the given position, or {@link C#TIME_UNSET} if the position is
+   * not the start of an indexed frame or the end of the indexed region.
+   */
+  /* package */ synchronized long getTimeUs(long position) {
+    if (size == 0) {
+      return C.TIME_UNSET;
+    } else if (position == endPosition) {
+      return endTimeUs;
+    }
+    int index = Arrays.binarySearch(positions, 0, size, position);
+    return index < 0 ? C.TIME_UNSET : timesUs[index];
+  }
+
+}
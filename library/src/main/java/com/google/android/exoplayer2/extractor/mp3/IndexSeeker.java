@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * MP3 seeker that seeks accurately within the region of the stream covered by a
+ * {@link FrameIndex}, and uses another seeker to estimate positions beyond it.
+ */
+/* package */ final class IndexSeeker implements Mp3Extractor.Seeker {
+
+  private final FrameIndex frameIndex;
+  private final Mp3Extractor.Seeker fallbackSeeker;
+  private final long durationUs;
+
+  /**
+   * @param frameIndex The index of frames that have been read.
+   * @param fallbackSeeker A seeker used for positions beyond the indexed region.
+   */
+  public IndexSeeker(FrameIndex frameIndex, Mp3Extractor.Seeker fallbackSeeker) {
+    this.frameIndex = frameIndex;
+    this.fallbackSeeker = fallbackSeeker;
+    durationUs = frameIndex.isComplete() ? frameIndex.getEndTimeUs()
+        : fallbackSeeker.getDurationUs();
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  @Override
+  public long getPosition(long timeUs) {
+    long position = frameIndex.getPosition(timeUs);
+    if (position != C.POSITION_UNSET) {
+      return position;
+    }
+    long endPosition = frameIndex.getEndPosition();
+    if (endPosition == C.POSITION_UNSET) {
+      return fallbackSeeker.getPosition(timeUs);
+    }
+    // Never estimate a position within the indexed region for a time beyond it. Reading from the
+    // end of the indexed region also extends the index.
+    return Math.max(endPosition, fallbackSeeker.getPosition(timeUs));
+  }
+
+  @Override
+  public long getTimeUs(long position) {
+    long timeUs = frameIndex.getTimeUs(position);
+    return timeUs != C.TIME_UNSET ? timeUs : fallbackSeeker.getTimeUs(position);
+  }
+
+}
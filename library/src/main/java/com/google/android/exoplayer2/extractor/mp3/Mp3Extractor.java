@@ -58,7 +58,8 @@ public final class Mp3Extractor implements Extractor {
    * Flags controlling the behavior of the extractor.
    */
   @Retention(RetentionPolicy.SOURCE)
-  @IntDef(flag = true, value = {FLAG_ENABLE_CONSTANT_BITRATE_SEEKING, FLAG_DISABLE_ID3_METADATA})
+  @IntDef(flag = true, value = {FLAG_ENABLE_CONSTANT_BITRATE_SEEKING, FLAG_DISABLE_ID3_METADATA,
+      FLAG_ENABLE_INDEX_SEEKING})
   public @interface Flags {}
   /**
    * Flag to force enable seeking using a constant bitrate assumption in cases where seeking would
@@ -70,6 +71,14 @@ public final class Mp3Extractor implements Extractor {
    * required.
    */
   public static final int FLAG_DISABLE_ID3_METADATA = 2;
+  /**
+   * Flag to build a {@link FrameIndex} of the frames read from the start of the stream, and to seek
+   * accurately using it within the indexed region. Seeking beyond the indexed region uses the
+   * seeking header of the stream or, if there is none, a constant bitrate assumption. The index is
+   * only built if the input length is known and the caller of
+   * {@link #read(ExtractorInput, PositionHolder)} supports seeking.
+   */
+  public static final int FLAG_ENABLE_INDEX_SEEKING = 4;
 
   /**
    * The maximum number of bytes to search when synchronizing, before giving up.
@@ -97,6 +106,7 @@ public final class Mp3Extractor implements Extractor {
   private final ParsableByteArray scratch;
   private final MpegAudioHeader synchronizedHeader;
   private final GaplessInfoHolder gaplessInfoHolder;
+  private final FrameIndex frameIndex;
 
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
@@ -106,6 +116,7 @@ public final class Mp3Extractor implements Extractor {
 
   private Metadata metadata;
   private Seeker seeker;
+  private boolean indexingFrames;
   private long basisTimeUs;
   private long samplesRead;
   private int sampleBytesRemaining;
@@ -134,8 +145,24 @@ public final class Mp3Extractor implements Extractor {
    *     {@link C#TIME_UNSET} if forcing is not required.
    */
   public Mp3Extractor(@Flags int flags, long forcedFirstSampleTimestampUs) {
+    this(flags, forcedFirstSampleTimestampUs, null);
+  }
+
+  /**
+   * Constructs a new {@link Mp3Extractor}.
+   *
+   * @param flags Flags that control the extractor's behavior.
+   * @param forcedFirstSampleTimestampUs A timestamp to force for the first sample, or
+   *     {@link C#TIME_UNSET} if forcing is not required.
+   * @param frameIndex A {@link FrameIndex} to use and extend if {@link #FLAG_ENABLE_INDEX_SEEKING}
+   *     is set, for example one restored from an earlier playback of the same stream, or null to
+   *     create a new index.
+   */
+  public Mp3Extractor(@Flags int flags, long forcedFirstSampleTimestampUs, FrameIndex frameIndex) {
     this.flags = flags;
     this.forcedFirstSampleTimestampUs = forcedFirstSampleTimestampUs;
+    this.frameIndex = (flags & FLAG_ENABLE_INDEX_SEEKING) == 0 ? null
+        : frameIndex != null ? frameIndex : new FrameIndex();
     scratch = new ParsableByteArray(SCRATCH_LENGTH);
     synchronizedHeader = new MpegAudioHeader();
     gaplessInfoHolder = new GaplessInfoHolder();
@@ -171,14 +198,18 @@ public final class Mp3Extractor implements Extractor {
   public int read(ExtractorInput input, PositionHolder seekPosition)
       throws IOException, InterruptedException {
     if (synchronizedHeaderData == 0) {
+      long position = input.getPosition();
       try {
         synchronize(input, false);
       } catch (EOFException e) {
         return RESULT_END_OF_INPUT;
       }
+      if (indexingFrames) {
+        frameIndex.onDataSkipped(position, input.getPosition());
+      }
     }
     if (seeker == null) {
-      seeker = setupSeeker(input);
+      seeker = setupSeeker(input, seekPosition != null);
       extractorOutput.seekMap(seeker);
       trackOutput.format(Format.createAudioSampleFormat(null, synchronizedHeader.mimeType, null,
           Format.NO_VALUE, MpegAudioHeader.MAX_FRAME_SIZE_BYTES, synchronizedHeader.channels,
@@ -201,6 +232,10 @@ public final class Mp3Extractor implements Extractor {
           || MpegAudioHeader.getFrameSize(sampleHeaderData) == C.LENGTH_UNSET) {
         // We have lost synchronization, so attempt to resynchronize starting at the next byte.
         extractorInput.skipFully(1);
+        if (indexingFrames) {
+          long position = extractorInput.getPosition();
+          frameIndex.onDataSkipped(position - 1, position);
+        }
         synchronizedHeaderData = 0;
         return RESULT_CONTINUE;
       }
@@ -213,6 +248,13 @@ public final class Mp3Extractor implements Extractor {
         }
       }
       sampleBytesRemaining = synchronizedHeader.frameSize;
+      if (indexingFrames) {
+        int sampleRate = synchronizedHeader.sampleRate;
+        frameIndex.onFrameRead(extractorInput.getPosition(),
+            basisTimeUs + (samplesRead * C.MICROS_PER_SECOND / sampleRate),
+            synchronizedHeader.frameSize,
+            synchronizedHeader.samplesPerFrame * C.MICROS_PER_SECOND / sampleRate);
+      }
     }
     int bytesAppended = trackOutput.sampleData(extractorInput, sampleBytesRemaining, true);
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
@@ -342,13 +384,16 @@ public final class Mp3Extractor implements Extractor {
    * be set to the start of the first frame of audio.
    *
    * @param input The {@link ExtractorInput} from which to read.
+   * @param canSeek Whether the caller of {@link #read(ExtractorInput, PositionHolder)} supports
+   *     seeking.
    * @throws IOException Thrown if there was an error reading from the stream. Not expected if the
    *     next two frames were already peeked during synchronization.
    * @throws InterruptedException Thrown if reading from the stream was interrupted. Not expected if
    *     the next two frames were already peeked during synchronization.
    * @return a {@link Seeker}.
    */
-  private Seeker setupSeeker(ExtractorInput input) throws IOException, InterruptedException {
+  private Seeker setupSeeker(ExtractorInput input, boolean canSeek)
+      throws IOException, InterruptedException {
     // Read the first frame which may contain a Xing or VBRI header with seeking metadata.
     ParsableByteArray frame = new ParsableByteArray(synchronizedHeader.frameSize);
     input.peekFully(frame.data, 0, synchronizedHeader.frameSize);
@@ -387,8 +432,11 @@ public final class Mp3Extractor implements Extractor {
       }
     }
 
+    // The frame index is in the time base of the seeker, so can't be used if timestamps are forced.
+    indexingFrames = frameIndex != null && canSeek && length != C.LENGTH_UNSET
+        && forcedFirstSampleTimestampUs == C.TIME_UNSET;
     if (seeker == null || (!seeker.isSeekable()
-        && (flags & FLAG_ENABLE_CONSTANT_BITRATE_SEEKING) != 0)) {
+        && ((flags & FLAG_ENABLE_CONSTANT_BITRATE_SEEKING) != 0 || indexingFrames))) {
       // Repopulate the synchronized header in case we had to skip an invalid seeking header, which
       // would give an invalid CBR bitrate.
       input.resetPeekPosition();
@@ -398,6 +446,10 @@ public final class Mp3Extractor implements Extractor {
       seeker = new ConstantBitrateSeeker(input.getPosition(), synchronizedHeader.bitrate, length);
     }
 
+    if (indexingFrames) {
+      frameIndex.bind(length, input.getPosition());
+      seeker = new IndexSeeker(frameIndex, seeker);
+    }
     return seeker;
   }
 
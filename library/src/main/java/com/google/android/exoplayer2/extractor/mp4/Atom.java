@@ -136,6 +136,9 @@ import java.util.List;
   public static final int TYPE_vpcC = Util.getIntegerCodeForString("vpcC");
   public static final int TYPE_camm = Util.getIntegerCodeForString("camm");
   public static final int TYPE_alac = Util.getIntegerCodeForString("alac");
+  public static final int TYPE_mfra = Util.getIntegerCodeForString("mfra");
+  public static final int TYPE_tfra = Util.getIntegerCodeForString("tfra");
+  public static final int TYPE_mfro = Util.getIntegerCodeForString("mfro");
 
   public final int type;
 
@@ -120,7 +120,7 @@ import java.util.List;
 
     int sampleCount = sampleSizeBox.getSampleCount();
     if (sampleCount == 0) {
-      return new TrackSampleTable(new long[0], new int[0], 0, new long[0], new int[0]);
+      return new ArrayTrackSampleTable(new long[0], new int[0], 0, new long[0], new int[0]);
     }
 
     // Entries are byte offsets of chunks.
@@ -142,42 +142,24 @@ import java.util.List;
     Atom.LeafAtom cttsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_ctts);
     ParsableByteArray ctts = cttsAtom != null ? cttsAtom.data : null;
 
-    // Prepare to read chunk information.
-    ChunkIterator chunkIterator = new ChunkIterator(stsc, chunkOffsets, chunkOffsetsAreLongs);
-
-    // Prepare to read sample timestamps.
     stts.setPosition(Atom.FULL_HEADER_SIZE);
-    int remainingTimestampDeltaChanges = stts.readUnsignedIntToInt() - 1;
-    int remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
-    int timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
-
-    // Prepare to read sample timestamp offsets, if ctts is present.
-    int remainingSamplesAtTimestampOffset = 0;
-    int remainingTimestampOffsetChanges = 0;
-    int timestampOffset = 0;
+    int timestampDeltaCount = stts.readUnsignedIntToInt();
+    int timestampOffsetCount = 0;
     if (ctts != null) {
       ctts.setPosition(Atom.FULL_HEADER_SIZE);
-      remainingTimestampOffsetChanges = ctts.readUnsignedIntToInt();
+      timestampOffsetCount = ctts.readUnsignedIntToInt();
     }
-
-    int nextSynchronizationSampleIndex = C.INDEX_UNSET;
-    int remainingSynchronizationSamples = 0;
+    int synchronizationSampleCount = 0;
     if (stss != null) {
       stss.setPosition(Atom.FULL_HEADER_SIZE);
-      remainingSynchronizationSamples = stss.readUnsignedIntToInt();
-      if (remainingSynchronizationSamples > 0) {
-        nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
-      } else {
-        // Ignore empty stss boxes, which causes all samples to be treated as sync samples.
-        stss = null;
-      }
+      synchronizationSampleCount = stss.readUnsignedIntToInt();
     }
 
     // True if we can rechunk fixed-sample-size data. Note that we only rechunk raw audio.
     boolean isRechunkable = sampleSizeBox.isFixedSampleSize()
         && MimeTypes.AUDIO_RAW.equals(track.format.sampleMimeType)
-        && remainingTimestampDeltaChanges == 0 && remainingTimestampOffsetChanges == 0
-        && remainingSynchronizationSamples == 0;
+        && timestampDeltaCount == 1 && timestampOffsetCount == 0
+        && synchronizationSampleCount == 0;
 
     long[] offsets;
     int[] sizes;
@@ -187,85 +169,28 @@ import java.util.List;
     long timestampTimeUnits = 0;
 
     if (!isRechunkable) {
+      CompactTrackSampleTable compactSampleTable = new CompactTrackSampleTable(track,
+          sampleSizeBox, chunkOffsets, chunkOffsetsAreLongs, stsc, stts, ctts, stss);
+      if (applyEditListWithoutExpansion(track, compactSampleTable, gaplessInfoHolder)) {
+        return compactSampleTable;
+      }
+      // The edit list discards or reorders samples, so expand the sample table.
       offsets = new long[sampleCount];
       sizes = new int[sampleCount];
       timestamps = new long[sampleCount];
       flags = new int[sampleCount];
-      long offset = 0;
-      int remainingSamplesInChunk = 0;
-
       for (int i = 0; i < sampleCount; i++) {
-        // Advance to the next chunk if necessary.
-        while (remainingSamplesInChunk == 0) {
-          Assertions.checkState(chunkIterator.moveNext());
-          offset = chunkIterator.offset;
-          remainingSamplesInChunk = chunkIterator.numSamples;
-        }
-
-        // Add on the timestamp offset if ctts is present.
-        if (ctts != null) {
-          while (remainingSamplesAtTimestampOffset == 0 && remainingTimestampOffsetChanges > 0) {
-            remainingSamplesAtTimestampOffset = ctts.readUnsignedIntToInt();
-            // The BMFF spec (ISO 14496-12) states that sample offsets should be unsigned integers
-            // in version 0 ctts boxes, however some streams violate the spec and use signed
-            // integers instead. It's safe to always decode sample offsets as signed integers here,
-            // because unsigned integers will still be parsed correctly (unless their top bit is
-            // set, which is never true in practice because sample offsets are always small).
-            timestampOffset = ctts.readInt();
-            remainingTimestampOffsetChanges--;
-          }
-          remainingSamplesAtTimestampOffset--;
-        }
-
-        offsets[i] = offset;
-        sizes[i] = sampleSizeBox.readNextSampleSize();
-        if (sizes[i] > maximumSize) {
-          maximumSize = sizes[i];
-        }
-        timestamps[i] = timestampTimeUnits + timestampOffset;
-
-        // All samples are synchronization samples if the stss is not present.
-        flags[i] = stss == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
-        if (i == nextSynchronizationSampleIndex) {
-          flags[i] = C.BUFFER_FLAG_KEY_FRAME;
-          remainingSynchronizationSamples--;
-          if (remainingSynchronizationSamples > 0) {
-            nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
-          }
-        }
-
-        // Add on the duration of this sample.
-        timestampTimeUnits += timestampDeltaInTimeUnits;
-        remainingSamplesAtTimestampDelta--;
-        if (remainingSamplesAtTimestampDelta == 0 && remainingTimestampDeltaChanges > 0) {
-          remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
-          timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
-          remainingTimestampDeltaChanges--;
-        }
-
-        offset += sizes[i];
-        remainingSamplesInChunk--;
-      }
-
-      Assertions.checkArgument(remainingSamplesAtTimestampOffset == 0);
-      // Remove trailing ctts entries with 0-valued sample counts.
-      while (remainingTimestampOffsetChanges > 0) {
-        Assertions.checkArgument(ctts.readUnsignedIntToInt() == 0);
-        ctts.readInt(); // Ignore offset.
-        remainingTimestampOffsetChanges--;
-      }
-
-      // If the stbl's child boxes are not consistent the container is malformed, but the stream may
-      // still be playable.
-      if (remainingSynchronizationSamples != 0 || remainingSamplesAtTimestampDelta != 0
-          || remainingSamplesInChunk != 0 || remainingTimestampDeltaChanges != 0) {
-        Log.w(TAG, "Inconsistent stbl box for track " + track.id
-            + ": remainingSynchronizationSamples " + remainingSynchronizationSamples
-            + ", remainingSamplesAtTimestampDelta " + remainingSamplesAtTimestampDelta
-            + ", remainingSamplesInChunk " + remainingSamplesInChunk
-            + ", remainingTimestampDeltaChanges " + remainingTimestampDeltaChanges);
+        offsets[i] = compactSampleTable.getOffset(i);
+        sizes[i] = compactSampleTable.getSize(i);
+        timestamps[i] = compactSampleTable.getTimestamp(i);
+        flags[i] = compactSampleTable.getFlags(i);
       }
+      maximumSize = compactSampleTable.maximumSize;
+      timestampTimeUnits = compactSampleTable.getLastSampleEndTime();
     } else {
+      ChunkIterator chunkIterator = new ChunkIterator(stsc, chunkOffsets, chunkOffsetsAreLongs);
+      stts.setPosition(Atom.FULL_HEADER_SIZE + 8);
+      int timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
       long[] chunkOffsetsBytes = new long[chunkIterator.length];
       int[] chunkSampleCounts = new int[chunkIterator.length];
       while (chunkIterator.moveNext()) {
@@ -286,7 +211,7 @@ import java.util.List;
       // There is no edit list, or we are ignoring it as we already have gapless metadata to apply.
       // This implementation does not support applying both gapless metadata and an edit list.
       Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
-      return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     // See the BMFF spec (ISO 14496-12) subsection 8.6.6. Edit lists that require prerolling from a
@@ -296,29 +221,10 @@ import java.util.List;
     // of samples. The extractor may place further restrictions on what edited streams are playable.
 
     if (track.editListDurations.length == 1 && track.type == C.TRACK_TYPE_AUDIO
-        && timestamps.length >= 2) {
-      // Handle the edit by setting gapless playback metadata, if possible. This implementation
-      // assumes that only one "roll" sample is needed, which is the case for AAC, so the start/end
-      // points of the edit must lie within the first/last samples respectively.
-      long editStartTime = track.editListMediaTimes[0];
-      long editEndTime = editStartTime + Util.scaleLargeTimestamp(track.editListDurations[0],
-          track.timescale, track.movieTimescale);
-      long lastSampleEndTime = timestampTimeUnits;
-      if (timestamps[0] <= editStartTime && editStartTime < timestamps[1]
-          && timestamps[timestamps.length - 1] < editEndTime && editEndTime <= lastSampleEndTime) {
-        long paddingTimeUnits = lastSampleEndTime - editEndTime;
-        long encoderDelay = Util.scaleLargeTimestamp(editStartTime - timestamps[0],
-            track.format.sampleRate, track.timescale);
-        long encoderPadding = Util.scaleLargeTimestamp(paddingTimeUnits,
-            track.format.sampleRate, track.timescale);
-        if ((encoderDelay != 0 || encoderPadding != 0) && encoderDelay <= Integer.MAX_VALUE
-            && encoderPadding <= Integer.MAX_VALUE) {
-          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
-          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
-          Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
-          return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
-        }
-      }
+        && timestamps.length >= 2 && setGaplessInfoFromEdit(track, timestamps[0], timestamps[1],
+        timestamps[timestamps.length - 1], timestampTimeUnits, gaplessInfoHolder)) {
+      Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     if (track.editListDurations.length == 1 && track.editListDurations[0] == 0) {
@@ -329,7 +235,7 @@ import java.util.List;
         timestamps[i] = Util.scaleLargeTimestamp(timestamps[i] - track.editListMediaTimes[0],
             C.MICROS_PER_SECOND, track.timescale);
       }
-      return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     // Omit any sample at the end point of an edit for audio tracks.
@@ -398,8 +304,97 @@ import java.util.List;
       throw new ParserException("The edited sample sequence does not contain a sync sample.");
     }
 
-    return new TrackSampleTable(editedOffsets, editedSizes, editedMaximumSize, editedTimestamps,
-        editedFlags);
+    return new ArrayTrackSampleTable(editedOffsets, editedSizes, editedMaximumSize,
+        editedTimestamps, editedFlags);
+  }
+
+  /**
+   * Applies the edit list of a track to a {@link CompactTrackSampleTable}, if this is possible
+   * without expanding it. This is the case if there is no edit list to apply, if the edit list can
+   * be represented as gapless playback metadata, or if it consists of a single edit that includes
+   * every sample.
+   *
+   * @param track The track to which the sample table corresponds.
+   * @param sampleTable The sample table.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return Whether the edit list was applied.
+   * @throws ParserException If the edited sample sequence does not contain a sync sample.
+   */
+  private static boolean applyEditListWithoutExpansion(Track track,
+      CompactTrackSampleTable sampleTable, GaplessInfoHolder gaplessInfoHolder)
+      throws ParserException {
+    if (track.editListDurations == null || gaplessInfoHolder.hasGaplessInfo()) {
+      // There is no edit list, or we are ignoring it as we already have gapless metadata to apply.
+      return true;
+    }
+    int sampleCount = sampleTable.sampleCount;
+    if (track.editListDurations.length == 1 && track.type == C.TRACK_TYPE_AUDIO
+        && sampleCount >= 2 && setGaplessInfoFromEdit(track, sampleTable.getTimestamp(0),
+        sampleTable.getTimestamp(1), sampleTable.getTimestamp(sampleCount - 1),
+        sampleTable.getLastSampleEndTime(), gaplessInfoHolder)) {
+      return true;
+    }
+    if (track.editListDurations.length != 1 || track.editListMediaTimes[0] == -1) {
+      return false;
+    }
+    long mediaTime = track.editListMediaTimes[0];
+    if (track.editListDurations[0] != 0) {
+      // Check whether the edit includes every sample, as calculated when applying edit lists to
+      // expanded sample tables.
+      long duration = Util.scaleLargeTimestamp(track.editListDurations[0], track.timescale,
+          track.movieTimescale);
+      boolean omitClippedSample = track.type == C.TRACK_TYPE_AUDIO;
+      int startIndex = sampleTable.binarySearchCeilTimestamp(mediaTime, true, true);
+      int endIndex = sampleTable.binarySearchCeilTimestamp(mediaTime + duration,
+          omitClippedSample, false);
+      if (startIndex != 0 || endIndex != sampleCount) {
+        return false;
+      }
+      if (!sampleTable.hasSynchronizationSample()) {
+        throw new ParserException("The edited sample sequence does not contain a sync sample.");
+      }
+    }
+    // Either the edit includes every sample, or it has zero segment_duration, which is handled by
+    // including every sample.
+    sampleTable.setMediaTimeOffset(mediaTime);
+    return true;
+  }
+
+  /**
+   * Sets gapless playback metadata for an audio track with an edit list consisting of a single
+   * edit, if possible. This implementation assumes that only one "roll" sample is needed, which is
+   * the case for AAC, so the start/end points of the edit must lie within the first/last samples
+   * respectively.
+   *
+   * @param track The track.
+   * @param firstTimestamp The timestamp of the first sample, in the track timescale.
+   * @param secondTimestamp The timestamp of the second sample, in the track timescale.
+   * @param lastTimestamp The timestamp of the last sample, in the track timescale.
+   * @param lastSampleEndTime The end time of the last sample, in the track timescale.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return Whether gapless playback metadata was set.
+   */
+  private static boolean setGaplessInfoFromEdit(Track track, long firstTimestamp,
+      long secondTimestamp, long lastTimestamp, long lastSampleEndTime,
+      GaplessInfoHolder gaplessInfoHolder) {
+    long editStartTime = track.editListMediaTimes[0];
+    long editEndTime = editStartTime + Util.scaleLargeTimestamp(track.editListDurations[0],
+        track.timescale, track.movieTimescale);
+    if (firstTimestamp <= editStartTime && editStartTime < secondTimestamp
+        && lastTimestamp < editEndTime && editEndTime <= lastSampleEndTime) {
+      long paddingTimeUnits = lastSampleEndTime - editEndTime;
+      long encoderDelay = Util.scaleLargeTimestamp(editStartTime - firstTimestamp,
+          track.format.sampleRate, track.timescale);
+      long encoderPadding = Util.scaleLargeTimestamp(paddingTimeUnits,
+          track.format.sampleRate, track.timescale);
+      if ((encoderDelay != 0 || encoderPadding != 0) && encoderDelay <= Integer.MAX_VALUE
+          && encoderPadding <= Integer.MAX_VALUE) {
+        gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+        gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
@@ -1194,13 +1189,21 @@ import java.util.List;
   /**
    * A box containing sample sizes (e.g. stsz, stz2).
    */
-  private interface SampleSizeBox {
+  /* package */ interface SampleSizeBox {
 
     /**
      * Returns the number of samples.
      */
     int getSampleCount();
 
+    /**
+     * Returns the size of the sample at the specified index. Does not affect the position of
+     * {@link #readNextSampleSize()}.
+     *
+     * @param index The index of the sample.
+     */
+    int getSampleSize(int index);
+
     /**
      * Returns the size for the next sample.
      */
@@ -1218,6 +1221,8 @@ import java.util.List;
    */
   /* package */ static final class StszSampleSizeBox implements SampleSizeBox {
 
+    private static final int SAMPLE_SIZES_POSITION = Atom.FULL_HEADER_SIZE + 8;
+
     private final int fixedSampleSize;
     private final int sampleCount;
     private final ParsableByteArray data;
@@ -1234,6 +1239,17 @@ import java.util.List;
       return sampleCount;
     }
 
+    @Override
+    public int getSampleSize(int index) {
+      if (fixedSampleSize != 0) {
+        return fixedSampleSize;
+      }
+      byte[] sizes = data.data;
+      int position = SAMPLE_SIZES_POSITION + 4 * index;
+      return ((sizes[position] & 0xFF) << 24) | ((sizes[position + 1] & 0xFF) << 16)
+          | ((sizes[position + 2] & 0xFF) << 8) | (sizes[position + 3] & 0xFF);
+    }
+
     @Override
     public int readNextSampleSize() {
       return fixedSampleSize == 0 ? data.readUnsignedIntToInt() : fixedSampleSize;
@@ -1251,6 +1267,8 @@ import java.util.List;
    */
   /* package */ static final class Stz2SampleSizeBox implements SampleSizeBox {
 
+    private static final int SAMPLE_SIZES_POSITION = Atom.FULL_HEADER_SIZE + 8;
+
     private final ParsableByteArray data;
     private final int sampleCount;
     private final int fieldSize; // Can be 4, 8, or 16.
@@ -1271,6 +1289,21 @@ import java.util.List;
       return sampleCount;
     }
 
+    @Override
+    public int getSampleSize(int index) {
+      byte[] sizes = data.data;
+      if (fieldSize == 8) {
+        return sizes[SAMPLE_SIZES_POSITION + index] & 0xFF;
+      } else if (fieldSize == 16) {
+        int position = SAMPLE_SIZES_POSITION + 2 * index;
+        return ((sizes[position] & 0xFF) << 8) | (sizes[position + 1] & 0xFF);
+      } else {
+        // fieldSize == 4.
+        int currentByte = sizes[SAMPLE_SIZES_POSITION + index / 2];
+        return (index % 2) == 0 ? (currentByte & 0xF0) >> 4 : currentByte & 0x0F;
+      }
+    }
+
     @Override
     public int readNextSampleSize() {
       if (fieldSize == 8) {
@@ -0,0 +1,523 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import android.util.Log;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.mp4.AtomParsers.SampleSizeBox;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/**
+ * A {@link TrackSampleTable} that decodes sample information on demand from the sample table boxes
+ * of a track, rather than expanding it into arrays with one entry per sample.
+ * <p>
+ * Sample sizes, chunk offsets and synchronization samples are read directly from the stsz (or
+ * stz2), stco (or co64) and stss box data. The stts, ctts and stsc tables are kept run-length
+ * encoded, with sparse checkpoints so that the cost of random access is bounded. Sequential access,
+ * which is the common case during extraction, takes constant time per sample.
+ */
+/* package */ final class CompactTrackSampleTable extends TrackSampleTable {
+
+  private static final String TAG = "CompactTrackSampleTable";
+
+  /**
+   * The number of samples between checkpoints of the sample offset.
+   */
+  private static final int OFFSET_CHECKPOINT_INTERVAL = 256;
+
+  private static final int CHUNK_OFFSETS_POSITION = Atom.FULL_HEADER_SIZE + 4;
+  private static final int SYNC_SAMPLES_POSITION = Atom.FULL_HEADER_SIZE + 4;
+
+  private final long timescale;
+  private final SampleSizeBox sampleSizeBox;
+  private final int fixedSampleSize;
+  private final byte[] chunkOffsets;
+  private final boolean chunkOffsetsAreLongs;
+  private final int[] chunkRunFirstChunks;
+  private final int[] chunkRunFirstSamples;
+  private final int[] chunkRunSamplesPerChunk;
+  private final long[] offsetCheckpoints;
+  private final RunLengthTable timestampDeltas;
+  private final RunLengthTable timestampOffsets;
+  private final byte[] syncSamples;
+  private final int syncSampleCount;
+
+  private long mediaTimeOffset;
+  private int lastOffsetIndex;
+  private long lastOffset;
+
+  /**
+   * @param track The track to which this sample table corresponds.
+   * @param sampleSizeBox The box containing sample sizes.
+   * @param chunkOffsets The stco or co64 box data.
+   * @param chunkOffsetsAreLongs Whether {@code chunkOffsets} is co64 box data.
+   * @param stsc The stsc box data.
+   * @param stts The stts box data.
+   * @param ctts The ctts box data, or null if not present.
+   * @param stss The stss box data, or null if all samples are synchronization samples.
+   */
+  public CompactTrackSampleTable(Track track, SampleSizeBox sampleSizeBox,
+      ParsableByteArray chunkOffsets, boolean chunkOffsetsAreLongs, ParsableByteArray stsc,
+      ParsableByteArray stts, ParsableByteArray ctts, ParsableByteArray stss) {
+    super(sampleSizeBox.getSampleCount(), getMaximumSampleSize(sampleSizeBox));
+    this.sampleSizeBox = sampleSizeBox;
+    this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+    timescale = track.timescale;
+    fixedSampleSize = sampleSizeBox.isFixedSampleSize() ? sampleSizeBox.getSampleSize(0) : 0;
+
+    // Read the runs of chunks with the same number of samples per chunk.
+    this.chunkOffsets = chunkOffsets.data;
+    chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE);
+    int chunkCount = chunkOffsets.readUnsignedIntToInt();
+    stsc.setPosition(Atom.FULL_HEADER_SIZE);
+    int chunkRunCount = stsc.readUnsignedIntToInt();
+    Assertions.checkState(stsc.readInt() == 1, "first_chunk must be 1");
+    int[] runFirstChunks = new int[chunkRunCount];
+    int[] runSamplesPerChunk = new int[chunkRunCount];
+    int runCount = 0;
+    for (int i = 0; i < chunkRunCount; i++) {
+      int firstChunk = i == 0 ? 0 : stsc.readUnsignedIntToInt() - 1;
+      int samplesPerChunk = stsc.readUnsignedIntToInt();
+      stsc.skipBytes(4); // Skip sample_description_index
+      if (firstChunk >= chunkCount
+          || (runCount > 0 && firstChunk <= runFirstChunks[runCount - 1])) {
+        // The run does not apply to any chunk.
+        break;
+      }
+      runFirstChunks[runCount] = firstChunk;
+      runSamplesPerChunk[runCount] = samplesPerChunk;
+      runCount++;
+    }
+    chunkRunFirstChunks = Arrays.copyOf(runFirstChunks, runCount);
+    chunkRunSamplesPerChunk = Arrays.copyOf(runSamplesPerChunk, runCount);
+    chunkRunFirstSamples = new int[runCount];
+    long chunkSampleCount = 0;
+    for (int i = 0; i < runCount; i++) {
+      chunkRunFirstSamples[i] = (int) Math.min(chunkSampleCount, Integer.MAX_VALUE);
+      int runChunkCount = (i + 1 < runCount ? chunkRunFirstChunks[i + 1] : chunkCount)
+          - chunkRunFirstChunks[i];
+      chunkSampleCount += (long) runChunkCount * chunkRunSamplesPerChunk[i];
+    }
+    Assertions.checkState(chunkSampleCount >= sampleCount);
+
+    timestampDeltas = new RunLengthTable(stts);
+    timestampOffsets = ctts != null ? new RunLengthTable(ctts) : null;
+    Assertions.checkArgument(timestampOffsets == null
+        || timestampOffsets.sampleCount == sampleCount);
+
+    int syncSampleCount = 0;
+    if (stss != null) {
+      stss.setPosition(Atom.FULL_HEADER_SIZE);
+      syncSampleCount = stss.readUnsignedIntToInt();
+    }
+    // Ignore empty stss boxes, which causes all samples to be treated as sync samples.
+    this.syncSamples = syncSampleCount > 0 ? stss.data : null;
+    this.syncSampleCount = syncSampleCount;
+
+    lastOffsetIndex = C.INDEX_UNSET;
+    offsetCheckpoints = fixedSampleSize == 0 ? buildOffsetCheckpoints() : null;
+
+    // If the stbl's child boxes are not consistent the container is malformed, but the stream may
+    // still be playable.
+    int syncSamplesOutOfRange = syncSampleCount > 0
+        ? syncSampleCount - 1 - findLastSyncSamplePosition(sampleCount - 1) : 0;
+    if (chunkSampleCount != sampleCount || timestampDeltas.sampleCount != sampleCount
+        || syncSamplesOutOfRange != 0) {
+      Log.w(TAG, "Inconsistent stbl box for track " + track.id + ": sampleCount " + sampleCount
+          + ", chunkSampleCount " + chunkSampleCount + ", timestampDeltaSampleCount "
+          + timestampDeltas.sampleCount + ", syncSamplesOutOfRange " + syncSamplesOutOfRange);
+    }
+  }
+
+  /**
+   * Sets an offset in the track timescale that is subtracted from the timestamps of all samples,
+   * for applying an edit list that consists of a single edit that includes every sample.
+   *
+   * @param mediaTimeOffset The offset to subtract, in the track timescale.
+   */
+  public void setMediaTimeOffset(long mediaTimeOffset) {
+    this.mediaTimeOffset = mediaTimeOffset;
+  }
+
+  /**
+   * Returns the timestamp of a sample in the track timescale, ignoring any media time offset.
+   *
+   * @param index The index of the sample.
+   */
+  public long getTimestamp(int index) {
+    long timestamp = timestampDeltas.getAccumulatedValue(index);
+    return timestampOffsets == null ? timestamp
+        : timestamp + timestampOffsets.getValue(index);
+  }
+
+  /**
+   * Returns the decoding end time of the last sample in the track timescale.
+   */
+  public long getLastSampleEndTime() {
+    return timestampDeltas.getAccumulatedValue(sampleCount);
+  }
+
+  /**
+   * Returns whether at least one sample is a synchronization sample.
+   */
+  public boolean hasSynchronizationSample() {
+    return syncSamples == null || findLastSyncSamplePosition(sampleCount - 1) >= 0;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)} applied to the
+   * array of the timestamps returned by {@link #getTimestamp(int)}.
+   */
+  public int binarySearchCeilTimestamp(long timestamp, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearch(timestamp, false);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while ((++index) < sampleCount && getTimestamp(index) == timestamp) {}
+      if (inclusive) {
+        index--;
+      }
+    }
+    return stayInBounds ? Math.min(sampleCount - 1, index) : index;
+  }
+
+  // TrackSampleTable implementation.
+
+  @Override
+  public long getOffset(int index) {
+    if (index == lastOffsetIndex) {
+      return lastOffset;
+    }
+    // Find the last run of chunks that starts at or before the sample.
+    int runIndex = Util.binarySearchFloor(chunkRunFirstSamples, index + 1, false, false);
+    int runSampleIndex = index - chunkRunFirstSamples[runIndex];
+    int samplesPerChunk = chunkRunSamplesPerChunk[runIndex];
+    int chunkIndex = chunkRunFirstChunks[runIndex] + runSampleIndex / samplesPerChunk;
+    int firstSampleIndexInChunk = index - runSampleIndex % samplesPerChunk;
+
+    // Start from the closest known offset in the same chunk.
+    int sampleIndex = firstSampleIndexInChunk;
+    long offset = C.POSITION_UNSET;
+    if (offsetCheckpoints != null) {
+      int checkpointIndex = index / OFFSET_CHECKPOINT_INTERVAL;
+      int checkpointSampleIndex = checkpointIndex * OFFSET_CHECKPOINT_INTERVAL;
+      if (checkpointSampleIndex > sampleIndex) {
+        sampleIndex = checkpointSampleIndex;
+        offset = offsetCheckpoints[checkpointIndex];
+      }
+    }
+    if (lastOffsetIndex > sampleIndex && lastOffsetIndex < index) {
+      sampleIndex = lastOffsetIndex;
+      offset = lastOffset;
+    }
+    if (offset == C.POSITION_UNSET) {
+      offset = getChunkOffset(chunkIndex);
+    }
+    if (fixedSampleSize != 0) {
+      offset += (long) fixedSampleSize * (index - sampleIndex);
+    } else {
+      for (; sampleIndex < index; sampleIndex++) {
+        offset += sampleSizeBox.getSampleSize(sampleIndex);
+      }
+    }
+
+    lastOffsetIndex = index;
+    lastOffset = offset;
+    return offset;
+  }
+
+  @Override
+  public int getSize(int index) {
+    return fixedSampleSize != 0 ? fixedSampleSize : sampleSizeBox.getSampleSize(index);
+  }
+
+  @Override
+  public long getTimestampUs(int index) {
+    return Util.scaleLargeTimestamp(getTimestamp(index) - mediaTimeOffset, C.MICROS_PER_SECOND,
+        timescale);
+  }
+
+  @Override
+  public int getFlags(int index) {
+    if (syncSamples == null) {
+      return C.BUFFER_FLAG_KEY_FRAME;
+    }
+    int position = findLastSyncSamplePosition(index);
+    return position >= 0 && getSyncSampleIndex(position) == index ? C.BUFFER_FLAG_KEY_FRAME : 0;
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
+    // Frames are not reordered past synchronization samples so this works in practice.
+    int startIndex = binarySearchFloorTimeUs(timeUs);
+    if (startIndex < 0 || syncSamples == null) {
+      return startIndex < 0 ? C.INDEX_UNSET : startIndex;
+    }
+    int position = findLastSyncSamplePosition(startIndex);
+    return position >= 0 ? getSyncSampleIndex(position) : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = binarySearchCeilTimeUs(timeUs);
+    if (startIndex >= sampleCount || syncSamples == null) {
+      return startIndex >= sampleCount ? C.INDEX_UNSET : startIndex;
+    }
+    int position = findLastSyncSamplePosition(startIndex - 1) + 1;
+    if (position < syncSampleCount) {
+      int syncSampleIndex = getSyncSampleIndex(position);
+      if (syncSampleIndex < sampleCount) {
+        return syncSampleIndex;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  // Internal methods.
+
+  private long[] buildOffsetCheckpoints() {
+    long[] offsetCheckpoints = new long[(sampleCount + OFFSET_CHECKPOINT_INTERVAL - 1)
+        / OFFSET_CHECKPOINT_INTERVAL];
+    int sampleIndex = 0;
+    for (int runIndex = 0; sampleIndex < sampleCount; runIndex++) {
+      int samplesPerChunk = chunkRunSamplesPerChunk[runIndex];
+      int runEndSampleIndex = runIndex + 1 < chunkRunFirstSamples.length
+          ? chunkRunFirstSamples[runIndex + 1] : sampleCount;
+      for (int chunkIndex = chunkRunFirstChunks[runIndex];
+          sampleIndex < runEndSampleIndex && sampleIndex < sampleCount; chunkIndex++) {
+        long offset = getChunkOffset(chunkIndex);
+        for (int i = 0; i < samplesPerChunk && sampleIndex < sampleCount; i++) {
+          if (sampleIndex % OFFSET_CHECKPOINT_INTERVAL == 0) {
+            offsetCheckpoints[sampleIndex / OFFSET_CHECKPOINT_INTERVAL] = offset;
+          }
+          offset += sampleSizeBox.getSampleSize(sampleIndex++);
+        }
+      }
+    }
+    return offsetCheckpoints;
+  }
+
+  private long getChunkOffset(int chunkIndex) {
+    if (chunkOffsetsAreLongs) {
+      int position = CHUNK_OFFSETS_POSITION + 8 * chunkIndex;
+      return (readUnsignedInt(chunkOffsets, position) << 32)
+          | readUnsignedInt(chunkOffsets, position + 4);
+    } else {
+      return readUnsignedInt(chunkOffsets, CHUNK_OFFSETS_POSITION + 4 * chunkIndex);
+    }
+  }
+
+  private int getSyncSampleIndex(int position) {
+    return (int) readUnsignedInt(syncSamples, SYNC_SAMPLES_POSITION + 4 * position) - 1;
+  }
+
+  /**
+   * Returns the position in the stss box of the last synchronization sample at or before the
+   * specified sample index, or -1 if there is none.
+   */
+  private int findLastSyncSamplePosition(int index) {
+    int low = 0;
+    int high = syncSampleCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (getSyncSampleIndex(mid) <= index) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  private int binarySearchFloorTimeUs(long timeUs) {
+    int index = binarySearch(timeUs, true);
+    if (index < 0) {
+      index = -(index + 2);
+    } else {
+      while ((--index) >= 0 && getTimestampUs(index) == timeUs) {}
+      index++;
+    }
+    return index;
+  }
+
+  private int binarySearchCeilTimeUs(long timeUs) {
+    int index = binarySearch(timeUs, true);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while ((++index) < sampleCount && getTimestampUs(index) == timeUs) {}
+      index--;
+    }
+    return index;
+  }
+
+  /**
+   * Equivalent to {@link Arrays#binarySearch(long[], long)} applied to the array of sample
+   * timestamps. The same algorithm is used, so that the result is identical for the unsorted
+   * timestamps of streams with reordered frames.
+   */
+  private int binarySearch(long value, boolean inMicroseconds) {
+    int low = 0;
+    int high = sampleCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midValue = inMicroseconds ? getTimestampUs(mid) : getTimestamp(mid);
+      if (midValue < value) {
+        low = mid + 1;
+      } else if (midValue > value) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private static int getMaximumSampleSize(SampleSizeBox sampleSizeBox) {
+    int sampleCount = sampleSizeBox.getSampleCount();
+    if (sampleSizeBox.isFixedSampleSize()) {
+      return sampleCount > 0 ? sampleSizeBox.getSampleSize(0) : 0;
+    }
+    int maximumSize = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      maximumSize = Math.max(maximumSize, sampleSizeBox.getSampleSize(i));
+    }
+    return maximumSize;
+  }
+
+  private static long readUnsignedInt(byte[] data, int position) {
+    return (data[position] & 0xFFL) << 24 | (data[position + 1] & 0xFFL) << 16
+        | (data[position + 2] & 0xFFL) << 8 | (data[position + 3] & 0xFFL);
+  }
+
+  /**
+   * Provides random access to the values of a run-length encoded table of (sample_count, value)
+   * entries, such as an stts or ctts box. The value of the last entry applies to all samples after
+   * the end of the table.
+   */
+  private static final class RunLengthTable {
+
+    /**
+     * The number of entries between checkpoints.
+     */
+    private static final int CHECKPOINT_INTERVAL = 256;
+
+    private static final int ENTRIES_POSITION = Atom.FULL_HEADER_SIZE + 4;
+
+    /**
+     * The total number of samples described by the table.
+     */
+    public final int sampleCount;
+
+    private final byte[] data;
+    private final int entryCount;
+    private final int[] checkpointFirstSampleIndices;
+    private final long[] checkpointAccumulatedValues;
+
+    private int entryIndex;
+    private int entryFirstSampleIndex;
+    private int entrySampleCount;
+    private int entryValue;
+    private long entryAccumulatedValue;
+
+    public RunLengthTable(ParsableByteArray box) {
+      data = box.data;
+      box.setPosition(Atom.FULL_HEADER_SIZE);
+      entryCount = box.readUnsignedIntToInt();
+      int checkpointCount = (entryCount + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+      checkpointFirstSampleIndices = new int[checkpointCount];
+      checkpointAccumulatedValues = new long[checkpointCount];
+      long sampleCount = 0;
+      long accumulatedValue = 0;
+      for (int i = 0; i < entryCount; i++) {
+        if (i % CHECKPOINT_INTERVAL == 0) {
+          checkpointFirstSampleIndices[i / CHECKPOINT_INTERVAL] =
+              (int) Math.min(sampleCount, Integer.MAX_VALUE);
+          checkpointAccumulatedValues[i / CHECKPOINT_INTERVAL] = accumulatedValue;
+        }
+        int count = box.readUnsignedIntToInt();
+        accumulatedValue += (long) count * box.readInt();
+        sampleCount += count;
+      }
+      this.sampleCount = (int) Math.min(sampleCount, Integer.MAX_VALUE);
+      moveToCheckpoint(0);
+    }
+
+    /**
+     * Returns the value of the entry that includes the specified sample.
+     */
+    public int getValue(int sampleIndex) {
+      moveToSample(sampleIndex);
+      return entryValue;
+    }
+
+    /**
+     * Returns the sum of the values of all samples before the specified sample.
+     */
+    public long getAccumulatedValue(int sampleIndex) {
+      moveToSample(sampleIndex);
+      return entryAccumulatedValue + (long) entryValue * (sampleIndex - entryFirstSampleIndex);
+    }
+
+    private void moveToSample(int sampleIndex) {
+      int nextCheckpointIndex = entryIndex / CHECKPOINT_INTERVAL + 1;
+      if (sampleIndex < entryFirstSampleIndex || (nextCheckpointIndex < checkpointCount()
+          && sampleIndex >= checkpointFirstSampleIndices[nextCheckpointIndex])) {
+        // Find the last checkpoint at or before the sample.
+        moveToCheckpoint(Math.max(0,
+            Util.binarySearchFloor(checkpointFirstSampleIndices, sampleIndex + 1, false, false)));
+      }
+      while (entryIndex < entryCount - 1
+          && sampleIndex >= entryFirstSampleIndex + entrySampleCount) {
+        entryAccumulatedValue += (long) entryValue * entrySampleCount;
+        entryFirstSampleIndex += entrySampleCount;
+        readEntry(entryIndex + 1);
+      }
+    }
+
+    private void moveToCheckpoint(int checkpointIndex) {
+      if (checkpointIndex >= checkpointCount()) {
+        // The table is empty.
+        entryIndex = 0;
+        entryFirstSampleIndex = 0;
+        entrySampleCount = 0;
+        entryValue = 0;
+        entryAccumulatedValue = 0;
+        return;
+      }
+      entryFirstSampleIndex = checkpointFirstSampleIndices[checkpointIndex];
+      entryAccumulatedValue = checkpointAccumulatedValues[checkpointIndex];
+      readEntry(checkpointIndex * CHECKPOINT_INTERVAL);
+    }
+
+    private void readEntry(int entryIndex) {
+      this.entryIndex = entryIndex;
+      int position = ENTRIES_POSITION + 8 * entryIndex;
+      entrySampleCount = (int) readUnsignedInt(data, position);
+      entryValue = (int) readUnsignedInt(data, position + 4);
+    }
+
+    private int checkpointCount() {
+      return checkpointFirstSampleIndices.length;
+    }
+
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.extractor.SeekMap;
+import java.util.Arrays;
+
+/**
+ * A {@link SeekMap} for fragmented MP4 streams, mapping times to the positions of moof boxes whose
+ * fragments start with a random access point.
+ * <p>
+ * Entries may be added while the index is in use, which allows the index to be populated either
+ * from a movie fragment random access (mfra) box or incrementally as fragments are parsed.
+ */
+/* package */ final class FragmentIndex implements SeekMap {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final long durationUs;
+  private final long[][] timesUs;
+  private final long[][] positions;
+  private final int[] sizes;
+
+  /**
+   * @param trackCount The number of tracks for which entries may be added.
+   * @param durationUs The duration of the stream in microseconds, or
+   *     {@link com.google.android.exoplayer2.C#TIME_UNSET} if unknown.
+   */
+  public FragmentIndex(int trackCount, long durationUs) {
+    this.durationUs = durationUs;
+    timesUs = new long[trackCount][INITIAL_CAPACITY];
+    positions = new long[trackCount][INITIAL_CAPACITY];
+    sizes = new int[trackCount];
+  }
+
+  /**
+   * Adds an entry for a track. The entry is ignored if its position or time does not follow the
+   * last entry for the track.
+   *
+   * @param trackIndex The index of the track.
+   * @param timeUs The time of the random access point in microseconds.
+   * @param position The position of the moof box containing the random access point.
+   */
+  public synchronized void add(int trackIndex, long timeUs, long position) {
+    int size = sizes[trackIndex];
+    if (size > 0 && (position <= positions[trackIndex][size - 1]
+        || timeUs < timesUs[trackIndex][size - 1])) {
+      return;
+    }
+    if (size == timesUs[trackIndex].length) {
+      timesUs[trackIndex] = Arrays.copyOf(timesUs[trackIndex], size * 2);
+      positions[trackIndex] = Arrays.copyOf(positions[trackIndex], size * 2);
+    }
+    timesUs[trackIndex][size] = timeUs;
+    positions[trackIndex][size] = position;
+    sizes[trackIndex] = size + 1;
+  }
+
+  /**
+   * Returns the number of entries for a track.
+   *
+   * @param trackIndex The index of the track.
+   */
+  public synchronized int getEntryCount(int trackIndex) {
+    return sizes[trackIndex];
+  }
+
+  /**
+   * Returns whether the index has at least one entry.
+   */
+  public synchronized boolean isEmpty() {
+    for (int size : sizes) {
+      if (size > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // SeekMap implementation.
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Returns the earliest of the positions from which each indexed track can be decoded at the
+   * given time, so that no track starts after its nearest preceding random access point.
+   */
+  @Override
+  public synchronized long getPosition(long timeUs) {
+    long position = Long.MAX_VALUE;
+    for (int i = 0; i < sizes.length; i++) {
+      int size = sizes[i];
+      if (size == 0) {
+        continue;
+      }
+      int index = Arrays.binarySearch(timesUs[i], 0, size, timeUs);
+      if (index < 0) {
+        index = Math.max(0, -(index + 1) - 1);
+      } else {
+        // Use the first of any entries with an equal time.
+        while (index > 0 && timesUs[i][index - 1] == timeUs) {
+          index--;
+        }
+      }
+      position = Math.min(position, positions[i][index]);
+    }
+    return position == Long.MAX_VALUE ? 0 : position;
+  }
+
+}
@@ -74,7 +74,7 @@ public final class FragmentedMp4Extractor implements Extractor {
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(flag = true, value = {FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME,
       FLAG_WORKAROUND_IGNORE_TFDT_BOX, FLAG_ENABLE_EMSG_TRACK, FLAG_ENABLE_CEA608_TRACK,
-      FLAG_SIDELOADED})
+      FLAG_ENABLE_FRAGMENT_INDEX, FLAG_SIDELOADED})
   public @interface Flags {}
   /**
    * Flag to work around an issue in some video streams where every frame is marked as a sync frame.
@@ -98,6 +98,12 @@ public final class FragmentedMp4Extractor implements Extractor {
    * contained within SEI NAL units in the stream will be delivered as samples to this track.
    */
   public static final int FLAG_ENABLE_CEA608_TRACK = 8;
+  /**
+   * Flag to make streams that have neither a sidx box nor a movie fragment random access (mfra) box
+   * seekable, using an index of the fragments that have been parsed so far. Seeking beyond the last
+   * indexed fragment starts from that fragment. Fragments are assumed to contain tfdt boxes.
+   */
+  public static final int FLAG_ENABLE_FRAGMENT_INDEX = 32;
   /**
    * Flag to indicate that the {@link Track} was sideloaded, instead of being declared by the MP4
    * container.
@@ -115,6 +121,13 @@ public final class FragmentedMp4Extractor implements Extractor {
   private static final int STATE_READING_ENCRYPTION_DATA = 2;
   private static final int STATE_READING_SAMPLE_START = 3;
   private static final int STATE_READING_SAMPLE_CONTINUE = 4;
+  private static final int STATE_READING_MFRA = 5;
+
+  // The number of bytes read from the end of the stream when looking for an mfra box. Most mfra
+  // boxes fit, in which case the seek map is built with a single extra request.
+  private static final int MFRA_SEARCH_LENGTH = 16 * 1024;
+  private static final int MAXIMUM_MFRA_SIZE = 8 * 1024 * 1024;
+  private static final int MFRO_SIZE = 16;
 
   // Workarounds.
   @Flags private final int flags;
@@ -153,6 +166,10 @@ public final class FragmentedMp4Extractor implements Extractor {
   private int sampleBytesWritten;
   private int sampleCurrentNalBytesRemaining;
   private boolean processSeiNalUnitPayload;
+  private boolean searchedForMfra;
+  private long mfraSearchPosition;
+  private long mfraResumePosition;
+  private FragmentIndex fragmentIndex;
 
   // Extractor output.
   private ExtractorOutput extractorOutput;
@@ -246,10 +263,13 @@ public final class FragmentedMp4Extractor implements Extractor {
     while (true) {
       switch (parserState) {
         case STATE_READING_ATOM_HEADER:
-          if (!readAtomHeader(input)) {
+          if (!readAtomHeader(input, seekPosition)) {
             return Extractor.RESULT_END_OF_INPUT;
           }
           break;
+        case STATE_READING_MFRA:
+          readMfra(input, seekPosition);
+          return RESULT_SEEK;
         case STATE_READING_ATOM_PAYLOAD:
           readAtomPayload(input);
           break;
@@ -269,7 +289,8 @@ public final class FragmentedMp4Extractor implements Extractor {
     atomHeaderBytesRead = 0;
   }
 
-  private boolean readAtomHeader(ExtractorInput input) throws IOException, InterruptedException {
+  private boolean readAtomHeader(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
     if (atomHeaderBytesRead == 0) {
       // Read the standard length atom header.
       if (!input.readFully(atomHeader.data, 0, Atom.HEADER_SIZE, true)) {
@@ -306,11 +327,19 @@ public final class FragmentedMp4Extractor implements Extractor {
     }
 
     if (atomType == Atom.TYPE_mdat) {
+      if (!haveOutputSeekMap && !searchedForMfra && seekPosition != null
+          && input.getLength() != C.LENGTH_UNSET && trackBundles.size() > 0) {
+        // Look for an mfra box at the end of the stream, then return to read this mdat.
+        searchedForMfra = true;
+        mfraResumePosition = atomPosition;
+        mfraSearchPosition = Math.max(0, input.getLength() - MFRA_SEARCH_LENGTH);
+        parserState = STATE_READING_MFRA;
+        return true;
+      }
       currentTrackBundle = null;
       endOfMdatPosition = atomPosition + atomSize;
       if (!haveOutputSeekMap) {
-        extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
-        haveOutputSeekMap = true;
+        outputFragmentIndexOrUnseekable();
       }
       parserState = STATE_READING_ENCRYPTION_DATA;
       return true;
@@ -346,6 +375,69 @@ public final class FragmentedMp4Extractor implements Extractor {
     return true;
   }
 
+  /**
+   * Reads the movie fragment random access box at the end of the stream, if present, and outputs a
+   * seek map. The caller must return {@link #RESULT_SEEK} after calling this method.
+   */
+  private void readMfra(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
+    if (input.getPosition() != mfraSearchPosition) {
+      seekPosition.position = mfraSearchPosition;
+      return;
+    }
+    long inputLength = input.getLength();
+    ParsableByteArray tail = new ParsableByteArray((int) (inputLength - mfraSearchPosition));
+    input.readFully(tail.data, 0, tail.limit());
+    long mfraSize = C.LENGTH_UNSET;
+    if (tail.limit() >= MFRO_SIZE) {
+      tail.setPosition(tail.limit() - MFRO_SIZE);
+      if (tail.readInt() == MFRO_SIZE && tail.readInt() == Atom.TYPE_mfro) {
+        tail.skipBytes(4); // version (1), flags (3)
+        mfraSize = tail.readUnsignedInt();
+      }
+    }
+    if (mfraSize > tail.limit() && mfraSize <= MAXIMUM_MFRA_SIZE && mfraSize <= inputLength) {
+      // The mfra box starts before the data that was read. Read it in full.
+      mfraSearchPosition = inputLength - mfraSize;
+      seekPosition.position = mfraSearchPosition;
+      return;
+    }
+    if (mfraSize >= Atom.HEADER_SIZE && mfraSize <= tail.limit()) {
+      tail.setPosition((int) (tail.limit() - mfraSize));
+      if (tail.readInt() == mfraSize && tail.readInt() == Atom.TYPE_mfra) {
+        FragmentIndex mfraIndex = parseMfra(tail, tail.limit(), trackBundles, durationUs);
+        if (!mfraIndex.isEmpty()) {
+          fragmentIndex = null;
+          extractorOutput.seekMap(mfraIndex);
+          haveOutputSeekMap = true;
+        }
+      }
+    }
+    enterReadingAtomHeaderState();
+    seekPosition.position = mfraResumePosition;
+  }
+
+  private void outputFragmentIndexOrUnseekable() {
+    if ((flags & FLAG_ENABLE_FRAGMENT_INDEX) != 0 && trackBundles.size() > 0) {
+      fragmentIndex = new FragmentIndex(trackBundles.size(), durationUs);
+      updateFragmentIndex();
+      extractorOutput.seekMap(fragmentIndex);
+    } else {
+      extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+    }
+    haveOutputSeekMap = true;
+  }
+
+  private void updateFragmentIndex() {
+    int trackCount = trackBundles.size();
+    for (int i = 0; i < trackCount; i++) {
+      TrackFragment fragment = trackBundles.valueAt(i).fragment;
+      if (fragment.sampleCount > 0 && fragment.sampleIsSyncFrameTable[0]) {
+        fragmentIndex.add(i, fragment.getSamplePresentationTime(0) * 1000L, fragment.atomPosition);
+      }
+    }
+  }
+
   private void readAtomPayload(ExtractorInput input) throws IOException, InterruptedException {
     int atomPayloadSize = (int) atomSize - atomHeaderBytesRead;
     if (atomData != null) {
@@ -444,6 +536,9 @@ public final class FragmentedMp4Extractor implements Extractor {
 
   private void onMoofContainerAtomRead(ContainerAtom moof) throws ParserException {
     parseMoof(moof, trackBundles, flags, extendedTypeScratch);
+    if (fragmentIndex != null) {
+      updateFragmentIndex();
+    }
     DrmInitData drmInitData = getDrmInitDataFromAtoms(moof.leafChildren);
     if (drmInitData != null) {
       int trackCount = trackBundles.size();
@@ -525,6 +620,65 @@ public final class FragmentedMp4Extractor implements Extractor {
     return version == 0 ? mehd.readUnsignedInt() : mehd.readUnsignedLongToLong();
   }
 
+  /**
+   * Parses the tfra boxes of an mfra atom (defined in 14496-12) into a {@link FragmentIndex}. Boxes
+   * for unknown tracks are ignored.
+   *
+   * @param mfra The data, positioned after the mfra header.
+   * @param mfraEndPosition The position in {@code mfra} at which the atom ends.
+   * @param trackBundles The track bundles, keyed by track id.
+   * @param durationUs The duration of the stream in microseconds, or {@link C#TIME_UNSET}.
+   * @return The index.
+   */
+  private static FragmentIndex parseMfra(ParsableByteArray mfra, int mfraEndPosition,
+      SparseArray<TrackBundle> trackBundles, long durationUs) {
+    FragmentIndex index = new FragmentIndex(trackBundles.size(), durationUs);
+    while (mfraEndPosition - mfra.getPosition() >= Atom.HEADER_SIZE) {
+      int childPosition = mfra.getPosition();
+      int childSize = mfra.readInt();
+      if (childSize < Atom.HEADER_SIZE || childSize > mfraEndPosition - childPosition) {
+        break;
+      }
+      if (mfra.readInt() == Atom.TYPE_tfra) {
+        parseTfra(mfra, trackBundles, index);
+      }
+      mfra.setPosition(childPosition + childSize);
+    }
+    return index;
+  }
+
+  /**
+   * Parses a tfra atom (defined in 14496-12), positioned after its header, into an index.
+   */
+  private static void parseTfra(ParsableByteArray tfra, SparseArray<TrackBundle> trackBundles,
+      FragmentIndex index) {
+    int version = Atom.parseFullAtomVersion(tfra.readInt());
+    int trackIndex = trackBundles.indexOfKey(tfra.readInt());
+    if (trackIndex < 0) {
+      return;
+    }
+    Track track = trackBundles.valueAt(trackIndex).track;
+    int lengthSizes = tfra.readInt();
+    int entryNumbersSize = ((lengthSizes >> 4) & 0x3) + ((lengthSizes >> 2) & 0x3)
+        + (lengthSizes & 0x3) + 3; // traf_number, trun_number, sample_number
+    long entryCount = tfra.readUnsignedInt();
+    long edtsOffsetUs = 0;
+    if (track.editListDurations != null && track.editListDurations.length == 1
+        && track.editListDurations[0] == 0) {
+      edtsOffsetUs = Util.scaleLargeTimestamp(track.editListMediaTimes[0], C.MICROS_PER_SECOND,
+          track.timescale);
+    }
+    int entrySize = (version == 1 ? 16 : 8) + entryNumbersSize;
+    for (long i = 0; i < entryCount && tfra.bytesLeft() >= entrySize; i++) {
+      long time = version == 1 ? tfra.readUnsignedLongToLong() : tfra.readUnsignedInt();
+      long moofOffset = version == 1 ? tfra.readUnsignedLongToLong() : tfra.readUnsignedInt();
+      tfra.skipBytes(entryNumbersSize);
+      index.add(trackIndex,
+          Util.scaleLargeTimestamp(time, C.MICROS_PER_SECOND, track.timescale) - edtsOffsetUs,
+          moofOffset);
+    }
+  }
+
   private static void parseMoof(ContainerAtom moof, SparseArray<TrackBundle> trackBundleArray,
       @Flags int flags, byte[] extendedTypeScratch) throws ParserException {
     int moofContainerChildrenSize = moof.containerChildren.size();
@@ -178,7 +178,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         // Handle the case where the requested time is before the first synchronization sample.
         sampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
       }
-      long offset = sampleTable.offsets[sampleIndex];
+      long offset = sampleTable.getOffset(sampleIndex);
       if (offset < earliestSamplePosition) {
         earliestSamplePosition = offset;
       }
@@ -363,7 +363,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       durationUs = Math.max(durationUs, track.durationUs);
       tracks.add(mp4Track);
 
-      long firstSampleOffset = trackSampleTable.offsets[0];
+      long firstSampleOffset = trackSampleTable.getOffset(0);
       if (firstSampleOffset < earliestSampleOffset) {
         earliestSampleOffset = firstSampleOffset;
       }
@@ -399,8 +399,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[trackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     if (track.track.sampleTransformation == Track.TRANSFORMATION_CEA608_CDAT) {
       // The sample information is contained in a cdat atom. The header must be discarded for
       // committing.
@@ -450,8 +450,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         sampleCurrentNalBytesRemaining -= writtenBytes;
       }
     }
-    trackOutput.sampleMetadata(track.sampleTable.timestampsUs[sampleIndex],
-        track.sampleTable.flags[sampleIndex], sampleSize, 0, null);
+    trackOutput.sampleMetadata(track.sampleTable.getTimestampUs(sampleIndex),
+        track.sampleTable.getFlags(sampleIndex), sampleSize, 0, null);
     track.sampleIndex++;
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
@@ -472,7 +472,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         continue;
       }
 
-      long trackSampleOffset = track.sampleTable.offsets[sampleIndex];
+      long trackSampleOffset = track.sampleTable.getOffset(sampleIndex);
       if (trackSampleOffset < earliestSampleOffset) {
         earliestSampleOffset = trackSampleOffset;
         earliestSampleTrackIndex = trackIndex;
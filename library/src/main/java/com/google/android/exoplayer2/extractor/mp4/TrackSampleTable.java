@@ -16,52 +16,55 @@
 package com.google.android.exoplayer2.extractor.mp4;
 
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.util.Assertions;
-import com.google.android.exoplayer2.util.Util;
 
 /**
  * Sample table for a track in an MP4 file.
+ * <p>
+ * Implementations are not thread safe.
  */
-/* package */ final class TrackSampleTable {
+/* package */ abstract class TrackSampleTable {
 
   /**
    * Number of samples.
    */
   public final int sampleCount;
   /**
-   * Sample offsets in bytes.
+   * Maximum sample size in bytes.
    */
-  public final long[] offsets;
+  public final int maximumSize;
+
+  protected TrackSampleTable(int sampleCount, int maximumSize) {
+    this.sampleCount = sampleCount;
+    this.maximumSize = maximumSize;
+  }
+
   /**
-   * Sample sizes in bytes.
+   * Returns the offset of a sample in bytes.
+   *
+   * @param index The index of the sample.
    */
-  public final int[] sizes;
+  public abstract long getOffset(int index);
+
   /**
-   * Maximum sample size in {@link #sizes}.
+   * Returns the size of a sample in bytes.
+   *
+   * @param index The index of the sample.
    */
-  public final int maximumSize;
+  public abstract int getSize(int index);
+
   /**
-   * Sample timestamps in microseconds.
+   * Returns the timestamp of a sample in microseconds.
+   *
+   * @param index The index of the sample.
    */
-  public final long[] timestampsUs;
+  public abstract long getTimestampUs(int index);
+
   /**
-   * Sample flags.
+   * Returns the flags of a sample.
+   *
+   * @param index The index of the sample.
    */
-  public final int[] flags;
-
-  public TrackSampleTable(long[] offsets, int[] sizes, int maximumSize, long[] timestampsUs,
-      int[] flags) {
-    Assertions.checkArgument(sizes.length == timestampsUs.length);
-    Assertions.checkArgument(offsets.length == timestampsUs.length);
-    Assertions.checkArgument(flags.length == timestampsUs.length);
-
-    this.offsets = offsets;
-    this.sizes = sizes;
-    this.maximumSize = maximumSize;
-    this.timestampsUs = timestampsUs;
-    this.flags = flags;
-    sampleCount = offsets.length;
-  }
+  public abstract int getFlags(int index);
 
   /**
    * Returns the sample index of the closest synchronization sample at or before the given
@@ -70,17 +73,7 @@ import com.google.android.exoplayer2.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
-  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
-    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
-    // Frames are not reordered past synchronization samples so this works in practice.
-    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i >= 0; i--) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
-        return i;
-      }
-    }
-    return C.INDEX_UNSET;
-  }
+  public abstract int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs);
 
   /**
    * Returns the sample index of the closest synchronization sample at or after the given timestamp,
@@ -89,14 +82,6 @@ import com.google.android.exoplayer2.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
-  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
-    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i < timestampsUs.length; i++) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
-        return i;
-      }
-    }
-    return C.INDEX_UNSET;
-  }
+  public abstract int getIndexOfLaterOrEqualSynchronizationSample(long timeUs);
 
 }
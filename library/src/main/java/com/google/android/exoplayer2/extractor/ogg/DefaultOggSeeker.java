@@ -15,15 +15,23 @@
  */
 package com.google.android.exoplayer2.extractor.ogg;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Used to seek in an Ogg stream.
+ * <p>
+ * Seeking is performed by interpolation search on the granule positions of pages, falling back to
+ * bisection when interpolation fails to halve the search range. The positions and granules of pages
+ * discovered whilst seeking are cached and used to narrow the search range of subsequent seeks. If
+ * a full scan is requested then the header of every page is read when the seeker is initialized,
+ * after which seeks are resolved from the cache without any further searching.
  */
 /* package */ final class DefaultOggSeeker implements OggSeeker {
 
@@ -37,11 +45,15 @@ import java.io.IOException;
   private static final int STATE_READ_LAST_PAGE = 1;
   private static final int STATE_SEEK = 2;
   private static final int STATE_IDLE = 3;
+  private static final int STATE_SCAN_PAGES = 4;
+
+  private static final int INITIAL_CACHE_CAPACITY = 64;
 
   private final OggPageHeader pageHeader = new OggPageHeader();
   private final long startPosition;
   private final long endPosition;
   private final StreamReader streamReader;
+  private final boolean scanAllPages;
 
   private int state;
   private long totalGranules;
@@ -52,6 +64,13 @@ import java.io.IOException;
   private long end;
   private long startGranule;
   private long endGranule;
+  private long previousSearchRange;
+  private boolean searchRangeNarrowed;
+
+  private long[] cachedPagePositions;
+  private long[] cachedPageGranules;
+  private int[] cachedPageSizes;
+  private int cachedPageCount;
 
   /**
    * Constructs an OggSeeker.
@@ -63,10 +82,30 @@ import java.io.IOException;
    */
   public DefaultOggSeeker(long startPosition, long endPosition, StreamReader streamReader,
       int firstPayloadPageSize, long firstPayloadPageGranulePosition) {
+    this(startPosition, endPosition, streamReader, firstPayloadPageSize,
+        firstPayloadPageGranulePosition, false);
+  }
+
+  /**
+   * Constructs an OggSeeker.
+   * @param startPosition Start position of the payload (inclusive).
+   * @param endPosition End position of the payload (exclusive).
+   * @param streamReader StreamReader instance which owns this OggSeeker
+   * @param firstPayloadPageSize The total size of the first payload page, in bytes.
+   * @param firstPayloadPageGranulePosition The granule position of the first payload page.
+   * @param scanAllPages Whether to read the header of every page in the stream during
+   *     initialization, rather than only the last page. This is only sensible for local streams.
+   */
+  public DefaultOggSeeker(long startPosition, long endPosition, StreamReader streamReader,
+      int firstPayloadPageSize, long firstPayloadPageGranulePosition, boolean scanAllPages) {
     Assertions.checkArgument(startPosition >= 0 && endPosition > startPosition);
     this.streamReader = streamReader;
     this.startPosition = startPosition;
     this.endPosition = endPosition;
+    this.scanAllPages = scanAllPages;
+    cachedPagePositions = new long[INITIAL_CACHE_CAPACITY];
+    cachedPageGranules = new long[INITIAL_CACHE_CAPACITY];
+    cachedPageSizes = new int[INITIAL_CACHE_CAPACITY];
     if (firstPayloadPageSize == endPosition - startPosition) {
       totalGranules = firstPayloadPageGranulePosition;
       state = STATE_IDLE;
@@ -82,6 +121,10 @@ import java.io.IOException;
         return -1;
       case STATE_SEEK_TO_END:
         positionBeforeSeekToEnd = input.getPosition();
+        if (scanAllPages) {
+          state = STATE_SCAN_PAGES;
+          return read(input);
+        }
         state = STATE_READ_LAST_PAGE;
         // Seek to the end just before the last page of stream to get the duration.
         long lastPageSearchPosition = endPosition - OggPageHeader.MAX_PAGE_SIZE;
@@ -93,6 +136,10 @@ import java.io.IOException;
         totalGranules = readGranuleOfLastPage(input);
         state = STATE_IDLE;
         return positionBeforeSeekToEnd;
+      case STATE_SCAN_PAGES:
+        totalGranules = scanPages(input);
+        state = STATE_IDLE;
+        return positionBeforeSeekToEnd;
       case STATE_SEEK:
         long currentGranule;
         if (targetGranule == 0) {
@@ -132,6 +179,8 @@ import java.io.IOException;
     end = endPosition;
     startGranule = 0;
     endGranule = totalGranules;
+    previousSearchRange = 0;
+    searchRangeNarrowed = false;
   }
 
   /**
@@ -151,11 +200,20 @@ import java.io.IOException;
   //@VisibleForTesting
   public long getNextSeekPosition(long targetGranule, ExtractorInput input)
       throws IOException, InterruptedException {
+    if (!searchRangeNarrowed) {
+      narrowSearchRange(targetGranule);
+      searchRangeNarrowed = true;
+    }
     if (start == end) {
-      return -(startGranule + 2);
+      return input.getPosition() == start ? -(startGranule + 2) : start;
     }
 
     long initialPosition = input.getPosition();
+    if (initialPosition < start || initialPosition >= end) {
+      // The search range was narrowed using cached pages that exclude the current position.
+      long nextPosition = interpolatePosition(targetGranule, start, end, startGranule, endGranule);
+      return Math.min(Math.max(nextPosition, start), end - 1);
+    }
     if (!skipToNextPage(input, end)) {
       if (start == initialPosition) {
         throw new IOException("No ogg page can be found.");
@@ -168,9 +226,10 @@ import java.io.IOException;
 
     long granuleDistance = targetGranule - pageHeader.granulePosition;
     int pageSize = pageHeader.headerSize + pageHeader.bodySize;
+    cachePage(input.getPosition(), pageHeader.granulePosition, pageSize);
     if (granuleDistance < 0 || granuleDistance > MATCH_RANGE) {
       if (granuleDistance < 0) {
-        end = initialPosition;
+        end = input.getPosition();
         endGranule = pageHeader.granulePosition;
       } else {
         start = input.getPosition() + pageSize;
@@ -186,9 +245,15 @@ import java.io.IOException;
         return start;
       }
 
-      long offset = pageSize * (granuleDistance <= 0 ? 2 : 1);
-      long nextPosition = input.getPosition() - offset
-          + (granuleDistance * (end - start) / (endGranule - startGranule));
+      long nextPosition;
+      if (previousSearchRange != 0 && end - start > previousSearchRange / 2) {
+        // Interpolation is converging slowly, so bisect instead.
+        nextPosition = start + (end - start) / 2;
+      } else {
+        nextPosition = interpolatePosition(targetGranule, start, end, startGranule, endGranule)
+            - pageSize;
+      }
+      previousSearchRange = end - start;
 
       nextPosition = Math.max(nextPosition, start);
       nextPosition = Math.min(nextPosition, end - 1);
@@ -200,15 +265,123 @@ import java.io.IOException;
     return -(pageHeader.granulePosition + 2);
   }
 
-  private long getEstimatedPosition(long position, long granuleDistance, long offset) {
-    position += (granuleDistance * (endPosition - startPosition) / totalGranules) - offset;
-    if (position < startPosition) {
-      position = startPosition;
+  /**
+   * Narrows the search range to the closest cached pages either side of the target granule. If
+   * the page preceding the target is close enough to skip to the target page from, the range is
+   * collapsed to the end of that page.
+   */
+  private synchronized void narrowSearchRange(long targetGranule) {
+    int index = getCachedPageIndexBefore(targetGranule);
+    if (index >= 0) {
+      start = cachedPagePositions[index] + cachedPageSizes[index];
+      startGranule = cachedPageGranules[index];
     }
-    if (position >= endPosition) {
-      position = endPosition - 1;
+    if (index + 1 < cachedPageCount) {
+      end = cachedPagePositions[index + 1];
+      endGranule = cachedPageGranules[index + 1];
+    }
+    if (index >= 0 && (targetGranule - startGranule <= MATCH_RANGE || start == end)) {
+      end = start;
     }
-    return position;
+  }
+
+  /**
+   * Returns an estimate of the position from which to start seeking to a target granule, using the
+   * cached pages either side of it.
+   */
+  private synchronized long getEstimatedPosition(long targetGranule) {
+    int index = getCachedPageIndexBefore(targetGranule);
+    long start = startPosition;
+    long startGranule = 0;
+    long end = endPosition;
+    long endGranule = totalGranules;
+    if (index >= 0) {
+      start = cachedPagePositions[index] + cachedPageSizes[index];
+      startGranule = cachedPageGranules[index];
+      if (targetGranule - startGranule <= MATCH_RANGE) {
+        return start;
+      }
+    }
+    if (index + 1 < cachedPageCount) {
+      end = cachedPagePositions[index + 1];
+      endGranule = cachedPageGranules[index + 1];
+    }
+    if (start >= end) {
+      return start;
+    }
+    long position = interpolatePosition(targetGranule, start, end, startGranule, endGranule)
+        - DEFAULT_OFFSET;
+    return Math.min(Math.max(position, start), end - 1);
+  }
+
+  /**
+   * Interpolates the position of a page whose granule is just before the target, aiming for the
+   * middle of the range of granules from which the target can be reached by skipping pages.
+   */
+  private static long interpolatePosition(long targetGranule, long start, long end,
+      long startGranule, long endGranule) {
+    if (endGranule <= startGranule) {
+      return start;
+    }
+    long granuleDistance = Math.max(0, targetGranule - startGranule - MATCH_RANGE / 2);
+    return start + granuleDistance * (end - start) / (endGranule - startGranule);
+  }
+
+  /**
+   * Caches the position and granule of a page. Pages that do not end a packet, and pages that are
+   * inconsistent with the cached pages either side of them, are ignored.
+   */
+  private synchronized void cachePage(long position, long granule, int size) {
+    if (granule < 0) {
+      return;
+    }
+    int index = Arrays.binarySearch(cachedPagePositions, 0, cachedPageCount, position);
+    if (index >= 0) {
+      return;
+    }
+    index = -(index + 1);
+    if ((index > 0 && cachedPageGranules[index - 1] > granule)
+        || (index < cachedPageCount && cachedPageGranules[index] < granule)) {
+      return;
+    }
+    if (cachedPageCount == cachedPagePositions.length) {
+      int capacity = cachedPageCount * 2;
+      cachedPagePositions = Arrays.copyOf(cachedPagePositions, capacity);
+      cachedPageGranules = Arrays.copyOf(cachedPageGranules, capacity);
+      cachedPageSizes = Arrays.copyOf(cachedPageSizes, capacity);
+    }
+    int count = cachedPageCount - index;
+    System.arraycopy(cachedPagePositions, index, cachedPagePositions, index + 1, count);
+    System.arraycopy(cachedPageGranules, index, cachedPageGranules, index + 1, count);
+    System.arraycopy(cachedPageSizes, index, cachedPageSizes, index + 1, count);
+    cachedPagePositions[index] = position;
+    cachedPageGranules[index] = granule;
+    cachedPageSizes[index] = size;
+    cachedPageCount++;
+  }
+
+  /**
+   * Returns the index of the last cached page whose granule is before the target granule, or -1 if
+   * there is no such page.
+   */
+  private int getCachedPageIndexBefore(long targetGranule) {
+    int index = Arrays.binarySearch(cachedPageGranules, 0, cachedPageCount, targetGranule);
+    if (index < 0) {
+      return -(index + 1) - 1;
+    }
+    // Use the page before the first of any pages with a granule equal to the target.
+    while (index > 0 && cachedPageGranules[index - 1] == targetGranule) {
+      index--;
+    }
+    return index - 1;
+  }
+
+  /**
+   * Returns the number of cached pages.
+   */
+  //@VisibleForTesting
+  /* package */ synchronized int getCachedPageCount() {
+    return cachedPageCount;
   }
 
   private class OggSeekMap implements SeekMap {
@@ -223,8 +396,7 @@ import java.io.IOException;
       if (timeUs == 0) {
         return startPosition;
       }
-      long granule = streamReader.convertTimeToGranule(timeUs);
-      return getEstimatedPosition(startPosition, granule, DEFAULT_OFFSET);
+      return getEstimatedPosition(streamReader.convertTimeToGranule(timeUs));
     }
 
     @Override
@@ -309,6 +481,32 @@ import java.io.IOException;
     return pageHeader.granulePosition;
   }
 
+  /**
+   * Reads the header of every page from the current position to the end of the stream, caching
+   * the position and granule of each.
+   *
+   * @param input The {@link ExtractorInput} to read from.
+   * @return The granule of the last page, which is the total number of samples per channel.
+   * @throws IOException thrown if reading from the input fails.
+   * @throws InterruptedException thrown if interrupted while reading from the input.
+   */
+  private long scanPages(ExtractorInput input) throws IOException, InterruptedException {
+    // The input may be part way through a page if a previous attempt to scan failed.
+    if (!skipToNextPage(input, endPosition)) {
+      return totalGranules;
+    }
+    pageHeader.reset();
+    while ((pageHeader.type & 0x04) != 0x04 && input.getPosition() < endPosition) {
+      pageHeader.populate(input, false);
+      int pageSize = pageHeader.headerSize + pageHeader.bodySize;
+      cachePage(input.getPosition(), pageHeader.granulePosition, pageSize);
+      // Store in a member field to be able to resume after IOExceptions.
+      totalGranules = Math.max(totalGranules, pageHeader.granulePosition);
+      input.skipFully(pageSize);
+    }
+    return totalGranules;
+  }
+
   /**
    * Skips to the position of the start of the page containing the {@code targetGranule} and
    * returns the granule of the page previous to the target page.
@@ -326,14 +524,25 @@ import java.io.IOException;
   long skipToPageOfGranule(ExtractorInput input, long targetGranule, long currentGranule)
       throws IOException, InterruptedException {
     pageHeader.populate(input, false);
+    long previousPagePosition = C.POSITION_UNSET;
+    int previousPageSize = 0;
     while (pageHeader.granulePosition < targetGranule) {
-      input.skipFully(pageHeader.headerSize + pageHeader.bodySize);
+      previousPagePosition = input.getPosition();
+      previousPageSize = pageHeader.headerSize + pageHeader.bodySize;
+      input.skipFully(previousPageSize);
       // Store in a member field to be able to resume after IOExceptions.
       currentGranule = pageHeader.granulePosition;
       // Peek next header.
       pageHeader.populate(input, false);
     }
     input.resetPeekPosition();
+    // Cache the target page and the page before it, so that a later seek close to the same target
+    // can start from the preceding page immediately.
+    if (previousPagePosition != C.POSITION_UNSET) {
+      cachePage(previousPagePosition, currentGranule, previousPageSize);
+    }
+    cachePage(input.getPosition(), pageHeader.granulePosition,
+        pageHeader.headerSize + pageHeader.bodySize);
     return currentGranule;
   }
 
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.extractor.ogg;
 
+import android.support.annotation.IntDef;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.extractor.Extractor;
@@ -25,6 +26,8 @@ import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * Ogg {@link Extractor}.
@@ -43,10 +46,41 @@ public class OggExtractor implements Extractor {
 
   };
 
+  /**
+   * Flags controlling the behavior of the extractor.
+   */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef(flag = true, value = {FLAG_ENABLE_FULL_SCAN_SEEKING})
+  public @interface Flags {}
+  /**
+   * Flag to read the header of every page in the stream before playback starts, so that seeks can
+   * be resolved exactly without searching. This requires reading the whole stream once, so should
+   * only be used for local files.
+   */
+  public static final int FLAG_ENABLE_FULL_SCAN_SEEKING = 1;
+
   private static final int MAX_VERIFICATION_BYTES = 8;
 
+  @Flags private final int flags;
+
   private StreamReader streamReader;
 
+  /**
+   * Constructs a new {@link OggExtractor}.
+   */
+  public OggExtractor() {
+    this(0);
+  }
+
+  /**
+   * Constructs a new {@link OggExtractor}.
+   *
+   * @param flags Flags that control the extractor's behavior.
+   */
+  public OggExtractor(@Flags int flags) {
+    this.flags = flags;
+  }
+
   @Override
   public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
     try {
@@ -79,7 +113,7 @@ public class OggExtractor implements Extractor {
     TrackOutput trackOutput = output.track(0, C.TRACK_TYPE_AUDIO);
     output.endTracks();
     // TODO: fix the case if sniff() isn't called
-    streamReader.init(output, trackOutput);
+    streamReader.init(output, trackOutput, (flags & FLAG_ENABLE_FULL_SCAN_SEEKING) != 0);
   }
 
   @Override
@@ -45,6 +45,7 @@ import java.io.IOException;
   private TrackOutput trackOutput;
   private ExtractorOutput extractorOutput;
   private OggSeeker oggSeeker;
+  private boolean scanAllPages;
   private long targetGranule;
   private long payloadStartPosition;
   private long currentGranule;
@@ -55,9 +56,18 @@ import java.io.IOException;
   private boolean seekMapSet;
   private boolean formatSet;
 
-  void init(ExtractorOutput output, TrackOutput trackOutput) {
+  /**
+   * Initializes the {@link StreamReader}.
+   *
+   * @param output The output to which the seek map is passed.
+   * @param trackOutput The output to which samples are passed.
+   * @param scanAllPages Whether the header of every page should be read to build an exact seek
+   *     index before playback starts.
+   */
+  void init(ExtractorOutput output, TrackOutput trackOutput, boolean scanAllPages) {
     this.extractorOutput = output;
     this.trackOutput = trackOutput;
+    this.scanAllPages = scanAllPages;
     this.oggPacket = new OggPacket();
 
     reset(true);
@@ -147,7 +157,7 @@ import java.io.IOException;
       OggPageHeader firstPayloadPageHeader = oggPacket.getPageHeader();
       oggSeeker = new DefaultOggSeeker(payloadStartPosition, input.getLength(), this,
           firstPayloadPageHeader.headerSize + firstPayloadPageHeader.bodySize,
-          firstPayloadPageHeader.granulePosition);
+          firstPayloadPageHeader.granulePosition, scanAllPages);
     }
 
     setupData = null;
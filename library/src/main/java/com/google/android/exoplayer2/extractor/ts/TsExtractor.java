@@ -18,7 +18,6 @@ package com.google.android.exoplayer2.extractor.ts;
 import android.support.annotation.IntDef;
 import android.util.SparseArray;
 import android.util.SparseBooleanArray;
-import android.util.SparseIntArray;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
@@ -102,16 +101,18 @@ public final class TsExtractor implements Extractor {
   private static final long E_AC3_FORMAT_IDENTIFIER = Util.getIntegerCodeForString("EAC3");
   private static final long HEVC_FORMAT_IDENTIFIER = Util.getIntegerCodeForString("HEVC");
 
-  private static final int BUFFER_PACKET_COUNT = 5; // Should be at least 2
+  private static final int SNIFF_PACKET_COUNT = 5;
+  private static final int SNIFF_BUFFER_SIZE = TS_PACKET_SIZE * SNIFF_PACKET_COUNT;
+  private static final int BUFFER_PACKET_COUNT = 50; // Should be at least 2
   private static final int BUFFER_SIZE = TS_PACKET_SIZE * BUFFER_PACKET_COUNT;
+  private static final int CONTINUITY_COUNTER_UNSET = -1;
 
   @Mode private final int mode;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
-  private final ParsableBitArray tsScratch;
-  private final SparseIntArray continuityCounters;
+  private final int[] continuityCounters; // Indexed by pid
   private final TsPayloadReader.Factory payloadReaderFactory;
-  private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
+  private final TsPayloadReader[] tsPayloadReaders; // Indexed by pid
   private final SparseBooleanArray trackIds;
 
   // Accessed only by the loading thread.
@@ -141,10 +142,10 @@ public final class TsExtractor implements Extractor {
       timestampAdjusters.add(timestampAdjuster);
     }
     tsPacketBuffer = new ParsableByteArray(BUFFER_SIZE);
-    tsScratch = new ParsableBitArray(new byte[3]);
     trackIds = new SparseBooleanArray();
-    tsPayloadReaders = new SparseArray<>();
-    continuityCounters = new SparseIntArray();
+    tsPayloadReaders = new TsPayloadReader[MAX_PID_PLUS_ONE];
+    continuityCounters = new int[MAX_PID_PLUS_ONE];
+    Arrays.fill(continuityCounters, CONTINUITY_COUNTER_UNSET);
     resetPayloadReaders();
   }
 
@@ -153,10 +154,10 @@ public final class TsExtractor implements Extractor {
   @Override
   public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
     byte[] buffer = tsPacketBuffer.data;
-    input.peekFully(buffer, 0, BUFFER_SIZE);
+    input.peekFully(buffer, 0, SNIFF_BUFFER_SIZE);
     for (int j = 0; j < TS_PACKET_SIZE; j++) {
       for (int i = 0; true; i++) {
-        if (i == BUFFER_PACKET_COUNT) {
+        if (i == SNIFF_PACKET_COUNT) {
           input.skipFully(j);
           return true;
         }
@@ -181,7 +182,7 @@ public final class TsExtractor implements Extractor {
       timestampAdjusters.get(i).reset();
     }
     tsPacketBuffer.reset();
-    continuityCounters.clear();
+    Arrays.fill(continuityCounters, CONTINUITY_COUNTER_UNSET);
     // Elementary stream readers' state should be cleared to get consistent behaviours when seeking.
     resetPayloadReaders();
   }
@@ -191,13 +192,21 @@ public final class TsExtractor implements Extractor {
     // Do nothing
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Each call reads as much data as the input provides in a single read, up to a buffer of
+   * {@link #BUFFER_PACKET_COUNT} packets, and demultiplexes all of the complete packets that it
+   * contains. Payloads of consecutive packets that continue the same PES packet are passed to its
+   * {@link PesReader} in a single call.
+   */
   @Override
   public int read(ExtractorInput input, PositionHolder seekPosition)
       throws IOException, InterruptedException {
     byte[] data = tsPacketBuffer.data;
-    // Shift bytes to the start of the buffer if there isn't enough space left at the end
-    if (BUFFER_SIZE - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
-      int bytesLeft = tsPacketBuffer.bytesLeft();
+    // Shift any bytes remaining from the previous read to the start of the buffer.
+    int bytesLeft = tsPacketBuffer.bytesLeft();
+    if (tsPacketBuffer.getPosition() > 0) {
       if (bytesLeft > 0) {
         System.arraycopy(data, tsPacketBuffer.getPosition(), data, 0, bytesLeft);
       }
@@ -213,87 +222,123 @@ public final class TsExtractor implements Extractor {
       tsPacketBuffer.setLimit(limit + read);
     }
 
-    // Note: see ISO/IEC 13818-1, section 2.4.3.2 for detailed information on the format of
-    // the header.
     final int limit = tsPacketBuffer.limit();
     int position = tsPacketBuffer.getPosition();
-    while (position < limit && data[position] != TS_SYNC_BYTE) {
-      position++;
-    }
-    tsPacketBuffer.setPosition(position);
-
-    int endOfPacket = position + TS_PACKET_SIZE;
-    if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
-    }
+    // A run of payloads for the same PesReader, moved together so as to be contiguous.
+    TsPayloadReader pendingReader = null;
+    int pendingPayloadStart = 0;
+    int pendingPayloadEnd = 0;
+    boolean pendingPayloadUnitStartIndicator = false;
+    while (true) {
+      while (position < limit && data[position] != TS_SYNC_BYTE) {
+        position++;
+      }
+      int endOfPacket = position + TS_PACKET_SIZE;
+      if (endOfPacket > limit) {
+        break;
+      }
 
-    tsPacketBuffer.skipBytes(1);
-    tsPacketBuffer.readBytes(tsScratch, 3);
-    if (tsScratch.readBit()) { // transport_error_indicator
-      // There are uncorrectable errors in this packet.
-      tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
-    }
-    boolean payloadUnitStartIndicator = tsScratch.readBit();
-    tsScratch.skipBits(1); // transport_priority
-    int pid = tsScratch.readBits(13);
-    tsScratch.skipBits(2); // transport_scrambling_control
-    boolean adaptationFieldExists = tsScratch.readBit();
-    boolean payloadExists = tsScratch.readBit();
-
-    // Discontinuity check.
-    boolean discontinuityFound = false;
-    int continuityCounter = tsScratch.readBits(4);
-    if (mode != MODE_HLS) {
-      int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-      continuityCounters.put(pid, continuityCounter);
-      if (previousCounter == continuityCounter) {
-        if (payloadExists) {
-          // Duplicate packet found.
-          tsPacketBuffer.setPosition(endOfPacket);
-          return RESULT_CONTINUE;
+      // Note: see ISO/IEC 13818-1, section 2.4.3.2 for detailed information on the format of
+      // the header.
+      int header = ((data[position + 1] & 0xFF) << 16) | ((data[position + 2] & 0xFF) << 8)
+          | (data[position + 3] & 0xFF);
+      if ((header & 0x800000) != 0) { // transport_error_indicator
+        // There are uncorrectable errors in this packet.
+        position = endOfPacket;
+        continue;
+      }
+      boolean payloadUnitStartIndicator = (header & 0x400000) != 0;
+      int pid = (header >> 8) & 0x1FFF;
+      boolean adaptationFieldExists = (header & 0x20) != 0;
+      boolean payloadExists = (header & 0x10) != 0;
+
+      // Discontinuity check.
+      boolean discontinuityFound = false;
+      int continuityCounter = header & 0x0F;
+      if (mode != MODE_HLS) {
+        int previousCounter = continuityCounters[pid];
+        if (previousCounter == CONTINUITY_COUNTER_UNSET) {
+          previousCounter = continuityCounter - 1;
+        }
+        continuityCounters[pid] = continuityCounter;
+        if (previousCounter == continuityCounter) {
+          if (payloadExists) {
+            // Duplicate packet found.
+            position = endOfPacket;
+            continue;
+          }
+        } else if (continuityCounter != (previousCounter + 1) % 16) {
+          discontinuityFound = true;
         }
-      } else if (continuityCounter != (previousCounter + 1) % 16) {
-        discontinuityFound = true;
       }
-    }
 
-    // Skip the adaptation field.
-    if (adaptationFieldExists) {
-      int adaptationFieldLength = tsPacketBuffer.readUnsignedByte();
-      tsPacketBuffer.skipBytes(adaptationFieldLength);
-    }
+      // Skip the adaptation field.
+      int payloadStart = position + 4;
+      if (adaptationFieldExists) {
+        payloadStart = Math.min(payloadStart + 1 + (data[position + 4] & 0xFF), endOfPacket);
+      }
 
-    // Read the payload.
-    if (payloadExists) {
-      TsPayloadReader payloadReader = tsPayloadReaders.get(pid);
-      if (payloadReader != null) {
-        if (discontinuityFound) {
-          payloadReader.seek();
+      // Read the payload.
+      TsPayloadReader payloadReader = tsPayloadReaders[pid];
+      if (payloadExists && payloadReader != null) {
+        int payloadLength = endOfPacket - payloadStart;
+        if (payloadReader == pendingReader && !payloadUnitStartIndicator && !discontinuityFound) {
+          // Append the payload to the pending run. Only data that has already been parsed is
+          // overwritten.
+          System.arraycopy(data, payloadStart, data, pendingPayloadEnd, payloadLength);
+          pendingPayloadEnd += payloadLength;
+        } else {
+          if (pendingReader != null) {
+            consumePayload(pendingReader, pendingPayloadStart, pendingPayloadEnd,
+                pendingPayloadUnitStartIndicator);
+            pendingReader = null;
+          }
+          if (discontinuityFound) {
+            payloadReader.seek();
+          }
+          if (payloadReader instanceof PesReader) {
+            pendingReader = payloadReader;
+            pendingPayloadStart = payloadStart;
+            pendingPayloadEnd = payloadStart + payloadLength;
+            pendingPayloadUnitStartIndicator = payloadUnitStartIndicator;
+          } else {
+            // Section readers may add or remove payload readers, so are not batched.
+            consumePayload(payloadReader, payloadStart, endOfPacket, payloadUnitStartIndicator);
+          }
         }
-        tsPacketBuffer.setLimit(endOfPacket);
-        payloadReader.consume(tsPacketBuffer, payloadUnitStartIndicator);
-        Assertions.checkState(tsPacketBuffer.getPosition() <= endOfPacket);
-        tsPacketBuffer.setLimit(limit);
       }
+      position = endOfPacket;
+    }
+    if (pendingReader != null) {
+      consumePayload(pendingReader, pendingPayloadStart, pendingPayloadEnd,
+          pendingPayloadUnitStartIndicator);
     }
 
-    tsPacketBuffer.setPosition(endOfPacket);
+    tsPacketBuffer.setLimit(limit);
+    tsPacketBuffer.setPosition(position);
     return RESULT_CONTINUE;
   }
 
   // Internals.
 
+  private void consumePayload(TsPayloadReader payloadReader, int payloadStart, int payloadEnd,
+      boolean payloadUnitStartIndicator) {
+    tsPacketBuffer.setLimit(payloadEnd);
+    tsPacketBuffer.setPosition(payloadStart);
+    payloadReader.consume(tsPacketBuffer, payloadUnitStartIndicator);
+    Assertions.checkState(tsPacketBuffer.getPosition() <= payloadEnd);
+  }
+
   private void resetPayloadReaders() {
     trackIds.clear();
-    tsPayloadReaders.clear();
+    Arrays.fill(tsPayloadReaders, null);
     SparseArray<TsPayloadReader> initialPayloadReaders =
         payloadReaderFactory.createInitialPayloadReaders();
     int initialPayloadReadersSize = initialPayloadReaders.size();
     for (int i = 0; i < initialPayloadReadersSize; i++) {
-      tsPayloadReaders.put(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
+      tsPayloadReaders[initialPayloadReaders.keyAt(i)] = initialPayloadReaders.valueAt(i);
     }
-    tsPayloadReaders.put(TS_PAT_PID, new SectionReader(new PatReader()));
+    tsPayloadReaders[TS_PAT_PID] = new SectionReader(new PatReader());
     id3Reader = null;
   }
 
@@ -335,12 +380,12 @@ public final class TsExtractor implements Extractor {
           patScratch.skipBits(13); // network_PID (13)
         } else {
           int pid = patScratch.readBits(13);
-          tsPayloadReaders.put(pid, new SectionReader(new PmtReader(pid)));
+          tsPayloadReaders[pid] = new SectionReader(new PmtReader(pid));
           remainingPmts++;
         }
       }
       if (mode != MODE_HLS) {
-        tsPayloadReaders.remove(TS_PAT_PID);
+        tsPayloadReaders[TS_PAT_PID] = null;
       }
     }
 
@@ -444,7 +489,7 @@ public final class TsExtractor implements Extractor {
         }
 
         if (reader != null) {
-          tsPayloadReaders.put(elementaryPid, reader);
+          tsPayloadReaders[elementaryPid] = reader;
         }
       }
       if (mode == MODE_HLS) {
@@ -454,7 +499,7 @@ public final class TsExtractor implements Extractor {
           tracksEnded = true;
         }
       } else {
-        tsPayloadReaders.remove(pid);
+        tsPayloadReaders[pid] = null;
         remainingPmts = mode == MODE_SINGLE_PMT ? 0 : remainingPmts - 1;
         if (remainingPmts == 0) {
           output.endTracks();
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.util.Log;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil.CodecKey;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.ReusableBufferedOutputStream;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists decoder information obtained by {@link MediaCodecUtil} across process restarts.
+ * <p>
+ * The stored information is tagged with the fingerprint of the build that produced it, and is
+ * ignored if read by a different build.
+ */
+/* package */ final class DecoderInfoCacheFile {
+
+  public static final String FILE_NAME = "decoder_info_cache.exi";
+
+  private static final int VERSION = 1;
+
+  private static final String TAG = "DecoderInfoCacheFile";
+
+  private final AtomicFile atomicFile;
+  private final String fingerprint;
+  private ReusableBufferedOutputStream bufferedOutputStream;
+
+  /**
+   * @param cacheDir Directory in which the file is kept.
+   * @param fingerprint A fingerprint identifying the build of the device. Information written with
+   *     a different fingerprint is ignored when reading.
+   */
+  public DecoderInfoCacheFile(File cacheDir, String fingerprint) {
+    this.fingerprint = fingerprint;
+    atomicFile = new AtomicFile(new File(cacheDir, FILE_NAME));
+  }
+
+  /**
+   * Reads the file into the provided map. Entries whose keys are already present in the map are
+   * not overwritten. If the file is missing, corrupt, or was written by a different build, the
+   * map is left unchanged and the file is deleted.
+   *
+   * @param decoderInfos The map into which the read entries are put.
+   * @return Whether the file was read successfully.
+   */
+  public boolean read(Map<CodecKey, List<MediaCodecInfo>> decoderInfos) {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+      if (input.readInt() != VERSION || !fingerprint.equals(input.readUTF())) {
+        atomicFile.delete();
+        return false;
+      }
+      int keyCount = input.readInt();
+      ArrayList<CodecKey> keys = new ArrayList<>(keyCount);
+      ArrayList<List<MediaCodecInfo>> values = new ArrayList<>(keyCount);
+      for (int i = 0; i < keyCount; i++) {
+        keys.add(new CodecKey(input.readUTF(), input.readBoolean()));
+        int infoCount = input.readInt();
+        ArrayList<MediaCodecInfo> infos = new ArrayList<>(infoCount);
+        for (int j = 0; j < infoCount; j++) {
+          infos.add(MediaCodecInfo.readFromStream(input));
+        }
+        values.add(Collections.unmodifiableList(infos));
+      }
+      for (int i = 0; i < keyCount; i++) {
+        if (!decoderInfos.containsKey(keys.get(i))) {
+          decoderInfos.put(keys.get(i), values.get(i));
+        }
+      }
+      return true;
+    } catch (FileNotFoundException e) {
+      return false;
+    } catch (IOException e) {
+      Log.e(TAG, "Error reading decoder info cache file.", e);
+      atomicFile.delete();
+      return false;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Writes the provided entries to the file, replacing its current content.
+   *
+   * @param decoderInfos The entries to write.
+   * @throws IOException If an error occurs writing the file.
+   */
+  public void write(Map<CodecKey, List<MediaCodecInfo>> decoderInfos) throws IOException {
+    DataOutputStream output = null;
+    try {
+      if (bufferedOutputStream == null) {
+        bufferedOutputStream = new ReusableBufferedOutputStream(atomicFile.startWrite());
+      } else {
+        bufferedOutputStream.reset(atomicFile.startWrite());
+      }
+      output = new DataOutputStream(bufferedOutputStream);
+      output.writeInt(VERSION);
+      output.writeUTF(fingerprint);
+      output.writeInt(decoderInfos.size());
+      for (Map.Entry<CodecKey, List<MediaCodecInfo>> entry : decoderInfos.entrySet()) {
+        output.writeUTF(entry.getKey().mimeType);
+        output.writeBoolean(entry.getKey().secure);
+        List<MediaCodecInfo> infos = entry.getValue();
+        output.writeInt(infos.size());
+        for (int i = 0; i < infos.size(); i++) {
+          infos.get(i).writeToStream(output);
+        }
+      }
+      atomicFile.endWrite(output);
+      output = null;
+    } finally {
+      Util.closeQuietly(output);
+    }
+  }
+
+}
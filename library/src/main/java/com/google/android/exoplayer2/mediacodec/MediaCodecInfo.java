@@ -28,6 +28,9 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  * Information about a {@link MediaCodec} for a given mime type.
@@ -62,7 +65,10 @@ public final class MediaCodecInfo {
   public final boolean tunneling;
 
   private final String mimeType;
-  private final CodecCapabilities capabilities;
+  private final CodecProfileLevel[] profileLevels;
+
+  private CodecCapabilities capabilities;
+  private boolean capabilitiesResolved;
 
   /**
    * Creates an instance representing an audio passthrough decoder.
@@ -87,6 +93,45 @@ public final class MediaCodecInfo {
     return new MediaCodecInfo(name, mimeType, capabilities);
   }
 
+  /**
+   * Creates an instance whose {@link CodecCapabilities} are resolved lazily, for example because
+   * it was restored from a persistent cache.
+   *
+   * @param name The name of the {@link MediaCodec}.
+   * @param mimeType A mime type supported by the {@link MediaCodec}.
+   * @param adaptive Whether the decoder supports seamless resolution switches.
+   * @param tunneling Whether the decoder supports tunneling.
+   * @param profileLevels The profile levels supported by the decoder.
+   * @return The created instance.
+   */
+  /* package */ static MediaCodecInfo newUnresolvedInstance(String name, String mimeType,
+      boolean adaptive, boolean tunneling, CodecProfileLevel[] profileLevels) {
+    return new MediaCodecInfo(name, mimeType, adaptive, tunneling, profileLevels);
+  }
+
+  /**
+   * Reads an instance from a {@link DataInputStream}. The {@link CodecCapabilities} of the returned
+   * instance are resolved lazily.
+   *
+   * @param input Input stream containing an instance written by {@link #writeToStream}.
+   * @return The read instance.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  /* package */ static MediaCodecInfo readFromStream(DataInputStream input) throws IOException {
+    String name = input.readUTF();
+    String mimeType = input.readUTF();
+    boolean adaptive = input.readBoolean();
+    boolean tunneling = input.readBoolean();
+    int profileLevelCount = input.readInt();
+    CodecProfileLevel[] profileLevels = new CodecProfileLevel[profileLevelCount];
+    for (int i = 0; i < profileLevelCount; i++) {
+      profileLevels[i] = new CodecProfileLevel();
+      profileLevels[i].profile = input.readInt();
+      profileLevels[i].level = input.readInt();
+    }
+    return newUnresolvedInstance(name, mimeType, adaptive, tunneling, profileLevels);
+  }
+
   /**
    * @param name The name of the decoder.
    * @param capabilities The capabilities of the decoder.
@@ -95,8 +140,20 @@ public final class MediaCodecInfo {
     this.name = Assertions.checkNotNull(name);
     this.mimeType = mimeType;
     this.capabilities = capabilities;
+    capabilitiesResolved = true;
     adaptive = capabilities != null && isAdaptive(capabilities);
     tunneling = capabilities != null && isTunneling(capabilities);
+    profileLevels = capabilities == null || capabilities.profileLevels == null
+        ? new CodecProfileLevel[0] : capabilities.profileLevels;
+  }
+
+  private MediaCodecInfo(String name, String mimeType, boolean adaptive, boolean tunneling,
+      CodecProfileLevel[] profileLevels) {
+    this.name = Assertions.checkNotNull(name);
+    this.mimeType = Assertions.checkNotNull(mimeType);
+    this.adaptive = adaptive;
+    this.tunneling = tunneling;
+    this.profileLevels = profileLevels;
   }
 
   /**
@@ -105,8 +162,47 @@ public final class MediaCodecInfo {
    * @return The profile levels supported by the decoder.
    */
   public CodecProfileLevel[] getProfileLevels() {
-    return capabilities == null || capabilities.profileLevels == null ? new CodecProfileLevel[0]
-        : capabilities.profileLevels;
+    return profileLevels;
+  }
+
+  /**
+   * Writes the instance to a {@link DataOutputStream}. Must not be called on an instance
+   * representing an audio passthrough decoder.
+   *
+   * @param output Output stream to store the values.
+   * @throws IOException If an error occurs writing to the output.
+   */
+  /* package */ void writeToStream(DataOutputStream output) throws IOException {
+    output.writeUTF(name);
+    output.writeUTF(mimeType);
+    output.writeBoolean(adaptive);
+    output.writeBoolean(tunneling);
+    output.writeInt(profileLevels.length);
+    for (CodecProfileLevel profileLevel : profileLevels) {
+      output.writeInt(profileLevel.profile);
+      output.writeInt(profileLevel.level);
+    }
+  }
+
+  /**
+   * Returns whether the {@link CodecCapabilities} of the decoder have been resolved.
+   */
+  /* package */ synchronized boolean isResolved() {
+    return capabilitiesResolved;
+  }
+
+  /**
+   * Returns the {@link CodecCapabilities} of the decoder, querying the device for them if this
+   * instance was created without them.
+   *
+   * @return The capabilities, or null if they are not known.
+   */
+  /* package */ synchronized CodecCapabilities getCapabilities() {
+    if (!capabilitiesResolved) {
+      capabilities = MediaCodecUtil.getCodecCapabilities(name, mimeType);
+      capabilitiesResolved = true;
+    }
+    return capabilities;
   }
 
   /**
@@ -156,6 +252,7 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isVideoSizeAndRateSupportedV21(int width, int height, double frameRate) {
+    CodecCapabilities capabilities = getCapabilities();
     if (capabilities == null) {
       logNoSupport("sizeAndRate.caps");
       return false;
@@ -193,6 +290,7 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public Point alignVideoSizeV21(int width, int height) {
+    CodecCapabilities capabilities = getCapabilities();
     if (capabilities == null) {
       logNoSupport("align.caps");
       return null;
@@ -218,6 +316,7 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isAudioSampleRateSupportedV21(int sampleRate) {
+    CodecCapabilities capabilities = getCapabilities();
     if (capabilities == null) {
       logNoSupport("sampleRate.caps");
       return false;
@@ -244,6 +343,7 @@ public final class MediaCodecInfo {
    */
   @TargetApi(21)
   public boolean isAudioChannelCountSupportedV21(int channelCount) {
+    CodecCapabilities capabilities = getCapabilities();
     if (capabilities == null) {
       logNoSupport("channelCount.caps");
       return false;
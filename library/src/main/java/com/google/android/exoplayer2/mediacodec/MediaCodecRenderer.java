@@ -42,6 +42,7 @@ import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -174,7 +175,9 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private final MediaCodec.BufferInfo outputBufferInfo;
 
   private Format format;
+  private Format keptCodecFormat;
   private MediaCodec codec;
+  private String codecName;
   private DrmSession<FrameworkMediaCrypto> drmSession;
   private DrmSession<FrameworkMediaCrypto> pendingDrmSession;
   private boolean codecIsAdaptive;
@@ -198,6 +201,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private int codecReinitializationState;
   private boolean codecReceivedBuffers;
   private boolean codecReceivedEos;
+  private boolean codecHasOutputFormat;
+  private boolean codecOutputFormatReplayPending;
 
   private boolean inputStreamEnded;
   private boolean outputStreamEnded;
@@ -336,7 +341,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           DecoderInitializationException.NO_SUITABLE_DECODER_ERROR));
     }
 
-    String codecName = decoderInfo.name;
+    codecName = decoderInfo.name;
     codecIsAdaptive = decoderInfo.adaptive;
     codecNeedsDiscardToSpsWorkaround = codecNeedsDiscardToSpsWorkaround(codecName, format);
     codecNeedsFlushWorkaround = codecNeedsFlushWorkaround(codecName);
@@ -373,6 +378,38 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     decoderCounters.decoderInitCount++;
   }
 
+  private boolean shouldKeepCodec() {
+    return codec != null && format != null && drmSession == null && pendingDrmSession == null
+        && !codecNeedsFlushWorkaround && !(codecNeedsEosFlushWorkaround && codecReceivedEos)
+        && codecReinitializationState == REINITIALIZATION_STATE_NONE && canKeepCodec();
+  }
+
+  private void flushKeptCodec() {
+    try {
+      flushCodec();
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to flush kept codec", e);
+      releaseCodec();
+    }
+  }
+
+  private void reuseKeptCodec(Format keptFormat) {
+    // The codec isn't initialized again, so onCodecInitialized isn't called. Reuse is reported
+    // through DecoderCounters.decoderReuseCount instead.
+    TraceUtil.beginSection("reuseCodec:" + codecName);
+    if (!areInitializationDataEqual(keptFormat, format)) {
+      codecReconfigured = true;
+      codecReconfigurationState = RECONFIGURATION_STATE_WRITE_PENDING;
+      codecNeedsAdaptationWorkaroundBuffer = codecNeedsAdaptationWorkaround
+          && format.width == keptFormat.width && format.height == keptFormat.height;
+    }
+    codecOutputFormatReplayPending = codecHasOutputFormat;
+    TraceUtil.endSection();
+    codecHotswapDeadlineMs = getState() == STATE_STARTED
+        ? (SystemClock.elapsedRealtime() + MAX_CODEC_HOTSWAP_TIME_MS) : C.TIME_UNSET;
+    decoderCounters.decoderReuseCount++;
+  }
+
   private void throwDecoderInitError(DecoderInitializationException e)
       throws ExoPlaybackException {
     throw ExoPlaybackException.createForRenderer(e, getIndex());
@@ -402,9 +439,15 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
 
   @Override
   protected void onDisabled() {
+    boolean keepCodec = shouldKeepCodec();
+    keptCodecFormat = keepCodec ? format : null;
     format = null;
     try {
-      releaseCodec();
+      if (keepCodec) {
+        flushKeptCodec();
+      } else {
+        releaseCodec();
+      }
     } finally {
       try {
         if (drmSession != null) {
@@ -423,7 +466,13 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     }
   }
 
+  @Override
+  protected void onReset() {
+    releaseCodec();
+  }
+
   protected void releaseCodec() {
+    keptCodecFormat = null;
     if (codec != null) {
       codecHotswapDeadlineMs = C.TIME_UNSET;
       inputIndex = C.INDEX_UNSET;
@@ -445,6 +494,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       codecNeedsAdaptationWorkaroundBuffer = false;
       shouldSkipAdaptationWorkaroundOutputBuffer = false;
       codecReceivedEos = false;
+      codecHasOutputFormat = false;
+      codecOutputFormatReplayPending = false;
       codecReconfigurationState = RECONFIGURATION_STATE_NONE;
       codecReinitializationState = REINITIALIZATION_STATE_NONE;
       decoderCounters.decoderReleaseCount++;
@@ -455,6 +506,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           codec.release();
         } finally {
           codec = null;
+          codecName = null;
           if (drmSession != null && pendingDrmSession != drmSession) {
             try {
               drmSessionManager.releaseSession(drmSession);
@@ -693,6 +745,33 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     return true;
   }
 
+  /**
+   * Returns whether two formats can be decoded by a {@link MediaCodec} without it being
+   * reconfigured.
+   */
+  private static boolean isSameDecoderConfiguration(Format oldFormat, Format newFormat) {
+    return Util.areEqual(oldFormat.sampleMimeType, newFormat.sampleMimeType)
+        && oldFormat.width == newFormat.width && oldFormat.height == newFormat.height
+        && oldFormat.rotationDegrees == newFormat.rotationDegrees
+        && oldFormat.channelCount == newFormat.channelCount
+        && oldFormat.sampleRate == newFormat.sampleRate
+        && oldFormat.pcmEncoding == newFormat.pcmEncoding
+        && areInitializationDataEqual(oldFormat, newFormat);
+  }
+
+  private static boolean areInitializationDataEqual(Format oldFormat, Format newFormat) {
+    if (oldFormat.initializationData.size() != newFormat.initializationData.size()) {
+      return false;
+    }
+    for (int i = 0; i < oldFormat.initializationData.size(); i++) {
+      if (!Arrays.equals(oldFormat.initializationData.get(i),
+          newFormat.initializationData.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static MediaCodec.CryptoInfo getFrameworkCryptoInfo(DecoderInputBuffer buffer,
       int adaptiveReconfigurationBytes) {
     MediaCodec.CryptoInfo cryptoInfo = buffer.cryptoInfo.getFrameworkCryptoInfoV16();
@@ -763,7 +842,18 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       }
     }
 
-    if (pendingDrmSession == drmSession && codec != null
+    if (keptCodecFormat != null) {
+      // The renderer has been re-enabled, and kept its codec when it was disabled.
+      Format keptFormat = keptCodecFormat;
+      keptCodecFormat = null;
+      if (pendingDrmSession == null
+          && canReuseCodec(codec, codecIsAdaptive, keptFormat, format)) {
+        reuseKeptCodec(keptFormat);
+      } else {
+        releaseCodec();
+        maybeInitCodec();
+      }
+    } else if (pendingDrmSession == drmSession && codec != null
         && canReconfigureCodec(codec, codecIsAdaptive, oldFormat, format)) {
       codecReconfigured = true;
       codecReconfigurationState = RECONFIGURATION_STATE_WRITE_PENDING;
@@ -781,6 +871,43 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     }
   }
 
+  /**
+   * Determines whether a {@link MediaCodec} kept when the renderer was disabled can be reused to
+   * decode a new format when the renderer is re-enabled. If true is returned then the kept
+   * instance is reused, and is sent the new format's codec specific initialization data at the
+   * start of the next input buffer if it differs from that of the old format. If false is
+   * returned then the kept instance will be released, and a new instance will be created.
+   * <p>
+   * The default implementation returns true if the old and new formats require the same decoder
+   * configuration, and otherwise returns the result of
+   * {@link #canReconfigureCodec(MediaCodec, boolean, Format, Format)}.
+   *
+   * @param codec The kept {@link MediaCodec} instance.
+   * @param codecIsAdaptive Whether the codec is adaptive.
+   * @param oldFormat The format most recently decoded by the kept instance.
+   * @param newFormat The new format.
+   * @return Whether the kept instance can be reused.
+   */
+  protected boolean canReuseCodec(MediaCodec codec, boolean codecIsAdaptive, Format oldFormat,
+      Format newFormat) {
+    return isSameDecoderConfiguration(oldFormat, newFormat)
+        || canReconfigureCodec(codec, codecIsAdaptive, oldFormat, newFormat);
+  }
+
+  /**
+   * Returns whether the renderer can keep its {@link MediaCodec} when disabled, so that it can be
+   * reused if the renderer is re-enabled to play a compatible format (e.g. when transitioning
+   * between items in a playlist). A kept codec is flushed, and is released when the renderer is
+   * reset or if it cannot be reused.
+   * <p>
+   * The default implementation returns true.
+   *
+   * @return Whether the codec can be kept.
+   */
+  protected boolean canKeepCodec() {
+    return true;
+  }
+
   /**
    * Called when the output format of the {@link MediaCodec} changes.
    * <p>
@@ -865,6 +992,11 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   @SuppressWarnings("deprecation")
   private boolean drainOutputBuffer(long positionUs, long elapsedRealtimeUs)
       throws ExoPlaybackException {
+    if (codecOutputFormatReplayPending) {
+      // The codec is being reused, and won't output its current format again.
+      codecOutputFormatReplayPending = false;
+      processOutputFormat();
+    }
     if (outputIndex < 0) {
       if (codecNeedsEosOutputExceptionWorkaround && codecReceivedEos) {
         try {
@@ -953,6 +1085,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
    * Processes a new output format.
    */
   private void processOutputFormat() throws ExoPlaybackException {
+    codecHasOutputFormat = true;
     MediaFormat format = codec.getOutputFormat();
     if (codecNeedsAdaptationWorkaround
         && format.getInteger(MediaFormat.KEY_WIDTH) == ADAPTATION_WORKAROUND_SLICE_WIDTH_HEIGHT
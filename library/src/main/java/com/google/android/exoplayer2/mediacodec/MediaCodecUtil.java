@@ -20,17 +20,22 @@ import android.annotation.TargetApi;
 import android.media.MediaCodecInfo.CodecCapabilities;
 import android.media.MediaCodecInfo.CodecProfileLevel;
 import android.media.MediaCodecList;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
 import android.util.SparseIntArray;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +65,8 @@ public final class MediaCodecUtil {
       MediaCodecInfo.newPassthroughInstance("OMX.google.raw.decoder");
   private static final Pattern PROFILE_PATTERN = Pattern.compile("^\\D?(\\d+)$");
 
+  private static final String BACKGROUND_THREAD_NAME = "ExoPlayer:MediaCodecUtil";
+
   private static final HashMap<CodecKey, List<MediaCodecInfo>> decoderInfosCache = new HashMap<>();
 
   // Codecs to constant mappings.
@@ -75,14 +82,55 @@ public final class MediaCodecUtil {
 
   // Lazily initialized.
   private static int maxH264DecodableFrameSize = -1;
+  private static ExecutorService backgroundExecutor;
+  private static volatile android.media.MediaCodecInfo[] allCodecInfosV21;
+
+  private static DecoderInfoCacheFile decoderInfoCacheFile;
+  private static boolean decoderInfoCacheFileReadPending;
 
   private MediaCodecUtil() {}
 
+  /**
+   * Optional call to enable a persistent codec cache, so that the results of querying the device
+   * for its decoders can be reused across process restarts.
+   * <p>
+   * The cache is read on a background thread. If a query is made before the read has completed,
+   * the query reads the cache itself. Newly obtained decoder information is written to the cache
+   * asynchronously. The cache is discarded if the device's build fingerprint changes (e.g. after a
+   * system update). Capabilities of decoders restored from the cache are resolved on the
+   * background thread, or when first required if that has yet to happen.
+   * <p>
+   * Calling this method more than once has no effect.
+   *
+   * @param cacheDir A directory in which the cache can be stored.
+   */
+  public static synchronized void enablePersistentDecoderInfoCache(File cacheDir) {
+    if (decoderInfoCacheFile != null) {
+      return;
+    }
+    decoderInfoCacheFile = new DecoderInfoCacheFile(cacheDir, Build.FINGERPRINT);
+    decoderInfoCacheFileReadPending = true;
+    getBackgroundExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        List<MediaCodecInfo> restoredDecoderInfos = new ArrayList<>();
+        synchronized (MediaCodecUtil.class) {
+          maybeReadDecoderInfoCacheFile();
+          for (List<MediaCodecInfo> decoderInfos : decoderInfosCache.values()) {
+            restoredDecoderInfos.addAll(decoderInfos);
+          }
+        }
+        resolveCapabilities(restoredDecoderInfos);
+      }
+    });
+  }
+
   /**
    * Optional call to warm the codec cache for a given mime type.
    * <p>
    * Calling this method may speed up subsequent calls to {@link #getDecoderInfo(String, boolean)}
-   * and {@link #getDecoderInfos(String, boolean)}.
+   * and {@link #getDecoderInfos(String, boolean)}, and subsequent queries made on the returned
+   * {@link MediaCodecInfo}s.
    *
    * @param mimeType The mime type.
    * @param secure Whether the decoder is required to support secure decryption. Always pass false
@@ -90,13 +138,30 @@ public final class MediaCodecUtil {
    */
   public static void warmDecoderInfoCache(String mimeType, boolean secure) {
     try {
-      getDecoderInfos(mimeType, secure);
+      resolveCapabilities(getDecoderInfos(mimeType, secure));
     } catch (DecoderQueryException e) {
       // Codec warming is best effort, so we can swallow the exception.
       Log.e(TAG, "Codec warming failed", e);
     }
   }
 
+  /**
+   * Equivalent to {@link #warmDecoderInfoCache(String, boolean)}, except that the cache is warmed
+   * on a background thread and the method returns immediately.
+   *
+   * @param mimeType The mime type.
+   * @param secure Whether the decoder is required to support secure decryption. Always pass false
+   *     unless secure decryption really is required.
+   */
+  public static void warmDecoderInfoCacheAsync(final String mimeType, final boolean secure) {
+    getBackgroundExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        warmDecoderInfoCache(mimeType, secure);
+      }
+    });
+  }
+
   /**
    * Returns information about a decoder suitable for audio passthrough.
    **
@@ -137,6 +202,7 @@ public final class MediaCodecUtil {
    */
   public static synchronized List<MediaCodecInfo> getDecoderInfos(String mimeType,
       boolean secure) throws DecoderQueryException {
+    maybeReadDecoderInfoCacheFile();
     CodecKey key = new CodecKey(mimeType, secure);
     List<MediaCodecInfo> decoderInfos = decoderInfosCache.get(key);
     if (decoderInfos != null) {
@@ -157,9 +223,127 @@ public final class MediaCodecUtil {
     }
     decoderInfos = Collections.unmodifiableList(decoderInfos);
     decoderInfosCache.put(key, decoderInfos);
+    maybeWriteDecoderInfoCacheFile();
     return decoderInfos;
   }
 
+  /**
+   * Returns the {@link CodecCapabilities} of the named decoder for a given mime type.
+   *
+   * @param name The name of the decoder. May be the name of a secure decoder synthesized by
+   *     {@link #getDecoderInfos(String, boolean)}.
+   * @param mimeType The mime type.
+   * @return The capabilities, or null if the decoder was not found or could not be queried.
+   */
+  /* package */ static CodecCapabilities getCodecCapabilities(String name, String mimeType) {
+    try {
+      android.media.MediaCodecInfo codecInfo = getCodecInfoByName(name);
+      if (codecInfo == null && name.endsWith(".secure")) {
+        codecInfo = getCodecInfoByName(name.substring(0, name.length() - ".secure".length()));
+      }
+      return codecInfo == null ? null : codecInfo.getCapabilitiesForType(mimeType);
+    } catch (Exception e) {
+      // If the underlying mediaserver is in a bad state, we may catch an IllegalStateException
+      // or an IllegalArgumentException here.
+      Log.e(TAG, "Failed to query codec " + name + " (" + mimeType + ")", e);
+      return null;
+    }
+  }
+
+  /**
+   * Resets the in-memory codec cache and disables the persistent codec cache, if enabled.
+   */
+  /* package */ static synchronized void resetForTesting() {
+    decoderInfosCache.clear();
+    maxH264DecodableFrameSize = -1;
+    decoderInfoCacheFile = null;
+    decoderInfoCacheFileReadPending = false;
+  }
+
+  /**
+   * Blocks until tasks previously posted to the background thread have completed.
+   */
+  /* package */ static void blockUntilBackgroundTasksCompleteForTesting()
+      throws InterruptedException, ExecutionException {
+    getBackgroundExecutor().submit(new Runnable() {
+      @Override
+      public void run() {
+        // Do nothing.
+      }
+    }).get();
+  }
+
+  @SuppressWarnings("deprecation")
+  private static android.media.MediaCodecInfo getCodecInfoByName(String name) {
+    if (Util.SDK_INT >= 21) {
+      for (android.media.MediaCodecInfo codecInfo : getAllCodecInfosV21()) {
+        if (codecInfo.getName().equals(name)) {
+          return codecInfo;
+        }
+      }
+    } else {
+      int codecCount = MediaCodecList.getCodecCount();
+      for (int i = 0; i < codecCount; i++) {
+        android.media.MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
+        if (codecInfo.getName().equals(name)) {
+          return codecInfo;
+        }
+      }
+    }
+    return null;
+  }
+
+  @TargetApi(21)
+  private static android.media.MediaCodecInfo[] getAllCodecInfosV21() {
+    android.media.MediaCodecInfo[] codecInfos = allCodecInfosV21;
+    if (codecInfos == null) {
+      // Building the list queries the media server, so it's done without holding the class lock.
+      // Concurrent callers may each build a list, in which case the last one built is kept.
+      codecInfos = new MediaCodecList(MediaCodecList.ALL_CODECS).getCodecInfos();
+      allCodecInfosV21 = codecInfos;
+    }
+    return codecInfos;
+  }
+
+  private static void resolveCapabilities(List<MediaCodecInfo> decoderInfos) {
+    for (int i = 0; i < decoderInfos.size(); i++) {
+      decoderInfos.get(i).getCapabilities();
+    }
+  }
+
+  private static synchronized ExecutorService getBackgroundExecutor() {
+    if (backgroundExecutor == null) {
+      backgroundExecutor = Util.newSingleThreadExecutor(BACKGROUND_THREAD_NAME);
+    }
+    return backgroundExecutor;
+  }
+
+  private static synchronized void maybeReadDecoderInfoCacheFile() {
+    if (decoderInfoCacheFileReadPending) {
+      decoderInfoCacheFileReadPending = false;
+      decoderInfoCacheFile.read(decoderInfosCache);
+    }
+  }
+
+  private static synchronized void maybeWriteDecoderInfoCacheFile() {
+    if (decoderInfoCacheFile == null) {
+      return;
+    }
+    final DecoderInfoCacheFile file = decoderInfoCacheFile;
+    final Map<CodecKey, List<MediaCodecInfo>> decoderInfos = new HashMap<>(decoderInfosCache);
+    getBackgroundExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          file.write(decoderInfos);
+        } catch (IOException e) {
+          // The persistent cache is best effort, so we can swallow the exception.
+          Log.e(TAG, "Failed to write decoder info cache file", e);
+        }
+      }
+    });
+  }
+
   private static List<MediaCodecInfo> getDecoderInfosInternal(
       CodecKey key, MediaCodecListCompat mediaCodecList) throws DecoderQueryException {
     try {
@@ -524,7 +708,7 @@ public final class MediaCodecUtil {
 
   }
 
-  private static final class CodecKey {
+  /* package */ static final class CodecKey {
 
     public final String mimeType;
     public final boolean secure;
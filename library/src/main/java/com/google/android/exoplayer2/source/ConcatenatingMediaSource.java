@@ -22,22 +22,47 @@ import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Concatenates multiple {@link MediaSource}s. It is valid for the same {@link MediaSource} instance
  * to be present more than once in the concatenation.
+ * <p>
+ * By default all of the {@link MediaSource}s are prepared when this source is prepared. For long
+ * playlists they can instead be prepared lazily, in which case each {@link MediaSource} is
+ * represented by a placeholder window with a single period of unknown duration until it is
+ * prepared, and only the {@link MediaSource}s near the one being played are prepared.
  */
 public final class ConcatenatingMediaSource implements MediaSource {
 
+  /**
+   * The id of the period of a placeholder window, which is kept as the id of the first period of
+   * the {@link MediaSource} once it has been prepared.
+   */
+  private static final Object PLACEHOLDER_PERIOD_ID = new Object();
+
   private final MediaSource[] mediaSources;
   private final Timeline[] timelines;
   private final Object[] manifests;
+  // Iterates in the order in which the periods were created.
   private final Map<MediaPeriod, Integer> sourceIndexByMediaPeriod;
   private final boolean[] duplicateFlags;
+  private final int lazyPreparationDistance;
+
+  // Used for lazy preparation. Indexed by the first index of each source.
+  private final int[] firstIndices;
+  private final int[] activePeriodCounts;
+  private final Object[] replacedPeriodIds;
+  private final boolean[] timelineReportedFlags;
+  private final ArrayList<Integer> preparedSourceIndices;
+  private final ArrayList<DeferredMediaPeriod> deferredMediaPeriods;
+  private final Timeline.Window window;
+  private final Timeline.Period period;
 
+  private ExoPlayer player;
   private Listener listener;
   private ConcatenatedTimeline timeline;
 
@@ -46,31 +71,64 @@ public final class ConcatenatingMediaSource implements MediaSource {
    *     {@link MediaSource} instance to be present more than once in the array.
    */
   public ConcatenatingMediaSource(MediaSource... mediaSources) {
+    this(C.LENGTH_UNSET, mediaSources);
+  }
+
+  /**
+   * @param lazyPreparationDistance The maximum distance, in {@link MediaSource}s, from the
+   *     {@link MediaSource} being played at which {@link MediaSource}s are kept prepared. Those up
+   *     to this distance ahead are prepared in advance, and those further away are released. Pass
+   *     {@link C#LENGTH_UNSET} to prepare all of the {@link MediaSource}s when this source is
+   *     prepared.
+   * @param mediaSources The {@link MediaSource}s to concatenate. It is valid for the same
+   *     {@link MediaSource} instance to be present more than once in the array.
+   */
+  public ConcatenatingMediaSource(int lazyPreparationDistance, MediaSource... mediaSources) {
     this.mediaSources = mediaSources;
+    this.lazyPreparationDistance = lazyPreparationDistance;
     timelines = new Timeline[mediaSources.length];
     manifests = new Object[mediaSources.length];
-    sourceIndexByMediaPeriod = new HashMap<>();
-    duplicateFlags = buildDuplicateFlags(mediaSources);
+    sourceIndexByMediaPeriod = new LinkedHashMap<>();
+    firstIndices = buildFirstIndices(mediaSources);
+    duplicateFlags = new boolean[mediaSources.length];
+    for (int i = 0; i < mediaSources.length; i++) {
+      duplicateFlags[i] = firstIndices[i] != i;
+    }
+    activePeriodCounts = new int[mediaSources.length];
+    replacedPeriodIds = new Object[mediaSources.length];
+    timelineReportedFlags = new boolean[mediaSources.length];
+    preparedSourceIndices = new ArrayList<>();
+    deferredMediaPeriods = new ArrayList<>();
+    window = new Timeline.Window();
+    period = new Timeline.Period();
   }
 
   @Override
   public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+    this.player = player;
     this.listener = listener;
+    if (isLazy()) {
+      for (int i = 0; i < mediaSources.length; i++) {
+        timelines[i] = PlaceholderTimeline.INSTANCE;
+      }
+      notifySourceInfoRefreshed();
+      return;
+    }
     for (int i = 0; i < mediaSources.length; i++) {
       if (!duplicateFlags[i]) {
-        final int index = i;
-        mediaSources[i].prepareSource(player, false, new Listener() {
-          @Override
-          public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
-            handleSourceInfoRefreshed(index, timeline, manifest);
-          }
-        });
+        prepareChildSource(i);
       }
     }
   }
 
   @Override
   public void maybeThrowSourceInfoRefreshError() throws IOException {
+    if (isLazy()) {
+      for (int i = 0; i < preparedSourceIndices.size(); i++) {
+        mediaSources[preparedSourceIndices.get(i)].maybeThrowSourceInfoRefreshError();
+      }
+      return;
+    }
     for (int i = 0; i < mediaSources.length; i++) {
       if (!duplicateFlags[i]) {
         mediaSources[i].maybeThrowSourceInfoRefreshError();
@@ -82,9 +140,22 @@ public final class ConcatenatingMediaSource implements MediaSource {
   public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
     int sourceIndex = timeline.getSourceIndexForPeriod(index);
     int periodIndexInSource = index - timeline.getFirstPeriodIndexInSource(sourceIndex);
-    MediaPeriod mediaPeriod = mediaSources[sourceIndex].createPeriod(periodIndexInSource, allocator,
-        positionUs);
+    MediaPeriod mediaPeriod;
+    if (isLazy() && !timelineReportedFlags[firstIndices[sourceIndex]]) {
+      // The period is created once the source has been prepared and reported its timeline.
+      DeferredMediaPeriod deferredMediaPeriod = new DeferredMediaPeriod(mediaSources[sourceIndex],
+          periodIndexInSource, allocator, positionUs);
+      deferredMediaPeriods.add(deferredMediaPeriod);
+      mediaPeriod = deferredMediaPeriod;
+    } else {
+      mediaPeriod = mediaSources[sourceIndex].createPeriod(periodIndexInSource, allocator,
+          positionUs);
+    }
     sourceIndexByMediaPeriod.put(mediaPeriod, sourceIndex);
+    activePeriodCounts[firstIndices[sourceIndex]]++;
+    if (isLazy()) {
+      updatePreparedSources();
+    }
     return mediaPeriod;
   }
 
@@ -92,11 +163,30 @@ public final class ConcatenatingMediaSource implements MediaSource {
   public void releasePeriod(MediaPeriod mediaPeriod) {
     int sourceIndex = sourceIndexByMediaPeriod.get(mediaPeriod);
     sourceIndexByMediaPeriod.remove(mediaPeriod);
-    mediaSources[sourceIndex].releasePeriod(mediaPeriod);
+    if (mediaPeriod instanceof DeferredMediaPeriod) {
+      DeferredMediaPeriod deferredMediaPeriod = (DeferredMediaPeriod) mediaPeriod;
+      deferredMediaPeriods.remove(deferredMediaPeriod);
+      deferredMediaPeriod.releasePeriod();
+    } else {
+      mediaSources[sourceIndex].releasePeriod(mediaPeriod);
+    }
+    activePeriodCounts[firstIndices[sourceIndex]]--;
+    if (isLazy() && !sourceIndexByMediaPeriod.isEmpty()) {
+      updatePreparedSources();
+    }
   }
 
   @Override
   public void releaseSource() {
+    if (isLazy()) {
+      for (int i = 0; i < preparedSourceIndices.size(); i++) {
+        int sourceFirstIndex = preparedSourceIndices.get(i);
+        timelineReportedFlags[sourceFirstIndex] = false;
+        mediaSources[sourceFirstIndex].releaseSource();
+      }
+      preparedSourceIndices.clear();
+      return;
+    }
     for (int i = 0; i < mediaSources.length; i++) {
       if (!duplicateFlags[i]) {
         mediaSources[i].releaseSource();
@@ -104,8 +194,80 @@ public final class ConcatenatingMediaSource implements MediaSource {
     }
   }
 
+  private boolean isLazy() {
+    return lazyPreparationDistance != C.LENGTH_UNSET;
+  }
+
+  private void prepareChildSource(final int sourceFirstIndex) {
+    mediaSources[sourceFirstIndex].prepareSource(player, false, new Listener() {
+      @Override
+      public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        handleSourceInfoRefreshed(sourceFirstIndex, timeline, manifest);
+      }
+    });
+  }
+
+  /**
+   * Prepares the sources up to {@link #lazyPreparationDistance} ahead of the source being played,
+   * and releases those further away from it that have no active periods. A released source keeps
+   * its last timeline, so that the indices of the periods after it do not change, but its periods
+   * are deferred until it has been prepared again.
+   */
+  private void updatePreparedSources() {
+    // The player creates periods in playback order and releases each period once playback has
+    // moved past it, or once it's no longer needed after a seek, so the oldest active period is
+    // the one being played.
+    int playingSourceIndex = sourceIndexByMediaPeriod.values().iterator().next();
+    int minIndex = playingSourceIndex - lazyPreparationDistance;
+    int maxIndex =
+        Math.min(playingSourceIndex + lazyPreparationDistance, mediaSources.length - 1);
+    for (int i = preparedSourceIndices.size() - 1; i >= 0; i--) {
+      int sourceFirstIndex = preparedSourceIndices.get(i);
+      if (activePeriodCounts[sourceFirstIndex] == 0
+          && !isInRange(sourceFirstIndex, minIndex, maxIndex)) {
+        preparedSourceIndices.remove(i);
+        timelineReportedFlags[sourceFirstIndex] = false;
+        mediaSources[sourceFirstIndex].releaseSource();
+        for (int j = sourceFirstIndex; j < mediaSources.length; j++) {
+          if (firstIndices[j] == sourceFirstIndex) {
+            manifests[j] = null;
+          }
+        }
+      }
+    }
+    for (int i = playingSourceIndex; i <= maxIndex; i++) {
+      int sourceFirstIndex = firstIndices[i];
+      if (!preparedSourceIndices.contains(sourceFirstIndex)) {
+        preparedSourceIndices.add(sourceFirstIndex);
+        prepareChildSource(sourceFirstIndex);
+      }
+    }
+  }
+
+  private boolean isInRange(int sourceFirstIndex, int minIndex, int maxIndex) {
+    for (int i = Math.max(minIndex, sourceFirstIndex); i <= maxIndex; i++) {
+      if (firstIndices[i] == sourceFirstIndex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void handleSourceInfoRefreshed(int sourceFirstIndex, Timeline sourceTimeline,
       Object sourceManifest) {
+    if (isLazy()) {
+      if (!preparedSourceIndices.contains(sourceFirstIndex)) {
+        // Stale event from a released source.
+        return;
+      }
+      if (replacedPeriodIds[sourceFirstIndex] == null && sourceTimeline.getPeriodCount() > 0) {
+        replacedPeriodIds[sourceFirstIndex] = sourceTimeline.getPeriod(0, period, true).uid;
+      }
+      timelineReportedFlags[sourceFirstIndex] = true;
+      sourceTimeline = new DeferredTimeline(sourceTimeline, replacedPeriodIds[sourceFirstIndex]);
+      createDeferredMediaPeriods(mediaSources[sourceFirstIndex], sourceTimeline,
+          timelines[sourceFirstIndex] == PlaceholderTimeline.INSTANCE);
+    }
     // Set the timeline and manifest.
     timelines[sourceFirstIndex] = sourceTimeline;
     manifests[sourceFirstIndex] = sourceManifest;
@@ -122,22 +284,134 @@ public final class ConcatenatingMediaSource implements MediaSource {
         return;
       }
     }
+    notifySourceInfoRefreshed();
+  }
+
+  /**
+   * Creates the underlying periods of any deferred periods of a source that has just reported its
+   * timeline. If the source had a placeholder timeline, a period prepared from the start of the
+   * placeholder window is prepared from the default position of the source's first window instead.
+   */
+  private void createDeferredMediaPeriods(MediaSource mediaSource, Timeline sourceTimeline,
+      boolean replacesPlaceholder) {
+    for (int i = deferredMediaPeriods.size() - 1; i >= 0; i--) {
+      DeferredMediaPeriod deferredMediaPeriod = deferredMediaPeriods.get(i);
+      if (deferredMediaPeriod.mediaSource == mediaSource) {
+        deferredMediaPeriods.remove(i);
+        long positionUs = deferredMediaPeriod.getPreparePositionUs();
+        if (replacesPlaceholder && positionUs == 0
+            && sourceTimeline.getWindow(0, window).firstPeriodIndex == 0) {
+          positionUs = window.getDefaultPositionUs() + window.getPositionInFirstPeriodUs();
+        }
+        deferredMediaPeriod.createPeriod(positionUs);
+      }
+    }
+  }
+
+  private void notifySourceInfoRefreshed() {
     timeline = new ConcatenatedTimeline(timelines.clone());
     listener.onSourceInfoRefreshed(timeline, manifests.clone());
   }
 
-  private static boolean[] buildDuplicateFlags(MediaSource[] mediaSources) {
-    boolean[] duplicateFlags = new boolean[mediaSources.length];
-    IdentityHashMap<MediaSource, Void> sources = new IdentityHashMap<>(mediaSources.length);
+  private static int[] buildFirstIndices(MediaSource[] mediaSources) {
+    int[] firstIndices = new int[mediaSources.length];
+    IdentityHashMap<MediaSource, Integer> sources = new IdentityHashMap<>(mediaSources.length);
     for (int i = 0; i < mediaSources.length; i++) {
       MediaSource source = mediaSources[i];
-      if (!sources.containsKey(source)) {
-        sources.put(source, null);
+      Integer firstIndex = sources.get(source);
+      if (firstIndex == null) {
+        sources.put(source, i);
+        firstIndices[i] = i;
       } else {
-        duplicateFlags[i] = true;
+        firstIndices[i] = firstIndex;
       }
     }
-    return duplicateFlags;
+    return firstIndices;
+  }
+
+  /**
+   * A {@link Timeline} with one dynamic window of unknown duration, which has one period, that
+   * stands in for a {@link MediaSource} until it is prepared.
+   */
+  private static final class PlaceholderTimeline extends Timeline {
+
+    public static final PlaceholderTimeline INSTANCE = new PlaceholderTimeline();
+
+    @Override
+    public int getWindowCount() {
+      return 1;
+    }
+
+    @Override
+    public Window getWindow(int windowIndex, Window window, boolean setIds,
+        long defaultPositionProjectionUs) {
+      Object id = setIds ? PLACEHOLDER_PERIOD_ID : null;
+      return window.set(id, C.TIME_UNSET, C.TIME_UNSET, false, true, 0, C.TIME_UNSET, 0, 0, 0);
+    }
+
+    @Override
+    public int getPeriodCount() {
+      return 1;
+    }
+
+    @Override
+    public Period getPeriod(int periodIndex, Period period, boolean setIds) {
+      Object id = setIds ? PLACEHOLDER_PERIOD_ID : null;
+      return period.set(id, id, 0, C.TIME_UNSET, 0);
+    }
+
+    @Override
+    public int getIndexOfPeriod(Object uid) {
+      return uid == PLACEHOLDER_PERIOD_ID ? 0 : C.INDEX_UNSET;
+    }
+
+  }
+
+  /**
+   * Wraps the timeline of a lazily prepared {@link MediaSource}, giving the period that replaced
+   * its placeholder the id of the placeholder period. This keeps the player on the same period
+   * when the placeholder is replaced.
+   */
+  private static final class DeferredTimeline extends Timeline {
+
+    private final Timeline timeline;
+    private final Object replacedId;
+
+    public DeferredTimeline(Timeline timeline, Object replacedId) {
+      this.timeline = timeline;
+      this.replacedId = replacedId;
+    }
+
+    @Override
+    public int getWindowCount() {
+      return timeline.getWindowCount();
+    }
+
+    @Override
+    public Window getWindow(int windowIndex, Window window, boolean setIds,
+        long defaultPositionProjectionUs) {
+      return timeline.getWindow(windowIndex, window, setIds, defaultPositionProjectionUs);
+    }
+
+    @Override
+    public int getPeriodCount() {
+      return timeline.getPeriodCount();
+    }
+
+    @Override
+    public Period getPeriod(int periodIndex, Period period, boolean setIds) {
+      timeline.getPeriod(periodIndex, period, setIds);
+      if (setIds && Util.areEqual(period.uid, replacedId)) {
+        period.uid = PLACEHOLDER_PERIOD_ID;
+      }
+      return period;
+    }
+
+    @Override
+    public int getIndexOfPeriod(Object uid) {
+      return timeline.getIndexOfPeriod(uid == PLACEHOLDER_PERIOD_ID ? replacedId : uid);
+    }
+
   }
 
   /**
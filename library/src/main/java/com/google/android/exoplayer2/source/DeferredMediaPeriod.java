@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import java.io.IOException;
+
+/**
+ * A {@link MediaPeriod} for a {@link MediaSource} that has not reported its timeline yet. The
+ * underlying period is created by {@link #createPeriod(long)} once the source's timeline is known,
+ * and its preparation completes after that.
+ */
+/* package */ final class DeferredMediaPeriod implements MediaPeriod, MediaPeriod.Callback {
+
+  public final MediaSource mediaSource;
+
+  private final int periodIndex;
+  private final Allocator allocator;
+  private final long preparePositionUs;
+
+  private MediaPeriod mediaPeriod;
+  private Callback callback;
+  private long preparePositionOverrideUs;
+
+  /**
+   * @param mediaSource The source that will create the underlying period.
+   * @param periodIndex The index of the period in the source's timeline.
+   * @param allocator The allocator for the underlying period.
+   * @param preparePositionUs The position from which the player will prepare the period, in
+   *     microseconds.
+   */
+  public DeferredMediaPeriod(MediaSource mediaSource, int periodIndex, Allocator allocator,
+      long preparePositionUs) {
+    this.mediaSource = mediaSource;
+    this.periodIndex = periodIndex;
+    this.allocator = allocator;
+    this.preparePositionUs = preparePositionUs;
+    preparePositionOverrideUs = C.TIME_UNSET;
+  }
+
+  /**
+   * Returns the position from which the player will prepare the period, in microseconds.
+   */
+  public long getPreparePositionUs() {
+    return preparePositionUs;
+  }
+
+  /**
+   * Creates the underlying period, and prepares it if {@link #prepare(Callback)} has been called.
+   *
+   * @param positionUs The position from which to prepare the underlying period, in microseconds.
+   *     This may differ from the prepare position if the source's timeline gives a different
+   *     default position, in which case the player is moved to it when tracks are first selected.
+   */
+  public void createPeriod(long positionUs) {
+    if (positionUs != preparePositionUs) {
+      preparePositionOverrideUs = positionUs;
+    }
+    mediaPeriod = mediaSource.createPeriod(periodIndex, allocator, positionUs);
+    if (callback != null) {
+      mediaPeriod.prepare(this);
+    }
+  }
+
+  /**
+   * Releases the underlying period, if it has been created.
+   */
+  public void releasePeriod() {
+    if (mediaPeriod != null) {
+      mediaSource.releasePeriod(mediaPeriod);
+    }
+  }
+
+  @Override
+  public void prepare(Callback callback) {
+    this.callback = callback;
+    if (mediaPeriod != null) {
+      mediaPeriod.prepare(this);
+    }
+  }
+
+  @Override
+  public void maybeThrowPrepareError() throws IOException {
+    if (mediaPeriod != null) {
+      mediaPeriod.maybeThrowPrepareError();
+    } else {
+      mediaSource.maybeThrowSourceInfoRefreshError();
+    }
+  }
+
+  @Override
+  public TrackGroupArray getTrackGroups() {
+    return mediaPeriod.getTrackGroups();
+  }
+
+  @Override
+  public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+      SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+    if (preparePositionOverrideUs != C.TIME_UNSET && positionUs == preparePositionUs) {
+      positionUs = preparePositionOverrideUs;
+      preparePositionOverrideUs = C.TIME_UNSET;
+    }
+    return mediaPeriod.selectTracks(selections, mayRetainStreamFlags, streams, streamResetFlags,
+        positionUs);
+  }
+
+  @Override
+  public void discardBuffer(long positionUs) {
+    mediaPeriod.discardBuffer(positionUs);
+  }
+
+  @Override
+  public long readDiscontinuity() {
+    return mediaPeriod.readDiscontinuity();
+  }
+
+  @Override
+  public long getBufferedPositionUs() {
+    return mediaPeriod.getBufferedPositionUs();
+  }
+
+  @Override
+  public long seekToUs(long positionUs) {
+    return mediaPeriod.seekToUs(positionUs);
+  }
+
+  @Override
+  public long getNextLoadPositionUs() {
+    return mediaPeriod.getNextLoadPositionUs();
+  }
+
+  @Override
+  public boolean continueLoading(long positionUs) {
+    return mediaPeriod != null && mediaPeriod.continueLoading(positionUs);
+  }
+
+  // MediaPeriod.Callback implementation.
+
+  @Override
+  public void onPrepared(MediaPeriod mediaPeriod) {
+    callback.onPrepared(this);
+  }
+
+  @Override
+  public void onContinueLoadingRequested(MediaPeriod source) {
+    callback.onContinueLoadingRequested(this);
+  }
+
+}
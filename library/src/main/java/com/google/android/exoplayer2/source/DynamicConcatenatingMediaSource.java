@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import android.util.Pair;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayer.ExoPlayerComponent;
+import com.google.android.exoplayer2.ExoPlayer.ExoPlayerMessage;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Concatenates multiple {@link MediaSource}s. The list of {@link MediaSource}s can be modified
+ * during playback. Access to this class is thread-safe.
+ * <p>
+ * Unlike {@link ConcatenatingMediaSource}, the same {@link MediaSource} instance may not be present
+ * more than once in the concatenation, and the manifest passed to the {@link Listener} is always
+ * null. The source is designed for playlists with many items: the window and period offsets of the
+ * children are held in Fenwick trees, so a child timeline refresh updates them in logarithmic time,
+ * and finding the child for a window or period index takes logarithmic time. Adding, removing or
+ * moving a child updates them in linear time, without re-preparing the other children.
+ * <p>
+ * The first timeline is reported once all children added before it could be reported have
+ * reported their own timelines. Children added later do not contribute windows or periods until
+ * they have reported their timelines.
+ */
+public final class DynamicConcatenatingMediaSource implements MediaSource, ExoPlayerComponent {
+
+  private static final int MSG_ADD = 0;
+  private static final int MSG_REMOVE = 1;
+  private static final int MSG_MOVE = 2;
+
+  // Accessed on the app thread, guarded by this.
+  private final List<MediaSource> mediaSourcesPublic;
+  private ExoPlayer player;
+
+  // Accessed on the playback thread.
+  private final Map<MediaPeriod, MediaSourceHolder> holdersByMediaPeriod;
+  private MediaSourceHolder[] holders;
+  private Timeline[] timelines;
+  private int[] windowCounts;
+  private int[] periodCounts;
+  private OffsetTree windowOffsets;
+  private OffsetTree periodOffsets;
+  private int size;
+  private int pendingInitialTimelineCount;
+  private Listener listener;
+
+  public DynamicConcatenatingMediaSource() {
+    mediaSourcesPublic = new ArrayList<>();
+    holdersByMediaPeriod = new HashMap<>();
+  }
+
+  /**
+   * Appends a {@link MediaSource} to the playlist.
+   *
+   * @param mediaSource The {@link MediaSource} to be added to the list.
+   */
+  public synchronized void addMediaSource(MediaSource mediaSource) {
+    addMediaSource(mediaSourcesPublic.size(), mediaSource);
+  }
+
+  /**
+   * Adds a {@link MediaSource} to the playlist.
+   *
+   * @param index The index at which the new {@link MediaSource} will be inserted. This index must
+   *     be in the range of 0 &lt;= index &lt;= {@link #getSize()}.
+   * @param mediaSource The {@link MediaSource} to be added to the list.
+   */
+  public synchronized void addMediaSource(int index, MediaSource mediaSource) {
+    Assertions.checkNotNull(mediaSource);
+    Assertions.checkArgument(!mediaSourcesPublic.contains(mediaSource));
+    mediaSourcesPublic.add(index, mediaSource);
+    if (player != null) {
+      player.sendMessages(new ExoPlayerMessage(this, MSG_ADD, Pair.create(index, mediaSource)));
+    }
+  }
+
+  /**
+   * Removes a {@link MediaSource} from the playlist. The source is released once the player has
+   * released any periods it created from it.
+   *
+   * @param index The index at which the media source will be removed. This index must be in the
+   *     range of 0 &lt;= index &lt; {@link #getSize()}.
+   */
+  public synchronized void removeMediaSource(int index) {
+    mediaSourcesPublic.remove(index);
+    if (player != null) {
+      player.sendMessages(new ExoPlayerMessage(this, MSG_REMOVE, index));
+    }
+  }
+
+  /**
+   * Moves an existing {@link MediaSource} within the playlist.
+   *
+   * @param currentIndex The current index of the media source in the playlist. This index must be
+   *     in the range of 0 &lt;= index &lt; {@link #getSize()}.
+   * @param newIndex The target index of the media source in the playlist. This index must be in
+   *     the range of 0 &lt;= index &lt; {@link #getSize()}.
+   */
+  public synchronized void moveMediaSource(int currentIndex, int newIndex) {
+    if (currentIndex == newIndex) {
+      return;
+    }
+    mediaSourcesPublic.add(newIndex, mediaSourcesPublic.remove(currentIndex));
+    if (player != null) {
+      player.sendMessages(new ExoPlayerMessage(this, MSG_MOVE,
+          Pair.create(currentIndex, newIndex)));
+    }
+  }
+
+  /**
+   * Returns the number of media sources in the playlist.
+   */
+  public synchronized int getSize() {
+    return mediaSourcesPublic.size();
+  }
+
+  /**
+   * Returns the {@link MediaSource} at a specified index.
+   *
+   * @param index An index in the range of 0 &lt;= index &lt; {@link #getSize()}.
+   * @return The {@link MediaSource} at this index.
+   */
+  public synchronized MediaSource getMediaSource(int index) {
+    return mediaSourcesPublic.get(index);
+  }
+
+  // MediaSource implementation.
+
+  @Override
+  public synchronized void prepareSource(ExoPlayer player, boolean isTopLevelSource,
+      Listener listener) {
+    this.player = player;
+    this.listener = listener;
+    int capacity = Math.max(16, mediaSourcesPublic.size());
+    holders = new MediaSourceHolder[capacity];
+    timelines = new Timeline[capacity];
+    windowCounts = new int[capacity];
+    periodCounts = new int[capacity];
+    size = mediaSourcesPublic.size();
+    for (int i = 0; i < size; i++) {
+      holders[i] = new MediaSourceHolder(mediaSourcesPublic.get(i), i);
+    }
+    windowOffsets = OffsetTree.build(windowCounts, size);
+    periodOffsets = OffsetTree.build(periodCounts, size);
+    pendingInitialTimelineCount = size;
+    if (size == 0) {
+      listener.onSourceInfoRefreshed(buildTimeline(), null);
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      prepareChildSource(holders[i]);
+    }
+  }
+
+  @Override
+  public void maybeThrowSourceInfoRefreshError() throws IOException {
+    for (int i = 0; i < size; i++) {
+      holders[i].mediaSource.maybeThrowSourceInfoRefreshError();
+    }
+  }
+
+  @Override
+  public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+    int childIndex = periodOffsets.getChildIndex(index);
+    MediaSourceHolder holder = holders[childIndex];
+    MediaPeriod mediaPeriod = holder.mediaSource.createPeriod(
+        index - periodOffsets.getOffset(childIndex), allocator, positionUs);
+    holdersByMediaPeriod.put(mediaPeriod, holder);
+    holder.activeMediaPeriodCount++;
+    return mediaPeriod;
+  }
+
+  @Override
+  public void releasePeriod(MediaPeriod mediaPeriod) {
+    MediaSourceHolder holder = holdersByMediaPeriod.remove(mediaPeriod);
+    holder.mediaSource.releasePeriod(mediaPeriod);
+    holder.activeMediaPeriodCount--;
+    if (holder.isRemoved && holder.activeMediaPeriodCount == 0) {
+      holder.mediaSource.releaseSource();
+    }
+  }
+
+  @Override
+  public void releaseSource() {
+    for (int i = 0; i < size; i++) {
+      holders[i].mediaSource.releaseSource();
+    }
+  }
+
+  // ExoPlayerComponent implementation.
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void handleMessage(int messageType, Object message) {
+    switch (messageType) {
+      case MSG_ADD: {
+        Pair<Integer, MediaSource> indexAndSource = (Pair<Integer, MediaSource>) message;
+        int index = indexAndSource.first;
+        MediaSourceHolder holder = new MediaSourceHolder(indexAndSource.second, index);
+        insertChild(index, holder, null);
+        if (pendingInitialTimelineCount > 0) {
+          // The first timeline has not been reported yet, so it will also wait for this child.
+          pendingInitialTimelineCount++;
+        }
+        // The child does not contribute to the timeline until it reports its own.
+        prepareChildSource(holder);
+        break;
+      }
+      case MSG_REMOVE: {
+        MediaSourceHolder holder = removeChild((Integer) message);
+        holder.isRemoved = true;
+        if (holder.timeline == null && pendingInitialTimelineCount > 0) {
+          pendingInitialTimelineCount--;
+        }
+        if (holder.activeMediaPeriodCount == 0) {
+          holder.mediaSource.releaseSource();
+        }
+        maybeNotifyListener();
+        break;
+      }
+      case MSG_MOVE: {
+        Pair<Integer, Integer> indices = (Pair<Integer, Integer>) message;
+        Timeline timeline = timelines[indices.first];
+        MediaSourceHolder holder = removeChild(indices.first);
+        insertChild(indices.second, holder, timeline);
+        maybeNotifyListener();
+        break;
+      }
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  // Internal methods. Called on the playback thread.
+
+  private void prepareChildSource(final MediaSourceHolder holder) {
+    holder.mediaSource.prepareSource(player, false, new Listener() {
+      @Override
+      public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        handleChildSourceInfoRefreshed(holder, timeline);
+      }
+    });
+  }
+
+  private void handleChildSourceInfoRefreshed(MediaSourceHolder holder, Timeline timeline) {
+    if (holder.isRemoved) {
+      return;
+    }
+    if (holder.timeline == null && pendingInitialTimelineCount > 0) {
+      pendingInitialTimelineCount--;
+    }
+    holder.timeline = timeline;
+    int index = holder.index;
+    timelines[index] = timeline;
+    int windowCountDelta = timeline.getWindowCount() - windowCounts[index];
+    if (windowCountDelta != 0) {
+      windowCounts[index] += windowCountDelta;
+      windowOffsets.add(index, windowCountDelta);
+    }
+    int periodCountDelta = timeline.getPeriodCount() - periodCounts[index];
+    if (periodCountDelta != 0) {
+      periodCounts[index] += periodCountDelta;
+      periodOffsets.add(index, periodCountDelta);
+    }
+    maybeNotifyListener();
+  }
+
+  private void insertChild(int index, MediaSourceHolder holder, Timeline timeline) {
+    if (size == holders.length) {
+      int capacity = size * 2;
+      holders = Arrays.copyOf(holders, capacity);
+      timelines = Arrays.copyOf(timelines, capacity);
+      windowCounts = Arrays.copyOf(windowCounts, capacity);
+      periodCounts = Arrays.copyOf(periodCounts, capacity);
+    }
+    int shiftCount = size - index;
+    System.arraycopy(holders, index, holders, index + 1, shiftCount);
+    System.arraycopy(timelines, index, timelines, index + 1, shiftCount);
+    System.arraycopy(windowCounts, index, windowCounts, index + 1, shiftCount);
+    System.arraycopy(periodCounts, index, periodCounts, index + 1, shiftCount);
+    size++;
+    holders[index] = holder;
+    timelines[index] = timeline;
+    windowCounts[index] = timeline == null ? 0 : timeline.getWindowCount();
+    periodCounts[index] = timeline == null ? 0 : timeline.getPeriodCount();
+    updateIndicesAndOffsets(index);
+  }
+
+  private MediaSourceHolder removeChild(int index) {
+    MediaSourceHolder holder = holders[index];
+    int shiftCount = size - index - 1;
+    System.arraycopy(holders, index + 1, holders, index, shiftCount);
+    System.arraycopy(timelines, index + 1, timelines, index, shiftCount);
+    System.arraycopy(windowCounts, index + 1, windowCounts, index, shiftCount);
+    System.arraycopy(periodCounts, index + 1, periodCounts, index, shiftCount);
+    size--;
+    holders[size] = null;
+    timelines[size] = null;
+    updateIndicesAndOffsets(index);
+    return holder;
+  }
+
+  private void updateIndicesAndOffsets(int firstChangedIndex) {
+    for (int i = firstChangedIndex; i < size; i++) {
+      holders[i].index = i;
+    }
+    windowOffsets = OffsetTree.build(windowCounts, size);
+    periodOffsets = OffsetTree.build(periodCounts, size);
+  }
+
+  private void maybeNotifyListener() {
+    if (pendingInitialTimelineCount == 0) {
+      listener.onSourceInfoRefreshed(buildTimeline(), null);
+    }
+  }
+
+  private Timeline buildTimeline() {
+    return new DynamicTimeline(Arrays.copyOf(holders, size), Arrays.copyOf(timelines, size),
+        windowOffsets.copy(), periodOffsets.copy());
+  }
+
+  private static final class MediaSourceHolder {
+
+    public final MediaSource mediaSource;
+
+    public int index;
+    public Timeline timeline;
+    public int activeMediaPeriodCount;
+    public boolean isRemoved;
+
+    public MediaSourceHolder(MediaSource mediaSource, int index) {
+      this.mediaSource = mediaSource;
+      this.index = index;
+    }
+
+  }
+
+  /**
+   * A Fenwick tree over the window or period counts of the children, which gives the offset of
+   * each child and the child containing each index in logarithmic time.
+   */
+  private static final class OffsetTree {
+
+    private final int[] tree;
+    private final int size;
+    private final int highestPowerOfTwo;
+
+    /**
+     * Builds a tree in linear time.
+     *
+     * @param counts The count of each child.
+     * @param size The number of children.
+     */
+    public static OffsetTree build(int[] counts, int size) {
+      int[] tree = new int[size + 1];
+      System.arraycopy(counts, 0, tree, 1, size);
+      for (int i = 1; i <= size; i++) {
+        int parent = i + (i & -i);
+        if (parent <= size) {
+          tree[parent] += tree[i];
+        }
+      }
+      return new OffsetTree(tree, size);
+    }
+
+    private OffsetTree(int[] tree, int size) {
+      this.tree = tree;
+      this.size = size;
+      highestPowerOfTwo = Integer.highestOneBit(size);
+    }
+
+    /**
+     * Returns a copy of the tree, which is unaffected by later updates.
+     */
+    public OffsetTree copy() {
+      return new OffsetTree(tree.clone(), size);
+    }
+
+    /**
+     * Adds {@code delta} to the count of the child at {@code childIndex}.
+     */
+    public void add(int childIndex, int delta) {
+      for (int i = childIndex + 1; i <= size; i += i & -i) {
+        tree[i] += delta;
+      }
+    }
+
+    /**
+     * Returns the sum of the counts of the children before {@code childIndex}.
+     */
+    public int getOffset(int childIndex) {
+      int offset = 0;
+      for (int i = childIndex; i > 0; i -= i & -i) {
+        offset += tree[i];
+      }
+      return offset;
+    }
+
+    /**
+     * Returns the sum of the counts of all children.
+     */
+    public int getTotal() {
+      return getOffset(size);
+    }
+
+    /**
+     * Returns the index of the child whose range contains {@code index}.
+     */
+    public int getChildIndex(int index) {
+      int position = 0;
+      int remaining = index;
+      for (int step = highestPowerOfTwo; step > 0; step >>= 1) {
+        int next = position + step;
+        if (next <= size && tree[next] <= remaining) {
+          position = next;
+          remaining -= tree[next];
+        }
+      }
+      return position;
+    }
+
+  }
+
+  /**
+   * A {@link Timeline} that is the concatenation of the timelines of the children at the time it
+   * was built.
+   */
+  private static final class DynamicTimeline extends Timeline {
+
+    private final MediaSourceHolder[] holders;
+    private final Timeline[] timelines;
+    private final OffsetTree windowOffsets;
+    private final OffsetTree periodOffsets;
+    private final int windowCount;
+    private final int periodCount;
+
+    public DynamicTimeline(MediaSourceHolder[] holders, Timeline[] timelines,
+        OffsetTree windowOffsets, OffsetTree periodOffsets) {
+      this.holders = holders;
+      this.timelines = timelines;
+      this.windowOffsets = windowOffsets;
+      this.periodOffsets = periodOffsets;
+      windowCount = windowOffsets.getTotal();
+      periodCount = periodOffsets.getTotal();
+    }
+
+    @Override
+    public int getWindowCount() {
+      return windowCount;
+    }
+
+    @Override
+    public Window getWindow(int windowIndex, Window window, boolean setIds,
+        long defaultPositionProjectionUs) {
+      int childIndex = windowOffsets.getChildIndex(windowIndex);
+      int firstWindowIndexInChild = windowOffsets.getOffset(childIndex);
+      int firstPeriodIndexInChild = periodOffsets.getOffset(childIndex);
+      timelines[childIndex].getWindow(windowIndex - firstWindowIndexInChild, window, setIds,
+          defaultPositionProjectionUs);
+      window.firstPeriodIndex += firstPeriodIndexInChild;
+      window.lastPeriodIndex += firstPeriodIndexInChild;
+      return window;
+    }
+
+    @Override
+    public int getPeriodCount() {
+      return periodCount;
+    }
+
+    @Override
+    public Period getPeriod(int periodIndex, Period period, boolean setIds) {
+      int childIndex = periodOffsets.getChildIndex(periodIndex);
+      int firstWindowIndexInChild = windowOffsets.getOffset(childIndex);
+      int firstPeriodIndexInChild = periodOffsets.getOffset(childIndex);
+      timelines[childIndex].getPeriod(periodIndex - firstPeriodIndexInChild, period, setIds);
+      period.windowIndex += firstWindowIndexInChild;
+      if (setIds) {
+        period.uid = Pair.create(holders[childIndex], period.uid);
+      }
+      return period;
+    }
+
+    @Override
+    public int getIndexOfPeriod(Object uid) {
+      if (!(uid instanceof Pair)) {
+        return C.INDEX_UNSET;
+      }
+      Pair<?, ?> holderAndPeriodId = (Pair<?, ?>) uid;
+      if (!(holderAndPeriodId.first instanceof MediaSourceHolder)) {
+        return C.INDEX_UNSET;
+      }
+      int childIndex = getChildIndex((MediaSourceHolder) holderAndPeriodId.first);
+      if (childIndex == C.INDEX_UNSET || timelines[childIndex] == null) {
+        return C.INDEX_UNSET;
+      }
+      int periodIndexInChild = timelines[childIndex].getIndexOfPeriod(holderAndPeriodId.second);
+      return periodIndexInChild == C.INDEX_UNSET ? C.INDEX_UNSET
+          : periodOffsets.getOffset(childIndex) + periodIndexInChild;
+    }
+
+    private int getChildIndex(MediaSourceHolder holder) {
+      // The holder's index is current for the latest timeline, which is the one usually queried.
+      int index = holder.index;
+      if (index < holders.length && holders[index] == holder) {
+        return index;
+      }
+      for (int i = 0; i < holders.length; i++) {
+        if (holders[i] == holder) {
+          return i;
+        }
+      }
+      return C.INDEX_UNSET;
+    }
+
+  }
+
+}
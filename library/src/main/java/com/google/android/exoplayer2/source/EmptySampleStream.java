@@ -43,8 +43,8 @@ public final class EmptySampleStream implements SampleStream {
   }
 
   @Override
-  public void skipToKeyframeBefore(long timeUs) {
-    // Do nothing.
+  public boolean skipToKeyframeBefore(long timeUs) {
+    return false;
   }
 
 }
@@ -23,11 +23,14 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.extractor.DefaultTrackOutput;
 import com.google.android.exoplayer2.extractor.DefaultTrackOutput.UpstreamFormatChangedListener;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.FileTypes;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
@@ -35,6 +38,8 @@ import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.Loadable;
 import com.google.android.exoplayer2.util.Assertions;
@@ -43,6 +48,8 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A {@link MediaPeriod} that extracts data using an {@link Extractor}.
@@ -97,7 +104,7 @@ import java.io.IOException;
   /**
    * @param uri The {@link Uri} of the media stream.
    * @param dataSource The data source to read the media.
-   * @param extractors The extractors to use to read the data source.
+   * @param extractorsFactory The factory for the extractors to use to read the data source.
    * @param minLoadableRetryCount The minimum number of times to retry if a loading error occurs.
    * @param eventHandler A handler for events. May be null if delivery of events is not required.
    * @param eventListener A listener of events. May be null if delivery of events is not required.
@@ -106,7 +113,7 @@ import java.io.IOException;
    * @param customCacheKey A custom key that uniquely identifies the original stream. Used for cache
    *     indexing. May be null.
    */
-  public ExtractorMediaPeriod(Uri uri, DataSource dataSource, Extractor[] extractors,
+  public ExtractorMediaPeriod(Uri uri, DataSource dataSource, ExtractorsFactory extractorsFactory,
       int minLoadableRetryCount, Handler eventHandler,
       ExtractorMediaSource.EventListener eventListener, MediaSource.Listener sourceListener,
       Allocator allocator, String customCacheKey) {
@@ -119,7 +126,7 @@ import java.io.IOException;
     this.allocator = allocator;
     this.customCacheKey = customCacheKey;
     loader = new Loader("Loader:ExtractorMediaPeriod");
-    extractorHolder = new ExtractorHolder(extractors, this);
+    extractorHolder = new ExtractorHolder(extractorsFactory, this);
     loadCondition = new ConditionVariable();
     maybeFinishPrepareRunnable = new Runnable() {
       @Override
@@ -529,6 +536,22 @@ import java.io.IOException;
     return e instanceof UnrecognizedInputFormatException;
   }
 
+  /**
+   * Returns the headers of the response to the current request of a data source, if it's an
+   * {@link HttpDataSource} or a {@link DefaultDataSource} serving the request over HTTP. Returns
+   * null for other data sources, including other wrappers of an {@link HttpDataSource} such as a
+   * {@link com.google.android.exoplayer2.upstream.cache.CacheDataSource}, in which case extractor
+   * selection doesn't use the Content-Type hint.
+   */
+  /* package */ static Map<String, List<String>> getResponseHeaders(DataSource dataSource) {
+    if (dataSource instanceof HttpDataSource) {
+      return ((HttpDataSource) dataSource).getResponseHeaders();
+    } else if (dataSource instanceof DefaultDataSource) {
+      return ((DefaultDataSource) dataSource).getResponseHeaders();
+    }
+    return null;
+  }
+
   private void notifyLoadError(final IOException error) {
     if (eventHandler != null && eventListener != null) {
       eventHandler.post(new Runnable()  {
@@ -565,8 +588,8 @@ import java.io.IOException;
     }
 
     @Override
-    public void skipToKeyframeBefore(long timeUs) {
-      sampleQueues.valueAt(track).skipToKeyframeBefore(timeUs);
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return sampleQueues.valueAt(track).skipToKeyframeBefore(timeUs);
     }
 
   }
@@ -633,7 +656,8 @@ import java.io.IOException;
             length += position;
           }
           input = new DefaultExtractorInput(dataSource, position, length);
-          Extractor extractor = extractorHolder.selectExtractor(input, dataSource.getUri());
+          Extractor extractor = extractorHolder.selectExtractor(input, dataSource.getUri(),
+              getResponseHeaders(dataSource));
           if (pendingExtractorSeek) {
             extractor.seek(position, seekTimeUs);
             pendingExtractorSeek = false;
@@ -662,9 +686,16 @@ import java.io.IOException;
 
   /**
    * Stores a list of extractors and a selected extractor when the format has been detected.
+   * <p>
+   * If the extractors are provided by a {@link DefaultExtractorsFactory}, they are instantiated
+   * lazily, and the extractors for file types inferred from cheap hints are asked to sniff the
+   * input first. The hints are the magic number at the start of the input, the Content-Type of the
+   * response and the extension of the {@link Uri}. The remaining extractors are only asked to sniff
+   * the input if none of the hinted extractors recognizes it.
    */
-  private static final class ExtractorHolder {
+  /* package */ static final class ExtractorHolder {
 
+    private final DefaultExtractorsFactory defaultExtractorsFactory;
     private final Extractor[] extractors;
     private final ExtractorOutput extractorOutput;
     private Extractor extractor;
@@ -672,11 +703,17 @@ import java.io.IOException;
     /**
      * Creates a holder that will select an extractor and initialize it using the specified output.
      *
-     * @param extractors One or more extractors to choose from.
+     * @param extractorsFactory The factory for the extractors to choose from.
      * @param extractorOutput The output that will be used to initialize the selected extractor.
      */
-    public ExtractorHolder(Extractor[] extractors, ExtractorOutput extractorOutput) {
-      this.extractors = extractors;
+    public ExtractorHolder(ExtractorsFactory extractorsFactory, ExtractorOutput extractorOutput) {
+      if (extractorsFactory instanceof DefaultExtractorsFactory) {
+        defaultExtractorsFactory = (DefaultExtractorsFactory) extractorsFactory;
+        extractors = new Extractor[defaultExtractorsFactory.getExtractorCount()];
+      } else {
+        defaultExtractorsFactory = null;
+        extractors = extractorsFactory.createExtractors();
+      }
       this.extractorOutput = extractorOutput;
     }
 
@@ -686,26 +723,38 @@ import java.io.IOException;
      *
      * @param input The {@link ExtractorInput} from which data should be read.
      * @param uri The {@link Uri} of the data.
+     * @param responseHeaders The headers of the response from which data is read, or null.
      * @return An initialized extractor for reading {@code input}.
      * @throws UnrecognizedInputFormatException Thrown if the input format could not be detected.
      * @throws IOException Thrown if the input could not be read.
      * @throws InterruptedException Thrown if the thread was interrupted.
      */
-    public Extractor selectExtractor(ExtractorInput input, Uri uri)
-        throws IOException, InterruptedException {
+    public Extractor selectExtractor(ExtractorInput input, Uri uri,
+        Map<String, List<String>> responseHeaders) throws IOException, InterruptedException {
       if (extractor != null) {
         return extractor;
       }
-      for (Extractor extractor : extractors) {
-        try {
-          if (extractor.sniff(input)) {
-            this.extractor = extractor;
-            break;
+      if (defaultExtractorsFactory != null) {
+        boolean[] sniffed = new boolean[extractors.length];
+        int[] hintedFileTypes = new int[] {
+            FileTypes.inferFileTypeFromHeader(input),
+            FileTypes.inferFileTypeFromResponseHeaders(responseHeaders),
+            FileTypes.inferFileTypeFromUri(uri)};
+        for (int i = 0; i < hintedFileTypes.length && extractor == null; i++) {
+          if (hintedFileTypes[i] != FileTypes.UNKNOWN) {
+            sniffExtractorsForFileType(input, hintedFileTypes[i], sniffed);
+          }
+        }
+        // Fall back to sniffing with the remaining extractors.
+        for (int i = 0; i < extractors.length && extractor == null; i++) {
+          if (!sniffed[i]) {
+            sniffed[i] = true;
+            sniffExtractor(input, i);
           }
-        } catch (EOFException e) {
-          // Do nothing.
-        } finally {
-          input.resetPeekPosition();
+        }
+      } else {
+        for (int i = 0; i < extractors.length && extractor == null; i++) {
+          sniffExtractor(input, i);
         }
       }
       if (extractor == null) {
@@ -723,6 +772,32 @@ import java.io.IOException;
       }
     }
 
+    private void sniffExtractorsForFileType(ExtractorInput input, @FileTypes.Type int fileType,
+        boolean[] sniffed) throws IOException, InterruptedException {
+      for (int i = 0; i < extractors.length && extractor == null; i++) {
+        if (!sniffed[i] && defaultExtractorsFactory.getExtractorFileType(i) == fileType) {
+          sniffed[i] = true;
+          sniffExtractor(input, i);
+        }
+      }
+    }
+
+    private void sniffExtractor(ExtractorInput input, int index)
+        throws IOException, InterruptedException {
+      if (extractors[index] == null) {
+        extractors[index] = defaultExtractorsFactory.createExtractor(index);
+      }
+      try {
+        if (extractors[index].sniff(input)) {
+          extractor = extractors[index];
+        }
+      } catch (EOFException e) {
+        // Do nothing.
+      } finally {
+        input.resetPeekPosition();
+      }
+    }
+
   }
 
 }
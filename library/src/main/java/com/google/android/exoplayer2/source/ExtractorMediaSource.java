@@ -159,7 +159,7 @@ public final class ExtractorMediaSource implements MediaSource, MediaSource.List
   public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
     Assertions.checkArgument(index == 0);
     return new ExtractorMediaPeriod(uri, dataSourceFactory.createDataSource(),
-        extractorsFactory.createExtractors(), minLoadableRetryCount, eventHandler, eventListener,
+        extractorsFactory, minLoadableRetryCount, eventHandler, eventListener,
         this, allocator, customCacheKey);
   }
 
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.DrmInitDataManifest;
+import com.google.android.exoplayer2.drm.DrmLicensePrefetcher;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Concatenates {@link MediaSource}s as a {@link ConcatenatingMediaSource} does, and requests that
+ * a {@link DrmLicensePrefetcher} acquires the license of each item of the playlist ahead of its
+ * playback.
+ * <p>
+ * When the player starts loading an item, the license of the item after it is requested. The
+ * {@link DrmInitData} of the next item is taken from its manifest as soon as the manifest is
+ * available, if it is a {@link DrmInitDataManifest} (e.g. a DASH or SmoothStreaming manifest) that
+ * declares it. Otherwise it's taken from the formats of the item's period once the period has been
+ * prepared ahead of playback. The license of the item from which playback starts, or to which the
+ * player seeks, is never prefetched, since it's acquired for playback straight away.
+ */
+public final class LicensePrefetchingMediaSource implements MediaSource {
+
+  private final DrmLicensePrefetcher licensePrefetcher;
+  private final ItemSource[] itemSources;
+  private final ConcatenatingMediaSource concatenatingSource;
+
+  private int activePeriodCount;
+
+  /**
+   * @param licensePrefetcher The prefetcher used to acquire licenses.
+   * @param mediaSources The {@link MediaSource}s to concatenate. It is valid for the same
+   *     {@link MediaSource} instance to be present more than once in the array.
+   */
+  public LicensePrefetchingMediaSource(DrmLicensePrefetcher licensePrefetcher,
+      MediaSource... mediaSources) {
+    this(licensePrefetcher, C.LENGTH_UNSET, mediaSources);
+  }
+
+  /**
+   * @param licensePrefetcher The prefetcher used to acquire licenses.
+   * @param lazyPreparationDistance The lazy preparation distance of the concatenation. See
+   *     {@link ConcatenatingMediaSource#ConcatenatingMediaSource(int, MediaSource...)}.
+   * @param mediaSources The {@link MediaSource}s to concatenate. It is valid for the same
+   *     {@link MediaSource} instance to be present more than once in the array.
+   */
+  public LicensePrefetchingMediaSource(DrmLicensePrefetcher licensePrefetcher,
+      int lazyPreparationDistance, MediaSource... mediaSources) {
+    this.licensePrefetcher = Assertions.checkNotNull(licensePrefetcher);
+    itemSources = new ItemSource[mediaSources.length];
+    IdentityHashMap<MediaSource, ItemSource> itemSourcesByMediaSource = new IdentityHashMap<>();
+    for (int i = 0; i < mediaSources.length; i++) {
+      ItemSource itemSource = itemSourcesByMediaSource.get(mediaSources[i]);
+      if (itemSource == null) {
+        itemSource = new ItemSource(Assertions.checkNotNull(mediaSources[i]));
+        itemSourcesByMediaSource.put(mediaSources[i], itemSource);
+      }
+      itemSource.itemIndices.add(i);
+      itemSources[i] = itemSource;
+    }
+    concatenatingSource = new ConcatenatingMediaSource(lazyPreparationDistance, itemSources);
+  }
+
+  @Override
+  public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+    concatenatingSource.prepareSource(player, isTopLevelSource, listener);
+  }
+
+  @Override
+  public void maybeThrowSourceInfoRefreshError() throws IOException {
+    concatenatingSource.maybeThrowSourceInfoRefreshError();
+  }
+
+  @Override
+  public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+    return concatenatingSource.createPeriod(index, allocator, positionUs);
+  }
+
+  @Override
+  public void releasePeriod(MediaPeriod mediaPeriod) {
+    concatenatingSource.releasePeriod(mediaPeriod);
+  }
+
+  @Override
+  public void releaseSource() {
+    concatenatingSource.releaseSource();
+  }
+
+  // Internal methods.
+
+  private void onItemPeriodCreated(ItemSource itemSource) {
+    activePeriodCount++;
+    // The player loads the item, so the license of the next item is requested.
+    for (int i = 0; i < itemSource.itemIndices.size(); i++) {
+      int nextItemIndex = itemSource.itemIndices.get(i) + 1;
+      if (nextItemIndex < itemSources.length && itemSources[nextItemIndex] != itemSource) {
+        itemSources[nextItemIndex].requestPrefetch();
+      }
+    }
+  }
+
+  private void onItemPeriodReleased() {
+    activePeriodCount--;
+    if (activePeriodCount == 0) {
+      // The player is seeking or stopping. Licenses of items after the one it continues from are
+      // requested when it starts loading that item.
+      for (ItemSource itemSource : itemSources) {
+        itemSource.prefetchRequested = false;
+      }
+    }
+  }
+
+  private void prefetch(List<DrmInitData> drmInitDatas) {
+    for (int i = 0; i < drmInitDatas.size(); i++) {
+      licensePrefetcher.prefetch(drmInitDatas.get(i));
+    }
+  }
+
+  /**
+   * Wraps a distinct {@link MediaSource} of the playlist, holding the {@link DrmInitData} declared
+   * by its manifest until its license is requested.
+   */
+  private final class ItemSource implements MediaSource {
+
+    public final MediaSource mediaSource;
+    public final List<Integer> itemIndices;
+
+    private List<DrmInitData> manifestDrmInitDatas;
+    private int itemActivePeriodCount;
+    private boolean prefetchRequested;
+
+    public ItemSource(MediaSource mediaSource) {
+      this.mediaSource = mediaSource;
+      itemIndices = new ArrayList<>();
+    }
+
+    public void requestPrefetch() {
+      if (itemActivePeriodCount > 0) {
+        // The item is already being loaded.
+        return;
+      }
+      prefetchRequested = true;
+      maybePrefetchFromManifest();
+    }
+
+    @Override
+    public void prepareSource(ExoPlayer player, boolean isTopLevelSource,
+        final Listener listener) {
+      mediaSource.prepareSource(player, isTopLevelSource, new Listener() {
+        @Override
+        public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+          manifestDrmInitDatas = manifest instanceof DrmInitDataManifest
+              ? ((DrmInitDataManifest) manifest).getDrmInitDatas() : null;
+          maybePrefetchFromManifest();
+          listener.onSourceInfoRefreshed(timeline, manifest);
+        }
+      });
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
+      mediaSource.maybeThrowSourceInfoRefreshError();
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+      // A period created while the player holds another one is loaded ahead of playback.
+      boolean isUpcoming = activePeriodCount > 0;
+      boolean prefetchFromFormats = isUpcoming && prefetchRequested;
+      prefetchRequested = false;
+      itemActivePeriodCount++;
+      onItemPeriodCreated(this);
+      MediaPeriod mediaPeriod = mediaSource.createPeriod(index, allocator, positionUs);
+      return prefetchFromFormats ? new LicensePrefetchingMediaPeriod(mediaPeriod, licensePrefetcher)
+          : mediaPeriod;
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      if (mediaPeriod instanceof LicensePrefetchingMediaPeriod) {
+        mediaPeriod = ((LicensePrefetchingMediaPeriod) mediaPeriod).mediaPeriod;
+      }
+      mediaSource.releasePeriod(mediaPeriod);
+      itemActivePeriodCount--;
+      onItemPeriodReleased();
+    }
+
+    @Override
+    public void releaseSource() {
+      mediaSource.releaseSource();
+      manifestDrmInitDatas = null;
+    }
+
+    private void maybePrefetchFromManifest() {
+      if (prefetchRequested && manifestDrmInitDatas != null && !manifestDrmInitDatas.isEmpty()) {
+        prefetchRequested = false;
+        prefetch(manifestDrmInitDatas);
+      }
+    }
+
+  }
+
+  /**
+   * Forwards to a wrapped {@link MediaPeriod}, prefetching the licenses of its formats when it has
+   * been prepared.
+   */
+  private static final class LicensePrefetchingMediaPeriod implements MediaPeriod,
+      MediaPeriod.Callback {
+
+    public final MediaPeriod mediaPeriod;
+
+    private final DrmLicensePrefetcher licensePrefetcher;
+
+    private MediaPeriod.Callback callback;
+
+    public LicensePrefetchingMediaPeriod(MediaPeriod mediaPeriod,
+        DrmLicensePrefetcher licensePrefetcher) {
+      this.mediaPeriod = mediaPeriod;
+      this.licensePrefetcher = licensePrefetcher;
+    }
+
+    @Override
+    public void prepare(MediaPeriod.Callback callback) {
+      this.callback = callback;
+      mediaPeriod.prepare(this);
+    }
+
+    @Override
+    public void maybeThrowPrepareError() throws IOException {
+      mediaPeriod.maybeThrowPrepareError();
+    }
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return mediaPeriod.getTrackGroups();
+    }
+
+    @Override
+    public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+        SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+      return mediaPeriod.selectTracks(selections, mayRetainStreamFlags, streams, streamResetFlags,
+          positionUs);
+    }
+
+    @Override
+    public void discardBuffer(long positionUs) {
+      mediaPeriod.discardBuffer(positionUs);
+    }
+
+    @Override
+    public long readDiscontinuity() {
+      return mediaPeriod.readDiscontinuity();
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return mediaPeriod.getBufferedPositionUs();
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return mediaPeriod.seekToUs(positionUs);
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return mediaPeriod.getNextLoadPositionUs();
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      return mediaPeriod.continueLoading(positionUs);
+    }
+
+    // MediaPeriod.Callback implementation.
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+      for (int i = 0; i < trackGroups.length; i++) {
+        TrackGroup trackGroup = trackGroups.get(i);
+        for (int j = 0; j < trackGroup.length; j++) {
+          Format format = trackGroup.getFormat(j);
+          if (format.drmInitData != null) {
+            licensePrefetcher.prefetch(format.drmInitData);
+          }
+        }
+      }
+      callback.onPrepared(this);
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {
+      callback.onContinueLoadingRequested(this);
+    }
+
+  }
+
+}
@@ -69,7 +69,9 @@ public interface SampleStream {
    * Attempts to skip to the keyframe before the specified time.
    *
    * @param timeUs The specified time.
+   * @return Whether the stream is now positioned at a keyframe at or before the specified time.
+   *     False if no such keyframe is buffered, in which case the read position is unchanged.
    */
-  void skipToKeyframeBefore(long timeUs);
+  boolean skipToKeyframeBefore(long timeUs);
 
 }
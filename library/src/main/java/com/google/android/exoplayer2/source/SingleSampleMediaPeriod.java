@@ -235,8 +235,8 @@ import java.util.Arrays;
     }
 
     @Override
-    public void skipToKeyframeBefore(long timeUs) {
-      // Do nothing.
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return false;
     }
 
   }
@@ -251,8 +251,8 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
   }
 
   @Override
-  public void skipToKeyframeBefore(long timeUs) {
-    primarySampleQueue.skipToKeyframeBefore(timeUs);
+  public boolean skipToKeyframeBefore(long timeUs) {
+    return primarySampleQueue.skipToKeyframeBefore(timeUs);
   }
 
   // Loader.Callback implementation.
@@ -448,8 +448,8 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
     }
 
     @Override
-    public void skipToKeyframeBefore(long timeUs) {
-      sampleQueue.skipToKeyframeBefore(timeUs);
+    public boolean skipToKeyframeBefore(long timeUs) {
+      return sampleQueue.skipToKeyframeBefore(timeUs);
     }
 
     @Override
@@ -30,6 +30,8 @@ import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
 import com.google.android.exoplayer2.source.dash.manifest.UtcTimingElement;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -708,8 +710,16 @@ public final class DashMediaSource implements MediaSource {
       }
       // If there are multiple video adaptation sets with unaligned segments, the initial time may
       // not correspond to the start of a segment in both, but this is an edge case.
-      DashSegmentIndex snapIndex = period.adaptationSets.get(videoAdaptationSetIndex)
-          .representations.get(0).getIndex();
+      Representation snapRepresentation = period.adaptationSets.get(videoAdaptationSetIndex)
+          .representations.get(0);
+      if (snapRepresentation instanceof MultiSegmentRepresentation
+          && ((MultiSegmentRepresentation) snapRepresentation).getAvailabilityTimeOffsetUs()
+          != C.TIME_UNSET) {
+        // Segments are delivered in chunks as they are produced. Snapping back to the start of the
+        // segment would add up to a segment duration of latency.
+        return windowDefaultStartPositionUs;
+      }
+      DashSegmentIndex snapIndex = snapRepresentation.getIndex();
       if (snapIndex == null || snapIndex.getSegmentCount(periodDurationUs) == 0) {
         // Video adaptation set does not include a non-empty index for snapping.
         return windowDefaultStartPositionUs;
@@ -38,6 +38,7 @@ import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.RangedUri;
 import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
@@ -221,9 +222,21 @@ public class DefaultDashChunkSource implements DashChunkSource {
         firstAvailableSegmentNum = Math.max(firstAvailableSegmentNum,
             representationHolder.getSegmentNum(liveEdgeTimeInPeriodUs - bufferDepthUs));
       }
-      // getSegmentNum(liveEdgeTimestampUs) will not be completed yet, so subtract one to get the
-      // index of the last completed segment.
-      lastAvailableSegmentNum = representationHolder.getSegmentNum(liveEdgeTimeInPeriodUs) - 1;
+      int liveEdgeSegmentNum = representationHolder.getSegmentNum(liveEdgeTimeInPeriodUs);
+      long availabilityTimeOffsetUs = representationHolder.getAvailabilityTimeOffsetUs();
+      if (availabilityTimeOffsetUs == C.TIME_UNSET) {
+        // getSegmentNum(liveEdgeTimestampUs) will not be completed yet, so subtract one to get the
+        // index of the last completed segment.
+        lastAvailableSegmentNum = liveEdgeSegmentNum - 1;
+      } else if (availabilityTimeOffsetUs == Long.MAX_VALUE) {
+        lastAvailableSegmentNum = liveEdgeSegmentNum;
+      } else {
+        // Segments become available the offset before they are complete, in which case they are
+        // delivered in chunks as they are produced. Segments that have not started yet are never
+        // available.
+        lastAvailableSegmentNum = Math.min(liveEdgeSegmentNum, representationHolder.getSegmentNum(
+            liveEdgeTimeInPeriodUs + availabilityTimeOffsetUs) - 1);
+      }
     } else {
       lastAvailableSegmentNum = firstAvailableSegmentNum + availableSegmentCount - 1;
     }
@@ -476,6 +489,12 @@ public class DefaultDashChunkSource implements DashChunkSource {
       return segmentIndex.getSegmentNum(positionUs, periodDurationUs) + segmentNumShift;
     }
 
+    public long getAvailabilityTimeOffsetUs() {
+      return representation instanceof MultiSegmentRepresentation
+          ? ((MultiSegmentRepresentation) representation).getAvailabilityTimeOffsetUs()
+          : C.TIME_UNSET;
+    }
+
     public RangedUri getSegmentUrl(int segmentNum) {
       return segmentIndex.getSegmentUrl(segmentNum - segmentNumShift);
     }
@@ -17,6 +17,8 @@ package com.google.android.exoplayer2.source.dash.manifest;
 
 import android.net.Uri;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.DrmInitDataManifest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -25,7 +27,7 @@ import java.util.List;
 /**
  * Represents a DASH media presentation description (mpd).
  */
-public class DashManifest {
+public class DashManifest implements DrmInitDataManifest {
 
   public final long availabilityStartTime;
 
@@ -81,6 +83,22 @@ public class DashManifest {
     return C.msToUs(getPeriodDurationMs(index));
   }
 
+  @Override
+  public final List<DrmInitData> getDrmInitDatas() {
+    ArrayList<DrmInitData> drmInitDatas = new ArrayList<>();
+    for (Period period : periods) {
+      for (AdaptationSet adaptationSet : period.adaptationSets) {
+        for (Representation representation : adaptationSet.representations) {
+          DrmInitData drmInitData = representation.format.drmInitData;
+          if (drmInitData != null && !drmInitDatas.contains(drmInitData)) {
+            drmInitDatas.add(drmInitData);
+          }
+        }
+      }
+    }
+    return drmInitDatas;
+  }
+
   /**
    * Creates a copy of this manifest which includes only the representations identified by the given
    * keys.
@@ -566,6 +566,8 @@ public class DashManifestParser extends DefaultHandler
         parent != null ? parent.presentationTimeOffset : 0);
     long duration = parseLong(xpp, "duration", parent != null ? parent.duration : C.TIME_UNSET);
     int startNumber = parseInt(xpp, "startNumber", parent != null ? parent.startNumber : 1);
+    long availabilityTimeOffsetUs = parseAvailabilityTimeOffsetUs(xpp,
+        parent != null ? parent.availabilityTimeOffsetUs : C.TIME_UNSET);
 
     RangedUri initialization = null;
     List<SegmentTimelineElement> timeline = null;
@@ -592,14 +594,22 @@ public class DashManifestParser extends DefaultHandler
     }
 
     return buildSegmentList(initialization, timescale, presentationTimeOffset,
-        startNumber, duration, timeline, segments);
+        startNumber, duration, timeline, segments, availabilityTimeOffsetUs);
   }
 
   protected SegmentList buildSegmentList(RangedUri initialization, long timescale,
       long presentationTimeOffset, int startNumber, long duration,
       List<SegmentTimelineElement> timeline, List<RangedUri> segments) {
+    return buildSegmentList(initialization, timescale, presentationTimeOffset, startNumber,
+        duration, timeline, segments, C.TIME_UNSET);
+  }
+
+  protected SegmentList buildSegmentList(RangedUri initialization, long timescale,
+      long presentationTimeOffset, int startNumber, long duration,
+      List<SegmentTimelineElement> timeline, List<RangedUri> segments,
+      long availabilityTimeOffsetUs) {
     return new SegmentList(initialization, timescale, presentationTimeOffset,
-        startNumber, duration, timeline, segments);
+        startNumber, duration, timeline, segments, availabilityTimeOffsetUs);
   }
 
   protected SegmentTemplate parseSegmentTemplate(XmlPullParser xpp, SegmentTemplate parent)
@@ -613,6 +623,8 @@ public class DashManifestParser extends DefaultHandler
         parent != null ? parent.mediaTemplate : null);
     UrlTemplate initializationTemplate = parseUrlTemplate(xpp, "initialization",
         parent != null ? parent.initializationTemplate : null);
+    long availabilityTimeOffsetUs = parseAvailabilityTimeOffsetUs(xpp,
+        parent != null ? parent.availabilityTimeOffsetUs : C.TIME_UNSET);
 
     RangedUri initialization = null;
     List<SegmentTimelineElement> timeline = null;
@@ -632,15 +644,25 @@ public class DashManifestParser extends DefaultHandler
     }
 
     return buildSegmentTemplate(initialization, timescale, presentationTimeOffset,
-        startNumber, duration, timeline, initializationTemplate, mediaTemplate);
+        startNumber, duration, timeline, initializationTemplate, mediaTemplate,
+        availabilityTimeOffsetUs);
   }
 
   protected SegmentTemplate buildSegmentTemplate(RangedUri initialization, long timescale,
       long presentationTimeOffset, int startNumber, long duration,
       List<SegmentTimelineElement> timeline, UrlTemplate initializationTemplate,
       UrlTemplate mediaTemplate) {
+    return buildSegmentTemplate(initialization, timescale, presentationTimeOffset, startNumber,
+        duration, timeline, initializationTemplate, mediaTemplate, C.TIME_UNSET);
+  }
+
+  protected SegmentTemplate buildSegmentTemplate(RangedUri initialization, long timescale,
+      long presentationTimeOffset, int startNumber, long duration,
+      List<SegmentTimelineElement> timeline, UrlTemplate initializationTemplate,
+      UrlTemplate mediaTemplate, long availabilityTimeOffsetUs) {
     return new SegmentTemplate(initialization, timescale, presentationTimeOffset,
-        startNumber, duration, timeline, initializationTemplate, mediaTemplate);
+        startNumber, duration, timeline, initializationTemplate, mediaTemplate,
+        availabilityTimeOffsetUs);
   }
 
   protected List<SegmentTimelineElement> parseSegmentTimeline(XmlPullParser xpp)
@@ -898,6 +920,25 @@ public class DashManifestParser extends DefaultHandler
     }
   }
 
+  /**
+   * Parses the availabilityTimeOffset attribute of a segment description.
+   *
+   * @param xpp The parser from which to read.
+   * @param defaultValue The value to return if the attribute is not present.
+   * @return The offset in microseconds, or {@link Long#MAX_VALUE} if segments are available
+   *     immediately.
+   */
+  protected static long parseAvailabilityTimeOffsetUs(XmlPullParser xpp, long defaultValue) {
+    String value = xpp.getAttributeValue(null, "availabilityTimeOffset");
+    if (value == null) {
+      return defaultValue;
+    } else if ("INF".equals(value)) {
+      return Long.MAX_VALUE;
+    } else {
+      return (long) (Double.parseDouble(value) * C.MICROS_PER_SECOND);
+    }
+  }
+
   protected static String parseBaseUrl(XmlPullParser xpp, String parentBaseUrl)
       throws XmlPullParserException, IOException {
     xpp.next();
@@ -290,6 +290,16 @@ public abstract class Representation {
       return null;
     }
 
+    /**
+     * Returns the amount of time by which each segment becomes available before it is complete, in
+     * microseconds.
+     *
+     * @see MultiSegmentBase#getAvailabilityTimeOffsetUs()
+     */
+    public long getAvailabilityTimeOffsetUs() {
+      return segmentBase.getAvailabilityTimeOffsetUs();
+    }
+
     // DashSegmentIndex implementation.
 
     @Override
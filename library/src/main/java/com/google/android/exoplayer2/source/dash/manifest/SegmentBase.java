@@ -102,6 +102,7 @@ public abstract class SegmentBase {
     /* package */ final int startNumber;
     /* package */ final long duration;
     /* package */ final List<SegmentTimelineElement> segmentTimeline;
+    /* package */ final long availabilityTimeOffsetUs;
 
     /**
      * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
@@ -119,10 +120,35 @@ public abstract class SegmentBase {
      */
     public MultiSegmentBase(RangedUri initialization, long timescale, long presentationTimeOffset,
         int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline) {
+      this(initialization, timescale, presentationTimeOffset, startNumber, duration,
+          segmentTimeline, C.TIME_UNSET);
+    }
+
+    /**
+     * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
+     *     exists.
+     * @param timescale The timescale in units per second.
+     * @param presentationTimeOffset The presentation time offset. The value in seconds is the
+     *     division of this value and {@code timescale}.
+     * @param startNumber The sequence number of the first segment.
+     * @param duration The duration of each segment in the case of fixed duration segments. The
+     *     value in seconds is the division of this value and {@code timescale}. If
+     *     {@code segmentTimeline} is non-null then this parameter is ignored.
+     * @param segmentTimeline A segment timeline corresponding to the segments. If null, then
+     *     segments are assumed to be of fixed duration as specified by the {@code duration}
+     *     parameter.
+     * @param availabilityTimeOffsetUs The amount of time by which each segment becomes available
+     *     before it is complete, in microseconds, {@link Long#MAX_VALUE} if all segments are
+     *     available immediately, or {@link C#TIME_UNSET} if not specified.
+     */
+    public MultiSegmentBase(RangedUri initialization, long timescale, long presentationTimeOffset,
+        int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline,
+        long availabilityTimeOffsetUs) {
       super(initialization, timescale, presentationTimeOffset);
       this.startNumber = startNumber;
       this.duration = duration;
       this.segmentTimeline = segmentTimeline;
+      this.availabilityTimeOffsetUs = availabilityTimeOffsetUs;
     }
 
     /**
@@ -218,6 +244,18 @@ public abstract class SegmentBase {
       return segmentTimeline != null;
     }
 
+    /**
+     * Returns the amount of time by which each segment becomes available before it is complete, in
+     * microseconds. {@link Long#MAX_VALUE} indicates that all segments are available immediately,
+     * and {@link C#TIME_UNSET} that no offset is specified.
+     * <p>
+     * An offset is typically signalled for low-latency streams whose segments are delivered in
+     * chunks as they are produced.
+     */
+    public long getAvailabilityTimeOffsetUs() {
+      return availabilityTimeOffsetUs;
+    }
+
   }
 
   /**
@@ -245,8 +283,33 @@ public abstract class SegmentBase {
     public SegmentList(RangedUri initialization, long timescale, long presentationTimeOffset,
         int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline,
         List<RangedUri> mediaSegments) {
+      this(initialization, timescale, presentationTimeOffset, startNumber, duration,
+          segmentTimeline, mediaSegments, C.TIME_UNSET);
+    }
+
+    /**
+     * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
+     *     exists.
+     * @param timescale The timescale in units per second.
+     * @param presentationTimeOffset The presentation time offset. The value in seconds is the
+     *     division of this value and {@code timescale}.
+     * @param startNumber The sequence number of the first segment.
+     * @param duration The duration of each segment in the case of fixed duration segments. The
+     *     value in seconds is the division of this value and {@code timescale}. If
+     *     {@code segmentTimeline} is non-null then this parameter is ignored.
+     * @param segmentTimeline A segment timeline corresponding to the segments. If null, then
+     *     segments are assumed to be of fixed duration as specified by the {@code duration}
+     *     parameter.
+     * @param mediaSegments A list of {@link RangedUri}s indicating the locations of the segments.
+     * @param availabilityTimeOffsetUs The amount of time by which each segment becomes available
+     *     before it is complete, in microseconds, {@link Long#MAX_VALUE} if all segments are
+     *     available immediately, or {@link C#TIME_UNSET} if not specified.
+     */
+    public SegmentList(RangedUri initialization, long timescale, long presentationTimeOffset,
+        int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline,
+        List<RangedUri> mediaSegments, long availabilityTimeOffsetUs) {
       super(initialization, timescale, presentationTimeOffset, startNumber, duration,
-          segmentTimeline);
+          segmentTimeline, availabilityTimeOffsetUs);
       this.mediaSegments = mediaSegments;
     }
 
@@ -297,8 +360,38 @@ public abstract class SegmentBase {
     public SegmentTemplate(RangedUri initialization, long timescale, long presentationTimeOffset,
         int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline,
         UrlTemplate initializationTemplate, UrlTemplate mediaTemplate) {
+      this(initialization, timescale, presentationTimeOffset, startNumber, duration,
+          segmentTimeline, initializationTemplate, mediaTemplate, C.TIME_UNSET);
+    }
+
+    /**
+     * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
+     *     exists. The value of this parameter is ignored if {@code initializationTemplate} is
+     *     non-null.
+     * @param timescale The timescale in units per second.
+     * @param presentationTimeOffset The presentation time offset. The value in seconds is the
+     *     division of this value and {@code timescale}.
+     * @param startNumber The sequence number of the first segment.
+     * @param duration The duration of each segment in the case of fixed duration segments. The
+     *     value in seconds is the division of this value and {@code timescale}. If
+     *     {@code segmentTimeline} is non-null then this parameter is ignored.
+     * @param segmentTimeline A segment timeline corresponding to the segments. If null, then
+     *     segments are assumed to be of fixed duration as specified by the {@code duration}
+     *     parameter.
+     * @param initializationTemplate A template defining the location of initialization data, if
+     *     such data exists. If non-null then the {@code initialization} parameter is ignored. If
+     *     null then {@code initialization} will be used.
+     * @param mediaTemplate A template defining the location of each media segment.
+     * @param availabilityTimeOffsetUs The amount of time by which each segment becomes available
+     *     before it is complete, in microseconds, {@link Long#MAX_VALUE} if all segments are
+     *     available immediately, or {@link C#TIME_UNSET} if not specified.
+     */
+    public SegmentTemplate(RangedUri initialization, long timescale, long presentationTimeOffset,
+        int startNumber, long duration, List<SegmentTimelineElement> segmentTimeline,
+        UrlTemplate initializationTemplate, UrlTemplate mediaTemplate,
+        long availabilityTimeOffsetUs) {
       super(initialization, timescale, presentationTimeOffset, startNumber,
-          duration, segmentTimeline);
+          duration, segmentTimeline, availabilityTimeOffsetUs);
       this.initializationTemplate = initializationTemplate;
       this.mediaTemplate = mediaTemplate;
     }
@@ -18,17 +18,15 @@ package com.google.android.exoplayer2.source.hls;
 import android.net.Uri;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DataSourceInputStream;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
-import java.security.Key;
 import java.security.NoSuchAlgorithmException;
-import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -37,17 +35,28 @@ import javax.crypto.spec.SecretKeySpec;
  * A {@link DataSource} that decrypts data read from an upstream source, encrypted with AES-128 with
  * a 128-bit key and PKCS7 padding.
  * <p>
+ * Data is read from upstream and decrypted in large blocks, so that each {@link Cipher#update}
+ * call processes as much data as possible. The {@link Cipher} and buffers can be shared with the
+ * source of the preceding chunk, in which case the cipher is only re-initialized if the key or
+ * initialization vector differs.
+ * <p>
  * Note that this {@link DataSource} does not support being opened from arbitrary offsets. It is
  * designed specifically for reading whole files as defined in an HLS media playlist. For this
  * reason the implementation is private to the HLS package.
  */
 /* package */ final class Aes128DataSource implements DataSource {
 
+  private static final int BUFFER_SIZE = 16 * 1024;
+
   private final DataSource upstream;
   private final byte[] encryptionKey;
   private final byte[] encryptionIv;
+  private final DecryptionState state;
 
-  private CipherInputStream cipherInputStream;
+  private boolean opened;
+  private boolean inputEnded;
+  private int outputPosition;
+  private int outputLimit;
 
   /**
    * @param upstream The upstream {@link DataSource}.
@@ -55,49 +64,57 @@ import javax.crypto.spec.SecretKeySpec;
    * @param encryptionIv The encryption initialization vector.
    */
   public Aes128DataSource(DataSource upstream, byte[] encryptionKey, byte[] encryptionIv) {
+    this(upstream, encryptionKey, encryptionIv, null);
+  }
+
+  /**
+   * @param upstream The upstream {@link DataSource}.
+   * @param encryptionKey The encryption key.
+   * @param encryptionIv The encryption initialization vector.
+   * @param previousSource The source used to decrypt the previous chunk, whose cipher and buffers
+   *     should be reused, or null. The previous source must not be used after this call.
+   */
+  public Aes128DataSource(DataSource upstream, byte[] encryptionKey, byte[] encryptionIv,
+      Aes128DataSource previousSource) {
     this.upstream = upstream;
     this.encryptionKey = encryptionKey;
     this.encryptionIv = encryptionIv;
+    state = previousSource != null ? previousSource.state : new DecryptionState();
   }
 
   @Override
   public long open(DataSpec dataSpec) throws IOException {
-    Cipher cipher;
-    try {
-      cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
-    } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-      throw new RuntimeException(e);
-    }
-
-    Key cipherKey = new SecretKeySpec(encryptionKey, "AES");
-    AlgorithmParameterSpec cipherIV = new IvParameterSpec(encryptionIv);
-
-    try {
-      cipher.init(Cipher.DECRYPT_MODE, cipherKey, cipherIV);
-    } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
-      throw new RuntimeException(e);
-    }
-
-    cipherInputStream = new CipherInputStream(
-        new DataSourceInputStream(upstream, dataSpec), cipher);
-
+    state.initialize(encryptionKey, encryptionIv);
+    upstream.open(dataSpec);
+    opened = true;
+    inputEnded = false;
+    outputPosition = 0;
+    outputLimit = 0;
     return C.LENGTH_UNSET;
   }
 
   @Override
   public void close() throws IOException {
-    cipherInputStream = null;
+    opened = false;
     upstream.close();
   }
 
   @Override
   public int read(byte[] buffer, int offset, int readLength) throws IOException {
-    Assertions.checkState(cipherInputStream != null);
-    int bytesRead = cipherInputStream.read(buffer, offset, readLength);
-    if (bytesRead < 0) {
-      return C.RESULT_END_OF_INPUT;
+    Assertions.checkState(opened);
+    if (readLength == 0) {
+      return 0;
     }
-    return bytesRead;
+    while (outputPosition == outputLimit) {
+      if (inputEnded) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      decryptNextBlock();
+    }
+    int bytesToRead = Math.min(readLength, outputLimit - outputPosition);
+    System.arraycopy(state.outputBuffer, outputPosition, buffer, offset, bytesToRead);
+    outputPosition += bytesToRead;
+    return bytesToRead;
   }
 
   @Override
@@ -105,4 +122,70 @@ import javax.crypto.spec.SecretKeySpec;
     return upstream.getUri();
   }
 
+  private void decryptNextBlock() throws IOException {
+    int bytesRead = upstream.read(state.inputBuffer, 0, state.inputBuffer.length);
+    state.cipherInitialized = false;
+    try {
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        outputLimit = state.cipher.doFinal(state.outputBuffer, 0);
+        inputEnded = true;
+        // The cipher is left initialized with the same key and initialization vector.
+        state.cipherInitialized = true;
+      } else {
+        outputLimit = state.cipher.update(state.inputBuffer, 0, bytesRead, state.outputBuffer, 0);
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e);
+    }
+    outputPosition = 0;
+  }
+
+  /**
+   * Holds the {@link Cipher} and buffers, which may be shared by sources that are used one after
+   * the other.
+   */
+  private static final class DecryptionState {
+
+    public final Cipher cipher;
+    public final byte[] inputBuffer;
+    public final byte[] outputBuffer;
+
+    public boolean cipherInitialized;
+
+    private byte[] key;
+    private byte[] iv;
+    private SecretKeySpec keySpec;
+
+    public DecryptionState() {
+      try {
+        cipher = Cipher.getInstance("AES/CBC/PKCS7Padding");
+      } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+        throw new RuntimeException(e);
+      }
+      inputBuffer = new byte[BUFFER_SIZE];
+      // Decryption may output up to one block more than the input, due to buffering in the cipher.
+      outputBuffer = new byte[BUFFER_SIZE + cipher.getBlockSize()];
+    }
+
+    public void initialize(byte[] key, byte[] iv) {
+      boolean keyChanged = !Arrays.equals(this.key, key);
+      if (cipherInitialized && !keyChanged && Arrays.equals(this.iv, iv)) {
+        // The cipher was left in its initialized state by the last stream.
+        return;
+      }
+      if (keyChanged) {
+        this.key = key;
+        keySpec = new SecretKeySpec(key, "AES");
+      }
+      this.iv = iv;
+      try {
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(iv));
+      } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+        throw new RuntimeException(e);
+      }
+      cipherInitialized = true;
+    }
+
+  }
+
 }
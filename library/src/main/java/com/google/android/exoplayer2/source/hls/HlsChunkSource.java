@@ -83,6 +83,8 @@ import java.util.Locale;
 
   private final DataSource mediaDataSource;
   private final DataSource encryptionDataSource;
+  private final PrefetchingDataSource prefetchingDataSource;
+  private final int prefetchSegmentCount;
   private final TimestampAdjusterProvider timestampAdjusterProvider;
   private final HlsUrl[] variants;
   private final HlsPlaylistTracker playlistTracker;
@@ -112,10 +114,12 @@ import java.util.Locale;
    *     multiple {@link HlsChunkSource}s are used for a single playback, they should all share the
    *     same provider.
    * @param muxedCaptionFormats List of muxed caption {@link Format}s.
+   * @param prefetchSegmentCount The number of media segments to download ahead of the segment
+   *     being loaded, or 0 to disable prefetching.
    */
   public HlsChunkSource(HlsPlaylistTracker playlistTracker, HlsUrl[] variants,
       HlsDataSourceFactory dataSourceFactory, TimestampAdjusterProvider timestampAdjusterProvider,
-      List<Format> muxedCaptionFormats) {
+      List<Format> muxedCaptionFormats, int prefetchSegmentCount) {
     this.playlistTracker = playlistTracker;
     this.variants = variants;
     this.timestampAdjusterProvider = timestampAdjusterProvider;
@@ -126,7 +130,16 @@ import java.util.Locale;
       variantFormats[i] = variants[i].format;
       initialTrackSelection[i] = i;
     }
-    mediaDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA);
+    this.prefetchSegmentCount = prefetchSegmentCount;
+    if (prefetchSegmentCount > 0) {
+      prefetchingDataSource = new PrefetchingDataSource(
+          dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA),
+          dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA));
+      mediaDataSource = prefetchingDataSource;
+    } else {
+      prefetchingDataSource = null;
+      mediaDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA);
+    }
     encryptionDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_DRM);
     trackGroup = new TrackGroup(variantFormats);
     trackSelection = new InitializationTrackSelection(trackGroup, initialTrackSelection);
@@ -167,6 +180,15 @@ import java.util.Locale;
     fatalError = null;
   }
 
+  /**
+   * Releases the source, discarding any prefetched media segments.
+   */
+  public void release() {
+    if (prefetchingDataSource != null) {
+      prefetchingDataSource.release();
+    }
+  }
+
   /**
    * Sets whether this chunk source is responsible for initializing timestamp adjusters.
    *
@@ -214,11 +236,15 @@ import java.util.Locale;
 
     // Select the chunk.
     int chunkMediaSequence;
+    int partIndex = C.INDEX_UNSET;
     if (previous == null || switchingVariant) {
       long targetPositionUs = previous == null ? playbackPositionUs : previous.startTimeUs;
       if (!mediaPlaylist.hasEndTag && targetPositionUs > mediaPlaylist.getEndTimeUs()) {
-        // If the playlist is too old to contain the chunk, we need to refresh it.
+        // If the playlist is too old to contain the chunk, we need to refresh it. If the position
+        // is in the segment that is still being produced, we may be able to start from its parts.
         chunkMediaSequence = mediaPlaylist.mediaSequence + mediaPlaylist.segments.size();
+        partIndex = getStartingPartIndex(mediaPlaylist.trailingParts,
+            targetPositionUs - mediaPlaylist.startTimeUs);
       } else {
         chunkMediaSequence = Util.binarySearchFloor(mediaPlaylist.segments,
             targetPositionUs - mediaPlaylist.startTimeUs, true,
@@ -232,6 +258,18 @@ import java.util.Locale;
           chunkMediaSequence = previous.getNextChunkIndex();
         }
       }
+    } else if (previous.partIndex != C.INDEX_UNSET) {
+      chunkMediaSequence = previous.chunkIndex;
+      partIndex = previous.partIndex + 1;
+      int previousSegmentIndex = previous.chunkIndex - mediaPlaylist.mediaSequence;
+      if (previous.isPreloadHint && previousSegmentIndex >= 0
+          && previousSegmentIndex < mediaPlaylist.segments.size()
+          && previous.partIndex >= mediaPlaylist.segments.get(previousSegmentIndex).parts.size()) {
+        // The segment was completed without the hinted part, which therefore started the next
+        // segment.
+        chunkMediaSequence++;
+        partIndex = 1;
+      }
     } else {
       chunkMediaSequence = previous.getNextChunkIndex();
     }
@@ -241,11 +279,59 @@ import java.util.Locale;
     }
 
     int chunkIndex = chunkMediaSequence - mediaPlaylist.mediaSequence;
-    if (chunkIndex >= mediaPlaylist.segments.size()) {
+    HlsMediaPlaylist.Part part = null;
+    if (partIndex != C.INDEX_UNSET) {
+      List<HlsMediaPlaylist.Part> parts = mediaPlaylist.getParts(chunkIndex);
+      if (partIndex < parts.size() && (chunkIndex == mediaPlaylist.segments.size()
+          || !parts.get(partIndex).isEncrypted)) {
+        part = parts.get(partIndex);
+      } else if (chunkIndex < mediaPlaylist.segments.size()) {
+        // All parts of the segment have been loaded. Continue with the next segment.
+        chunkIndex++;
+        chunkMediaSequence++;
+        partIndex = C.INDEX_UNSET;
+      } else if (partIndex == parts.size() && chunkIndex == mediaPlaylist.segments.size()
+          && mediaPlaylist.preloadHintPart != null) {
+        part = mediaPlaylist.preloadHintPart;
+      }
+    }
+    if (part == null && chunkIndex >= mediaPlaylist.segments.size()) {
       if (mediaPlaylist.hasEndTag) {
         out.endOfStream = true;
-      } else /* Live */ {
+        return;
+      }
+      if (partIndex == C.INDEX_UNSET && chunkIndex == mediaPlaylist.segments.size()
+          && previous != null && !switchingVariant) {
+        // Continue into the segment that is still being produced, part by part.
+        partIndex = 0;
+        part = !mediaPlaylist.trailingParts.isEmpty() ? mediaPlaylist.trailingParts.get(0)
+            : mediaPlaylist.preloadHintPart;
+      }
+      if (part == null) {
         out.playlist = selectedUrl;
+        return;
+      }
+    }
+    if (part != null && part.isEncrypted) {
+      // Parts are loaded without decryption, so encrypted parts are not loaded individually. Wait
+      // for the complete segment instead.
+      out.playlist = selectedUrl;
+      return;
+    }
+
+    DataSpec initDataSpec = null;
+    Segment initSegment = mediaPlaylist.initializationSegment;
+    if (initSegment != null) {
+      Uri initSegmentUri = UriUtil.resolveToUri(mediaPlaylist.baseUri, initSegment.url);
+      initDataSpec = new DataSpec(initSegmentUri, initSegment.byterangeOffset,
+          initSegment.byterangeLength, null);
+    }
+
+    if (part != null) {
+      out.chunk = newPartChunk(mediaPlaylist, part, chunkMediaSequence, partIndex, selectedUrl,
+          initDataSpec, previous);
+      if (prefetchingDataSource != null) {
+        prefetchingDataSource.prefetch(((HlsMediaChunk) out.chunk).dataSpec, new DataSpec[0]);
       }
       return;
     }
@@ -269,14 +355,6 @@ import java.util.Locale;
       clearEncryptionData();
     }
 
-    DataSpec initDataSpec = null;
-    Segment initSegment = mediaPlaylist.initializationSegment;
-    if (initSegment != null) {
-      Uri initSegmentUri = UriUtil.resolveToUri(mediaPlaylist.baseUri, initSegment.url);
-      initDataSpec = new DataSpec(initSegmentUri, initSegment.byterangeOffset,
-          initSegment.byterangeLength, null);
-    }
-
     // Compute start time of the next chunk.
     long startTimeUs = mediaPlaylist.startTimeUs + segment.relativeStartTimeUs;
     int discontinuitySequence = mediaPlaylist.discontinuitySequence
@@ -290,8 +368,23 @@ import java.util.Locale;
         null);
     out.chunk = new HlsMediaChunk(mediaDataSource, dataSpec, initDataSpec, selectedUrl,
         muxedCaptionFormats, trackSelection.getSelectionReason(), trackSelection.getSelectionData(),
-        startTimeUs, startTimeUs + segment.durationUs, chunkMediaSequence, discontinuitySequence,
-        isTimestampMaster, timestampAdjuster, previous, encryptionKey, encryptionIv);
+        startTimeUs, startTimeUs + segment.durationUs, chunkMediaSequence, C.INDEX_UNSET, false,
+        discontinuitySequence, isTimestampMaster, timestampAdjuster, previous, encryptionKey,
+        encryptionIv);
+
+    if (prefetchingDataSource != null) {
+      // Download the segments that follow while this one is being extracted.
+      int prefetchEndIndex = Math.min(chunkIndex + 1 + prefetchSegmentCount,
+          mediaPlaylist.segments.size());
+      DataSpec[] prefetchDataSpecs = new DataSpec[prefetchEndIndex - chunkIndex - 1];
+      for (int i = 0; i < prefetchDataSpecs.length; i++) {
+        Segment prefetchSegment = mediaPlaylist.segments.get(chunkIndex + 1 + i);
+        prefetchDataSpecs[i] = new DataSpec(
+            UriUtil.resolveToUri(mediaPlaylist.baseUri, prefetchSegment.url),
+            prefetchSegment.byterangeOffset, prefetchSegment.byterangeLength, null);
+      }
+      prefetchingDataSource.prefetch(dataSpec, prefetchDataSpecs);
+    }
   }
 
   /**
@@ -341,6 +434,50 @@ import java.util.Locale;
 
   // Private methods.
 
+  private HlsMediaChunk newPartChunk(HlsMediaPlaylist mediaPlaylist, HlsMediaPlaylist.Part part,
+      int chunkMediaSequence, int partIndex, HlsUrl selectedUrl, DataSpec initDataSpec,
+      HlsMediaChunk previous) {
+    long startTimeUs = mediaPlaylist.startTimeUs + part.relativeStartTimeUs;
+    long durationUs = part.durationUs != C.TIME_UNSET ? part.durationUs : 0;
+    int discontinuitySequence = mediaPlaylist.discontinuitySequence
+        + part.relativeDiscontinuitySequence;
+    TimestampAdjuster timestampAdjuster = timestampAdjusterProvider.getAdjuster(
+        discontinuitySequence);
+    Uri partUri = UriUtil.resolveToUri(mediaPlaylist.baseUri, part.url);
+    DataSpec dataSpec = new DataSpec(partUri, part.byterangeOffset, part.byterangeLength, null);
+    return new HlsMediaChunk(mediaDataSource, dataSpec, initDataSpec, selectedUrl,
+        muxedCaptionFormats, trackSelection.getSelectionReason(), trackSelection.getSelectionData(),
+        startTimeUs, startTimeUs + durationUs, chunkMediaSequence, partIndex, part.isPreloadHint,
+        discontinuitySequence, isTimestampMaster, timestampAdjuster, previous, null, null);
+  }
+
+  /**
+   * Returns the index of the part from which to start loading a segment that is still being
+   * produced, given a position relative to the start of the playlist, or {@link C#INDEX_UNSET} if
+   * there is no suitable part. The part is the last one at or before the position that contains an
+   * independent frame, or failing that the first such part after the position. If no part is
+   * declared independent, as is typical for audio, any part is suitable.
+   */
+  /* package */ static int getStartingPartIndex(List<HlsMediaPlaylist.Part> parts,
+      long relativePositionUs) {
+    boolean hasIndependentParts = false;
+    for (int i = 0; i < parts.size(); i++) {
+      hasIndependentParts |= parts.get(i).isIndependent;
+    }
+    int partIndex = C.INDEX_UNSET;
+    for (int i = 0; i < parts.size(); i++) {
+      HlsMediaPlaylist.Part part = parts.get(i);
+      if (hasIndependentParts && !part.isIndependent) {
+        continue;
+      }
+      if (part.relativeStartTimeUs > relativePositionUs) {
+        return partIndex != C.INDEX_UNSET ? partIndex : i;
+      }
+      partIndex = i;
+    }
+    return partIndex;
+  }
+
   private EncryptionKeyChunk newEncryptionKeyChunk(Uri keyUri, String iv, int variantIndex,
       int trackSelectionReason, Object trackSelectionData) {
     DataSpec dataSpec = new DataSpec(keyUri, 0, C.LENGTH_UNSET, null, DataSpec.FLAG_ALLOW_GZIP);
@@ -76,6 +76,17 @@ import java.util.concurrent.atomic.AtomicInteger;
    */
   public final HlsUrl hlsUrl;
 
+  /**
+   * The index of the partial segment within the segment identified by {@link #chunkIndex}, or
+   * {@link C#INDEX_UNSET} if the chunk is a whole segment.
+   */
+  public final int partIndex;
+
+  /**
+   * Whether the chunk is a partial segment requested from a preload hint.
+   */
+  public final boolean isPreloadHint;
+
   private final DataSource initDataSource;
   private final DataSpec initDataSpec;
   private final boolean isEncrypted;
@@ -110,6 +121,9 @@ import java.util.concurrent.atomic.AtomicInteger;
    * @param startTimeUs The start time of the chunk in microseconds.
    * @param endTimeUs The end time of the chunk in microseconds.
    * @param chunkIndex The media sequence number of the chunk.
+   * @param partIndex The index of the partial segment loaded by the chunk, or
+   *     {@link C#INDEX_UNSET} if the chunk loads a whole segment.
+   * @param isPreloadHint Whether the chunk is a partial segment requested from a preload hint.
    * @param discontinuitySequenceNumber The discontinuity sequence number of the chunk.
    * @param isMasterTimestampSource True if the chunk can initialize the timestamp adjuster.
    * @param timestampAdjuster Adjuster corresponding to the provided discontinuity sequence number.
@@ -119,12 +133,15 @@ import java.util.concurrent.atomic.AtomicInteger;
    */
   public HlsMediaChunk(DataSource dataSource, DataSpec dataSpec, DataSpec initDataSpec,
       HlsUrl hlsUrl, List<Format> muxedCaptionFormats, int trackSelectionReason,
-      Object trackSelectionData, long startTimeUs, long endTimeUs, int chunkIndex,
-      int discontinuitySequenceNumber, boolean isMasterTimestampSource,
+      Object trackSelectionData, long startTimeUs, long endTimeUs, int chunkIndex, int partIndex,
+      boolean isPreloadHint, int discontinuitySequenceNumber, boolean isMasterTimestampSource,
       TimestampAdjuster timestampAdjuster, HlsMediaChunk previousChunk, byte[] encryptionKey,
       byte[] encryptionIv) {
-    super(buildDataSource(dataSource, encryptionKey, encryptionIv), dataSpec, hlsUrl.format,
-        trackSelectionReason, trackSelectionData, startTimeUs, endTimeUs, chunkIndex);
+    super(buildDataSource(dataSource, encryptionKey, encryptionIv, previousChunk), dataSpec,
+        hlsUrl.format, trackSelectionReason, trackSelectionData, startTimeUs, endTimeUs,
+        chunkIndex);
+    this.partIndex = partIndex;
+    this.isPreloadHint = isPreloadHint;
     this.discontinuitySequenceNumber = discontinuitySequenceNumber;
     this.initDataSpec = initDataSpec;
     this.hlsUrl = hlsUrl;
@@ -326,14 +343,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 
   /**
    * If the content is encrypted, returns an {@link Aes128DataSource} that wraps the original in
-   * order to decrypt the loaded data. Else returns the original.
+   * order to decrypt the loaded data. Else returns the original. If the previous chunk was also
+   * encrypted, its cipher is reused.
    */
   private static DataSource buildDataSource(DataSource dataSource, byte[] encryptionKey,
-      byte[] encryptionIv) {
+      byte[] encryptionIv, HlsMediaChunk previousChunk) {
     if (encryptionKey == null || encryptionIv == null) {
       return dataSource;
     }
-    return new Aes128DataSource(dataSource, encryptionKey, encryptionIv);
+    Aes128DataSource previousSource = previousChunk != null && previousChunk.isEncrypted
+        ? (Aes128DataSource) previousChunk.dataSource : null;
+    return new Aes128DataSource(dataSource, encryptionKey, encryptionIv, previousSource);
   }
 
   private Extractor createExtractor() {
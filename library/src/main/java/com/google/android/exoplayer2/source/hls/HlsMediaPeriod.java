@@ -46,6 +46,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
   private final HlsPlaylistTracker playlistTracker;
   private final HlsDataSourceFactory dataSourceFactory;
   private final int minLoadableRetryCount;
+  private final int prefetchSegmentCount;
   private final EventDispatcher eventDispatcher;
   private final Allocator allocator;
   private final IdentityHashMap<SampleStream, Integer> streamWrapperIndices;
@@ -62,11 +63,12 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
   private CompositeSequenceableLoader sequenceableLoader;
 
   public HlsMediaPeriod(HlsPlaylistTracker playlistTracker, HlsDataSourceFactory dataSourceFactory,
-      int minLoadableRetryCount, EventDispatcher eventDispatcher, Allocator allocator,
-      long positionUs) {
+      int minLoadableRetryCount, int prefetchSegmentCount, EventDispatcher eventDispatcher,
+      Allocator allocator, long positionUs) {
     this.playlistTracker = playlistTracker;
     this.dataSourceFactory = dataSourceFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
+    this.prefetchSegmentCount = prefetchSegmentCount;
     this.eventDispatcher = eventDispatcher;
     this.allocator = allocator;
     streamWrapperIndices = new IdentityHashMap<>();
@@ -350,7 +352,8 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
   private HlsSampleStreamWrapper buildSampleStreamWrapper(int trackType, HlsUrl[] variants,
       Format muxedAudioFormat, List<Format> muxedCaptionFormats) {
     HlsChunkSource defaultChunkSource = new HlsChunkSource(playlistTracker, variants,
-        dataSourceFactory, timestampAdjusterProvider, muxedCaptionFormats);
+        dataSourceFactory, timestampAdjusterProvider, muxedCaptionFormats,
+        prefetchSegmentCount);
     return new HlsSampleStreamWrapper(trackType, this, defaultChunkSource, allocator,
         preparePositionUs, muxedAudioFormat, minLoadableRetryCount, eventDispatcher);
   }
@@ -43,9 +43,16 @@ public final class HlsMediaSource implements MediaSource,
    */
   public static final int DEFAULT_MIN_LOADABLE_RETRY_COUNT = 3;
 
+  /**
+   * The default number of media segments to download ahead of the segment being loaded. Segment
+   * prefetching is disabled by default.
+   */
+  public static final int DEFAULT_PREFETCH_SEGMENT_COUNT = 0;
+
   private final Uri manifestUri;
   private final HlsDataSourceFactory dataSourceFactory;
   private final int minLoadableRetryCount;
+  private final int prefetchSegmentCount;
   private final EventDispatcher eventDispatcher;
 
   private HlsPlaylistTracker playlistTracker;
@@ -67,9 +74,31 @@ public final class HlsMediaSource implements MediaSource,
   public HlsMediaSource(Uri manifestUri, HlsDataSourceFactory dataSourceFactory,
       int minLoadableRetryCount, Handler eventHandler,
       AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, dataSourceFactory, minLoadableRetryCount, DEFAULT_PREFETCH_SEGMENT_COUNT,
+        eventHandler, eventListener);
+  }
+
+  /**
+   * @param manifestUri The {@link Uri} of the HLS manifest.
+   * @param dataSourceFactory An {@link HlsDataSourceFactory} for {@link DataSource}s for manifests,
+   *     segments and keys.
+   * @param minLoadableRetryCount The minimum number of times loads must be retried before errors
+   *     are propagated.
+   * @param prefetchSegmentCount The number of media segments to download on a background thread
+   *     ahead of the segment being loaded, so that downloading the next segments overlaps with
+   *     extracting the current one. Prefetched segments are held in memory until they are loaded,
+   *     so a small value such as 1 or 2 is recommended. Zero disables prefetching.
+   * @param eventHandler A handler for events. May be null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   */
+  public HlsMediaSource(Uri manifestUri, HlsDataSourceFactory dataSourceFactory,
+      int minLoadableRetryCount, int prefetchSegmentCount, Handler eventHandler,
+      AdaptiveMediaSourceEventListener eventListener) {
+    Assertions.checkArgument(prefetchSegmentCount >= 0);
     this.manifestUri = manifestUri;
     this.dataSourceFactory = dataSourceFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
+    this.prefetchSegmentCount = prefetchSegmentCount;
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
   }
 
@@ -91,7 +120,7 @@ public final class HlsMediaSource implements MediaSource,
   public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
     Assertions.checkArgument(index == 0);
     return new HlsMediaPeriod(playlistTracker, dataSourceFactory, minLoadableRetryCount,
-        eventDispatcher, allocator, positionUs);
+        prefetchSegmentCount, eventDispatcher, allocator, positionUs);
   }
 
   @Override
@@ -115,12 +144,22 @@ public final class HlsMediaSource implements MediaSource,
     if (playlistTracker.isLive()) {
       long periodDurationUs = playlist.hasEndTag ? (playlist.startTimeUs + playlist.durationUs)
           : C.TIME_UNSET;
+      // The parts of the segment being produced can be played, so the window includes them.
+      long windowDurationUs = playlist.durationUs + playlist.trailingPartsDurationUs;
       List<HlsMediaPlaylist.Segment> segments = playlist.segments;
       if (windowDefaultStartPositionUs == C.TIME_UNSET) {
-        windowDefaultStartPositionUs = segments.isEmpty() ? 0
-            : segments.get(Math.max(0, segments.size() - 3)).relativeStartTimeUs;
+        if (playlist.partHoldBackUs != C.TIME_UNSET
+            && playlist.partTargetDurationUs != C.TIME_UNSET) {
+          // Start the recommended distance behind the live edge, which may be within the parts.
+          windowDefaultStartPositionUs = Math.max(0, windowDurationUs - playlist.partHoldBackUs);
+        } else if (playlist.holdBackUs != C.TIME_UNSET) {
+          windowDefaultStartPositionUs = Math.max(0, windowDurationUs - playlist.holdBackUs);
+        } else {
+          windowDefaultStartPositionUs = segments.isEmpty() ? 0
+              : segments.get(Math.max(0, segments.size() - 3)).relativeStartTimeUs;
+        }
       }
-      timeline = new SinglePeriodTimeline(periodDurationUs, playlist.durationUs,
+      timeline = new SinglePeriodTimeline(periodDurationUs, windowDurationUs,
           playlist.startTimeUs, windowDefaultStartPositionUs, true, !playlist.hasEndTag);
     } else /* not live */ {
       if (windowDefaultStartPositionUs == C.TIME_UNSET) {
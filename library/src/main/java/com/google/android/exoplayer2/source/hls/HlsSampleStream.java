@@ -50,8 +50,8 @@ import java.io.IOException;
   }
 
   @Override
-  public void skipToKeyframeBefore(long timeUs) {
-    sampleStreamWrapper.skipToKeyframeBefore(group, timeUs);
+  public boolean skipToKeyframeBefore(long timeUs) {
+    return sampleStreamWrapper.skipToKeyframeBefore(group, timeUs);
   }
 
 }
@@ -267,6 +267,7 @@ import java.util.LinkedList;
       sampleQueues.valueAt(i).disable();
     }
     loader.release();
+    chunkSource.release();
     handler.removeCallbacksAndMessages(null);
     released = true;
   }
@@ -312,8 +313,8 @@ import java.util.LinkedList;
         loadingFinished, lastSeekPositionUs);
   }
 
-  /* package */ void skipToKeyframeBefore(int group, long timeUs) {
-    sampleQueues.valueAt(group).skipToKeyframeBefore(timeUs);
+  /* package */ boolean skipToKeyframeBefore(int group, long timeUs) {
+    return sampleQueues.valueAt(group).skipToKeyframeBefore(timeUs);
   }
 
   private boolean finishedReadingChunk(HlsMediaChunk chunk) {
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link DataSource} that serves media segments from data downloaded ahead of time on a
+ * background thread, and reads all other data from an upstream {@link DataSource}.
+ * <p>
+ * {@link HlsChunkSource} calls {@link #prefetch(DataSpec, DataSpec[])} each time it creates a
+ * media chunk, passing the segments that follow it, so that they are downloaded while the current
+ * segment is being extracted. Only the bytes of the segments are prefetched. Segments are still
+ * extracted one at a time and in order on the loading thread, and so the order in which
+ * {@link com.google.android.exoplayer2.util.TimestampAdjuster}s are initialized and waited on is
+ * unaffected.
+ */
+/* package */ final class PrefetchingDataSource implements DataSource {
+
+  private static final String THREAD_NAME = "ExoPlayer:HlsPrefetcher";
+  private static final int READ_LENGTH = 16 * 1024;
+  private static final int INITIAL_BUFFER_LENGTH = 64 * 1024;
+
+  private final DataSource upstream;
+  private final DataSource prefetchUpstream;
+  private final ArrayList<PrefetchTask> tasks;
+
+  private ExecutorService executorService;
+  private boolean released;
+
+  private PrefetchTask openedTask;
+  private int readPosition;
+  private long bytesRemaining;
+  private boolean upstreamOpened;
+
+  /**
+   * @param upstream The {@link DataSource} from which data that has not been prefetched is read.
+   * @param prefetchUpstream The {@link DataSource} from which segments are prefetched. Must be a
+   *     different instance to {@code upstream}.
+   */
+  public PrefetchingDataSource(DataSource upstream, DataSource prefetchUpstream) {
+    this.upstream = upstream;
+    this.prefetchUpstream = prefetchUpstream;
+    tasks = new ArrayList<>();
+  }
+
+  /**
+   * Updates the segments being prefetched. Segments that are not already being prefetched are
+   * queued for download in the order given. Previously prefetched segments that are neither being
+   * loaded nor passed again are discarded.
+   *
+   * @param loadingDataSpec The {@link DataSpec} of the segment about to be loaded.
+   * @param nextDataSpecs The {@link DataSpec}s of the segments that follow it.
+   */
+  public synchronized void prefetch(DataSpec loadingDataSpec, DataSpec[] nextDataSpecs) {
+    if (released) {
+      return;
+    }
+    for (int i = tasks.size() - 1; i >= 0; i--) {
+      PrefetchTask task = tasks.get(i);
+      if (task != openedTask && !isSameSegment(task.dataSpec, loadingDataSpec)
+          && indexOfSegment(nextDataSpecs, task.dataSpec) == C.INDEX_UNSET) {
+        cancel(task);
+        tasks.remove(i);
+      }
+    }
+    for (DataSpec dataSpec : nextDataSpecs) {
+      if (getTask(dataSpec, false) == null) {
+        if (executorService == null) {
+          executorService = Util.newSingleThreadExecutor(THREAD_NAME);
+        }
+        PrefetchTask task = new PrefetchTask(dataSpec);
+        tasks.add(task);
+        executorService.execute(task);
+      }
+    }
+  }
+
+  /**
+   * Discards all prefetched data and stops the background thread. Data is read from the upstream
+   * {@link DataSource} after the source has been released.
+   */
+  public synchronized void release() {
+    released = true;
+    for (int i = 0; i < tasks.size(); i++) {
+      cancel(tasks.get(i));
+    }
+    tasks.clear();
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the number of segments that are being or have been prefetched and not yet consumed.
+   */
+  /* package */ synchronized int getPrefetchedSegmentCount() {
+    return tasks.size();
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    synchronized (this) {
+      PrefetchTask task = getTask(dataSpec, true);
+      if (task != null) {
+        readPosition = (int) (dataSpec.position - task.dataSpec.position);
+        while (task.length <= readPosition && !task.loadFinished) {
+          waitForData();
+        }
+        if (task.error == null || task.length > readPosition) {
+          openedTask = task;
+          if (task.loadFinished && task.error == null) {
+            bytesRemaining = task.length - readPosition;
+          } else {
+            bytesRemaining = dataSpec.length;
+          }
+          return bytesRemaining;
+        }
+        // The prefetch failed before reaching the requested data. Try again from upstream.
+        tasks.remove(task);
+      }
+    }
+    upstreamOpened = true;
+    return upstream.open(dataSpec);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (openedTask == null) {
+      return upstream.read(buffer, offset, readLength);
+    } else if (readLength == 0) {
+      return 0;
+    } else if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    synchronized (this) {
+      PrefetchTask task = openedTask;
+      while (task.length <= readPosition && !task.loadFinished) {
+        waitForData();
+      }
+      if (task.length > readPosition) {
+        int bytesToRead = Math.min(readLength, task.length - readPosition);
+        if (bytesRemaining != C.LENGTH_UNSET) {
+          bytesToRead = (int) Math.min(bytesToRead, bytesRemaining);
+          bytesRemaining -= bytesToRead;
+        }
+        System.arraycopy(task.data, readPosition, buffer, offset, bytesToRead);
+        readPosition += bytesToRead;
+        return bytesToRead;
+      } else if (task.error != null) {
+        throw task.error;
+      }
+      return C.RESULT_END_OF_INPUT;
+    }
+  }
+
+  @Override
+  public Uri getUri() {
+    return openedTask != null ? openedTask.dataSpec.uri : upstream.getUri();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (openedTask != null) {
+      synchronized (this) {
+        // Keep the data unless it failed or has been consumed, so that a retry can use it.
+        if (openedTask.error != null
+            || (openedTask.loadFinished && readPosition == openedTask.length)) {
+          tasks.remove(openedTask);
+        }
+        openedTask = null;
+      }
+    } else if (upstreamOpened) {
+      upstreamOpened = false;
+      upstream.close();
+    }
+  }
+
+  // Internal methods.
+
+  private PrefetchTask getTask(DataSpec dataSpec, boolean allowRemainder) {
+    for (int i = 0; i < tasks.size(); i++) {
+      PrefetchTask task = tasks.get(i);
+      if (isSameSegment(task.dataSpec, dataSpec)
+          || (allowRemainder && isRemainderOfSegment(task.dataSpec, dataSpec))) {
+        return task;
+      }
+    }
+    return null;
+  }
+
+  private void waitForData() throws InterruptedIOException {
+    try {
+      wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private synchronized void onDataLoaded(PrefetchTask task, int bytesLoaded) {
+    task.length += bytesLoaded;
+    notifyAll();
+  }
+
+  private synchronized byte[] getBufferForLoad(PrefetchTask task) {
+    if (task.data.length - task.length < READ_LENGTH) {
+      task.data = Arrays.copyOf(task.data, task.data.length * 2);
+    }
+    return task.data;
+  }
+
+  private synchronized void onLoadFinished(PrefetchTask task, IOException error) {
+    if (!task.loadFinished) {
+      task.error = error;
+      task.loadFinished = true;
+      notifyAll();
+    }
+  }
+
+  private synchronized void cancel(PrefetchTask task) {
+    task.canceled = true;
+    // A reader waiting for the data falls back to upstream, and the task may never run.
+    onLoadFinished(task, new IOException("Prefetch canceled"));
+  }
+
+  private static int indexOfSegment(DataSpec[] dataSpecs, DataSpec dataSpec) {
+    for (int i = 0; i < dataSpecs.length; i++) {
+      if (isSameSegment(dataSpecs[i], dataSpec)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  private static boolean isSameSegment(DataSpec a, DataSpec b) {
+    return a.uri.equals(b.uri) && a.position == b.position && a.length == b.length;
+  }
+
+  /**
+   * Returns whether {@code remainder} requests the data of {@code segment} from some position
+   * within it, as is the case when a load is resumed after an error.
+   */
+  private static boolean isRemainderOfSegment(DataSpec segment, DataSpec remainder) {
+    if (!segment.uri.equals(remainder.uri) || remainder.position < segment.position) {
+      return false;
+    } else if (segment.length == C.LENGTH_UNSET || remainder.length == C.LENGTH_UNSET) {
+      return segment.length == remainder.length;
+    }
+    return remainder.position + remainder.length == segment.position + segment.length;
+  }
+
+  private final class PrefetchTask implements Runnable {
+
+    public final DataSpec dataSpec;
+
+    // Guarded by the enclosing PrefetchingDataSource. The loading thread writes to data beyond
+    // length without holding the lock, but only ever exposes the written data by increasing length.
+    public byte[] data;
+    public int length;
+    public boolean loadFinished;
+    public IOException error;
+
+    public volatile boolean canceled;
+
+    public PrefetchTask(DataSpec dataSpec) {
+      this.dataSpec = dataSpec;
+      data = new byte[dataSpec.length != C.LENGTH_UNSET
+          ? (int) dataSpec.length + READ_LENGTH : INITIAL_BUFFER_LENGTH];
+    }
+
+    @Override
+    public void run() {
+      if (canceled) {
+        return;
+      }
+      IOException error = null;
+      try {
+        prefetchUpstream.open(dataSpec);
+        int bytesRead = 0;
+        while (!canceled && bytesRead != C.RESULT_END_OF_INPUT) {
+          byte[] buffer = getBufferForLoad(this);
+          int offset = length;
+          bytesRead = prefetchUpstream.read(buffer, offset, READ_LENGTH);
+          if (bytesRead > 0) {
+            onDataLoaded(this, bytesRead);
+          }
+        }
+      } catch (IOException e) {
+        error = e;
+      } finally {
+        Util.closeQuietly(prefetchUpstream);
+      }
+      onLoadFinished(this, error);
+    }
+
+  }
+
+}
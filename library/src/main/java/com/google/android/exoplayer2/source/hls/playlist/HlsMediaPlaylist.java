@@ -41,6 +41,11 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     public final String encryptionIV;
     public final long byterangeOffset;
     public final long byterangeLength;
+    /**
+     * The partial segments into which the segment is divided, as listed by #EXT-X-PART tags. Empty
+     * if the playlist does not list partial segments for the segment.
+     */
+    public final List<Part> parts;
 
     public Segment(String uri, long byterangeOffset, long byterangeLength) {
       this(uri, 0, -1, C.TIME_UNSET, false, null, null, byterangeOffset, byterangeLength);
@@ -49,6 +54,14 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     public Segment(String uri, long durationUs, int relativeDiscontinuitySequence,
         long relativeStartTimeUs, boolean isEncrypted, String encryptionKeyUri, String encryptionIV,
         long byterangeOffset, long byterangeLength) {
+      this(uri, durationUs, relativeDiscontinuitySequence, relativeStartTimeUs, isEncrypted,
+          encryptionKeyUri, encryptionIV, byterangeOffset, byterangeLength,
+          Collections.<Part>emptyList());
+    }
+
+    public Segment(String uri, long durationUs, int relativeDiscontinuitySequence,
+        long relativeStartTimeUs, boolean isEncrypted, String encryptionKeyUri, String encryptionIV,
+        long byterangeOffset, long byterangeLength, List<Part> parts) {
       this.url = uri;
       this.durationUs = durationUs;
       this.relativeDiscontinuitySequence = relativeDiscontinuitySequence;
@@ -58,6 +71,7 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       this.encryptionIV = encryptionIV;
       this.byterangeOffset = byterangeOffset;
       this.byterangeLength = byterangeLength;
+      this.parts = Collections.unmodifiableList(parts);
     }
 
     @Override
@@ -68,6 +82,48 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
 
   }
 
+  /**
+   * Partial segment reference, as defined by #EXT-X-PART or by a #EXT-X-PRELOAD-HINT of type PART.
+   */
+  public static final class Part {
+
+    public final String url;
+    /**
+     * The duration of the part in microseconds. For a preload hint this is the part target
+     * duration, since the duration of the part is not yet known.
+     */
+    public final long durationUs;
+    public final int relativeDiscontinuitySequence;
+    public final long relativeStartTimeUs;
+    /**
+     * Whether the part is declared to contain an independent frame.
+     */
+    public final boolean isIndependent;
+    public final boolean isEncrypted;
+    public final long byterangeOffset;
+    public final long byterangeLength;
+    /**
+     * Whether the part is a preload hint, meaning that it may not be fully available yet and that
+     * the server will block requests for it until it is.
+     */
+    public final boolean isPreloadHint;
+
+    public Part(String url, long durationUs, int relativeDiscontinuitySequence,
+        long relativeStartTimeUs, boolean isIndependent, boolean isEncrypted, long byterangeOffset,
+        long byterangeLength, boolean isPreloadHint) {
+      this.url = url;
+      this.durationUs = durationUs;
+      this.relativeDiscontinuitySequence = relativeDiscontinuitySequence;
+      this.relativeStartTimeUs = relativeStartTimeUs;
+      this.isIndependent = isIndependent;
+      this.isEncrypted = isEncrypted;
+      this.byterangeOffset = byterangeOffset;
+      this.byterangeLength = byterangeLength;
+      this.isPreloadHint = isPreloadHint;
+    }
+
+  }
+
   /**
    * Type of the playlist as specified by #EXT-X-PLAYLIST-TYPE.
    */
@@ -90,12 +146,59 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
   public final boolean hasProgramDateTime;
   public final Segment initializationSegment;
   public final List<Segment> segments;
+  /**
+   * The duration of the complete segments in microseconds, excluding {@link #trailingParts}.
+   */
   public final long durationUs;
+  /**
+   * The part target duration as specified by #EXT-X-PART-INF, or {@link C#TIME_UNSET} if the
+   * playlist does not contain partial segments.
+   */
+  public final long partTargetDurationUs;
+  /**
+   * Whether the server supports blocking playlist reloads, as specified by the CAN-BLOCK-RELOAD
+   * attribute of #EXT-X-SERVER-CONTROL.
+   */
+  public final boolean canBlockReload;
+  /**
+   * The HOLD-BACK attribute of #EXT-X-SERVER-CONTROL, or {@link C#TIME_UNSET} if not specified.
+   */
+  public final long holdBackUs;
+  /**
+   * The PART-HOLD-BACK attribute of #EXT-X-SERVER-CONTROL, or {@link C#TIME_UNSET} if not
+   * specified.
+   */
+  public final long partHoldBackUs;
+  /**
+   * The parts of the segment that follows the complete {@link #segments} and is still being
+   * produced by the server.
+   */
+  public final List<Part> trailingParts;
+  /**
+   * The duration of {@link #trailingParts} in microseconds.
+   */
+  public final long trailingPartsDurationUs;
+  /**
+   * The part announced by #EXT-X-PRELOAD-HINT that follows the last listed part, or null.
+   */
+  public final Part preloadHintPart;
 
   public HlsMediaPlaylist(@PlaylistType int playlistType, String baseUri, long startOffsetUs,
       long startTimeUs, boolean hasDiscontinuitySequence, int discontinuitySequence,
       int mediaSequence, int version, long targetDurationUs, boolean hasEndTag,
       boolean hasProgramDateTime, Segment initializationSegment, List<Segment> segments) {
+    this(playlistType, baseUri, startOffsetUs, startTimeUs, hasDiscontinuitySequence,
+        discontinuitySequence, mediaSequence, version, targetDurationUs, hasEndTag,
+        hasProgramDateTime, initializationSegment, segments, C.TIME_UNSET, false, C.TIME_UNSET,
+        C.TIME_UNSET, Collections.<Part>emptyList(), null);
+  }
+
+  public HlsMediaPlaylist(@PlaylistType int playlistType, String baseUri, long startOffsetUs,
+      long startTimeUs, boolean hasDiscontinuitySequence, int discontinuitySequence,
+      int mediaSequence, int version, long targetDurationUs, boolean hasEndTag,
+      boolean hasProgramDateTime, Segment initializationSegment, List<Segment> segments,
+      long partTargetDurationUs, boolean canBlockReload, long holdBackUs, long partHoldBackUs,
+      List<Part> trailingParts, Part preloadHintPart) {
     super(baseUri, HlsPlaylist.TYPE_MEDIA);
     this.playlistType = playlistType;
     this.startTimeUs = startTimeUs;
@@ -116,6 +219,17 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     }
     this.startOffsetUs = startOffsetUs == C.TIME_UNSET ? C.TIME_UNSET
         : startOffsetUs >= 0 ? startOffsetUs : durationUs + startOffsetUs;
+    this.partTargetDurationUs = partTargetDurationUs;
+    this.canBlockReload = canBlockReload;
+    this.holdBackUs = holdBackUs;
+    this.partHoldBackUs = partHoldBackUs;
+    this.trailingParts = Collections.unmodifiableList(trailingParts);
+    this.preloadHintPart = preloadHintPart;
+    long trailingPartsDurationUs = 0;
+    for (int i = 0; i < trailingParts.size(); i++) {
+      trailingPartsDurationUs += trailingParts.get(i).durationUs;
+    }
+    this.trailingPartsDurationUs = trailingPartsDurationUs;
   }
 
   /**
@@ -134,14 +248,40 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     // The media sequences are equal.
     int segmentCount = segments.size();
     int otherSegmentCount = other.segments.size();
-    return segmentCount > otherSegmentCount
-        || (segmentCount == otherSegmentCount && hasEndTag && !other.hasEndTag);
+    if (segmentCount != otherSegmentCount) {
+      return segmentCount > otherSegmentCount;
+    }
+    int partCount = trailingParts.size();
+    int otherPartCount = other.trailingParts.size();
+    return partCount > otherPartCount
+        || (partCount == otherPartCount && hasEndTag && !other.hasEndTag);
   }
 
   public long getEndTimeUs() {
     return startTimeUs + durationUs;
   }
 
+  /**
+   * Returns the end time of the playlist in microseconds, including any {@link #trailingParts}.
+   */
+  public long getEndTimeIncludingPartsUs() {
+    return startTimeUs + durationUs + trailingPartsDurationUs;
+  }
+
+  /**
+   * Returns the parts of the segment at the given index in {@link #segments}, where an index equal
+   * to the number of segments refers to {@link #trailingParts}.
+   *
+   * @param segmentIndex The index of the segment.
+   * @return The parts of the segment, which may be empty.
+   */
+  public List<Part> getParts(int segmentIndex) {
+    if (segmentIndex < segments.size()) {
+      return segments.get(segmentIndex).parts;
+    }
+    return segmentIndex == segments.size() ? trailingParts : Collections.<Part>emptyList();
+  }
+
   /**
    * Returns a playlist identical to this one except for the start time, the discontinuity sequence
    * and {@code hasDiscontinuitySequence} values. The first two are set to the specified values,
@@ -154,7 +294,8 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
   public HlsMediaPlaylist copyWith(long startTimeUs, int discontinuitySequence) {
     return new HlsMediaPlaylist(playlistType, baseUri, startOffsetUs, startTimeUs, true,
         discontinuitySequence, mediaSequence, version, targetDurationUs, hasEndTag,
-        hasProgramDateTime, initializationSegment, segments);
+        hasProgramDateTime, initializationSegment, segments, partTargetDurationUs, canBlockReload,
+        holdBackUs, partHoldBackUs, trailingParts, preloadHintPart);
   }
 
   /**
@@ -169,7 +310,8 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
     }
     return new HlsMediaPlaylist(playlistType, baseUri, startOffsetUs, startTimeUs,
         hasDiscontinuitySequence, discontinuitySequence, mediaSequence, version, targetDurationUs,
-        true, hasProgramDateTime, initializationSegment, segments);
+        true, hasProgramDateTime, initializationSegment, segments, partTargetDurationUs,
+        canBlockReload, holdBackUs, partHoldBackUs, trailingParts, preloadHintPart);
   }
 
 }
@@ -20,6 +20,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.source.UnrecognizedInputFormatException;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Part;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Segment;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.MimeTypes;
@@ -57,12 +58,18 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String TAG_ENDLIST = "#EXT-X-ENDLIST";
   private static final String TAG_KEY = "#EXT-X-KEY";
   private static final String TAG_BYTERANGE = "#EXT-X-BYTERANGE";
+  private static final String TAG_SERVER_CONTROL = "#EXT-X-SERVER-CONTROL";
+  private static final String TAG_PART_INF = "#EXT-X-PART-INF";
+  private static final String TAG_PART = "#EXT-X-PART";
+  private static final String TAG_PRELOAD_HINT = "#EXT-X-PRELOAD-HINT";
 
   private static final String TYPE_AUDIO = "AUDIO";
   private static final String TYPE_VIDEO = "VIDEO";
   private static final String TYPE_SUBTITLES = "SUBTITLES";
   private static final String TYPE_CLOSED_CAPTIONS = "CLOSED-CAPTIONS";
 
+  private static final String PRELOAD_HINT_TYPE_PART = "PART";
+
   private static final String METHOD_NONE = "NONE";
   private static final String METHOD_AES128 = "AES-128";
 
@@ -86,6 +93,16 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       + ":(\\d+(?:@\\d+)?)\\b");
   private static final Pattern REGEX_ATTR_BYTERANGE =
       Pattern.compile("BYTERANGE=\"(\\d+(?:@\\d+)?)\\b\"");
+  private static final Pattern REGEX_PART_TARGET_DURATION =
+      Pattern.compile("PART-TARGET=([\\d\\.]+)\\b");
+  private static final Pattern REGEX_ATTR_DURATION = Pattern.compile("[:,]DURATION=([\\d\\.]+)\\b");
+  private static final Pattern REGEX_HOLD_BACK = Pattern.compile("[:,]HOLD-BACK=([\\d\\.]+)\\b");
+  private static final Pattern REGEX_PART_HOLD_BACK =
+      Pattern.compile("PART-HOLD-BACK=([\\d\\.]+)\\b");
+  private static final Pattern REGEX_PRELOAD_HINT_TYPE = Pattern.compile("TYPE=(PART|MAP)");
+  private static final Pattern REGEX_BYTERANGE_START = Pattern.compile("BYTERANGE-START=(\\d+)\\b");
+  private static final Pattern REGEX_BYTERANGE_LENGTH =
+      Pattern.compile("BYTERANGE-LENGTH=(\\d+)\\b");
   private static final Pattern REGEX_METHOD = Pattern.compile("METHOD=(" + METHOD_NONE + "|"
       + METHOD_AES128 + ")");
   private static final Pattern REGEX_URI = Pattern.compile("URI=\"(.+?)\"");
@@ -99,6 +116,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final Pattern REGEX_AUTOSELECT = compileBooleanAttrPattern("AUTOSELECT");
   private static final Pattern REGEX_DEFAULT = compileBooleanAttrPattern("DEFAULT");
   private static final Pattern REGEX_FORCED = compileBooleanAttrPattern("FORCED");
+  private static final Pattern REGEX_INDEPENDENT = compileBooleanAttrPattern("INDEPENDENT");
+  private static final Pattern REGEX_CAN_BLOCK_RELOAD =
+      compileBooleanAttrPattern("CAN-BLOCK-RELOAD");
 
   @Override
   public HlsPlaylist parse(Uri uri, InputStream inputStream) throws IOException {
@@ -263,6 +283,13 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     boolean hasEndTag = false;
     Segment initializationSegment = null;
     List<Segment> segments = new ArrayList<>();
+    long partTargetDurationUs = C.TIME_UNSET;
+    boolean canBlockReload = false;
+    long holdBackUs = C.TIME_UNSET;
+    long partHoldBackUs = C.TIME_UNSET;
+    String preloadHintUri = null;
+    long preloadHintByteRangeOffset = 0;
+    long preloadHintByteRangeLength = C.LENGTH_UNSET;
 
     long segmentDurationUs = 0;
     boolean hasDiscontinuitySequence = false;
@@ -273,6 +300,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     long segmentByteRangeOffset = 0;
     long segmentByteRangeLength = C.LENGTH_UNSET;
     int segmentMediaSequence = 0;
+    List<Part> parts = new ArrayList<>();
+    long partsDurationUs = 0;
+    long partByteRangeOffset = 0;
 
     boolean isEncrypted = false;
     String encryptionKeyUri = null;
@@ -290,6 +320,44 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         } else {
           throw new ParserException("Illegal playlist type: " + playlistTypeString);
         }
+      } else if (line.startsWith(TAG_SERVER_CONTROL)) {
+        canBlockReload = parseBooleanAttribute(line, REGEX_CAN_BLOCK_RELOAD, false);
+        holdBackUs = parseOptionalTimeAttr(line, REGEX_HOLD_BACK);
+        partHoldBackUs = parseOptionalTimeAttr(line, REGEX_PART_HOLD_BACK);
+      } else if (line.startsWith(TAG_PART_INF)) {
+        partTargetDurationUs =
+            (long) (parseDoubleAttr(line, REGEX_PART_TARGET_DURATION) * C.MICROS_PER_SECOND);
+      } else if (line.startsWith(TAG_PART)) {
+        long partDurationUs =
+            (long) (parseDoubleAttr(line, REGEX_ATTR_DURATION) * C.MICROS_PER_SECOND);
+        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE);
+        long partByteRangeLength = C.LENGTH_UNSET;
+        if (byteRange != null) {
+          String[] splitByteRange = byteRange.split("@");
+          partByteRangeLength = Long.parseLong(splitByteRange[0]);
+          if (splitByteRange.length > 1) {
+            partByteRangeOffset = Long.parseLong(splitByteRange[1]);
+          }
+        } else {
+          partByteRangeOffset = 0;
+        }
+        parts.add(new Part(parseStringAttr(line, REGEX_URI), partDurationUs,
+            relativeDiscontinuitySequence, segmentStartTimeUs + partsDurationUs,
+            parseBooleanAttribute(line, REGEX_INDEPENDENT, false), isEncrypted,
+            partByteRangeOffset, partByteRangeLength, false));
+        partsDurationUs += partDurationUs;
+        if (partByteRangeLength != C.LENGTH_UNSET) {
+          partByteRangeOffset += partByteRangeLength;
+        }
+      } else if (line.startsWith(TAG_PRELOAD_HINT)) {
+        if (PRELOAD_HINT_TYPE_PART.equals(parseStringAttr(line, REGEX_PRELOAD_HINT_TYPE))) {
+          preloadHintUri = parseStringAttr(line, REGEX_URI);
+          String byteRangeStart = parseOptionalStringAttr(line, REGEX_BYTERANGE_START);
+          String byteRangeLength = parseOptionalStringAttr(line, REGEX_BYTERANGE_LENGTH);
+          preloadHintByteRangeOffset = byteRangeStart != null ? Long.parseLong(byteRangeStart) : 0;
+          preloadHintByteRangeLength = byteRangeLength != null ? Long.parseLong(byteRangeLength)
+              : C.LENGTH_UNSET;
+        }
       } else if (line.startsWith(TAG_START)) {
         startOffsetUs = (long) (parseDoubleAttr(line, REGEX_TIME_OFFSET) * C.MICROS_PER_SECOND);
       } else if (line.startsWith(TAG_INIT_SEGMENT)) {
@@ -358,7 +426,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         }
         segments.add(new Segment(line, segmentDurationUs, relativeDiscontinuitySequence,
             segmentStartTimeUs, isEncrypted, encryptionKeyUri, segmentEncryptionIV,
-            segmentByteRangeOffset, segmentByteRangeLength));
+            segmentByteRangeOffset, segmentByteRangeLength, parts));
+        parts = new ArrayList<>();
+        partsDurationUs = 0;
         segmentStartTimeUs += segmentDurationUs;
         segmentDurationUs = 0;
         if (segmentByteRangeLength != C.LENGTH_UNSET) {
@@ -369,9 +439,16 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         hasEndTag = true;
       }
     }
+    Part preloadHintPart = null;
+    if (preloadHintUri != null) {
+      preloadHintPart = new Part(preloadHintUri, partTargetDurationUs,
+          relativeDiscontinuitySequence, segmentStartTimeUs + partsDurationUs, false, isEncrypted,
+          preloadHintByteRangeOffset, preloadHintByteRangeLength, true);
+    }
     return new HlsMediaPlaylist(playlistType, baseUri, startOffsetUs, playlistStartTimeUs,
         hasDiscontinuitySequence, playlistDiscontinuitySequence, mediaSequence, version,
-        targetDurationUs, hasEndTag, playlistStartTimeUs != 0, initializationSegment, segments);
+        targetDurationUs, hasEndTag, playlistStartTimeUs != 0, initializationSegment, segments,
+        partTargetDurationUs, canBlockReload, holdBackUs, partHoldBackUs, parts, preloadHintPart);
   }
 
   private static String parseStringAttr(String line, Pattern pattern) throws ParserException {
@@ -390,6 +467,11 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return Double.parseDouble(parseStringAttr(line, pattern));
   }
 
+  private static long parseOptionalTimeAttr(String line, Pattern pattern) {
+    String value = parseOptionalStringAttr(line, pattern);
+    return value != null ? (long) (Double.parseDouble(value) * C.MICROS_PER_SECOND) : C.TIME_UNSET;
+  }
+
   private static String parseOptionalStringAttr(String line, Pattern pattern) {
     Matcher matcher = pattern.matcher(line);
     if (matcher.find()) {
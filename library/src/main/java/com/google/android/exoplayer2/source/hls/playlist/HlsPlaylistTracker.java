@@ -81,6 +81,9 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
    */
   private static final long PRIMARY_URL_KEEPALIVE_MS = 15000;
 
+  private static final String BLOCKING_RELOAD_MEDIA_SEQUENCE_PARAM = "_HLS_msn";
+  private static final String BLOCKING_RELOAD_PART_PARAM = "_HLS_part";
+
   private final Uri initialPlaylistUri;
   private final HlsDataSourceFactory dataSourceFactory;
   private final HlsPlaylistParser playlistParser;
@@ -411,6 +414,28 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
     return primaryUrlDiscontinuitySequence;
   }
 
+  /**
+   * Returns the {@link Uri} from which to request the playlist update that follows the given
+   * snapshot using a blocking playlist reload. The server responds once the playlist contains the
+   * segment, or the part if the playlist contains parts, that follows the last one in
+   * {@code playlist}.
+   *
+   * @param playlistUri The {@link Uri} of the playlist.
+   * @param playlist The latest snapshot of the playlist.
+   * @return The {@link Uri} for the blocking reload.
+   */
+  /* package */ static Uri getBlockingReloadUri(Uri playlistUri, HlsMediaPlaylist playlist) {
+    long nextMediaSequence = (long) playlist.mediaSequence + playlist.segments.size();
+    Uri.Builder builder = playlistUri.buildUpon()
+        .appendQueryParameter(BLOCKING_RELOAD_MEDIA_SEQUENCE_PARAM,
+            Long.toString(nextMediaSequence));
+    if (playlist.partTargetDurationUs != C.TIME_UNSET) {
+      builder.appendQueryParameter(BLOCKING_RELOAD_PART_PARAM,
+          Integer.toString(playlist.trailingParts.size()));
+    }
+    return builder.build();
+  }
+
   private static Segment getFirstOldOverlappingSegment(HlsMediaPlaylist oldPlaylist,
       HlsMediaPlaylist loadedPlaylist) {
     int mediaSequenceOffset = loadedPlaylist.mediaSequence - oldPlaylist.mediaSequence;
@@ -426,6 +451,7 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
 
     private final HlsUrl playlistUrl;
     private final Loader mediaPlaylistLoader;
+    private final DataSource mediaPlaylistDataSource;
     private final ParsingLoadable<HlsPlaylist> mediaPlaylistLoadable;
 
     private HlsMediaPlaylist playlistSnapshot;
@@ -438,8 +464,8 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
       this.playlistUrl = playlistUrl;
       lastSnapshotAccessTimeMs = initialLastSnapshotAccessTimeMs;
       mediaPlaylistLoader = new Loader("HlsPlaylistTracker:MediaPlaylist");
-      mediaPlaylistLoadable = new ParsingLoadable<>(
-          dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST),
+      mediaPlaylistDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MANIFEST);
+      mediaPlaylistLoadable = new ParsingLoadable<>(mediaPlaylistDataSource,
           UriUtil.resolveToUri(masterPlaylist.baseUri, playlistUrl.url), C.DATA_TYPE_MANIFEST,
           playlistParser);
     }
@@ -468,7 +494,16 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
     public void loadPlaylist() {
       blacklistUntilMs = 0;
       if (!pendingRefresh && !mediaPlaylistLoader.isLoading()) {
-        mediaPlaylistLoader.startLoading(mediaPlaylistLoadable, this, minRetryCount);
+        ParsingLoadable<HlsPlaylist> loadable = mediaPlaylistLoadable;
+        if (playlistSnapshot != null && playlistSnapshot.canBlockReload
+            && !playlistSnapshot.hasEndTag) {
+          // Ask the server to respond as soon as the next segment or part is available, rather
+          // than polling for it.
+          loadable = new ParsingLoadable<>(mediaPlaylistDataSource,
+              getBlockingReloadUri(mediaPlaylistLoadable.dataSpec.uri, playlistSnapshot),
+              C.DATA_TYPE_MANIFEST, playlistParser);
+        }
+        mediaPlaylistLoader.startLoading(loadable, this, minRetryCount);
       }
     }
 
@@ -526,10 +561,13 @@ public final class HlsPlaylistTracker implements Loader.Callback<ParsingLoadable
       long refreshDelayUs = C.TIME_UNSET;
       if (playlistSnapshot != oldPlaylist) {
         if (onPlaylistUpdated(playlistUrl, playlistSnapshot)) {
-          refreshDelayUs = playlistSnapshot.targetDurationUs;
+          // A blocking reload can be issued immediately, since the server holds the request until
+          // the playlist is updated.
+          refreshDelayUs = playlistSnapshot.canBlockReload ? 0 : playlistSnapshot.targetDurationUs;
         }
       } else if (!playlistSnapshot.hasEndTag) {
-        refreshDelayUs = playlistSnapshot.targetDurationUs / 2;
+        refreshDelayUs = playlistSnapshot.partTargetDurationUs != C.TIME_UNSET
+            ? playlistSnapshot.partTargetDurationUs / 2 : playlistSnapshot.targetDurationUs / 2;
       }
       if (refreshDelayUs != C.TIME_UNSET) {
         // See HLS spec v20, section 6.3.4 for more information on media playlist refreshing.
@@ -18,9 +18,12 @@ package com.google.android.exoplayer2.source.smoothstreaming.manifest;
 import android.net.Uri;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.drm.DrmInitData;
+import com.google.android.exoplayer2.drm.DrmInitDataManifest;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.UriUtil;
 import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,7 +33,7 @@ import java.util.UUID;
  * @see <a href="http://msdn.microsoft.com/en-us/library/ee673436(v=vs.90).aspx">
  * IIS Smooth Streaming Client Manifest Format</a>
  */
-public class SsManifest {
+public class SsManifest implements DrmInitDataManifest {
 
   public static final int UNSET_LOOKAHEAD = -1;
 
@@ -108,6 +111,19 @@ public class SsManifest {
         : Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, timescale);
   }
 
+  @Override
+  public List<DrmInitData> getDrmInitDatas() {
+    ArrayList<DrmInitData> drmInitDatas = new ArrayList<>();
+    for (StreamElement streamElement : streamElements) {
+      for (Format format : streamElement.formats) {
+        if (format.drmInitData != null && !drmInitDatas.contains(format.drmInitData)) {
+          drmInitDatas.add(format.drmInitData);
+        }
+      }
+    }
+    return drmInitDatas;
+  }
+
   /**
    * Represents a protection element containing a single header.
    */
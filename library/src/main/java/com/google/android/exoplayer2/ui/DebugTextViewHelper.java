@@ -175,7 +175,8 @@ public final class DebugTextViewHelper implements Runnable, ExoPlayer.EventListe
     return " rb:" + counters.renderedOutputBufferCount
         + " sb:" + counters.skippedOutputBufferCount
         + " db:" + counters.droppedOutputBufferCount
-        + " mcdb:" + counters.maxConsecutiveDroppedOutputBufferCount;
+        + " mcdb:" + counters.maxConsecutiveDroppedOutputBufferCount
+        + " dk:" + counters.droppedToKeyframeCount;
   }
 
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import android.graphics.Typeface;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.style.AbsoluteSizeSpan;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.UnderlineSpan;
+import com.google.android.exoplayer2.util.Util;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of {@link StaticLayout}s for cue text, shared by the {@link SubtitlePainter}s of a
+ * {@link SubtitleView}. Layouts are keyed by their text, style and size, so that when captions
+ * roll up or are repeated, lines that have already been laid out by any painter are reused.
+ * <p>
+ * Decoders may create new {@link CharSequence} instances for text that is repeated, so text is
+ * compared by its content, and by the ranges and styles of its spans if embedded styles are
+ * applied.
+ * <p>
+ * A {@link StaticLayout} draws using the {@link TextPaint} from which it was created, so painters
+ * that share a cache must draw using its {@link #textPaint}, and must configure it fully before
+ * each use.
+ */
+/* package */ final class SubtitleLayoutCache {
+
+  /**
+   * The default maximum number of layouts to cache.
+   */
+  public static final int DEFAULT_MAX_SIZE = 32;
+
+  /**
+   * The paint from which all cached layouts are created.
+   */
+  public final TextPaint textPaint;
+
+  private final Map<LayoutKey, StaticLayout> layouts;
+  private final LayoutKey lookupKey;
+
+  public SubtitleLayoutCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize The maximum number of layouts to cache. The least recently used layout is
+   *     evicted when the cache is full. Zero disables caching.
+   */
+  public SubtitleLayoutCache(final int maxSize) {
+    textPaint = new TextPaint();
+    textPaint.setAntiAlias(true);
+    textPaint.setSubpixelText(true);
+    layouts = new LinkedHashMap<LayoutKey, StaticLayout>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<LayoutKey, StaticLayout> eldest) {
+        return size() > maxSize;
+      }
+    };
+    lookupKey = new LayoutKey();
+  }
+
+  /**
+   * Returns a layout of the specified text, creating one if it is not cached.
+   *
+   * @param text The text to lay out.
+   * @param applyEmbeddedStyles Whether the spans of {@code text} are applied. If not, layouts of
+   *     text with equal content are reused regardless of its spans.
+   * @param width The width of the layout, in pixels.
+   * @param alignment The alignment of the text.
+   * @param textSizePx The text size, in pixels.
+   * @param typeface The typeface, or null for the default typeface.
+   * @param spacingMult The line spacing multiplier.
+   * @param spacingAdd The additional line spacing, in pixels.
+   * @return The layout.
+   */
+  public StaticLayout getLayout(CharSequence text, boolean applyEmbeddedStyles, int width,
+      Alignment alignment, float textSizePx, Typeface typeface, float spacingMult,
+      float spacingAdd) {
+    lookupKey.set(text, applyEmbeddedStyles, width, alignment, textSizePx, typeface, spacingMult,
+        spacingAdd);
+    StaticLayout layout = layouts.get(lookupKey);
+    if (layout == null) {
+      textPaint.setTextSize(textSizePx);
+      textPaint.setTypeface(typeface);
+      layout = new StaticLayout(text, textPaint, width, alignment, spacingMult, spacingAdd, true);
+      LayoutKey key = new LayoutKey();
+      key.set(text, applyEmbeddedStyles, width, alignment, textSizePx, typeface, spacingMult,
+          spacingAdd);
+      layouts.put(key, layout);
+    }
+    return layout;
+  }
+
+  private static final class LayoutKey {
+
+    private CharSequence text;
+    private String textString;
+    private boolean applyEmbeddedStyles;
+    private int width;
+    private Alignment alignment;
+    private float textSizePx;
+    private Typeface typeface;
+    private float spacingMult;
+    private float spacingAdd;
+    private int hashCode;
+
+    public void set(CharSequence text, boolean applyEmbeddedStyles, int width, Alignment alignment,
+        float textSizePx, Typeface typeface, float spacingMult, float spacingAdd) {
+      this.text = text;
+      this.textString = text.toString();
+      this.applyEmbeddedStyles = applyEmbeddedStyles;
+      this.width = width;
+      this.alignment = alignment;
+      this.textSizePx = textSizePx;
+      this.typeface = typeface;
+      this.spacingMult = spacingMult;
+      this.spacingAdd = spacingAdd;
+      // Spanned implementations don't all override hashCode, so hash the plain text only.
+      int result = textString.hashCode();
+      result = 31 * result + width;
+      result = 31 * result + Float.floatToIntBits(textSizePx);
+      hashCode = result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      LayoutKey other = (LayoutKey) obj;
+      return width == other.width && textSizePx == other.textSizePx
+          && spacingMult == other.spacingMult && spacingAdd == other.spacingAdd
+          && alignment == other.alignment && Util.areEqual(typeface, other.typeface)
+          && applyEmbeddedStyles == other.applyEmbeddedStyles
+          && textString.equals(other.textString)
+          && (!applyEmbeddedStyles || text == other.text || areSpansEqual(text, other.text));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    private static boolean areSpansEqual(CharSequence first, CharSequence second) {
+      Object[] firstSpans = getSpans(first);
+      Object[] secondSpans = getSpans(second);
+      if (firstSpans.length != secondSpans.length) {
+        return false;
+      }
+      Spanned firstSpanned = (Spanned) first;
+      Spanned secondSpanned = (Spanned) second;
+      for (int i = 0; i < firstSpans.length; i++) {
+        Object firstSpan = firstSpans[i];
+        Object secondSpan = secondSpans[i];
+        if (firstSpanned.getSpanStart(firstSpan) != secondSpanned.getSpanStart(secondSpan)
+            || firstSpanned.getSpanEnd(firstSpan) != secondSpanned.getSpanEnd(secondSpan)
+            || firstSpanned.getSpanFlags(firstSpan) != secondSpanned.getSpanFlags(secondSpan)
+            || !isSameStyle(firstSpan, secondSpan)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static Object[] getSpans(CharSequence text) {
+      return text instanceof Spanned ? ((Spanned) text).getSpans(0, text.length(), Object.class)
+          : new Object[0];
+    }
+
+    /**
+     * Returns whether two spans apply the same style. Spans don't override equals, so the state of
+     * the spans created by the text decoders is compared explicitly.
+     */
+    private static boolean isSameStyle(Object first, Object second) {
+      if (first.equals(second)) {
+        return true;
+      } else if (first.getClass() != second.getClass()) {
+        return false;
+      } else if (first instanceof ForegroundColorSpan) {
+        return ((ForegroundColorSpan) first).getForegroundColor()
+            == ((ForegroundColorSpan) second).getForegroundColor();
+      } else if (first instanceof BackgroundColorSpan) {
+        return ((BackgroundColorSpan) first).getBackgroundColor()
+            == ((BackgroundColorSpan) second).getBackgroundColor();
+      } else if (first instanceof StyleSpan) {
+        return ((StyleSpan) first).getStyle() == ((StyleSpan) second).getStyle();
+      } else if (first instanceof TypefaceSpan) {
+        return Util.areEqual(((TypefaceSpan) first).getFamily(),
+            ((TypefaceSpan) second).getFamily());
+      } else if (first instanceof AbsoluteSizeSpan) {
+        return ((AbsoluteSizeSpan) first).getSize() == ((AbsoluteSizeSpan) second).getSize()
+            && ((AbsoluteSizeSpan) first).getDip() == ((AbsoluteSizeSpan) second).getDip();
+      } else if (first instanceof RelativeSizeSpan) {
+        return ((RelativeSizeSpan) first).getSizeChange()
+            == ((RelativeSizeSpan) second).getSizeChange();
+      } else {
+        // These spans have no state.
+        return first instanceof UnderlineSpan || first instanceof StrikethroughSpan;
+      }
+    }
+
+  }
+
+}
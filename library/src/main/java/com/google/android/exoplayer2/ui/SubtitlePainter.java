@@ -26,6 +26,7 @@ import android.graphics.Paint.Join;
 import android.graphics.Paint.Style;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.Typeface;
 import android.text.Layout.Alignment;
 import android.text.StaticLayout;
 import android.text.TextPaint;
@@ -61,6 +62,7 @@ import com.google.android.exoplayer2.util.Util;
   private final float spacingMult;
   private final float spacingAdd;
 
+  private final SubtitleLayoutCache layoutCache;
   private final TextPaint textPaint;
   private final Paint paint;
 
@@ -78,12 +80,14 @@ import com.google.android.exoplayer2.util.Util;
   private int cuePositionAnchor;
   private float cueSize;
   private boolean applyEmbeddedStyles;
+  private boolean renderToBitmap;
   private int foregroundColor;
   private int backgroundColor;
   private int windowColor;
   private int edgeColor;
   @CaptionStyleCompat.EdgeType
   private int edgeType;
+  private Typeface typeface;
   private float textSizePx;
   private float bottomPaddingFraction;
   private int parentLeft;
@@ -98,8 +102,20 @@ import com.google.android.exoplayer2.util.Util;
   private int textPaddingX;
   private Rect bitmapRect;
 
+  // Rendered text, when rendering to a bitmap.
+  private Bitmap textBitmap;
+  private Canvas textBitmapCanvas;
+  private int textBitmapMargin;
+  private boolean textBitmapValid;
+
+  /**
+   * @param context The context.
+   * @param layoutCache The cache of text layouts to use. The cache may be shared with other
+   *     painters that draw on the same thread.
+   */
   @SuppressWarnings("ResourceType")
-  public SubtitlePainter(Context context) {
+  public SubtitlePainter(Context context, SubtitleLayoutCache layoutCache) {
+    this.layoutCache = layoutCache;
     int[] viewAttr = {android.R.attr.lineSpacingExtra, android.R.attr.lineSpacingMultiplier};
     TypedArray styledAttributes = context.obtainStyledAttributes(null, viewAttr, 0, 0);
     spacingAdd = styledAttributes.getDimensionPixelSize(0, 0);
@@ -114,9 +130,7 @@ import com.google.android.exoplayer2.util.Util;
     shadowRadius = twoDpInPx;
     shadowOffset = twoDpInPx;
 
-    textPaint = new TextPaint();
-    textPaint.setAntiAlias(true);
-    textPaint.setSubpixelText(true);
+    textPaint = layoutCache.textPaint;
 
     paint = new Paint();
     paint.setAntiAlias(true);
@@ -128,10 +142,16 @@ import com.google.android.exoplayer2.util.Util;
    * <p>
    * A call to this method is able to use cached results of calculations made during the previous
    * call, and so an instance of this class is able to optimize repeated calls to this method in
-   * which the same parameters are passed.
+   * which the same parameters are passed. Text layouts are also reused from the layout cache.
+   * <p>
+   * If {@code renderToBitmap} is true, text cues are rendered into a bitmap that is drawn into the
+   * canvas, and only rendered again when the parameters change. This makes repeated calls cheaper
+   * at the cost of the bitmap's memory, which is worthwhile if the canvas is redrawn more often
+   * than the cues change.
    *
    * @param cue The cue to draw.
    * @param applyEmbeddedStyles Whether styling embedded within the cue should be applied.
+   * @param renderToBitmap Whether to render text cues into a cached bitmap.
    * @param style The style to use when drawing the cue text.
    * @param textSizePx The text size to use when drawing the cue text, in pixels.
    * @param bottomPaddingFraction The bottom padding fraction to apply when {@link Cue#line} is
@@ -142,9 +162,9 @@ import com.google.android.exoplayer2.util.Util;
    * @param cueBoxRight The right position of the enclosing cue box.
    * @param cueBoxBottom The bottom position of the enclosing cue box.
    */
-  public void draw(Cue cue, boolean applyEmbeddedStyles, CaptionStyleCompat style, float textSizePx,
-      float bottomPaddingFraction, Canvas canvas, int cueBoxLeft, int cueBoxTop, int cueBoxRight,
-      int cueBoxBottom) {
+  public void draw(Cue cue, boolean applyEmbeddedStyles, boolean renderToBitmap,
+      CaptionStyleCompat style, float textSizePx, float bottomPaddingFraction, Canvas canvas,
+      int cueBoxLeft, int cueBoxTop, int cueBoxRight, int cueBoxBottom) {
     boolean isTextCue = cue.bitmap == null;
     CharSequence cueText = null;
     Bitmap cueBitmap = null;
@@ -174,12 +194,13 @@ import com.google.android.exoplayer2.util.Util;
         && Util.areEqual(this.cuePositionAnchor, cue.positionAnchor)
         && this.cueSize == cue.size
         && this.applyEmbeddedStyles == applyEmbeddedStyles
+        && this.renderToBitmap == renderToBitmap
         && this.foregroundColor == style.foregroundColor
         && this.backgroundColor == style.backgroundColor
         && this.windowColor == windowColor
         && this.edgeType == style.edgeType
         && this.edgeColor == style.edgeColor
-        && Util.areEqual(this.textPaint.getTypeface(), style.typeface)
+        && Util.areEqual(this.typeface, style.typeface)
         && this.textSizePx == textSizePx
         && this.bottomPaddingFraction == bottomPaddingFraction
         && this.parentLeft == cueBoxLeft
@@ -201,12 +222,13 @@ import com.google.android.exoplayer2.util.Util;
     this.cuePositionAnchor = cue.positionAnchor;
     this.cueSize = cue.size;
     this.applyEmbeddedStyles = applyEmbeddedStyles;
+    this.renderToBitmap = renderToBitmap;
     this.foregroundColor = style.foregroundColor;
     this.backgroundColor = style.backgroundColor;
     this.windowColor = windowColor;
     this.edgeType = style.edgeType;
     this.edgeColor = style.edgeColor;
-    this.textPaint.setTypeface(style.typeface);
+    this.typeface = style.typeface;
     this.textSizePx = textSizePx;
     this.bottomPaddingFraction = bottomPaddingFraction;
     this.parentLeft = cueBoxLeft;
@@ -214,6 +236,12 @@ import com.google.android.exoplayer2.util.Util;
     this.parentRight = cueBoxRight;
     this.parentBottom = cueBoxBottom;
 
+    textBitmapValid = false;
+    if (!renderToBitmap && textBitmap != null) {
+      textBitmap.recycle();
+      textBitmap = null;
+      textBitmapCanvas = null;
+    }
     if (isTextCue) {
       setupTextLayout();
     } else {
@@ -226,7 +254,6 @@ import com.google.android.exoplayer2.util.Util;
     int parentWidth = parentRight - parentLeft;
     int parentHeight = parentBottom - parentTop;
 
-    textPaint.setTextSize(textSizePx);
     int textPaddingX = (int) (textSizePx * INNER_PADDING_RATIO + 0.5f);
 
     int availableWidth = parentWidth - textPaddingX * 2;
@@ -235,12 +262,13 @@ import com.google.android.exoplayer2.util.Util;
     }
     if (availableWidth <= 0) {
       Log.w(TAG, "Skipped drawing subtitle cue (insufficient space)");
+      textLayout = null;
       return;
     }
 
     Alignment textAlignment = cueTextAlignment == null ? Alignment.ALIGN_CENTER : cueTextAlignment;
-    textLayout = new StaticLayout(cueText, textPaint, availableWidth, textAlignment, spacingMult,
-        spacingAdd, true);
+    textLayout = layoutCache.getLayout(cueText, applyEmbeddedStyles, availableWidth,
+        textAlignment, textSizePx, typeface, spacingMult, spacingAdd);
     int textHeight = textLayout.getHeight();
     int textWidth = 0;
     int lineCount = textLayout.getLineCount();
@@ -269,6 +297,7 @@ import com.google.android.exoplayer2.util.Util;
     textWidth = textRight - textLeft;
     if (textWidth <= 0) {
       Log.w(TAG, "Skipped drawing subtitle cue (invalid horizontal positioning)");
+      textLayout = null;
       return;
     }
 
@@ -299,8 +328,8 @@ import com.google.android.exoplayer2.util.Util;
     }
 
     // Update the derived drawing variables.
-    this.textLayout = new StaticLayout(cueText, textPaint, textWidth, textAlignment, spacingMult,
-        spacingAdd, true);
+    this.textLayout = layoutCache.getLayout(cueText, applyEmbeddedStyles, textWidth,
+        textAlignment, textSizePx, typeface, spacingMult, spacingAdd);
     this.textLeft = textLeft;
     this.textTop = textTop;
     this.textPaddingX = textPaddingX;
@@ -321,13 +350,47 @@ import com.google.android.exoplayer2.util.Util;
   }
 
   private void drawLayout(Canvas canvas, boolean isTextCue) {
-    if (isTextCue) {
+    if (isTextCue && renderToBitmap) {
+      drawTextBitmap(canvas);
+    } else if (isTextCue) {
       drawTextLayout(canvas);
     } else {
       drawBitmapLayout(canvas);
     }
   }
 
+  private void drawTextBitmap(Canvas canvas) {
+    StaticLayout layout = textLayout;
+    if (layout == null) {
+      // Nothing to draw.
+      return;
+    }
+
+    if (!textBitmapValid) {
+      // Leave room for edges and shadows, which are drawn outside the layout's bounds.
+      textBitmapMargin = (int) Math.ceil(Math.max(outlineWidth, shadowRadius + shadowOffset));
+      int width = layout.getWidth() + (textPaddingX + textBitmapMargin) * 2;
+      int height = layout.getHeight() + textBitmapMargin * 2;
+      if (textBitmap == null || textBitmap.getWidth() < width || textBitmap.getHeight() < height) {
+        if (textBitmap != null) {
+          textBitmap.recycle();
+        }
+        textBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        textBitmapCanvas = new Canvas(textBitmap);
+      } else {
+        textBitmap.eraseColor(Color.TRANSPARENT);
+      }
+      int saveCount = textBitmapCanvas.save();
+      textBitmapCanvas.translate(textPaddingX + textBitmapMargin, textBitmapMargin);
+      drawText(textBitmapCanvas, layout);
+      textBitmapCanvas.restoreToCount(saveCount);
+      textBitmapValid = true;
+    }
+
+    canvas.drawBitmap(textBitmap, textLeft - textPaddingX - textBitmapMargin,
+        textTop - textBitmapMargin, null);
+  }
+
   private void drawTextLayout(Canvas canvas) {
     StaticLayout layout = textLayout;
     if (layout == null) {
@@ -337,6 +400,14 @@ import com.google.android.exoplayer2.util.Util;
 
     int saveCount = canvas.save();
     canvas.translate(textLeft, textTop);
+    drawText(canvas, layout);
+    canvas.restoreToCount(saveCount);
+  }
+
+  private void drawText(Canvas canvas, StaticLayout layout) {
+    // The text paint may be shared with other painters, so set all of its drawing properties.
+    textPaint.setTextSize(textSizePx);
+    textPaint.setTypeface(typeface);
 
     if (Color.alpha(windowColor) > 0) {
       paint.setColor(windowColor);
@@ -383,8 +454,6 @@ import com.google.android.exoplayer2.util.Util;
     textPaint.setStyle(Style.FILL);
     layout.draw(canvas);
     textPaint.setShadowLayer(0, 0, 0, 0);
-
-    canvas.restoreToCount(saveCount);
   }
 
   private void drawBitmapLayout(Canvas canvas) {
@@ -396,7 +465,7 @@ import com.google.android.exoplayer2.util.Util;
    * latter only checks the text of each sequence, and does not check for equality of styling that
    * may be embedded within the {@link CharSequence}s.
    */
-  private static boolean areCharSequencesEqual(CharSequence first, CharSequence second) {
+  /* package */ static boolean areCharSequencesEqual(CharSequence first, CharSequence second) {
     // Some CharSequence implementations don't perform a cheap referential equality check in their
     // equals methods, so we perform one explicitly here.
     return first == second || (first != null && first.equals(second));
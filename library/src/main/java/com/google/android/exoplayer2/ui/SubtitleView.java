@@ -55,11 +55,13 @@ public final class SubtitleView extends View implements TextRenderer.Output {
   private static final int ABSOLUTE = 2;
 
   private final List<SubtitlePainter> painters;
+  private final SubtitleLayoutCache layoutCache;
 
   private List<Cue> cues;
   private int textSizeType;
   private float textSize;
   private boolean applyEmbeddedStyles;
+  private boolean renderCuesToBitmaps;
   private CaptionStyleCompat style;
   private float bottomPaddingFraction;
 
@@ -70,6 +72,7 @@ public final class SubtitleView extends View implements TextRenderer.Output {
   public SubtitleView(Context context, AttributeSet attrs) {
     super(context, attrs);
     painters = new ArrayList<>();
+    layoutCache = new SubtitleLayoutCache();
     textSizeType = FRACTIONAL;
     textSize = DEFAULT_TEXT_SIZE_FRACTION;
     applyEmbeddedStyles = true;
@@ -95,7 +98,7 @@ public final class SubtitleView extends View implements TextRenderer.Output {
     // Ensure we have sufficient painters.
     int cueCount = (cues == null) ? 0 : cues.size();
     while (painters.size() < cueCount) {
-      painters.add(new SubtitlePainter(getContext()));
+      painters.add(new SubtitlePainter(getContext(), layoutCache));
     }
     // Invalidate to trigger drawing.
     invalidate();
@@ -178,6 +181,25 @@ public final class SubtitleView extends View implements TextRenderer.Output {
     invalidate();
   }
 
+  /**
+   * Sets whether text cues should be rendered into bitmaps that are cached until the cues or their
+   * style change. Disabled by default.
+   * <p>
+   * Enabling this option makes redrawing the view cheaper when the cues have not changed, at the
+   * cost of the memory used by the bitmaps. It is worthwhile if the view is redrawn more often than
+   * the cues change.
+   *
+   * @param renderCuesToBitmaps Whether text cues should be rendered into cached bitmaps.
+   */
+  public void setRenderCuesToBitmaps(boolean renderCuesToBitmaps) {
+    if (this.renderCuesToBitmaps == renderCuesToBitmaps) {
+      return;
+    }
+    this.renderCuesToBitmaps = renderCuesToBitmaps;
+    // Invalidate to trigger drawing.
+    invalidate();
+  }
+
   /**
    * Sets the caption style to be equivalent to the one returned by
    * {@link CaptioningManager#getUserStyle()}, or to a default style before API level 19.
@@ -243,8 +265,8 @@ public final class SubtitleView extends View implements TextRenderer.Output {
     }
 
     for (int i = 0; i < cueCount; i++) {
-      painters.get(i).draw(cues.get(i), applyEmbeddedStyles, style, textSizePx,
-          bottomPaddingFraction, canvas, left, top, right, bottom);
+      painters.get(i).draw(cues.get(i), applyEmbeddedStyles, renderCuesToBitmaps, style,
+          textSizePx, bottomPaddingFraction, canvas, left, top, right, bottom);
     }
   }
 
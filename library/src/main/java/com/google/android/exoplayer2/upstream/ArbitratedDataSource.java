@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.PriorityResourceArbiter;
+import java.io.IOException;
+
+/**
+ * A {@link DataSource} whose transfers are throttled to the bandwidth share of a
+ * {@link PriorityResourceArbiter.Task}.
+ * <p>
+ * Calls to {@link #read(byte[], int, int)} block for as long as is required to keep the transfer
+ * within the task's share. Unlike {@link PriorityDataSource}, reads are never failed because a
+ * task of higher priority exists.
+ */
+public final class ArbitratedDataSource implements DataSource {
+
+  private final DataSource upstream;
+  private final PriorityResourceArbiter.Task task;
+
+  private boolean opened;
+
+  /**
+   * @param upstream The upstream {@link DataSource}.
+   * @param task The task whose bandwidth share the transfers should use.
+   */
+  public ArbitratedDataSource(DataSource upstream, PriorityResourceArbiter.Task task) {
+    this.upstream = Assertions.checkNotNull(upstream);
+    this.task = Assertions.checkNotNull(task);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    task.onTransferStart();
+    opened = true;
+    return upstream.open(dataSpec);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int max) throws IOException {
+    int bytesRead = upstream.read(buffer, offset, max);
+    if (bytesRead > 0) {
+      task.onBytesTransferred(bytesRead);
+    }
+    return bytesRead;
+  }
+
+  @Override
+  public Uri getUri() {
+    return upstream.getUri();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (opened) {
+      opened = false;
+      task.onTransferEnd();
+    }
+    upstream.close();
+  }
+
+}
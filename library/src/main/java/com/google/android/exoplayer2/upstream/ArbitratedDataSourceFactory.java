@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.upstream.DataSource.Factory;
+import com.google.android.exoplayer2.util.PriorityResourceArbiter;
+
+/**
+ * A {@link DataSource.Factory} that produces {@link ArbitratedDataSource} instances.
+ */
+public final class ArbitratedDataSourceFactory implements Factory {
+
+  private final Factory upstreamFactory;
+  private final PriorityResourceArbiter.Task task;
+
+  /**
+   * @param upstreamFactory A {@link DataSource.Factory} to be used to create an upstream {@link
+   *     DataSource} for {@link ArbitratedDataSource}.
+   * @param task The task whose bandwidth share the created data sources should use.
+   */
+  public ArbitratedDataSourceFactory(Factory upstreamFactory, PriorityResourceArbiter.Task task) {
+    this.upstreamFactory = upstreamFactory;
+    this.task = task;
+  }
+
+  @Override
+  public ArbitratedDataSource createDataSource() {
+    return new ArbitratedDataSource(upstreamFactory.createDataSource(), task);
+  }
+
+}
@@ -20,6 +20,8 @@ import android.net.Uri;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A {@link DataSource} that supports multiple URI schemes. The supported schemes are:
@@ -133,6 +135,15 @@ public final class DefaultDataSource implements DataSource {
     return dataSource == null ? null : dataSource.getUri();
   }
 
+  /**
+   * Returns the headers of the response to the current request if it's served by an
+   * {@link HttpDataSource}, or null otherwise.
+   */
+  public Map<String, List<String>> getResponseHeaders() {
+    return dataSource instanceof HttpDataSource
+        ? ((HttpDataSource) dataSource).getResponseHeaders() : null;
+  }
+
   @Override
   public void close() throws IOException {
     if (dataSource != null) {
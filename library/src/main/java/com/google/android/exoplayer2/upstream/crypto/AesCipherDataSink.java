@@ -64,8 +64,13 @@ public final class AesCipherDataSink implements DataSink {
   public void open(DataSpec dataSpec) throws IOException {
     wrappedDataSink.open(dataSpec);
     long nonce = CryptoUtil.getFNV64Hash(dataSpec.key);
-    cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, secretKey, nonce,
-        dataSpec.absoluteStreamPosition);
+    if (cipher == null) {
+      cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, secretKey, nonce,
+          dataSpec.absoluteStreamPosition);
+    } else {
+      // Reuse the cipher, which is keyed with the same secret key.
+      cipher.seek(nonce, dataSpec.absoluteStreamPosition);
+    }
   }
 
   @Override
@@ -88,7 +93,6 @@ public final class AesCipherDataSink implements DataSink {
 
   @Override
   public void close() throws IOException {
-    cipher = null;
     wrappedDataSink.close();
   }
 
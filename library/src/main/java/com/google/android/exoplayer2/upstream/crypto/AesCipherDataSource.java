@@ -41,8 +41,13 @@ public final class AesCipherDataSource implements DataSource {
   public long open(DataSpec dataSpec) throws IOException {
     long dataLength = upstream.open(dataSpec);
     long nonce = CryptoUtil.getFNV64Hash(dataSpec.key);
-    cipher = new AesFlushingCipher(Cipher.DECRYPT_MODE, secretKey, nonce,
-        dataSpec.absoluteStreamPosition);
+    if (cipher == null) {
+      cipher = new AesFlushingCipher(Cipher.DECRYPT_MODE, secretKey, nonce,
+          dataSpec.absoluteStreamPosition);
+    } else {
+      // Reuse the cipher, which is keyed with the same secret key.
+      cipher.seek(nonce, dataSpec.absoluteStreamPosition);
+    }
     return dataLength;
   }
 
@@ -61,7 +66,6 @@ public final class AesCipherDataSource implements DataSource {
 
   @Override
   public void close() throws IOException {
-    cipher = null;
     upstream.close();
   }
 
@@ -31,10 +31,16 @@ import javax.crypto.spec.SecretKeySpec;
  *
  * Unlike a regular {@link Cipher}, the update methods of this class are guaranteed to process all
  * of the bytes input (and hence output the same number of bytes).
+ *
+ * An instance can be repositioned with {@link #seek(long, long)}, which re-initializes the
+ * underlying {@link Cipher} with the same key. This is significantly cheaper than creating a new
+ * instance.
  */
 public final class AesFlushingCipher {
 
   private final Cipher cipher;
+  private final int mode;
+  private final SecretKeySpec secretKeySpec;
   private final int blockSize;
   private final byte[] zerosBlock;
   private final byte[] flushedBlock;
@@ -44,21 +50,39 @@ public final class AesFlushingCipher {
   public AesFlushingCipher(int mode, byte[] secretKey, long nonce, long offset) {
     try {
       cipher = Cipher.getInstance("AES/CTR/NoPadding");
-      blockSize = cipher.getBlockSize();
-      zerosBlock = new byte[blockSize];
-      flushedBlock = new byte[blockSize];
-      long counter = offset / blockSize;
-      int startPadding = (int) (offset % blockSize);
-      cipher.init(mode, new SecretKeySpec(secretKey, cipher.getAlgorithm().split("/")[0]),
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+      // Should never happen.
+      throw new RuntimeException(e);
+    }
+    this.mode = mode;
+    secretKeySpec = new SecretKeySpec(secretKey, cipher.getAlgorithm().split("/")[0]);
+    blockSize = cipher.getBlockSize();
+    zerosBlock = new byte[blockSize];
+    flushedBlock = new byte[blockSize];
+    seek(nonce, offset);
+  }
+
+  /**
+   * Repositions the cipher to process data from the specified offset of the stream identified by
+   * {@code nonce}, keeping the same key.
+   *
+   * @param nonce The nonce of the stream.
+   * @param offset The offset in the stream of the next byte to be processed.
+   */
+  public void seek(long nonce, long offset) {
+    long counter = offset / blockSize;
+    int startPadding = (int) (offset % blockSize);
+    pendingXorBytes = 0;
+    try {
+      cipher.init(mode, secretKeySpec,
           new IvParameterSpec(getInitializationVector(nonce, counter)));
-      if (startPadding != 0) {
-        updateInPlace(new byte[startPadding], 0, startPadding);
-      }
-    } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException
-        | InvalidAlgorithmParameterException e) {
+    } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
       // Should never happen.
       throw new RuntimeException(e);
     }
+    if (startPadding != 0) {
+      updateInPlace(new byte[startPadding], 0, startPadding);
+    }
   }
 
   public void updateInPlace(byte[] data, int offset, int length) {
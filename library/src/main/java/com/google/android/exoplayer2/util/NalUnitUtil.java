@@ -17,7 +17,6 @@ package com.google.android.exoplayer2.util;
 
 import android.util.Log;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
 /**
  * Utility methods for handling H.264/AVC and H.265/HEVC NAL units.
@@ -107,59 +106,31 @@ public final class NalUnitUtil {
   private static final int H264_NAL_UNIT_TYPE_SPS = 7; // Sequence parameter set
   private static final int H265_NAL_UNIT_TYPE_PREFIX_SEI = 39;
 
-  private static final Object scratchEscapePositionsLock = new Object();
-
-  /**
-   * Temporary store for positions of escape codes in {@link #unescapeStream(byte[], int)}. Guarded
-   * by {@link #scratchEscapePositionsLock}.
-   */
-  private static int[] scratchEscapePositions = new int[10];
-
   /**
    * Unescapes {@code data} up to the specified limit, replacing occurrences of [0, 0, 3] with
    * [0, 0]. The unescaped data is returned in-place, with the return value indicating its length.
-   * <p>
-   * Executions of this method are mutually exclusive, so it should not be called with very large
-   * buffers.
    *
    * @param data The data to unescape.
    * @param limit The limit (exclusive) of the data to unescape.
    * @return The length of the unescaped data.
    */
   public static int unescapeStream(byte[] data, int limit) {
-    synchronized (scratchEscapePositionsLock) {
-      int position = 0;
-      int scratchEscapeCount = 0;
-      while (position < limit) {
-        position = findNextUnescapeIndex(data, position, limit);
-        if (position < limit) {
-          if (scratchEscapePositions.length <= scratchEscapeCount) {
-            // Grow scratchEscapePositions to hold a larger number of positions.
-            scratchEscapePositions = Arrays.copyOf(scratchEscapePositions,
-                scratchEscapePositions.length * 2);
-          }
-          scratchEscapePositions[scratchEscapeCount++] = position;
-          position += 3;
-        }
-      }
-
-      int unescapedLength = limit - scratchEscapeCount;
-      int escapedPosition = 0; // The position being read from.
-      int unescapedPosition = 0; // The position being written to.
-      for (int i = 0; i < scratchEscapeCount; i++) {
-        int nextEscapePosition = scratchEscapePositions[i];
-        int copyLength = nextEscapePosition - escapedPosition;
-        System.arraycopy(data, escapedPosition, data, unescapedPosition, copyLength);
-        unescapedPosition += copyLength;
-        data[unescapedPosition++] = 0;
-        data[unescapedPosition++] = 0;
-        escapedPosition += copyLength + 3;
-      }
-
-      int remainingLength = unescapedLength - unescapedPosition;
-      System.arraycopy(data, escapedPosition, data, unescapedPosition, remainingLength);
-      return unescapedLength;
+    int escapedPosition = 0; // The position being read from.
+    int unescapedPosition = 0; // The position being written to.
+    int nextEscapePosition = findNextUnescapeIndex(data, 0, limit);
+    while (nextEscapePosition < limit) {
+      // Data is only ever moved backwards, so the data still to be searched is never overwritten.
+      int copyLength = nextEscapePosition - escapedPosition;
+      System.arraycopy(data, escapedPosition, data, unescapedPosition, copyLength);
+      unescapedPosition += copyLength;
+      data[unescapedPosition++] = 0;
+      data[unescapedPosition++] = 0;
+      escapedPosition += copyLength + 3;
+      nextEscapePosition = findNextUnescapeIndex(data, escapedPosition, limit);
     }
+    int remainingLength = limit - escapedPosition;
+    System.arraycopy(data, escapedPosition, data, unescapedPosition, remainingLength);
+    return unescapedPosition + remainingLength;
   }
 
   /**
@@ -420,19 +391,32 @@ public final class NalUnitUtil {
     int limit = endOffset - 1;
     // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
     // the third byte.
-    for (int i = startOffset + 2; i < limit; i += 3) {
-      if ((data[i] & 0xFE) != 0) {
-        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
-        // loop advance the index by three.
-      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
-        if (prefixFlags != null) {
-          clearPrefixFlags(prefixFlags);
+    int i = startOffset + 2;
+    while (i < limit) {
+      // A byte other than 0 or 1 can't be part of a prefix ending here or at either of the next two
+      // positions, so skip forward by three. This is by far the most common case, so it's handled
+      // in a tight inner loop.
+      while ((data[i] & 0xFE) != 0) {
+        i += 3;
+        if (i >= limit) {
+          break;
+        }
+      }
+      if (i >= limit) {
+        break;
+      }
+      if (data[i] == 1) {
+        if (data[i - 1] == 0 && data[i - 2] == 0) {
+          if (prefixFlags != null) {
+            clearPrefixFlags(prefixFlags);
+          }
+          return i - 2;
         }
-        return i - 2;
+        // The 1 can't be part of a prefix ending at either of the next two positions.
+        i += 3;
       } else {
-        // There isn't a NAL prefix here, but there might be at the next position. We should
-        // only skip forward by one. The loop will skip forward by three, so subtract two here.
-        i -= 2;
+        // The 0 may be part of a prefix ending at the next position.
+        i++;
       }
     }
 
@@ -464,9 +448,21 @@ public final class NalUnitUtil {
   }
 
   private static int findNextUnescapeIndex(byte[] bytes, int offset, int limit) {
-    for (int i = offset; i < limit - 2; i++) {
-      if (bytes[i] == 0x00 && bytes[i + 1] == 0x00 && bytes[i + 2] == 0x03) {
-        return i;
+    // The value of i tracks the index of the third byte of the escape sequence 0x000003.
+    int i = offset + 2;
+    while (i < limit) {
+      int value = bytes[i];
+      if (value == 0x03) {
+        if (bytes[i - 1] == 0x00 && bytes[i - 2] == 0x00) {
+          return i - 2;
+        }
+        i += 3;
+      } else if (value == 0x00) {
+        // The 0 may be part of a sequence ending at the next position.
+        i++;
+      } else {
+        // There isn't a sequence ending here, or at the next two positions.
+        i += 3;
       }
     }
     return limit;
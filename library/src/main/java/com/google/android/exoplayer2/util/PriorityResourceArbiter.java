@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import android.os.SystemClock;
+import com.google.android.exoplayer2.C;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+
+/**
+ * Divides bandwidth and buffer memory between tasks, such as players, in proportion to weights
+ * derived from their priorities.
+ * <p>
+ * Unlike {@link PriorityTaskManager}, tasks of lower priority are not stopped while a task of
+ * higher priority is registered. Instead, each distinct priority level below the highest is given
+ * {@code lowerPriorityWeight} times the weight of the level above it:
+ * <ul>
+ *   <li>The memory budget is divided between all registered tasks in proportion to their weights.
+ *   </li>
+ *   <li>A task that is transferring data and whose priority is the highest of all such tasks may
+ *   transfer as fast as it can. Any other transferring task is throttled to its weighted share of
+ *   the available bitrate, so that the remaining bandwidth is left to the tasks above it.</li>
+ * </ul>
+ * Shares are recalculated whenever a task is registered, released, changes priority or starts or
+ * ends a transfer. Transfers are reported by
+ * {@link com.google.android.exoplayer2.upstream.ArbitratedDataSource}.
+ */
+public final class PriorityResourceArbiter {
+
+  /**
+   * A task registered with a {@link PriorityResourceArbiter}.
+   */
+  public final class Task {
+
+    // Guarded by lock.
+    private int priority;
+    private int transferCount;
+    private long nextTransferTimeUs;
+    private boolean released;
+
+    private Task(int priority) {
+      this.priority = priority;
+    }
+
+    /**
+     * Returns the priority of the task.
+     */
+    public int getPriority() {
+      synchronized (lock) {
+        return priority;
+      }
+    }
+
+    /**
+     * Changes the priority of the task.
+     *
+     * @param priority The new priority of the task.
+     */
+    public void setPriority(int priority) {
+      synchronized (lock) {
+        this.priority = priority;
+        lock.notifyAll();
+      }
+    }
+
+    /**
+     * Returns the number of bytes of buffer memory that the task may use.
+     */
+    public long getBufferShareBytes() {
+      synchronized (lock) {
+        return released ? 0 : (long) (totalBufferBytes * getWeight(this, false)
+            / getTotalWeight(false, this));
+      }
+    }
+
+    /**
+     * Returns the bitrate to which transfers of the task are throttled, in bits per second, or
+     * {@link #BITRATE_UNLIMITED} if they are not throttled.
+     */
+    public long getBitrateShare() {
+      synchronized (lock) {
+        if (released || availableBitrate == BITRATE_UNLIMITED
+            || priority >= getHighestTransferringPriority()) {
+          return BITRATE_UNLIMITED;
+        }
+        return Math.max(1, (long) (availableBitrate * getWeight(this, true)
+            / getTotalWeight(true, this)));
+      }
+    }
+
+    /**
+     * Called when the task starts a transfer.
+     */
+    public void onTransferStart() {
+      synchronized (lock) {
+        transferCount++;
+        lock.notifyAll();
+      }
+    }
+
+    /**
+     * Called when bytes have been transferred by the task. Blocks for as long as is required to
+     * keep the task's transfers within its share of the available bitrate.
+     *
+     * @param bytes The number of bytes transferred.
+     * @throws InterruptedIOException If the thread is interrupted while blocked.
+     */
+    public void onBytesTransferred(int bytes) throws InterruptedIOException {
+      synchronized (lock) {
+        long nowUs = SystemClock.elapsedRealtime() * 1000;
+        long bitrateShare = getBitrateShare();
+        if (bitrateShare == BITRATE_UNLIMITED) {
+          nextTransferTimeUs = nowUs;
+          return;
+        }
+        // Unused time is not carried forward, so a task cannot burst after being idle.
+        nextTransferTimeUs = Math.max(nextTransferTimeUs, nowUs)
+            + (bytes * 8 * C.MICROS_PER_SECOND) / bitrateShare;
+        while (nextTransferTimeUs > nowUs && getBitrateShare() != BITRATE_UNLIMITED) {
+          try {
+            lock.wait(Math.max(1, (nextTransferTimeUs - nowUs) / 1000));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+          nowUs = SystemClock.elapsedRealtime() * 1000;
+        }
+      }
+    }
+
+    /**
+     * Called when the task ends a transfer.
+     */
+    public void onTransferEnd() {
+      synchronized (lock) {
+        Assertions.checkState(transferCount > 0);
+        transferCount--;
+        lock.notifyAll();
+      }
+    }
+
+    /**
+     * Unregisters the task. Its shares are redistributed between the remaining tasks.
+     */
+    public void release() {
+      synchronized (lock) {
+        if (!released) {
+          released = true;
+          tasks.remove(this);
+          lock.notifyAll();
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Indicates that transfers are not throttled.
+   */
+  public static final long BITRATE_UNLIMITED = Long.MAX_VALUE;
+
+  /**
+   * The default weight of each priority level relative to the level above it.
+   */
+  public static final float DEFAULT_LOWER_PRIORITY_WEIGHT = 0.25f;
+
+  private final Object lock;
+  private final float lowerPriorityWeight;
+
+  // Guarded by lock.
+  private final ArrayList<Task> tasks;
+  private long availableBitrate;
+  private long totalBufferBytes;
+
+  /**
+   * @param availableBitrate The bitrate to divide between transferring tasks, in bits per second,
+   *     or {@link #BITRATE_UNLIMITED} if transfers should not be throttled.
+   * @param totalBufferBytes The number of bytes of buffer memory to divide between tasks.
+   */
+  public PriorityResourceArbiter(long availableBitrate, long totalBufferBytes) {
+    this(availableBitrate, totalBufferBytes, DEFAULT_LOWER_PRIORITY_WEIGHT);
+  }
+
+  /**
+   * @param availableBitrate The bitrate to divide between transferring tasks, in bits per second,
+   *     or {@link #BITRATE_UNLIMITED} if transfers should not be throttled.
+   * @param totalBufferBytes The number of bytes of buffer memory to divide between tasks.
+   * @param lowerPriorityWeight The weight of each priority level relative to the level above it.
+   */
+  public PriorityResourceArbiter(long availableBitrate, long totalBufferBytes,
+      float lowerPriorityWeight) {
+    this.availableBitrate = availableBitrate;
+    this.totalBufferBytes = totalBufferBytes;
+    this.lowerPriorityWeight = lowerPriorityWeight;
+    lock = new Object();
+    tasks = new ArrayList<>();
+  }
+
+  /**
+   * Registers a new task. The task must call {@link Task#release()} when done.
+   *
+   * @param priority The priority of the task.
+   * @return The registered {@link Task}.
+   */
+  public Task register(int priority) {
+    synchronized (lock) {
+      Task task = new Task(priority);
+      tasks.add(task);
+      lock.notifyAll();
+      return task;
+    }
+  }
+
+  /**
+   * Sets the bitrate to divide between transferring tasks. This may be updated from a
+   * {@link com.google.android.exoplayer2.upstream.BandwidthMeter} estimate.
+   *
+   * @param availableBitrate The bitrate in bits per second, or {@link #BITRATE_UNLIMITED} if
+   *     transfers should not be throttled.
+   */
+  public void setAvailableBitrate(long availableBitrate) {
+    synchronized (lock) {
+      this.availableBitrate = availableBitrate;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Sets the number of bytes of buffer memory to divide between tasks.
+   *
+   * @param totalBufferBytes The number of bytes.
+   */
+  public void setTotalBufferBytes(long totalBufferBytes) {
+    synchronized (lock) {
+      this.totalBufferBytes = totalBufferBytes;
+    }
+  }
+
+  // Internal methods. All must be called with lock held.
+
+  private int getHighestTransferringPriority() {
+    int highestPriority = Integer.MIN_VALUE;
+    for (int i = 0; i < tasks.size(); i++) {
+      Task task = tasks.get(i);
+      if (task.transferCount > 0) {
+        highestPriority = Math.max(highestPriority, task.priority);
+      }
+    }
+    return highestPriority;
+  }
+
+  /**
+   * Returns the weight of a task, which is {@link #lowerPriorityWeight} raised to the number of
+   * distinct priorities above its own, considering only transferring tasks if
+   * {@code transferringOnly} is true.
+   */
+  private float getWeight(Task task, boolean transferringOnly) {
+    int higherPriorityCount = 0;
+    for (int i = 0; i < tasks.size(); i++) {
+      Task other = tasks.get(i);
+      if (other.priority > task.priority && (!transferringOnly || other.transferCount > 0)
+          && isFirstWithPriority(i, transferringOnly)) {
+        higherPriorityCount++;
+      }
+    }
+    return (float) Math.pow(lowerPriorityWeight, higherPriorityCount);
+  }
+
+  private boolean isFirstWithPriority(int index, boolean transferringOnly) {
+    int priority = tasks.get(index).priority;
+    for (int i = 0; i < index; i++) {
+      Task other = tasks.get(i);
+      if (other.priority == priority && (!transferringOnly || other.transferCount > 0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the total weight of the registered tasks, considering only transferring tasks and
+   * {@code includedTask} if {@code transferringOnly} is true.
+   */
+  private float getTotalWeight(boolean transferringOnly, Task includedTask) {
+    float totalWeight = 0;
+    for (int i = 0; i < tasks.size(); i++) {
+      Task task = tasks.get(i);
+      if (!transferringOnly || task.transferCount > 0 || task == includedTask) {
+        totalWeight += getWeight(task, transferringOnly);
+      }
+    }
+    return totalWeight;
+  }
+
+}
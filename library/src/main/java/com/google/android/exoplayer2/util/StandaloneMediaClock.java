@@ -19,22 +19,28 @@ import android.os.SystemClock;
 
 /**
  * A standalone {@link MediaClock}. The clock can be started, stopped and its time can be set and
- * retrieved. When started, this clock is based on {@link SystemClock#elapsedRealtime()}.
+ * retrieved. When started, this clock is based on {@link SystemClock#elapsedRealtime()}, and
+ * advances at the rate given by {@link #setPlaybackSpeed(float)}.
  */
 public final class StandaloneMediaClock implements MediaClock {
 
   private boolean started;
+  private float playbackSpeed;
 
   /**
-   * The media time when the clock was last set or stopped.
+   * The media time when the clock was last set, started, stopped or had its speed changed.
    */
   private long positionUs;
 
   /**
-   * The difference between {@link SystemClock#elapsedRealtime()} and {@link #positionUs}
-   * when the clock was last set or started.
+   * The value of {@link SystemClock#elapsedRealtime()} in microseconds when the clock was last set,
+   * started or had its speed changed.
    */
-  private long deltaUs;
+  private long baseElapsedRealtimeUs;
+
+  public StandaloneMediaClock() {
+    playbackSpeed = 1f;
+  }
 
   /**
    * Starts the clock. Does nothing if the clock is already started.
@@ -42,7 +48,7 @@ public final class StandaloneMediaClock implements MediaClock {
   public void start() {
     if (!started) {
       started = true;
-      deltaUs = elapsedRealtimeMinus(positionUs);
+      baseElapsedRealtimeUs = elapsedRealtimeUs();
     }
   }
 
@@ -51,7 +57,7 @@ public final class StandaloneMediaClock implements MediaClock {
    */
   public void stop() {
     if (started) {
-      positionUs = elapsedRealtimeMinus(deltaUs);
+      positionUs = getPositionUs();
       started = false;
     }
   }
@@ -61,16 +67,31 @@ public final class StandaloneMediaClock implements MediaClock {
    */
   public void setPositionUs(long timeUs) {
     this.positionUs = timeUs;
-    deltaUs = elapsedRealtimeMinus(timeUs);
+    baseElapsedRealtimeUs = elapsedRealtimeUs();
+  }
+
+  /**
+   * Sets the rate at which the clock advances relative to {@link SystemClock#elapsedRealtime()}.
+   *
+   * @param playbackSpeed The playback speed. Must be greater than zero.
+   */
+  public void setPlaybackSpeed(float playbackSpeed) {
+    positionUs = getPositionUs();
+    baseElapsedRealtimeUs = elapsedRealtimeUs();
+    this.playbackSpeed = playbackSpeed;
   }
 
   @Override
   public long getPositionUs() {
-    return started ? elapsedRealtimeMinus(deltaUs) : positionUs;
+    if (!started) {
+      return positionUs;
+    }
+    long elapsedUs = elapsedRealtimeUs() - baseElapsedRealtimeUs;
+    return positionUs + (playbackSpeed == 1f ? elapsedUs : (long) (elapsedUs * playbackSpeed));
   }
 
-  private long elapsedRealtimeMinus(long toSubtractUs) {
-    return SystemClock.elapsedRealtime() * 1000 - toSubtractUs;
+  private static long elapsedRealtimeUs() {
+    return SystemClock.elapsedRealtime() * 1000;
   }
 
 }
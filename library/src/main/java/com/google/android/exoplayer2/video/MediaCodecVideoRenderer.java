@@ -57,6 +57,12 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private static final String KEY_CROP_BOTTOM = "crop-bottom";
   private static final String KEY_CROP_TOP = "crop-top";
 
+  /**
+   * How late a frame can be, in microseconds, before all buffers up to the next keyframe are
+   * dropped by default.
+   */
+  private static final long MAX_LATE_US_BEFORE_DROPPING_TO_KEYFRAME = 500000;
+
   // Long edge length in pixels for standard video formats, in decreasing in order.
   private static final int[] STANDARD_LONG_EDGE_VIDEO_PX = new int[] {
       1920, 1600, 1440, 1280, 960, 854, 640, 540, 480};
@@ -213,6 +219,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     super.onEnabled(joining);
     tunnelingAudioSessionId = getConfiguration().tunnelingAudioSessionId;
     tunneling = tunnelingAudioSessionId != C.AUDIO_SESSION_ID_UNSET;
+    if (tunneling && getCodec() != null) {
+      // A codec kept when the renderer was last disabled isn't configured for tunneling.
+      releaseCodec();
+    }
     eventDispatcher.enabled(decoderCounters);
     frameReleaseTimeHelper.enable();
   }
@@ -302,8 +312,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     if (this.surface != surface) {
       this.surface = surface;
       int state = getState();
-      if (state == STATE_ENABLED || state == STATE_STARTED) {
-        MediaCodec codec = getCodec();
+      MediaCodec codec = getCodec();
+      // The codec may have been kept when the renderer was disabled, in which case it also needs
+      // updating.
+      if (state == STATE_ENABLED || state == STATE_STARTED || codec != null) {
         if (Util.SDK_INT >= 23 && codec != null && surface != null) {
           setOutputSurfaceV23(codec, surface);
         } else {
@@ -386,6 +398,12 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     setVideoScalingMode(codec, scalingMode);
   }
 
+  @Override
+  protected boolean canKeepCodec() {
+    // The OnFrameRenderedListener used for tunneled playback is released when disabled.
+    return !tunneling;
+  }
+
   @Override
   protected boolean canReconfigureCodec(MediaCodec codec, boolean codecIsAdaptive,
       Format oldFormat, Format newFormat) {
@@ -399,7 +417,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   @Override
   protected boolean processOutputBuffer(long positionUs, long elapsedRealtimeUs, MediaCodec codec,
       ByteBuffer buffer, int bufferIndex, int bufferFlags, long bufferPresentationTimeUs,
-      boolean shouldSkip) {
+      boolean shouldSkip) throws ExoPlaybackException {
     if (shouldSkip) {
       skipOutputBuffer(codec, bufferIndex);
       return true;
@@ -431,6 +449,13 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         bufferPresentationTimeUs, unadjustedFrameReleaseTimeNs);
     earlyUs = (adjustedReleaseTimeNs - systemTimeNs) / 1000;
 
+    if (shouldDropBuffersToKeyframe(earlyUs, elapsedRealtimeUs)
+        && maybeDropBuffersToKeyframe(codec, bufferIndex, positionUs)) {
+      // We're so far behind that we've dropped everything up to the next keyframe. The codec has
+      // been flushed, so there's no output buffer left to process.
+      return false;
+    }
+
     if (shouldDropOutputBuffer(earlyUs, elapsedRealtimeUs)) {
       // We're more than 30ms late rendering the frame.
       dropOutputBuffer(codec, bufferIndex);
@@ -478,6 +503,19 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return earlyUs < -30000;
   }
 
+  /**
+   * Returns whether all buffers up to the next keyframe should be dropped, so that decoding can
+   * resume from a keyframe that can be presented in time.
+   *
+   * @param earlyUs The time until the buffer should be presented in microseconds. A negative value
+   *     indicates that the buffer is late.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   */
+  protected boolean shouldDropBuffersToKeyframe(long earlyUs, long elapsedRealtimeUs) {
+    return earlyUs < -MAX_LATE_US_BEFORE_DROPPING_TO_KEYFRAME;
+  }
+
   private void skipOutputBuffer(MediaCodec codec, int bufferIndex) {
     TraceUtil.beginSection("skipVideoBuffer");
     codec.releaseOutputBuffer(bufferIndex, false);
@@ -485,7 +523,13 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     decoderCounters.skippedOutputBufferCount++;
   }
 
-  private void dropOutputBuffer(MediaCodec codec, int bufferIndex) {
+  /**
+   * Drops the output buffer with the specified index.
+   *
+   * @param codec The codec that owns the output buffer.
+   * @param bufferIndex The index of the output buffer to drop.
+   */
+  protected void dropOutputBuffer(MediaCodec codec, int bufferIndex) {
     TraceUtil.beginSection("dropVideoBuffer");
     codec.releaseOutputBuffer(bufferIndex, false);
     TraceUtil.endSection();
@@ -499,6 +543,31 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
   }
 
+  /**
+   * Drops the output buffer with the specified index, along with all buffers up to the last
+   * keyframe before the playback position, if such a keyframe is buffered.
+   *
+   * @param codec The codec that owns the output buffer.
+   * @param bufferIndex The index of the output buffer being processed.
+   * @param positionUs The current playback position in microseconds.
+   * @return Whether the buffers were dropped. If false, nothing was dropped.
+   * @throws ExoPlaybackException If an error occurs flushing the codec.
+   */
+  private boolean maybeDropBuffersToKeyframe(MediaCodec codec, int bufferIndex, long positionUs)
+      throws ExoPlaybackException {
+    // Skip any buffered samples up to the last keyframe before the playback position. Flushing the
+    // codec discards frames that are already being decoded, and causes input to be discarded until
+    // a keyframe is read. If there's no such keyframe buffered, flushing would discard input until
+    // the next keyframe is loaded, freezing the video for up to a whole group of pictures.
+    if (!skipToKeyframeBefore(positionUs)) {
+      return false;
+    }
+    dropOutputBuffer(codec, bufferIndex);
+    decoderCounters.droppedToKeyframeCount++;
+    flushCodec();
+    return true;
+  }
+
   private void renderOutputBuffer(MediaCodec codec, int bufferIndex) {
     maybeNotifyVideoSizeChanged();
     TraceUtil.beginSection("releaseOutputBuffer");
@@ -24,9 +24,15 @@ import android.view.Choreographer;
 import android.view.Choreographer.FrameCallback;
 import android.view.WindowManager;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 
 /**
  * Makes a best effort to adjust frame release timestamps for a smoother visual result.
+ * <p>
+ * The content frame rate is detected from the frame presentation timestamps. Once it's known and
+ * the helper is aligning releases with vsync, frames whose duration spans multiple vsyncs are
+ * released on a fixed cadence (e.g. 3:2 pulldown for 24 fps content on a 60 Hz display), rather
+ * than each frame being snapped to its closest vsync independently.
  */
 @TargetApi(16)
 public final class VideoFrameReleaseTimeHelper {
@@ -37,8 +43,16 @@ public final class VideoFrameReleaseTimeHelper {
   private static final long VSYNC_OFFSET_PERCENTAGE = 80;
   private static final int MIN_FRAMES_FOR_ADJUSTMENT = 6;
 
+  /**
+   * The fraction of a vsync duration, as a percentage, by which frame times are biased when
+   * assigning frames to vsyncs on a cadence. Biasing keeps frame times away from vsync boundaries,
+   * so that small timing errors don't cause a frame to flip between adjacent vsyncs.
+   */
+  private static final long CADENCE_BIAS_PERCENTAGE = 25;
+
   private final VSyncSampler vsyncSampler;
   private final boolean useDefaultDisplayVsync;
+  private final long fixedVsyncTimeNs;
   private final long vsyncDurationNs;
   private final long vsyncOffsetNs;
 
@@ -49,14 +63,16 @@ public final class VideoFrameReleaseTimeHelper {
   private boolean haveSync;
   private long syncUnadjustedReleaseTimeNs;
   private long syncFramePresentationTimeNs;
+  private long syncVsyncTimeNs;
   private long frameCount;
+  private long frameDurationNs;
 
   /**
    * Constructs an instance that smoothes frame release timestamps but does not align them with
    * the default display's vsync signal.
    */
   public VideoFrameReleaseTimeHelper() {
-    this(-1 /* Value unused */, false);
+    this(-1 /* Value unused */, false, 0);
   }
 
   /**
@@ -66,21 +82,37 @@ public final class VideoFrameReleaseTimeHelper {
    * @param context A context from which information about the default display can be retrieved.
    */
   public VideoFrameReleaseTimeHelper(Context context) {
-    this(getDefaultDisplayRefreshRate(context), true);
+    this(getDefaultDisplayRefreshRate(context), true, 0);
   }
 
-  private VideoFrameReleaseTimeHelper(double defaultDisplayRefreshRate,
-      boolean useDefaultDisplayVsync) {
+  /**
+   * Constructs an instance that smoothes frame release timestamps and aligns them with a fixed
+   * vsync signal, rather than one sampled from the default display. Intended for simulating
+   * playback in tests.
+   *
+   * @param displayRefreshRate The refresh rate of the simulated display.
+   * @param vsyncTimeNs The time of any one vsync of the simulated display, in nanoseconds and in
+   *     the same time base as the release timestamps passed to
+   *     {@link #adjustReleaseTime(long, long)}. Must be non-zero.
+   */
+  /* package */ VideoFrameReleaseTimeHelper(double displayRefreshRate, long vsyncTimeNs) {
+    this(displayRefreshRate, false, vsyncTimeNs);
+  }
+
+  private VideoFrameReleaseTimeHelper(double displayRefreshRate, boolean useDefaultDisplayVsync,
+      long fixedVsyncTimeNs) {
     this.useDefaultDisplayVsync = useDefaultDisplayVsync;
-    if (useDefaultDisplayVsync) {
-      vsyncSampler = VSyncSampler.getInstance();
-      vsyncDurationNs = (long) (C.NANOS_PER_SECOND / defaultDisplayRefreshRate);
+    this.fixedVsyncTimeNs = fixedVsyncTimeNs;
+    if (useDefaultDisplayVsync || fixedVsyncTimeNs != 0) {
+      vsyncSampler = useDefaultDisplayVsync ? VSyncSampler.getInstance() : null;
+      vsyncDurationNs = (long) (C.NANOS_PER_SECOND / displayRefreshRate);
       vsyncOffsetNs = (vsyncDurationNs * VSYNC_OFFSET_PERCENTAGE) / 100;
     } else {
       vsyncSampler = null;
       vsyncDurationNs = -1; // Value unused.
       vsyncOffsetNs = -1; // Value unused.
     }
+    frameDurationNs = C.TIME_UNSET;
   }
 
   /**
@@ -88,6 +120,7 @@ public final class VideoFrameReleaseTimeHelper {
    */
   public void enable() {
     haveSync = false;
+    frameDurationNs = C.TIME_UNSET;
     if (useDefaultDisplayVsync) {
       vsyncSampler.addObserver();
     }
@@ -102,6 +135,16 @@ public final class VideoFrameReleaseTimeHelper {
     }
   }
 
+  /**
+   * Returns the frame rate of the content, as detected from the presentation timestamps of the
+   * frames passed to {@link #adjustReleaseTime(long, long)}, or {@link Format#NO_VALUE} if it's not
+   * yet known.
+   */
+  public float getFrameRate() {
+    return frameDurationNs == C.TIME_UNSET ? Format.NO_VALUE
+        : (float) C.NANOS_PER_SECOND / frameDurationNs;
+  }
+
   /**
    * Adjusts a frame release timestamp.
    *
@@ -117,6 +160,7 @@ public final class VideoFrameReleaseTimeHelper {
     // Until we know better, the adjustment will be a no-op.
     long adjustedFrameTimeNs = framePresentationTimeNs;
     long adjustedReleaseTimeNs = unadjustedReleaseTimeNs;
+    boolean haveFrameDuration = false;
 
     if (haveSync) {
       // See if we've advanced to the next frame.
@@ -140,6 +184,8 @@ public final class VideoFrameReleaseTimeHelper {
           adjustedFrameTimeNs = candidateAdjustedFrameTimeNs;
           adjustedReleaseTimeNs = syncUnadjustedReleaseTimeNs + adjustedFrameTimeNs
               - syncFramePresentationTimeNs;
+          frameDurationNs = averageFrameDurationNs;
+          haveFrameDuration = averageFrameDurationNs > 0;
         }
       } else {
         // We're synced but haven't waited the required number of frames to apply an adjustment.
@@ -154,6 +200,7 @@ public final class VideoFrameReleaseTimeHelper {
     if (!haveSync) {
       syncFramePresentationTimeNs = framePresentationTimeNs;
       syncUnadjustedReleaseTimeNs = unadjustedReleaseTimeNs;
+      syncVsyncTimeNs = 0;
       frameCount = 0;
       haveSync = true;
       onSynced();
@@ -162,13 +209,27 @@ public final class VideoFrameReleaseTimeHelper {
     lastFramePresentationTimeUs = framePresentationTimeUs;
     pendingAdjustedFrameTimeNs = adjustedFrameTimeNs;
 
-    if (vsyncSampler == null || vsyncSampler.sampledVsyncTimeNs == 0) {
+    long sampledVsyncTimeNs = getSampledVsyncTimeNs();
+    if (sampledVsyncTimeNs == 0) {
       return adjustedReleaseTimeNs;
     }
 
+    long targetReleaseTimeNs = adjustedReleaseTimeNs;
+    if (haveFrameDuration && frameDurationNs >= vsyncDurationNs) {
+      // Each frame spans one or more vsyncs. Assign frames to vsyncs counted from the vsync closest
+      // to the sync frame, so that the pattern of vsyncs per frame repeats regularly.
+      if (syncVsyncTimeNs == 0) {
+        syncVsyncTimeNs = closestVsync(syncUnadjustedReleaseTimeNs, sampledVsyncTimeNs,
+            vsyncDurationNs);
+      }
+      long elapsedFrameTimeNs = adjustedFrameTimeNs - syncFramePresentationTimeNs;
+      long biasNs = (vsyncDurationNs * CADENCE_BIAS_PERCENTAGE) / 100;
+      long vsyncCount = (elapsedFrameTimeNs + biasNs) / vsyncDurationNs;
+      targetReleaseTimeNs = syncVsyncTimeNs + vsyncCount * vsyncDurationNs;
+    }
+
     // Find the timestamp of the closest vsync. This is the vsync that we're targeting.
-    long snappedTimeNs = closestVsync(adjustedReleaseTimeNs,
-        vsyncSampler.sampledVsyncTimeNs, vsyncDurationNs);
+    long snappedTimeNs = closestVsync(targetReleaseTimeNs, sampledVsyncTimeNs, vsyncDurationNs);
     // Apply an offset so that we release before the target vsync, but after the previous one.
     return snappedTimeNs - vsyncOffsetNs;
   }
@@ -177,6 +238,10 @@ public final class VideoFrameReleaseTimeHelper {
     // Do nothing.
   }
 
+  private long getSampledVsyncTimeNs() {
+    return vsyncSampler != null ? vsyncSampler.sampledVsyncTimeNs : fixedVsyncTimeNs;
+  }
+
   private boolean isDriftTooLarge(long frameTimeNs, long releaseTimeNs) {
     long elapsedFrameTimeNs = frameTimeNs - syncFramePresentationTimeNs;
     long elapsedReleaseTimeNs = releaseTimeNs - syncUnadjustedReleaseTimeNs;
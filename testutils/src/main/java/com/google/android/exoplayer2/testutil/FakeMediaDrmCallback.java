@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import com.google.android.exoplayer2.drm.ExoMediaDrm.KeyRequest;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.ProvisionRequest;
+import com.google.android.exoplayer2.drm.MediaDrmCallback;
+import java.util.UUID;
+
+/**
+ * A fake {@link MediaDrmCallback} that serves fixed responses locally and counts the requests it
+ * executes, allowing license acquisition to be tested without a license server.
+ */
+public final class FakeMediaDrmCallback implements MediaDrmCallback {
+
+  private final byte[] provisionResponse;
+  private final byte[] keyResponse;
+
+  private volatile int provisionRequestCount;
+  private volatile int keyRequestCount;
+  private volatile Exception keyRequestError;
+
+  /**
+   * @param provisionResponse The response to provisioning requests.
+   * @param keyResponse The response to key requests.
+   */
+  public FakeMediaDrmCallback(byte[] provisionResponse, byte[] keyResponse) {
+    this.provisionResponse = provisionResponse;
+    this.keyResponse = keyResponse;
+  }
+
+  /**
+   * Sets an error to be thrown by subsequent key requests, or null to serve the key response.
+   */
+  public void setKeyRequestError(Exception keyRequestError) {
+    this.keyRequestError = keyRequestError;
+  }
+
+  /**
+   * Returns the number of executed provisioning requests.
+   */
+  public int getProvisionRequestCount() {
+    return provisionRequestCount;
+  }
+
+  /**
+   * Returns the number of executed key requests, including those that failed.
+   */
+  public int getKeyRequestCount() {
+    return keyRequestCount;
+  }
+
+  @Override
+  public byte[] executeProvisionRequest(UUID uuid, ProvisionRequest request) {
+    provisionRequestCount++;
+    return provisionResponse;
+  }
+
+  @Override
+  public byte[] executeKeyRequest(UUID uuid, KeyRequest request) throws Exception {
+    keyRequestCount++;
+    Exception error = keyRequestError;
+    if (error != null) {
+      throw error;
+    }
+    return keyResponse;
+  }
+
+}